@@ -0,0 +1,35 @@
+#!/bin/bash
+
+# Lasttest: vergleicht Durchsatz und p99-Antwortzeit für die beiden Ausführungsmodi
+# "Tomcat-Thread-Pool mit Plattform-Threads" (Profil default) und "virtuelle Threads"
+# (Profil virtuell). Ergebnisse werden in lasttest/ergebnis-<profil>.txt geschrieben.
+#
+# Parameter über Umgebungsvariablen: PARALLEL (Clients, Default 400), DAUER (Sekunden, Default 30)
+
+PARALLEL=${PARALLEL:-400}
+DAUER=${DAUER:-30}
+PORT=${PORT:-8080}
+URL=http://localhost:$PORT
+
+./mvnw --batch-mode --quiet clean package -DskipTests || exit 1
+
+for PROFIL in default virtuell; do
+
+    echo "=== Profil: $PROFIL ==="
+
+    java -jar target/blog-0.0.1-SNAPSHOT.jar --spring.profiles.active=$PROFIL --server.port=$PORT \
+         > lasttest/app-$PROFIL.log 2>&1 &
+    APP_PID=$!
+
+    until curl --silent --output /dev/null $URL/app/artikel/liste; do sleep 1; done
+
+    # Aufwärmen (JIT, Connection-Pool), Ergebnis wird verworfen
+    java lasttest/Lasttest.java $URL $PARALLEL 10 > /dev/null
+
+    java lasttest/Lasttest.java $URL $PARALLEL $DAUER | tee lasttest/ergebnis-$PROFIL.txt
+
+    kill $APP_PID
+    wait $APP_PID 2> /dev/null
+done
+
+grep -h "Gepinnte virtuelle Threads" -A 10 lasttest/app-virtuell.log
@@ -0,0 +1,156 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Einfacher Lastgenerator für den Vergleich der Ausführungsmodi (Tomcat-Thread-Pool
+ * vs. virtuelle Threads), wird als Single-File-Programm gestartet:
+ * <pre>
+ * java lasttest/Lasttest.java http://localhost:8080 400 30
+ * </pre>
+ * Argumente: Basis-URL, Anzahl paralleler Clients, Dauer in Sekunden.
+ * <br><br>
+ *
+ * Jeder Client ist ein virtueller Thread, der in einer Schleife ohne Pause Requests
+ * schickt (geschlossenes Lastmodell). Die Pfade werden reihum verwendet: Artikelliste,
+ * Volltextsuche und alle auf der Artikelliste verlinkten Artikel. Ausgegeben werden
+ * Durchsatz sowie Median und 99. Perzentil der Antwortzeiten.
+ */
+public class Lasttest {
+
+    /** Muster für Links auf Artikel in der Artikelliste. */
+    private static final Pattern ARTIKEL_LINK = Pattern.compile( "href=\"(/app/artikel/\\d+)\"" );
+
+
+    public static void main( String[] args ) throws Exception {
+
+        final String basisUrl = args.length > 0 ? args[ 0 ] : "http://localhost:8080";
+        final int    parallel = args.length > 1 ? Integer.parseInt( args[ 1 ] ) : 400;
+        final int    sekunden = args.length > 2 ? Integer.parseInt( args[ 2 ] ) : 30;
+
+        final HttpClient client = HttpClient.newBuilder()
+                                            .connectTimeout( Duration.ofSeconds( 10 ) )
+                                            .executor( Executors.newVirtualThreadPerTaskExecutor() )
+                                            .build();
+
+        final List<URI> uriListe = ermittlePfade( client, basisUrl );
+
+        final long ende = System.nanoTime() + Duration.ofSeconds( sekunden ).toNanos();
+
+        final List<long[]> latenzenProClient = Collections.synchronizedList( new ArrayList<>() );
+        final AtomicLong   fehler            = new AtomicLong();
+
+        try ( ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor() ) {
+
+            for ( int c = 0; c < parallel; c++ ) {
+
+                final int startIndex = c;
+                executor.submit( () -> {
+
+                    long[] latenzen = new long[ 1024 ];
+                    int    anzahl   = 0;
+                    int    i        = startIndex;
+                    while ( System.nanoTime() < ende ) {
+
+                        final HttpRequest request = HttpRequest.newBuilder( uriListe.get( i++ % uriListe.size() ) )
+                                                               .timeout( Duration.ofSeconds( 30 ) )
+                                                               .build();
+                        final long start = System.nanoTime();
+                        try {
+
+                            final HttpResponse<Void> response =
+                                    client.send( request, HttpResponse.BodyHandlers.discarding() );
+                            if ( response.statusCode() != 200 ) {
+
+                                fehler.incrementAndGet();
+                                continue;
+                            }
+                        }
+                        catch ( Exception ex ) {
+
+                            fehler.incrementAndGet();
+                            continue;
+                        }
+
+                        if ( anzahl == latenzen.length ) {
+
+                            latenzen = Arrays.copyOf( latenzen, anzahl * 2 );
+                        }
+                        latenzen[ anzahl++ ] = System.nanoTime() - start;
+                    }
+                    latenzenProClient.add( Arrays.copyOf( latenzen, anzahl ) );
+                    return null;
+                });
+            }
+        }
+
+        final long[] alle = latenzenProClient.stream()
+                                             .flatMapToLong( Arrays::stream )
+                                             .sorted()
+                                             .toArray();
+        if ( alle.length == 0 ) {
+
+            System.out.println( "Keine erfolgreichen Requests, Fehler: " + fehler.get() );
+            return;
+        }
+
+        System.out.printf( "Clients: %d, Dauer: %d s, Pfade: %d%n", parallel, sekunden, uriListe.size() );
+        System.out.printf( "Requests erfolgreich: %d, Fehler: %d%n", alle.length, fehler.get() );
+        System.out.printf( "Durchsatz: %.1f Requests/s%n", alle.length / (double) sekunden );
+        System.out.printf( "Median: %.1f ms, p99: %.1f ms, Max: %.1f ms%n",
+                           perzentil( alle, 0.50 ), perzentil( alle, 0.99 ), alle[ alle.length - 1 ] / 1e6 );
+    }
+
+
+    /**
+     * Lädt die Artikelliste und sammelt die Pfade, die im Lasttest aufgerufen werden.
+     */
+    private static List<URI> ermittlePfade( HttpClient client, String basisUrl ) throws Exception {
+
+        final Set<String> pfade = new LinkedHashSet<>();
+        pfade.add( "/app/artikel/liste" );
+        pfade.add( "/app/artikel/suche?suchbegriff=test" );
+
+        final HttpRequest request = HttpRequest.newBuilder( URI.create( basisUrl + "/app/artikel/liste" ) ).build();
+        final String html = client.send( request, HttpResponse.BodyHandlers.ofString() ).body();
+        final Matcher matcher = ARTIKEL_LINK.matcher( html );
+        while ( matcher.find() ) {
+
+            pfade.add( matcher.group( 1 ) );
+        }
+
+        final List<URI> ergebnis = new ArrayList<>();
+        for ( String pfad : pfade ) {
+
+            ergebnis.add( URI.create( basisUrl + pfad ) );
+        }
+        return ergebnis;
+    }
+
+
+    /**
+     * Liefert Perzentil aus sortiertem Array von Latenzen in Nanosekunden.
+     *
+     * @return Perzentil in Millisekunden
+     */
+    private static double perzentil( long[] sortiert, double anteil ) {
+
+        final int index = (int) Math.ceil( anteil * sortiert.length ) - 1;
+        return sortiert[ Math.max( 0, index ) ] / 1e6;
+    }
+
+}
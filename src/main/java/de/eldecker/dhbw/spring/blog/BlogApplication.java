@@ -2,17 +2,25 @@ package de.eldecker.dhbw.spring.blog;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 /**
  * Einstiegsklasse für Spring Boot.
+ * <br><br>
+ *
+ * Mit {@code EnableScheduling} werden Methoden mit Annotation {@code Scheduled}
+ * periodisch aufgerufen (z.B. Schreiben der Aufrufzähler).
  */
 @SpringBootApplication
+@EnableScheduling
 public class BlogApplication {
 
 	public static void main( String[] args ) {
         
-		SpringApplication.run( BlogApplication.class, args );
+		final SpringApplication anwendung = new SpringApplication( BlogApplication.class );
+		anwendung.addListeners( new StartzeitBericht() );
+		anwendung.run( args );
 	}
 
 }
@@ -0,0 +1,102 @@
+package de.eldecker.dhbw.spring.blog;
+
+import java.lang.management.ManagementFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationEnvironmentPreparedEvent;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.event.ApplicationStartingEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+
+/**
+ * Misst die Dauer der einzelnen Phasen beim Start der Anwendung und schreibt sie nach dem
+ * Start in eine Log-Zeile, z.B. um die Wirkung von Profil {@code schnellstart} und
+ * CDS-Archiv zu vergleichen:
+ * <ul>
+ * <li>JVM: vom Start der JVM bis zum Aufruf von {@code SpringApplication.run}
+ *     (Laden der Klassen, hier wirkt das CDS-Archiv)</li>
+ * <li>Umgebung: Lesen der Konfiguration</li>
+ * <li>Kontext: Anlegen des Application Context und Laden der Bean-Definitionen</li>
+ * <li>Refresh: Erzeugen der Beans inkl. JPA mit Schema-Abgleich und Start des Web-Servers</li>
+ * <li>Runner: {@code ApplicationRunner}, z.B. Import von Demo-Content</li>
+ * </ul>
+ * Wird in {@link BlogApplication#main(String[])} registriert und nicht als Bean, weil die
+ * ersten Events vor dem Anlegen des Application Context kommen.
+ */
+public class StartzeitBericht implements ApplicationListener<ApplicationEvent> {
+
+    private static final Logger LOG = LoggerFactory.getLogger( StartzeitBericht.class );
+
+    /** Millisekunden seit Start der JVM bei {@link ApplicationStartingEvent}. */
+    private long _jvmMillis;
+
+    /** Zeitpunkt ({@link System#nanoTime()}) von {@link ApplicationStartingEvent}. */
+    private long _starting;
+
+    /** Zeitpunkt von {@link ApplicationEnvironmentPreparedEvent}. */
+    private long _umgebung;
+
+    /** Zeitpunkt von {@link ApplicationPreparedEvent}. */
+    private long _vorbereitet;
+
+    /** Zeitpunkt des ersten {@link ContextRefreshedEvent}, {@code 0} wenn noch nicht aufgetreten. */
+    private long _refresh;
+
+    /** Zeitpunkt von {@link ApplicationStartedEvent}. */
+    private long _gestartet;
+
+
+    /**
+     * Merkt sich den Zeitpunkt der Events beim Start und schreibt nach
+     * {@link ApplicationReadyEvent} die Dauer der Phasen ins Log.
+     */
+    @Override
+    public void onApplicationEvent( ApplicationEvent event ) {
+
+        final long jetzt = System.nanoTime();
+
+        switch ( event ) {
+
+            case ApplicationStartingEvent e -> {
+
+                _starting  = jetzt;
+                _jvmMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            }
+            case ApplicationEnvironmentPreparedEvent e -> _umgebung    = jetzt;
+            case ApplicationPreparedEvent            e -> _vorbereitet = jetzt;
+            case ContextRefreshedEvent               e -> _refresh     = _refresh == 0 ? jetzt : _refresh; // nicht Kind-Kontexte
+            case ApplicationStartedEvent             e -> _gestartet   = jetzt;
+            case ApplicationReadyEvent               e -> berichten( jetzt );
+            default -> {}
+        }
+    }
+
+
+    /**
+     * Schreibt die Dauer der Phasen ins Log.
+     */
+    private void berichten( long bereit ) {
+
+        LOG.info( "Startzeit: JVM {} ms, Umgebung {} ms, Kontext {} ms, Refresh {} ms, Runner {} ms; " +
+                  "gesamt {} ms seit Start der JVM.",
+                  _jvmMillis,
+                  millis( _starting   , _umgebung    ),
+                  millis( _umgebung   , _vorbereitet ),
+                  millis( _vorbereitet, _refresh     ),
+                  millis( _gestartet  , bereit       ),
+                  _jvmMillis + millis( _starting, bereit ) );
+    }
+
+
+    private static long millis( long von, long bis ) {
+
+        return ( bis - von ) / 1_000_000;
+    }
+
+}
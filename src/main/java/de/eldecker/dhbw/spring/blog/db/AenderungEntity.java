@@ -0,0 +1,151 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import static jakarta.persistence.GenerationType.IDENTITY;
+
+import static java.time.LocalDateTime.now;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+
+/**
+ * Eintrag im Änderungsprotokoll: für jeden schreibenden Zugriff auf {@code ARTIKEL}
+ * oder {@code AUTOR} wird in derselben Transaktion eine Zeile angehängt. Die Tabelle
+ * wird nur angehängt und nie geändert; Leser verfolgen sie anhand der aufsteigenden
+ * ID, z.B. für die Replikation auf die Lese-Datenbank oder für die Aktualisierung
+ * der Caches auf den anderen Instanzen der Anwendung.
+ */
+@Entity
+@Table( name = "AENDERUNG_PROTOKOLL" )
+public class AenderungEntity {
+
+    /** Art der Änderung: Datensatz wurde angelegt oder geändert. */
+    public static final String ART_GESPEICHERT = "GESPEICHERT";
+
+    /** Art der Änderung: nur die Aufrufzähler eines Artikels wurden erhöht. */
+    public static final String ART_AUFRUFE = "AUFRUFE";
+
+    /** Fortlaufende Nummer, wird von der Datenbank vergeben. */
+    @Id
+    @GeneratedValue( strategy = IDENTITY )
+    private Long id;
+
+    /** Name der geänderten Tabelle. */
+    @Column( name = "TABELLE", nullable = false, length = 32 )
+    private String tabelle;
+
+    /** Primärschlüssel des geänderten Datensatzes. */
+    @Column( name = "DATENSATZ_ID", nullable = false )
+    private long datensatzId;
+
+    /** Art der Änderung, siehe Konstanten {@code ART_...}. */
+    @Column( name = "ART", nullable = false, length = 16 )
+    private String art;
+
+    /** Zeitpunkt der Änderung. */
+    @Column( name = "ZEITPUNKT", nullable = false )
+    private LocalDateTime zeitpunkt;
+
+    /** Kennung der Instanz der Anwendung, welche die Änderung geschrieben hat. */
+    @Column( name = "KNOTEN", length = 36 )
+    private String knoten;
+
+
+    /**
+     * Default-Konstruktor, obligatorisch für JPA.
+     */
+    public AenderungEntity() {}
+
+
+    /**
+     * Konstruktor für neuen Eintrag, Zeitpunkt ist die aktuelle Systemzeit.
+     *
+     * @param tabelle Name der geänderten Tabelle
+     *
+     * @param datensatzId Primärschlüssel des geänderten Datensatzes
+     *
+     * @param art Art der Änderung
+     *
+     * @param knoten Kennung der Instanz der Anwendung, welche die Änderung schreibt
+     */
+    public AenderungEntity( String tabelle, long datensatzId, String art, String knoten ) {
+
+        this.tabelle     = tabelle;
+        this.datensatzId = datensatzId;
+        this.art         = art;
+        this.zeitpunkt   = now();
+        this.knoten      = knoten;
+    }
+
+
+    /**
+     * Getter für fortlaufende Nummer.
+     *
+     * @return ID, {@code null} solange noch nicht gespeichert
+     */
+    public Long getId() {
+
+        return id;
+    }
+
+
+    /**
+     * Getter für Name der geänderten Tabelle.
+     *
+     * @return Tabellenname, z.B. {@code ARTIKEL}
+     */
+    public String getTabelle() {
+
+        return tabelle;
+    }
+
+
+    /**
+     * Getter für Primärschlüssel des geänderten Datensatzes.
+     *
+     * @return ID des Datensatzes
+     */
+    public long getDatensatzId() {
+
+        return datensatzId;
+    }
+
+
+    /**
+     * Getter für Art der Änderung.
+     *
+     * @return Art, siehe Konstanten {@code ART_...}
+     */
+    public String getArt() {
+
+        return art;
+    }
+
+
+    /**
+     * Getter für Zeitpunkt der Änderung.
+     *
+     * @return Zeitpunkt (Datum+Uhrzeit)
+     */
+    public LocalDateTime getZeitpunkt() {
+
+        return zeitpunkt;
+    }
+
+
+    /**
+     * Getter für Kennung der Instanz, welche die Änderung geschrieben hat.
+     *
+     * @return Kennung des Knotens
+     */
+    public String getKnoten() {
+
+        return knoten;
+    }
+
+}
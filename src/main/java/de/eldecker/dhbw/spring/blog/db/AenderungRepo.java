@@ -0,0 +1,33 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+
+/**
+ * Repository für {@link AenderungEntity}, wird von <i>Spring Data JPA</i>
+ * automatisch implementiert und instanziiert. Gelesen wird das Protokoll
+ * nicht mit JPA, sondern inkrementell mit {@link AenderungsCursor}.
+ */
+@RepositoryRestResource( exported = false )
+public interface AenderungRepo extends JpaRepository<AenderungEntity, Long> {
+
+    /**
+     * Löscht alle Einträge, die älter als {@code grenze} sind.
+     *
+     * @param grenze Einträge mit früherem Zeitpunkt werden gelöscht
+     *
+     * @return Anzahl der gelöschten Einträge
+     */
+    @Modifying
+    @Transactional
+    @Query( "DELETE FROM AenderungEntity a WHERE a.zeitpunkt < :grenze" )
+    int loescheAelterAls( @Param("grenze") LocalDateTime grenze );
+
+}
@@ -0,0 +1,199 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import de.eldecker.dhbw.spring.blog.model.Aenderung;
+
+
+/**
+ * Liest das Änderungsprotokoll (Tabelle {@code AENDERUNG_PROTOKOLL}) inkrementell:
+ * jeder Aufruf von {@link #naechsteAenderungen(int)} liefert nur die Einträge, die
+ * seit dem letzten Aufruf hinzugekommen sind; dank Primärschlüssel-Index kostet das
+ * nur einen Index-Zugriff.
+ * <br><br>
+ *
+ * Die IDs werden beim {@code INSERT} vergeben, nicht beim {@code COMMIT}. Wenn zwei
+ * Transaktionen gleichzeitig schreiben, kann deshalb die größere ID vor der kleineren
+ * sichtbar werden. Damit solche Einträge nicht übersprungen werden, merkt sich der
+ * Cursor die Lücken unterhalb der größten gelesenen ID und fragt sie beim nächsten
+ * Mal gezielt ab. Eine Lücke, die nach {@link #LUECKE_TIMEOUT_MILLIS} immer noch
+ * besteht, stammt von einer zurückgerollten Transaktion und wird verworfen.
+ * <br><br>
+ *
+ * Objekte dieser Klasse sind keine Beans und nicht thread-sicher; jeder Leser des
+ * Protokolls hat seinen eigenen Cursor.
+ */
+public class AenderungsCursor {
+
+    /** Nach dieser Zeit wird eine Lücke in den IDs nicht mehr abgefragt. */
+    static final long LUECKE_TIMEOUT_MILLIS = 60_000L;
+
+    /** Maximale Anzahl gemerkter Lücken, danach werden die ältesten verworfen. */
+    static final int MAX_LUECKEN = 1_000;
+
+    /** Spalten für die Abfragen. */
+    private static final String SQL_SELECT =
+            "SELECT ID, TABELLE, DATENSATZ_ID, ART, ZEITPUNKT, KNOTEN FROM AENDERUNG_PROTOKOLL ";
+
+    /** Abfrage für neue Einträge, Parameter sind letzte ID und maximale Anzahl. */
+    private static final String SQL_NEUE = SQL_SELECT + "WHERE ID > ? ORDER BY ID LIMIT ?";
+
+    /** Erzeugt {@link Aenderung} aus Ergebniszeile. */
+    private static final RowMapper<Aenderung> ROW_MAPPER = (rs, rowNum) ->
+            new Aenderung( rs.getLong( "ID" ),
+                           rs.getString( "TABELLE" ),
+                           rs.getLong( "DATENSATZ_ID" ),
+                           rs.getString( "ART" ),
+                           rs.getTimestamp( "ZEITPUNKT" ).toLocalDateTime(),
+                           rs.getString( "KNOTEN" ) );
+
+    /** Template für Zugriff auf die Datenbank, in der das Protokoll geschrieben wird. */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Liefert die aktuelle Zeit in Millisekunden, für Ablauf der Lücken. */
+    private final LongSupplier _uhr;
+
+    /** Größte bisher gelesene ID. */
+    private long _letzteId;
+
+    /** Noch nicht gelesene IDs unterhalb von {@link #_letzteId}, Wert ist Zeitpunkt der Entdeckung. */
+    private final TreeMap<Long, Long> _luecken = new TreeMap<>();
+
+
+    /**
+     * Erzeugt einen Cursor, der ab einer bestimmten ID liest.
+     *
+     * @param jdbcTemplate Template für Zugriff auf Datenbank mit Protokoll
+     *
+     * @param startId Einträge bis einschließlich dieser ID werden übersprungen
+     */
+    public AenderungsCursor( JdbcTemplate jdbcTemplate, long startId ) {
+
+        this( jdbcTemplate, startId, System::currentTimeMillis );
+    }
+
+
+    /**
+     * Erzeugt einen Cursor mit eigener Uhr, z.B. für Tests des Ablaufs von Lücken.
+     *
+     * @param jdbcTemplate Template für Zugriff auf Datenbank mit Protokoll
+     *
+     * @param startId Einträge bis einschließlich dieser ID werden übersprungen
+     *
+     * @param uhr Liefert die aktuelle Zeit in Millisekunden
+     */
+    AenderungsCursor( JdbcTemplate jdbcTemplate, long startId, LongSupplier uhr ) {
+
+        _jdbcTemplate = jdbcTemplate;
+        _letzteId     = startId;
+        _uhr          = uhr;
+    }
+
+
+    /**
+     * Liefert die größte ID im Protokoll, z.B. als Startpunkt für einen neuen Cursor.
+     *
+     * @param jdbcTemplate Template für Zugriff auf Datenbank mit Protokoll
+     *
+     * @return Größte ID, oder {@code 0} wenn Protokoll leer
+     */
+    public static long holeGroessteId( JdbcTemplate jdbcTemplate ) {
+
+        final Long maxId = jdbcTemplate.queryForObject( "SELECT MAX(ID) FROM AENDERUNG_PROTOKOLL", Long.class );
+
+        return maxId == null ? 0L : maxId;
+    }
+
+
+    /**
+     * Liest die seit dem letzten Aufruf neu sichtbar gewordenen Einträge.
+     *
+     * @param maxAnzahl Maximale Anzahl neuer Einträge (ohne nachträglich gefundene Lücken)
+     *
+     * @return Liste der Einträge aufsteigend nach ID; kann leer sein
+     */
+    public List<Aenderung> naechsteAenderungen( int maxAnzahl ) {
+
+        final long jetzt = _uhr.getAsLong();
+
+        final List<Aenderung> ergebnis = new ArrayList<>( lueckenAbfragen( jetzt ) );
+
+        final List<Aenderung> neue = _jdbcTemplate.query( SQL_NEUE, ROW_MAPPER, _letzteId, maxAnzahl );
+        for ( Aenderung aenderung : neue ) {
+
+            final long ersteFehlende = Math.max( _letzteId + 1, aenderung.id() - MAX_LUECKEN );
+            for ( long fehlend = ersteFehlende; fehlend < aenderung.id(); fehlend++ ) {
+
+                _luecken.put( fehlend, jetzt );
+            }
+            _letzteId = aenderung.id();
+            ergebnis.add( aenderung );
+        }
+
+        while ( _luecken.size() > MAX_LUECKEN ) {
+
+            _luecken.pollFirstEntry();
+        }
+
+        return ergebnis;
+    }
+
+
+    /**
+     * Getter für größte bisher gelesene ID.
+     *
+     * @return ID des letzten gelesenen Eintrags
+     */
+    public long getLetzteId() {
+
+        return _letzteId;
+    }
+
+
+    /**
+     * Liefert die ID, bis zu der alle Einträge lückenlos gelesen wurden.
+     *
+     * @return {@link #getLetzteId()}, oder ID unterhalb der kleinsten offenen Lücke
+     */
+    public long getLueckenlosBisId() {
+
+        return _luecken.isEmpty() ? _letzteId : _luecken.firstKey() - 1;
+    }
+
+
+    /**
+     * Fragt die gemerkten Lücken ab und verwirft abgelaufene Lücken.
+     *
+     * @param jetzt Aktuelle Zeit in Millisekunden
+     *
+     * @return Inzwischen sichtbar gewordene Einträge, aufsteigend nach ID
+     */
+    private List<Aenderung> lueckenAbfragen( long jetzt ) {
+
+        _luecken.values().removeIf( entdeckt -> jetzt - entdeckt > LUECKE_TIMEOUT_MILLIS );
+        if ( _luecken.isEmpty() ) {
+
+            return List.of();
+        }
+
+        final String idListe = _luecken.keySet().stream()
+                                                .map( String::valueOf )
+                                                .collect( Collectors.joining( "," ) );
+
+        final List<Aenderung> gefunden =
+                _jdbcTemplate.query( SQL_SELECT + "WHERE ID IN (" + idListe + ") ORDER BY ID", ROW_MAPPER );
+        for ( Aenderung aenderung : gefunden ) {
+
+            _luecken.remove( aenderung.id() );
+        }
+        return gefunden;
+    }
+
+}
@@ -8,26 +8,43 @@ import static java.lang.String.format;
 
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Objects;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelAuszug;
 
 
 /**
  * Ein Objekt dieser Klasse repräsentiert einen Blog-Artikel inkl. Überschrift und
  * Content (als clob).
+ * <br><br>
+ *
+ * Die zusammengesetzten Indizes sind für die Archivseiten pro Autor und pro Monat (siehe
+ * {@link ArtikelListenLeser}): Filterspalte, dann Sortierung absteigend nach Zeitpunkt des
+ * Anlegens und ID, so dass eine Seite mit <i>Keyset-Pagination</i> ein Bereich im Index ist.
  */
 @Entity
-@Table( name = "ARTIKEL" )
+@Table( name = "ARTIKEL",
+        indexes = { @Index( name = "IDX_ARTIKEL_AUTOR_ANGELEGT",
+                            columnList = "AUTOR__FK, ZEITPUNKT_ANGELEGT DESC, ID DESC" ),
+                    @Index( name = "IDX_ARTIKEL_ANGELEGT",
+                            columnList = "ZEITPUNKT_ANGELEGT DESC, ID DESC" ) } )
 public class ArtikelEntity {
 
+    /** Trennzeichen zwischen den Tags in Spalte {@code TAGS}. */
+    public static final String TAG_TRENNER = ",";
+
     /** Primärschlüssel, wird von JPA gesetzt/verwaltet. */
     @Id
     @GeneratedValue(strategy = AUTO)
@@ -88,6 +105,74 @@ public class ArtikelEntity {
     @JoinColumn( name = "autor__fk", referencedColumnName = "id" )
     private AutorEntity autor;
 
+    /**
+     * MinHash-Signatur von {@link #inhaltPlain}, wird beim Speichern berechnet und
+     * für die Suche nach ähnlichen Artikeln verwendet. Mit 512 Bytes (siehe
+     * {@code MinHashBerechnung.SIGNATUR_BYTES}) so klein, dass die Spalte kein
+     * {@code LOB} sein muss; ist {@code null} für Artikel, für die noch keine
+     * Signatur berechnet wurde.
+     */
+    @Column( name = "MINHASH_SIGNATUR", length = 512 )
+    private byte[] minHashSignatur;
+
+    /**
+     * 64-Bit-SimHash-Fingerabdruck von {@link #inhaltPlain}, wird beim Speichern berechnet
+     * und für die Erkennung von Beinahe-Duplikaten verwendet; ist {@code null} für Artikel,
+     * für die noch kein Fingerabdruck berechnet wurde.
+     */
+    @Column( name = "SIMHASH" )
+    private Long simHash;
+
+    /**
+     * Tags des Artikels, normalisiert (siehe {@code TagIndex#normalisieren(String)}) und durch
+     * Komma getrennt, z.B. {@code java,spring-boot}; leer oder {@code null} für Artikel ohne Tags.
+     * Die Filterung nach Tags läuft über den Index im Speicher, nicht über diese Spalte.
+     */
+    @Column( name = "TAGS", length = 500 )
+    private String tags;
+
+    /**
+     * Anfang von {@link #inhaltPlain} als Teaser für Artikelliste und Suchergebnis, wird beim
+     * Speichern berechnet (siehe {@code AuszugBerechnung}), damit die Listen die {@code CLOB}-Spalten
+     * nicht lesen müssen; ist {@code null} für Artikel, für die noch kein Auszug berechnet wurde.
+     */
+    @Column( name = "AUSZUG", length = 300 )
+    private String auszug;
+
+    /**
+     * Anzahl der Wörter in {@link #inhaltPlain}, wird beim Speichern berechnet; ist {@code null}
+     * für Artikel, für die noch kein Auszug berechnet wurde.
+     */
+    @Column( name = "WORTANZAHL" )
+    private Integer wortanzahl;
+
+    /**
+     * Geschätzte Lesezeit in Minuten, wird beim Speichern aus {@link #wortanzahl} berechnet;
+     * ist {@code null} für Artikel, für die noch kein Auszug berechnet wurde.
+     */
+    @Column( name = "LESEZEIT" )
+    private Integer lesezeit;
+
+    /**
+     * Anzahl der Aufrufe der Seite mit dem Artikel. Wird nicht von JPA geschrieben
+     * ({@code updatable = false}), sondern nur von {@code AufrufZaehler} mit
+     * gebündelten {@code UPDATE}-Befehlen hochgezählt, damit das Speichern eines
+     * geänderten Artikels die Zählerstände nicht überschreibt.
+     */
+    @Column( name = "AUFRUFE", updatable = false, columnDefinition = "BIGINT DEFAULT 0 NOT NULL" )
+    private long aufrufe;
+
+    /**
+     * Version für optimistisches Sperren: wird von JPA bei jedem Speichern hochgezählt,
+     * das {@code UPDATE} enthält die beim Laden gelesene Version in der {@code WHERE}-Klausel.
+     * Hat zwischenzeitlich jemand anderes gespeichert, dann wird keine Zeile geändert und
+     * es gibt eine {@code OptimisticLockException} statt eines stillen Überschreibens.
+     * Wird über die REST-API als {@code ETag} ausgeliefert.
+     */
+    @Version
+    @Column( name = "VERSION", columnDefinition = "BIGINT DEFAULT 0 NOT NULL" )
+    private long version;
+
 
     /**
      * Default-Konstruktor, obligatorisch für JPA.
@@ -328,6 +413,158 @@ public class ArtikelEntity {
     }
 
 
+    /**
+     * Getter für MinHash-Signatur des Plaintext-Inhalts.
+     *
+     * @return Signatur, oder {@code null} wenn noch nicht berechnet
+     */
+    public byte[] getMinHashSignatur() {
+
+        return minHashSignatur;
+    }
+
+
+    /**
+     * Setter für MinHash-Signatur des Plaintext-Inhalts.
+     *
+     * @param minHashSignatur Signatur, muss beim Ändern von {@link #inhaltPlain}
+     *                        neu berechnet werden
+     */
+    public void setMinHashSignatur( byte[] minHashSignatur ) {
+
+        this.minHashSignatur = minHashSignatur;
+    }
+
+
+    /**
+     * Getter für SimHash-Fingerabdruck des Plaintext-Inhalts.
+     *
+     * @return Fingerabdruck, oder {@code null} wenn noch nicht berechnet
+     */
+    public Long getSimHash() {
+
+        return simHash;
+    }
+
+
+    /**
+     * Setter für SimHash-Fingerabdruck des Plaintext-Inhalts.
+     *
+     * @param simHash Fingerabdruck, muss beim Ändern von {@link #inhaltPlain}
+     *                neu berechnet werden
+     */
+    public void setSimHash( Long simHash ) {
+
+        this.simHash = simHash;
+    }
+
+
+    /**
+     * Getter für Tags des Artikels.
+     *
+     * @return Liste der normalisierten Tags, leer wenn der Artikel keine Tags hat
+     */
+    public List<String> getTags() {
+
+        return tagsAlsListe( tags );
+    }
+
+
+    /**
+     * Setter für Tags des Artikels.
+     *
+     * @param tags Liste der schon normalisierten Tags, darf leer sein
+     */
+    public void setTags( List<String> tags ) {
+
+        this.tags = String.join( TAG_TRENNER, tags );
+    }
+
+
+    /**
+     * Zerlegt den Wert der Spalte {@code TAGS}, z.B. für Abfragen ohne Entity.
+     *
+     * @param tags Tags durch Komma getrennt, darf {@code null} sein
+     *
+     * @return Liste der Tags, leer für {@code null} oder leeren String
+     */
+    public static List<String> tagsAlsListe( String tags ) {
+
+        return tags == null || tags.isEmpty() ? List.of() : List.of( tags.split( TAG_TRENNER ) );
+    }
+
+
+    /**
+     * Getter für Auszug (Teaser) des Plaintext-Inhalts.
+     *
+     * @return Auszug, oder {@code null} wenn noch nicht berechnet
+     */
+    public String getAuszug() {
+
+        return auszug;
+    }
+
+
+    /**
+     * Getter für Anzahl der Wörter des Plaintext-Inhalts.
+     *
+     * @return Anzahl Wörter, oder {@code null} wenn noch nicht berechnet
+     */
+    public Integer getWortanzahl() {
+
+        return wortanzahl;
+    }
+
+
+    /**
+     * Getter für geschätzte Lesezeit.
+     *
+     * @return Lesezeit in Minuten, oder {@code null} wenn noch nicht berechnet
+     */
+    public Integer getLesezeit() {
+
+        return lesezeit;
+    }
+
+
+    /**
+     * Setter für Auszug, Anzahl Wörter und Lesezeit, die immer zusammen berechnet werden.
+     *
+     * @param artikelAuszug Werte für den Plaintext-Inhalt, müssen beim Ändern von
+     *                      {@link #inhaltPlain} neu berechnet werden
+     */
+    public void setAuszug( ArtikelAuszug artikelAuszug ) {
+
+        this.auszug     = artikelAuszug.auszug();
+        this.wortanzahl = artikelAuszug.wortanzahl();
+        this.lesezeit   = artikelAuszug.lesezeit();
+    }
+
+
+    /**
+     * Getter für Anzahl der Aufrufe, die schon in die Datenbank geschrieben wurden.
+     * Für eine aktuelle Anzahl müssen noch die Aufrufe addiert werden, die erst im
+     * Speicher gezählt wurden.
+     *
+     * @return Anzahl der Aufrufe laut Datenbank
+     */
+    public long getAufrufe() {
+
+        return aufrufe;
+    }
+
+
+    /**
+     * Getter für Version (optimistisches Sperren).
+     *
+     * @return Version, wird bei jedem Speichern um 1 erhöht
+     */
+    public long getVersion() {
+
+        return version;
+    }
+
+
     /**
      * Methode liefert String-Repräsentation des Objekts zurück
      *
@@ -0,0 +1,273 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.model.ArchivPosition;
+import de.eldecker.dhbw.spring.blog.model.ArtikelKurzDTO;
+import de.eldecker.dhbw.spring.blog.model.ArtikelListenEintrag;
+
+
+/**
+ * Liest Artikelliste und Suchergebnis mit einem Datenbank-Cursor für die Seiten, nur mit
+ * den Spalten, die dort angezeigt werden (also ohne die {@code CLOB}-Spalten, die beim
+ * Laden von {@link ArtikelEntity} immer mitgelesen werden).
+ * <br><br>
+ *
+ * Die Ergebnisse werden als {@link Stream} geliefert, der die Zeilen in Portionen von
+ * {@link #FETCH_SIZE} aus dem Cursor holt; der Aufrufer muss ihn schließen (z.B. mit
+ * <i>try-with-resources</i>), weil er bis dahin eine Datenbank-Verbindung belegt.
+ * <br><br>
+ *
+ * Alle Abfragen laufen in einer lesenden Transaktion, damit sie bei aktiver Replikation
+ * wie die Lesezugriffe über {@link ArtikelRepo} auf das Replikat geleitet werden (siehe
+ * {@code LeseSchreibRouting}). Für einen Stream bleibt die Transaktion offen, bis er
+ * geschlossen wird; das muss deshalb im selben Thread passieren.
+ * <br><br>
+ *
+ * Die Archivseiten pro Autor und pro Monat werden mit <i>Keyset-Pagination</i> gelesen
+ * (siehe {@link ArchivPosition}); die Abfragen sind so formuliert, dass sie als Bereich in
+ * einem der zusammengesetzten Indizes von {@link ArtikelEntity} laufen, der schon richtig
+ * sortiert ist. Geprüft wird das mit den Ausführungsplänen in {@code ArtikelListenLeserTest}.
+ */
+@Repository
+public class ArtikelListenLeser {
+
+    /** Anzahl Zeilen, die pro Abruf aus dem Cursor geholt werden. */
+    private static final int FETCH_SIZE = 64;
+
+    /** Gemeinsamer Teil der Abfragen, ohne Inhalt; entspricht {@link ArtikelReaktivLeser}. */
+    private static final String SQL_KURZ =
+            "SELECT a.ID, a.TITEL, u.NAME AS AUTOR, a.ZEITPUNKT_ANGELEGT, a.ZEITPUNKT_GAENDERT, " +
+                   "a.AUSZUG, a.WORTANZAHL, a.LESEZEIT, a.AUFRUFE " +
+            "FROM ARTIKEL a LEFT JOIN AUTOR u ON a.AUTOR__FK = u.ID ";
+
+    /** SQL-Abfrage für alle Artikel, neueste zuerst. */
+    private static final String SQL_LISTE = SQL_KURZ + "ORDER BY a.ZEITPUNKT_ANGELEGT DESC";
+
+    /** SQL-Abfrage für einen Artikel. */
+    private static final String SQL_EINZELN = SQL_KURZ + "WHERE a.ID = ?";
+
+    /** SQL-Abfrage für Artikel mit bestimmten IDs, Platzhalter für die Liste der IDs. */
+    private static final String SQL_IDS = SQL_KURZ + "WHERE a.ID IN (%s) ORDER BY a.ID DESC";
+
+    /** SQL-Abfrage für ID eines Autors, über Index {@code IDX_AUTOR_NAME}. */
+    static final String SQL_AUTOR_ID = "SELECT ID FROM AUTOR WHERE NAME = ?";
+
+    /**
+     * Bedingung für <i>Keyset-Pagination</i>: Artikel nach Position (Zeitpunkt, ID). Die erste
+     * Bedingung ist für den Bereich im Index, die zweite für Artikel mit gleichem Zeitpunkt.
+     */
+    private static final String SQL_NACH_POSITION =
+            "a.ZEITPUNKT_ANGELEGT <= ? AND (a.ZEITPUNKT_ANGELEGT < ? OR a.ID < ?) ";
+
+    /**
+     * SQL-Abfrage für eine Seite der Artikel eines Autors, über Index {@code IDX_ARTIKEL_AUTOR_ANGELEGT};
+     * die Spalte {@code AUTOR__FK} steht mit in {@code ORDER BY}, damit H2 die Sortierung des Index
+     * verwendet (ist für alle Zeilen gleich).
+     */
+    static final String SQL_SEITE_AUTOR =
+            SQL_KURZ +
+            "WHERE a.AUTOR__FK = ? AND " + SQL_NACH_POSITION +
+            "ORDER BY a.AUTOR__FK, a.ZEITPUNKT_ANGELEGT DESC, a.ID DESC FETCH FIRST ? ROWS ONLY";
+
+    /** SQL-Abfrage für eine Seite der Artikel ab einem Zeitpunkt, über Index {@code IDX_ARTIKEL_ANGELEGT}. */
+    static final String SQL_SEITE_ZEITRAUM =
+            SQL_KURZ +
+            "WHERE a.ZEITPUNKT_ANGELEGT >= ? AND " + SQL_NACH_POSITION +
+            "ORDER BY a.ZEITPUNKT_ANGELEGT DESC, a.ID DESC FETCH FIRST ? ROWS ONLY";
+
+    /**
+     * SQL-Abfrage für Textsuche; {@code CAST}, weil {@code INHALT_PLAINTEXT} vom Typ {@code CLOB} ist.
+     */
+    private static final String SQL_SUCHE =
+            SQL_KURZ +
+            "WHERE LOWER(a.TITEL) LIKE ? OR LOWER(CAST(a.INHALT_PLAINTEXT AS VARCHAR)) LIKE ? " +
+            "ORDER BY a.ZEITPUNKT_ANGELEGT DESC";
+
+    /** Erzeugt {@link ArtikelListenEintrag} aus Ergebniszeile. */
+    private static final RowMapper<ArtikelListenEintrag> ROW_MAPPER = (rs, rowNum) ->
+            new ArtikelListenEintrag(
+                    new ArtikelKurzDTO( rs.getLong( "ID" ),
+                                        rs.getString( "TITEL" ),
+                                        rs.getString( "AUTOR" ),
+                                        rs.getTimestamp( "ZEITPUNKT_ANGELEGT" ).toLocalDateTime(),
+                                        rs.getTimestamp( "ZEITPUNKT_GAENDERT" ).toLocalDateTime(),
+                                        rs.getString( "AUSZUG" ),
+                                        rs.getObject( "WORTANZAHL", Integer.class ),
+                                        rs.getObject( "LESEZEIT", Integer.class ) ),
+                    rs.getLong( "AUFRUFE" ) );
+
+    /** Eigenes Template mit Fetch-Size, damit das gemeinsame Template unverändert bleibt. */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Template für lesende Transaktionen, Kopie des gemeinsamen Templates mit {@code readOnly}. */
+    private final TransactionTemplate _lesend;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public ArtikelListenLeser( JdbcTemplate jdbcTemplate,
+                               TransactionTemplate transactionTemplate ) {
+
+        _jdbcTemplate = new JdbcTemplate( jdbcTemplate.getDataSource() );
+        _jdbcTemplate.setFetchSize( FETCH_SIZE );
+
+        _lesend = new TransactionTemplate( transactionTemplate.getTransactionManager(), transactionTemplate );
+        _lesend.setReadOnly( true );
+    }
+
+
+    /**
+     * Liefert alle Artikel ohne Inhalt; die Abfrage wird sofort ausgeführt.
+     *
+     * @return Stream mit Artikeln sortiert nach absteigendem Erzeugungszeitpunkt, muss
+     *         geschlossen werden
+     */
+    public Stream<ArtikelListenEintrag> alle() {
+
+        return lesendeTransaktion( () -> _jdbcTemplate.queryForStream( SQL_LISTE, ROW_MAPPER ) );
+    }
+
+
+    /**
+     * Textsuche in Titel und Inhalt, case-insensitive; die Abfrage wird sofort ausgeführt.
+     *
+     * @param suchbegriff Suchbegriff, wird als Teil-String gesucht
+     *
+     * @return Stream mit gefundenen Artikeln, neueste zuerst; muss geschlossen werden
+     */
+    public Stream<ArtikelListenEintrag> suche( String suchbegriff ) {
+
+        final String muster = "%" + suchbegriff.toLowerCase() + "%";
+
+        return lesendeTransaktion( () -> _jdbcTemplate.queryForStream( SQL_SUCHE, ROW_MAPPER, muster, muster ) );
+    }
+
+
+    /**
+     * Einen Artikel ohne Inhalt laden, z.B. nach dem Speichern für Caches mit Listen.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @return Optional mit Artikel oder leeres Optional, wenn es keinen Artikel mit
+     *         der ID gibt
+     */
+    public Optional<ArtikelListenEintrag> holen( long artikelId ) {
+
+        return _lesend.execute( status -> _jdbcTemplate.query( SQL_EINZELN, ROW_MAPPER, artikelId ) ).stream().findFirst();
+    }
+
+
+    /**
+     * Artikel mit bestimmten IDs ohne Inhalt laden, z.B. die Treffer eines Filters mit
+     * dem Tag-Index.
+     *
+     * @param artikelIds IDs der Artikel, höchstens einige hundert
+     *
+     * @return Gefundene Artikel, nach absteigender ID sortiert (also neueste zuerst)
+     */
+    public List<ArtikelListenEintrag> liste( List<Long> artikelIds ) {
+
+        if ( artikelIds.isEmpty() ) {
+
+            return List.of();
+        }
+
+        final String platzhalter = String.join( ",", Collections.nCopies( artikelIds.size(), "?" ) );
+
+        return _lesend.execute( status ->
+                _jdbcTemplate.query( SQL_IDS.formatted( platzhalter ), ROW_MAPPER, artikelIds.toArray() ) );
+    }
+
+
+    /**
+     * ID eines Autors.
+     *
+     * @param name Anmeldename des Autors
+     *
+     * @return Optional mit ID oder leeres Optional, wenn es keinen Autor mit dem Namen gibt
+     */
+    public Optional<Long> autorId( String name ) {
+
+        return _lesend.execute( status -> _jdbcTemplate.queryForList( SQL_AUTOR_ID, Long.class, name ) ).stream().findFirst();
+    }
+
+
+    /**
+     * Eine Seite der Artikel eines Autors ohne Inhalt laden.
+     *
+     * @param autorId ID des Autors, siehe {@link #autorId(String)}
+     *
+     * @param position Seite beginnt nach dieser Position
+     *
+     * @param anzahl Maximale Anzahl Artikel
+     *
+     * @return Artikel, neueste zuerst
+     */
+    public List<ArtikelListenEintrag> seiteAutor( long autorId, ArchivPosition position, int anzahl ) {
+
+        return _lesend.execute( status ->
+                _jdbcTemplate.query( SQL_SEITE_AUTOR, ROW_MAPPER,
+                                     autorId, position.zeitpunkt(), position.zeitpunkt(), position.id(), anzahl ) );
+    }
+
+
+    /**
+     * Eine Seite der Artikel in einem Zeitraum ohne Inhalt laden, z.B. für einen Monat.
+     *
+     * @param von Erster Zeitpunkt des Zeitraums
+     *
+     * @param position Seite beginnt nach dieser Position; für die erste Seite das Ende
+     *                 des Zeitraums mit ID {@code 0}
+     *
+     * @param anzahl Maximale Anzahl Artikel
+     *
+     * @return Artikel, neueste zuerst
+     */
+    public List<ArtikelListenEintrag> seiteZeitraum( LocalDateTime von, ArchivPosition position, int anzahl ) {
+
+        return _lesend.execute( status ->
+                _jdbcTemplate.query( SQL_SEITE_ZEITRAUM, ROW_MAPPER,
+                                     von, position.zeitpunkt(), position.zeitpunkt(), position.id(), anzahl ) );
+    }
+
+
+    /**
+     * Startet eine lesende Transaktion für eine Abfrage mit Stream; sie wird beim Schließen
+     * des Streams beendet. Läuft schon eine Transaktion, dann wird diese verwendet.
+     *
+     * @param abfrage Abfrage, die den Stream liefert
+     *
+     * @return Stream, der beim Schließen die Transaktion beendet
+     */
+    private <T> Stream<T> lesendeTransaktion( Supplier<Stream<T>> abfrage ) {
+
+        final PlatformTransactionManager transaktionsManager = _lesend.getTransactionManager();
+        final TransactionStatus          status              = transaktionsManager.getTransaction( _lesend );
+        try {
+
+            return abfrage.get().onClose( () -> transaktionsManager.commit( status ) );
+        }
+        catch ( RuntimeException ex ) {
+
+            transaktionsManager.rollback( status );
+            throw ex;
+        }
+    }
+
+}
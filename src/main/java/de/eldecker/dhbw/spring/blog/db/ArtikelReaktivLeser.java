@@ -0,0 +1,208 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import static io.r2dbc.spi.ConnectionFactoryOptions.PASSWORD;
+import static io.r2dbc.spi.ConnectionFactoryOptions.USER;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelKurzDTO;
+import de.eldecker.dhbw.spring.blog.model.ArtikelLesenDTO;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import io.r2dbc.spi.Readable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+
+/**
+ * Lesender Zugriff auf die Tabelle mit Artikeln über <i>R2DBC</i> für die
+ * reaktive Lese-API; verwendet dieselbe H2-Datenbank und dasselbe Schema wie JPA.
+ * <br><br>
+ *
+ * Die {@code ConnectionFactory} wird absichtlich nicht als Bean bereitgestellt:
+ * Spring Boot würde sonst keine JDBC-{@code DataSource} mehr anlegen, die für
+ * JPA und alle schreibenden Zugriffe weiterhin benötigt wird.
+ * <br><br>
+ *
+ * Ergebnislisten werden als {@link Flux} geliefert, der Zeilen erst dann aus dem
+ * Cursor holt, wenn der Empfänger (also letztlich der HTTP-Client) sie anfordert; die
+ * Verbindung bleibt dabei bis zum Ende oder Abbruch des Flux aus dem Pool entnommen.
+ * Der H2-Treiber für R2DBC arbeitet intern synchron, deshalb werden die Abfragen
+ * auf einem beschränkten Scheduler ausgeführt und nicht auf den Event-Loop-Threads
+ * des Web-Servers.
+ */
+@Repository
+@ConditionalOnProperty( name = "blog.reaktiv.aktiv", havingValue = "true" )
+public class ArtikelReaktivLeser {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ArtikelReaktivLeser.class );
+
+    /** Anzahl Zeilen, die pro Abruf aus dem Cursor geholt werden. */
+    private static final int FETCH_SIZE = 64;
+
+    /** Gemeinsamer Teil der Abfragen für Listen, ohne Inhalt (also ohne {@code CLOB}-Spalten). */
+    private static final String SQL_KURZ =
+            "SELECT a.ID, a.TITEL, u.NAME AS AUTOR, a.ZEITPUNKT_ANGELEGT, a.ZEITPUNKT_GAENDERT, " +
+                   "a.AUSZUG, a.WORTANZAHL, a.LESEZEIT " +
+            "FROM ARTIKEL a LEFT JOIN AUTOR u ON a.AUTOR__FK = u.ID ";
+
+    /** SQL-Abfrage für alle Artikel, neueste zuerst. */
+    private static final String SQL_LISTE = SQL_KURZ + "ORDER BY a.ZEITPUNKT_ANGELEGT DESC";
+
+    /** SQL-Abfrage für Textsuche, entspricht der Suche in {@link ArtikelListenLeser}. */
+    private static final String SQL_SUCHE =
+            SQL_KURZ +
+            "WHERE LOWER(a.TITEL) LIKE :muster OR LOWER(CAST(a.INHALT_PLAINTEXT AS VARCHAR)) LIKE :muster " +
+            "ORDER BY a.ZEITPUNKT_ANGELEGT DESC";
+
+    /** SQL-Abfrage für einzelnen Artikel inkl. HTML-Inhalt. */
+    private static final String SQL_EINZELN =
+            "SELECT a.ID, a.TITEL, u.NAME AS AUTOR, a.ZEITPUNKT_ANGELEGT, a.ZEITPUNKT_GAENDERT, " +
+                   "CAST(a.INHALT_HTML AS VARCHAR) AS INHALT_HTML " +
+            "FROM ARTIKEL a LEFT JOIN AUTOR u ON a.AUTOR__FK = u.ID WHERE a.ID = :id";
+
+    /** Pool mit R2DBC-Verbindungen. */
+    private final ConnectionPool _connectionPool;
+
+    /** Client für Ausführung der SQL-Abfragen. */
+    private final DatabaseClient _databaseClient;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     *
+     * @param url R2DBC-URL der Datenbank, muss auf dieselbe Datei zeigen wie
+     *            {@code spring.datasource.url}
+     *
+     * @param nutzername Nutzername für Datenbank
+     *
+     * @param passwort Passwort für Datenbank
+     *
+     * @param poolGroesse Maximale Anzahl Verbindungen im Pool
+     */
+    @Autowired
+    public ArtikelReaktivLeser( @Value( "${blog.reaktiv.r2dbc-url}"      ) String url,
+                                @Value( "${spring.datasource.username}"   ) String nutzername,
+                                @Value( "${spring.datasource.password}"   ) String passwort,
+                                @Value( "${blog.reaktiv.pool-groesse:10}" ) int    poolGroesse ) {
+
+        final ConnectionFactoryOptions optionen = ConnectionFactoryOptions.parse( url )
+                                                                          .mutate()
+                                                                          .option( USER    , nutzername )
+                                                                          .option( PASSWORD, passwort   )
+                                                                          .build();
+
+        final ConnectionPoolConfiguration poolKonfiguration =
+                ConnectionPoolConfiguration.builder( ConnectionFactories.get( optionen ) )
+                                           .maxSize( poolGroesse )
+                                           .maxIdleTime( Duration.ofMinutes( 30 ) )
+                                           .build();
+
+        _connectionPool = new ConnectionPool( poolKonfiguration );
+        _databaseClient = DatabaseClient.create( _connectionPool );
+
+        LOG.info( "R2DBC-Pool für reaktive Lese-API angelegt: {} (max. {} Verbindungen).", url, poolGroesse );
+    }
+
+
+    /**
+     * Schließt den Verbindungs-Pool beim Herunterfahren.
+     */
+    @PreDestroy
+    public void beenden() {
+
+        _connectionPool.dispose();
+    }
+
+
+    /**
+     * Liefert alle Artikel ohne Inhalt.
+     *
+     * @return Artikel sortiert nach absteigendem Erzeugungszeitpunkt
+     */
+    public Flux<ArtikelKurzDTO> holeAlle() {
+
+        return _databaseClient.sql( SQL_LISTE )
+                              .filter( statement -> statement.fetchSize( FETCH_SIZE ) )
+                              .map( ArtikelReaktivLeser::alsKurzDTO )
+                              .all()
+                              .subscribeOn( Schedulers.boundedElastic() );
+    }
+
+
+    /**
+     * Textsuche in Titel und Inhalt, case-insensitive.
+     *
+     * @param suchbegriff Suchbegriff, wird als Teil-String gesucht
+     *
+     * @return Gefundene Artikel ohne Inhalt, neueste zuerst; kann leer sein
+     */
+    public Flux<ArtikelKurzDTO> suche( String suchbegriff ) {
+
+        final String muster = "%" + suchbegriff.toLowerCase() + "%";
+
+        return _databaseClient.sql( SQL_SUCHE )
+                              .bind( "muster", muster )
+                              .filter( statement -> statement.fetchSize( FETCH_SIZE ) )
+                              .map( ArtikelReaktivLeser::alsKurzDTO )
+                              .all()
+                              .subscribeOn( Schedulers.boundedElastic() );
+    }
+
+
+    /**
+     * Liefert einen einzelnen Artikel inkl. HTML-Inhalt.
+     *
+     * @param id ID des Artikels
+     *
+     * @return Artikel, oder leeres {@link Mono} wenn nicht gefunden
+     */
+    public Mono<ArtikelLesenDTO> holeArtikel( long id ) {
+
+        return _databaseClient.sql( SQL_EINZELN )
+                              .bind( "id", id )
+                              .map( row -> new ArtikelLesenDTO( row.get( "ID", Long.class ),
+                                                                row.get( "TITEL", String.class ),
+                                                                row.get( "AUTOR", String.class ),
+                                                                row.get( "ZEITPUNKT_ANGELEGT", LocalDateTime.class ),
+                                                                row.get( "ZEITPUNKT_GAENDERT", LocalDateTime.class ),
+                                                                row.get( "INHALT_HTML", String.class ) ) )
+                              .one()
+                              .subscribeOn( Schedulers.boundedElastic() );
+    }
+
+
+    /**
+     * Erzeugt DTO aus einer Ergebniszeile von {@link #SQL_KURZ}.
+     *
+     * @param row Ergebniszeile
+     *
+     * @return DTO ohne Inhalt
+     */
+    private static ArtikelKurzDTO alsKurzDTO( Readable row ) {
+
+        return new ArtikelKurzDTO( row.get( "ID", Long.class ),
+                                   row.get( "TITEL", String.class ),
+                                   row.get( "AUTOR", String.class ),
+                                   row.get( "ZEITPUNKT_ANGELEGT", LocalDateTime.class ),
+                                   row.get( "ZEITPUNKT_GAENDERT", LocalDateTime.class ),
+                                   row.get( "AUSZUG", String.class ),
+                                   row.get( "WORTANZAHL", Integer.class ),
+                                   row.get( "LESEZEIT", Integer.class ) );
+    }
+
+}
@@ -1,7 +1,9 @@
 package de.eldecker.dhbw.spring.blog.db;
 
 import java.util.List;
+import java.util.Optional;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -16,33 +18,62 @@ import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 public interface ArtikelRepo extends JpaRepository<ArtikelEntity, Long> {
 
     /**
-     * Derived Query Method: Liefert Liste aller Artikel zurück.
+     * Liefert ID, Titel, MinHash-Signatur und SimHash aller Artikel, ohne die
+     * {@code CLOB}-Spalten zu lesen.
      *
-     * @return Liste aller Artikel, sortiert nach absteigendem Erzeugungszeitpunkt
+     * @return Liste mit Projektionen für alle Artikel
      */
-    List<ArtikelEntity> findAllByOrderByZeitpunktAngelegtDesc();
+    @Query( "SELECT a.id AS id, a.titel AS titel, a.minHashSignatur AS minHashSignatur, a.simHash AS simHash " +
+            "FROM ArtikelEntity a" )
+    List<ArtikelSignaturProjektion> holeAlleSignaturen();
 
 
     /**
-     * Textesuche nach Artikeln anhand Inhalt und Titel.
-     * <br><br>
+     * Liefert ID, Titel, MinHash-Signatur und SimHash eines Artikels, ohne die
+     * {@code CLOB}-Spalten zu lesen.
      *
-     * Weil die Spalte {@code inhaltPlain} vom Typ {@code CLOB} ist, muss
-     * die Funktion {@code cast()} verwendet werden, um den Inhalt als
-     * {@code string} zu behandeln.
+     * @param id ID des Artikels
      *
-     * @param suchbegriff Sucbegriff, wird als Teil-String case-insensitive
-     *                    in den Attribute/Spalten {@code titel} und {@code inhaltPlain}
-     *                    gesucht.
+     * @return Optional mit Projektion, leer wenn kein Artikel mit {@code id} gefunden
+     */
+    @Query( "SELECT a.id AS id, a.titel AS titel, a.minHashSignatur AS minHashSignatur, a.simHash AS simHash " +
+            "FROM ArtikelEntity a WHERE a.id = :id" )
+    Optional<ArtikelSignaturProjektion> holeSignatur( @Param("id") long id );
+
+
+    /**
+     * Liefert ID, Tags, Autor und Erzeugungszeitpunkt aller Artikel, ohne die
+     * {@code CLOB}-Spalten zu lesen.
+     *
+     * @return Liste mit Projektionen für alle Artikel
+     */
+    @Query( "SELECT a.id AS id, a.tags AS tags, u.name AS autor, a.zeitpunktAngelegt AS zeitpunktAngelegt " +
+            "FROM ArtikelEntity a LEFT JOIN a.autor u" )
+    List<ArtikelTagProjektion> holeAlleTags();
+
+
+    /**
+     * Liefert ID, Tags, Autor und Erzeugungszeitpunkt eines Artikels, ohne die
+     * {@code CLOB}-Spalten zu lesen.
+     *
+     * @param id ID des Artikels
+     *
+     * @return Optional mit Projektion, leer wenn kein Artikel mit {@code id} gefunden
+     */
+    @Query( "SELECT a.id AS id, a.tags AS tags, u.name AS autor, a.zeitpunktAngelegt AS zeitpunktAngelegt " +
+            "FROM ArtikelEntity a LEFT JOIN a.autor u WHERE a.id = :id" )
+    Optional<ArtikelTagProjektion> holeTags( @Param("id") long id );
+
+
+    /**
+     * Liefert IDs von Artikeln, für die noch kein Auszug (Teaser, Anzahl Wörter, Lesezeit)
+     * berechnet wurde, z.B. weil sie vor Einführung dieser Spalten gespeichert wurden.
+     *
+     * @param limit Maximale Anzahl IDs
      *
-     * @return Suchergebnis: Liste der gefundenen Artikel, kann leer sein;
-     *         sortiert nach absteigendem Erzeugungszeitpunkt, also neueste Artikel
-     *         zuerst.
+     * @return Liste mit IDs, aufsteigend sortiert; leer wenn es keine solchen Artikel mehr gibt
      */
-    @Query( "SELECT a FROM ArtikelEntity a "                                                         +
-            "WHERE lower(a.titel) LIKE lower(concat('%', :suchbegriff, '%')) OR "                    +
-                  "lower(cast(a.inhaltPlain as string)) LIKE lower(concat('%', :suchbegriff, '%')) " +
-                  "ORDER BY a.zeitpunktAngelegt DESC" )
-    List<ArtikelEntity> holeArtikelTextsuche( @Param("suchbegriff") String suchbegriff );
+    @Query( "SELECT a.id FROM ArtikelEntity a WHERE a.wortanzahl IS NULL ORDER BY a.id" )
+    List<Long> holeIdsOhneAuszug( Limit limit );
 
 }
@@ -0,0 +1,39 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+
+/**
+ * Projektion auf {@link ArtikelEntity} mit ID, Titel, MinHash-Signatur und
+ * SimHash-Fingerabdruck, damit für den Aufbau der Indexe für ähnliche Artikel
+ * und Beinahe-Duplikate die {@code CLOB}-Spalten nicht gelesen werden müssen.
+ */
+public interface ArtikelSignaturProjektion {
+
+    /**
+     * Getter für Primärschlüssel.
+     *
+     * @return ID des Artikels
+     */
+    Long getId();
+
+    /**
+     * Getter für Titel.
+     *
+     * @return Überschrift des Artikels
+     */
+    String getTitel();
+
+    /**
+     * Getter für MinHash-Signatur.
+     *
+     * @return Signatur, kann {@code null} sein
+     */
+    byte[] getMinHashSignatur();
+
+    /**
+     * Getter für SimHash-Fingerabdruck.
+     *
+     * @return Fingerabdruck, kann {@code null} sein
+     */
+    Long getSimHash();
+
+}
@@ -0,0 +1,42 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * Projektion auf {@link ArtikelEntity} mit den Werten, nach denen gefiltert werden kann
+ * (Tags, Autor, Monat), damit für den Aufbau des Tag-Index die {@code CLOB}-Spalten nicht
+ * gelesen werden müssen.
+ */
+public interface ArtikelTagProjektion {
+
+    /**
+     * Getter für Primärschlüssel.
+     *
+     * @return ID des Artikels
+     */
+    Long getId();
+
+    /**
+     * Getter für Tags.
+     *
+     * @return Tags durch Komma getrennt (siehe {@link ArtikelEntity#tagsAlsListe(String)}),
+     *         kann {@code null} sein
+     */
+    String getTags();
+
+    /**
+     * Getter für Name des Autors.
+     *
+     * @return Anmeldename des Autors, kann {@code null} sein
+     */
+    String getAutor();
+
+    /**
+     * Getter für Zeitpunkt, zu dem der Artikel angelegt wurde.
+     *
+     * @return Zeitpunkt (Datum+Uhrzeit)
+     */
+    LocalDateTime getZeitpunktAngelegt();
+
+}
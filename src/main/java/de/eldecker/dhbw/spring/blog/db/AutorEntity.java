@@ -10,6 +10,7 @@ import java.util.Objects;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 
@@ -20,7 +21,7 @@ import jakarta.persistence.Table;
  * seine eigenen Artikel ändern.
  */
 @Entity
-@Table( name = "AUTOR" )
+@Table( name = "AUTOR", indexes = @Index( name = "IDX_AUTOR_NAME", columnList = "NAME" ) )
 public class AutorEntity {
 
     /** Primärschlüssel, wird von JPA gesetzt/verwaltet. */
@@ -0,0 +1,109 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+
+/**
+ * Entwurf eines Artikels, der von der Auto-Speicherung des Editors geschrieben wird und
+ * getrennt von den veröffentlichten Artikeln (Tabelle {@code ARTIKEL}) gehalten wird;
+ * Leser bekommen Entwürfe also nie zu sehen.
+ * <br><br>
+ *
+ * Pro Autor und Artikel gibt es höchstens einen Entwurf; für einen noch nicht angelegten
+ * Artikel ist die Artikel-ID {@code -1}. Die Entity legt nur die Tabelle an; gelesen und
+ * geschrieben wird mit JDBC in {@link de.eldecker.dhbw.spring.blog.logik.Entwurfsspeicher}.
+ */
+@Entity
+@IdClass( EntwurfEntity.Schluessel.class )
+@Table( name = "ENTWURF" )
+public class EntwurfEntity {
+
+    /** Anmeldename des Autors, dem der Entwurf gehört. */
+    @Id
+    @Column( name = "AUTOR", length = 64 )
+    private String autor;
+
+    /** ID des Artikels, den der Entwurf ändert; {@code -1} für neuen Artikel. */
+    @Id
+    @Column( name = "ARTIKEL_ID" )
+    private long artikelId;
+
+    /** Titel/Überschrift, kann noch leer sein. */
+    @Column( name = "TITEL" )
+    private String titel;
+
+    /** Inhalt im Delta-Format von quilljs. */
+    @Lob
+    @Column( name = "INHALT_DELTA" )
+    private String inhaltDelta;
+
+    /** Inhalt im HTML-Format, noch nicht gereinigt (wird erst beim Veröffentlichen gereinigt). */
+    @Lob
+    @Column( name = "INHALT_HTML" )
+    private String inhaltHTML;
+
+    /** Inhalt als reiner Text. */
+    @Lob
+    @Column( name = "INHALT_PLAINTEXT" )
+    private String inhaltPlain;
+
+    /** Tags durch Komma getrennt, wie im Editor eingegeben (noch nicht normalisiert). */
+    @Column( name = "TAGS", length = 1000 )
+    private String tags;
+
+    /** Zeitpunkt der letzten Auto-Speicherung. */
+    @Column( name = "ZEITPUNKT_GEAENDERT", nullable = false )
+    private LocalDateTime zeitpunktGeaendert;
+
+
+    /**
+     * Zusammengesetzter Primärschlüssel aus Autor und Artikel-ID.
+     */
+    public static class Schluessel implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Anmeldename des Autors. */
+        private String autor;
+
+        /** ID des Artikels. */
+        private long artikelId;
+
+
+        /**
+         * Default-Konstruktor, obligatorisch für JPA.
+         */
+        public Schluessel() {}
+
+
+        @Override
+        public boolean equals( Object obj ) {
+
+            return obj instanceof Schluessel anderer &&
+                   artikelId == anderer.artikelId && Objects.equals( autor, anderer.autor );
+        }
+
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash( autor, artikelId );
+        }
+    }
+
+
+    /**
+     * Default-Konstruktor, obligatorisch für JPA.
+     */
+    public EntwurfEntity() {}
+
+}
@@ -0,0 +1,71 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+
+/**
+ * {@link DataSource}, die Verbindungen für lesende Transaktionen
+ * ({@code @Transactional(readOnly = true)}, bei Spring-Data-Repos der Default für
+ * alle lesenden Methoden) vom Replikat holt und alle anderen Verbindungen von
+ * der primären Datenbank.
+ * <br><br>
+ *
+ * Muss in eine {@code LazyConnectionDataSourceProxy} eingepackt werden: der
+ * Transaktionsmanager holt die Verbindung schon zu Beginn der Transaktion, das
+ * Read-Only-Flag ist aber erst danach gesetzt. Mit dem Proxy wird die echte
+ * Verbindung erst beim ersten SQL-Befehl geholt.
+ */
+public class LeseSchreibRouting extends AbstractRoutingDataSource {
+
+    /** Schlüssel für primäre Datenbank (lesen und schreiben). */
+    private static final String PRIMAER = "primaer";
+
+    /** Schlüssel für Replikat (nur lesen). */
+    private static final String REPLIKAT = "replikat";
+
+    /** Stand der Replikation. */
+    private final ReplikatStatus _replikatStatus;
+
+
+    /**
+     * Konstruktor.
+     *
+     * @param primaer Primäre Datenbank
+     *
+     * @param replikat Lese-Datenbank, die aus dem Änderungsprotokoll der primären
+     *                 Datenbank nachgezogen wird
+     *
+     * @param replikatStatus Stand der Replikation
+     */
+    public LeseSchreibRouting( DataSource primaer, DataSource replikat, ReplikatStatus replikatStatus ) {
+
+        _replikatStatus = replikatStatus;
+
+        setTargetDataSources( Map.of( PRIMAER, primaer, REPLIKAT, replikat ) );
+        setDefaultTargetDataSource( primaer );
+    }
+
+
+    /**
+     * Wählt die Datenbank für eine neue Verbindung aus.
+     *
+     * @return {@link #REPLIKAT} für lesende Transaktionen, wenn das Replikat aktuell
+     *         genug ist; sonst {@link #PRIMAER}
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        if ( TransactionSynchronizationManager.isCurrentTransactionReadOnly() &&
+             _replikatStatus.darfReplikatLesen() ) {
+
+            return REPLIKAT;
+        }
+        return PRIMAER;
+    }
+
+}
@@ -0,0 +1,193 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Stand der Replikation von der primären Datenbank auf die Lese-Datenbank (Replikat),
+ * wird von {@link LeseSchreibRouting} für die Auswahl der Datenbank abgefragt.
+ * <br><br>
+ *
+ * Vom Replikat wird nur gelesen, wenn es bereit ist und seine Verzögerung
+ * höchstens {@code blog.replikation.max-verzoegerung-ms} beträgt. Außerdem sieht
+ * ein Nutzer immer seine eigenen Änderungen (<i>Read-Your-Writes</i>): für jeden
+ * Nutzer wird die ID des letzten von ihm geschriebenen Eintrags im Änderungsprotokoll
+ * gemerkt; bis das Replikat diesen Eintrag angewendet hat, liest dieser Nutzer
+ * von der primären Datenbank.
+ * <br><br>
+ *
+ * Die Bean gibt es auch, wenn die Replikation ausgeschaltet ist; sie ist dann
+ * nie bereit und merkt sich keine Schreibzugriffe.
+ */
+@Component
+public class ReplikatStatus {
+
+    /** Maximale Verzögerung des Replikats, bis zu der noch vom Replikat gelesen wird. */
+    private final long _toleranzMillis;
+
+    /** Ist {@code true}, sobald das Replikat initial befüllt ist. */
+    private volatile boolean _bereit = false;
+
+    /** ID des letzten Eintrags im Änderungsprotokoll, der auf dem Replikat angewendet ist. */
+    private volatile long _angewendetBisId = 0L;
+
+    /** Alter der ältesten noch nicht angewendeten Änderung in Millisekunden. */
+    private volatile long _verzoegerungMillis = 0L;
+
+    /** Zeitpunkt der letzten Meldung des Fortschritts (Millisekunden seit Epoch). */
+    private volatile long _letzteMeldungMillis = System.currentTimeMillis();
+
+    /** ID des letzten eigenen Eintrags im Änderungsprotokoll pro Nutzername. */
+    private final Map<String, Long> _letzteSchreibIdProNutzer = new ConcurrentHashMap<>();
+
+    /** Ist für den aktuellen Thread gesetzt, wenn nur von der primären Datenbank gelesen werden soll. */
+    private final ThreadLocal<Boolean> _nurPrimaer = ThreadLocal.withInitial( () -> false );
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     *
+     * @param toleranzMillis Maximal tolerierte Verzögerung des Replikats in Millisekunden
+     */
+    public ReplikatStatus( @Value( "${blog.replikation.max-verzoegerung-ms:2000}" ) long toleranzMillis ) {
+
+        _toleranzMillis = toleranzMillis;
+    }
+
+
+    /**
+     * Entscheidet, ob für den aktuellen Thread vom Replikat gelesen werden darf.
+     *
+     * @return {@code true} gdw. Replikat bereit, aktuell genug und die eigenen
+     *         Änderungen des angemeldeten Nutzers schon enthält
+     */
+    public boolean darfReplikatLesen() {
+
+        if ( !_bereit || _nurPrimaer.get() || getVerzoegerungMillis() > _toleranzMillis ) {
+
+            return false;
+        }
+
+        final String nutzername = aktuellerNutzer();
+        if ( nutzername == null ) {
+
+            return true;
+        }
+
+        final Long letzteSchreibId = _letzteSchreibIdProNutzer.get( nutzername );
+
+        return letzteSchreibId == null || letzteSchreibId <= _angewendetBisId;
+    }
+
+
+    /**
+     * Führt {@code aktion} so aus, dass alle lesenden Zugriffe im aktuellen Thread auf die
+     * primäre Datenbank gehen; z.B. für die Verarbeitung von Änderungen, die das Replikat
+     * evtl. noch nicht enthält.
+     *
+     * @param aktion Auszuführender Code
+     */
+    public void aufPrimaerAusfuehren( Runnable aktion ) {
+
+        final boolean vorher = _nurPrimaer.get();
+        _nurPrimaer.set( true );
+        try {
+
+            aktion.run();
+        }
+        finally {
+
+            _nurPrimaer.set( vorher );
+        }
+    }
+
+
+    /**
+     * Merkt sich einen Schreibzugriff des angemeldeten Nutzers für <i>Read-Your-Writes</i>.
+     *
+     * @param aenderungId ID des Eintrags im Änderungsprotokoll
+     */
+    public void schreibzugriffMerken( long aenderungId ) {
+
+        if ( !_bereit ) {
+
+            return;
+        }
+
+        final String nutzername = aktuellerNutzer();
+        if ( nutzername != null ) {
+
+            _letzteSchreibIdProNutzer.merge( nutzername, aenderungId, Math::max );
+        }
+    }
+
+
+    /**
+     * Meldet den Fortschritt der Replikation.
+     *
+     * @param angewendetBisId ID des letzten angewendeten Eintrags im Änderungsprotokoll
+     *
+     * @param verzoegerungMillis Alter der ältesten noch nicht angewendeten Änderung,
+     *                           {@code 0} wenn alle Änderungen angewendet sind
+     */
+    public void fortschrittMelden( long angewendetBisId, long verzoegerungMillis ) {
+
+        _angewendetBisId     = angewendetBisId;
+        _verzoegerungMillis  = verzoegerungMillis;
+        _letzteMeldungMillis = System.currentTimeMillis();
+
+        _letzteSchreibIdProNutzer.values().removeIf( id -> id <= angewendetBisId );
+    }
+
+
+    /**
+     * Setter für Bereitschaft des Replikats.
+     *
+     * @param bereit {@code true}, wenn Replikat initial befüllt ist
+     */
+    public void setBereit( boolean bereit ) {
+
+        _bereit = bereit;
+    }
+
+
+    /**
+     * Liefert die aktuelle Verzögerung des Replikats: die beim letzten Durchlauf der
+     * Replikation gemessene Verzögerung plus die Zeit seitdem, denn Änderungen aus
+     * dieser Zeit sind evtl. noch nicht angewendet. Bleibt die Replikation stehen,
+     * dann wächst die Verzögerung also weiter.
+     *
+     * @return Verzögerung in Millisekunden
+     */
+    public long getVerzoegerungMillis() {
+
+        if ( _verzoegerungMillis == Long.MAX_VALUE ) {
+
+            return Long.MAX_VALUE;
+        }
+        return _verzoegerungMillis + ( System.currentTimeMillis() - _letzteMeldungMillis );
+    }
+
+
+    /**
+     * Liefert den Namen des im aktuellen Thread angemeldeten Nutzers.
+     *
+     * @return Nutzername, oder {@code null} für anonyme Zugriffe
+     */
+    private static String aktuellerNutzer() {
+
+        final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if ( authentication == null || !authentication.isAuthenticated() ) {
+
+            return null;
+        }
+        return authentication.getName();
+    }
+
+}
@@ -0,0 +1,78 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+
+/**
+ * HTTP-Sitzung (Session) in der Datenbank, damit angemeldete Nutzer bei einem Neustart
+ * oder beim Wechsel auf eine andere Instanz der Anwendung angemeldet bleiben.
+ * <br><br>
+ *
+ * Die Entity legt nur die Tabelle an; gelesen und geschrieben wird mit JDBC in
+ * {@link SitzungsSpeicher}. Alle Attribute einer Sitzung werden zusammen serialisiert
+ * in einer Spalte gespeichert. Zeitpunkte sind Millisekunden seit 1.1.1970 (UTC).
+ */
+@Entity
+@Table( name = "SITZUNG", indexes = @Index( name = "IDX_SITZUNG_ABLAUF", columnList = "ABLAUF" ) )
+public class SitzungEntity {
+
+    /** Zufällige Session-ID, steht auch im Cookie. */
+    @Id
+    @Column( name = "ID", length = 64 )
+    private String id;
+
+    /** Zeitpunkt, zu dem die Sitzung angelegt wurde. */
+    @Column( name = "ERSTELLT", nullable = false )
+    private long erstellt;
+
+    /** Zeitpunkt des letzten Zugriffs (wird nicht bei jedem Request geschrieben). */
+    @Column( name = "LETZTER_ZUGRIFF", nullable = false )
+    private long letzterZugriff;
+
+    /** Maximale Inaktivität in Sekunden, danach ist die Sitzung abgelaufen. */
+    @Column( name = "MAX_INAKTIV_SEKUNDEN", nullable = false )
+    private int maxInaktivSekunden;
+
+    /** Zeitpunkt, ab dem die Sitzung abgelaufen ist; für das Löschen abgelaufener Sitzungen. */
+    @Column( name = "ABLAUF", nullable = false )
+    private long ablauf;
+
+    /** Attribute der Sitzung, serialisiert als {@code Map}. */
+    @Lob
+    @Column( name = "ATTRIBUTE" )
+    private byte[] attribute;
+
+
+    /**
+     * Default-Konstruktor, obligatorisch für JPA.
+     */
+    public SitzungEntity() {}
+
+
+    /**
+     * Getter für Session-ID.
+     *
+     * @return Session-ID
+     */
+    public String getId() {
+
+        return id;
+    }
+
+
+    /**
+     * Getter für Zeitpunkt, ab dem die Sitzung abgelaufen ist.
+     *
+     * @return Millisekunden seit 1.1.1970 (UTC)
+     */
+    public long getAblauf() {
+
+        return ablauf;
+    }
+
+}
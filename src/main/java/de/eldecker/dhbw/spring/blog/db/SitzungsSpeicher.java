@@ -0,0 +1,540 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import static java.lang.System.currentTimeMillis;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSession;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+
+/**
+ * Speicher für HTTP-Sitzungen in der H2-Datenbank (Tabelle {@code SITZUNG}, siehe
+ * {@link SitzungEntity}) mit einem <i>Near-Cache</i> im Speicher dieser Instanz.
+ * <br><br>
+ *
+ * <ul>
+ * <li><b>Lesen:</b> Sitzungen werden aus dem Near-Cache geliefert; die Datenbank wird
+ *     nur beim ersten Zugriff auf einer Instanz und danach höchstens alle
+ *     {@code blog.sitzung.cache-ttl-ms} gelesen (damit Änderungen durch andere Instanzen,
+ *     z.B. Abmelden, spätestens nach dieser Zeit sichtbar werden).</li>
+ * <li><b>Schreiben:</b> Am Ende eines Requests wird die Sitzung nur dann zum Schreiben
+ *     vorgemerkt, wenn sie neu ist, ihre ID geändert wurde oder die serialisierten
+ *     Attribute sich vom zuletzt gespeicherten Stand unterscheiden (<i>Dirty Checking</i>).
+ *     Der Zeitpunkt des letzten Zugriffs allein wird höchstens alle
+ *     {@code blog.sitzung.zugriff-schreiben-ms} geschrieben. Vorgemerkte Sitzungen werden
+ *     periodisch in einem Batch in die Datenbank geschrieben, beim Herunterfahren auch.</li>
+ * <li><b>Ablauf:</b> Abgelaufene Sitzungen werden periodisch gelöscht. Weil der letzte
+ *     Zugriff verzögert geschrieben wird, kann eine Sitzung auf einer anderen Instanz bis
+ *     zu {@code blog.sitzung.zugriff-schreiben-ms} früher ablaufen.</li>
+ * </ul>
+ * <br>
+ *
+ * Bei einem Absturz gehen die Änderungen der letzten {@code blog.sitzung.flush-intervall-ms}
+ * verloren, d.h. im schlimmsten Fall muss sich ein Nutzer neu anmelden.
+ */
+@Repository
+public class SitzungsSpeicher implements SessionRepository<SitzungsSpeicher.Sitzung> {
+
+    private static final Logger LOG = LoggerFactory.getLogger( SitzungsSpeicher.class );
+
+    /** SQL für Lesen einer Sitzung, Parameter ist Session-ID. */
+    private static final String SQL_LESEN =
+            "SELECT ID, ERSTELLT, LETZTER_ZUGRIFF, MAX_INAKTIV_SEKUNDEN, ATTRIBUTE FROM SITZUNG WHERE ID = ?";
+
+    /** SQL für Anlegen oder Überschreiben einer Sitzung. */
+    private static final String SQL_SCHREIBEN =
+            "MERGE INTO SITZUNG (ID, ERSTELLT, LETZTER_ZUGRIFF, MAX_INAKTIV_SEKUNDEN, ABLAUF, ATTRIBUTE) " +
+            "KEY (ID) VALUES (?, ?, ?, ?, ?, ?)";
+
+    /** SQL für Löschen einer Sitzung, Parameter ist Session-ID. */
+    private static final String SQL_LOESCHEN = "DELETE FROM SITZUNG WHERE ID = ?";
+
+    /** SQL für Löschen abgelaufener Sitzungen, Parameter ist aktueller Zeitpunkt. */
+    private static final String SQL_ABGELAUFENE_LOESCHEN = "DELETE FROM SITZUNG WHERE ABLAUF < ?";
+
+    /** Bean für JDBC-Zugriff. */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Damit ein Batch in einer Transaktion geschrieben wird. */
+    private final TransactionTemplate _transactionTemplate;
+
+    /** Maximale Inaktivität für neue Sitzungen. */
+    private final Duration _maxInaktiv;
+
+    /** So lange wird eine Sitzung aus dem Near-Cache geliefert, ohne sie neu zu laden. */
+    private final long _cacheTtlMillis;
+
+    /** Mindestabstand für das Schreiben, wenn sich nur der Zeitpunkt des letzten Zugriffs geändert hat. */
+    private final long _zugriffSchreibenMillis;
+
+    /** Serialisiert Attribute (Java-Serialisierung). */
+    private final SerializingConverter _serialisierer = new SerializingConverter();
+
+    /** Deserialisiert Attribute mit dem Class-Loader der Anwendung. */
+    private final DeserializingConverter _deserialisierer =
+            new DeserializingConverter( SitzungsSpeicher.class.getClassLoader() );
+
+    /** Near-Cache: Session-ID auf zuletzt gesehenen Stand. */
+    private final Map<String, Eintrag> _cache = new ConcurrentHashMap<>();
+
+    /** Noch nicht geschriebene Sitzungen: Session-ID auf zu schreibenden Stand. */
+    private final Map<String, Eintrag> _offen = new ConcurrentHashMap<>();
+
+    /** Noch nicht gelöschte Session-IDs. */
+    private final Set<String> _zuLoeschen = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * Stand einer Sitzung im Near-Cache.
+     *
+     * @param daten Kopie der Sitzung
+     *
+     * @param attribute Serialisierte Attribute wie zuletzt gespeichert oder zum Speichern vorgemerkt
+     *
+     * @param gespeicherterZugriff Letzter Zugriff wie zuletzt gespeichert oder vorgemerkt
+     *
+     * @param geladen Zeitpunkt, zu dem die Sitzung zuletzt aus der Datenbank geladen wurde
+     */
+    private record Eintrag( MapSession daten,
+                            byte[]     attribute,
+                            long       gespeicherterZugriff,
+                            long       geladen
+                          ) {
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public SitzungsSpeicher( JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             @Value( "${server.servlet.session.timeout:30m}"    ) Duration maxInaktiv,
+                             @Value( "${blog.sitzung.cache-ttl-ms:60000}"        ) long cacheTtlMillis,
+                             @Value( "${blog.sitzung.zugriff-schreiben-ms:60000}" ) long zugriffSchreibenMillis ) {
+
+        _jdbcTemplate           = jdbcTemplate;
+        _transactionTemplate    = transactionTemplate;
+        _maxInaktiv             = maxInaktiv;
+        _cacheTtlMillis         = cacheTtlMillis;
+        _zugriffSchreibenMillis = zugriffSchreibenMillis;
+    }
+
+
+    /**
+     * Erzeugt eine neue Sitzung; sie wird erst mit {@link #save(Sitzung)} gespeichert.
+     *
+     * @return Neue Sitzung
+     */
+    @Override
+    public Sitzung createSession() {
+
+        final MapSession daten = new MapSession();
+        daten.setMaxInactiveInterval( _maxInaktiv );
+
+        return new Sitzung( daten, null, null, 0L, currentTimeMillis() );
+    }
+
+
+    /**
+     * Merkt die Sitzung zum Schreiben vor, wenn sie sich geändert hat, und aktualisiert
+     * den Near-Cache.
+     *
+     * @param sitzung Sitzung am Ende eines Requests
+     */
+    @Override
+    public void save( Sitzung sitzung ) {
+
+        final String id = sitzung.getId();
+
+        boolean schreiben = sitzung._urspruenglicheId == null || sitzung._maxInaktivGeaendert;
+
+        if ( sitzung._urspruenglicheId != null && !sitzung._urspruenglicheId.equals( id ) ) {
+
+            deleteById( sitzung._urspruenglicheId ); // Session-ID wurde geändert, z.B. bei Anmeldung
+            schreiben = true;
+        }
+
+        byte[] attribute = sitzung._gespeicherteAttribute;
+        if ( attribute == null || sitzung._attributeGeaendert ) {
+
+            final byte[] neueAttribute = serialisieren( sitzung._daten );
+            if ( !Arrays.equals( neueAttribute, attribute ) ) {
+
+                attribute = neueAttribute;
+                schreiben = true;
+            }
+        }
+
+        long gespeicherterZugriff = sitzung._gespeicherterZugriff;
+        final long zugriff = sitzung.getLastAccessedTime().toEpochMilli();
+        if ( zugriff - gespeicherterZugriff >= _zugriffSchreibenMillis ) {
+
+            schreiben = true;
+        }
+        if ( schreiben ) {
+
+            gespeicherterZugriff = zugriff;
+        }
+
+        final Eintrag eintrag =
+                new Eintrag( new MapSession( sitzung._daten ), attribute, gespeicherterZugriff, sitzung._geladen );
+
+        _cache.put( id, eintrag );
+        if ( schreiben ) {
+
+            _zuLoeschen.remove( id );
+            _offen.put( id, eintrag );
+        }
+
+        sitzung.gespeichert( attribute, gespeicherterZugriff );
+    }
+
+
+    /**
+     * Liefert eine Sitzung, normalerweise aus dem Near-Cache.
+     *
+     * @param id Session-ID aus Cookie
+     *
+     * @return Sitzung oder {@code null}, wenn es keine gültige Sitzung mit dieser ID gibt
+     */
+    @Override
+    public Sitzung findById( String id ) {
+
+        if ( _zuLoeschen.contains( id ) ) {
+
+            return null;
+        }
+
+        Eintrag eintrag = _cache.get( id );
+        if ( eintrag == null || ( currentTimeMillis() - eintrag.geladen() > _cacheTtlMillis && !_offen.containsKey( id ) ) ) {
+
+            eintrag = laden( id );
+            if ( eintrag == null ) {
+
+                _cache.remove( id );
+                return null;
+            }
+            _cache.put( id, eintrag );
+        }
+
+        if ( eintrag.daten().isExpired() ) {
+
+            deleteById( id );
+            return null;
+        }
+
+        return new Sitzung( new MapSession( eintrag.daten() ), id,
+                            eintrag.attribute(), eintrag.gespeicherterZugriff(), eintrag.geladen() );
+    }
+
+
+    /**
+     * Löscht eine Sitzung sofort aus dem Near-Cache und merkt sie zum Löschen in der
+     * Datenbank vor.
+     *
+     * @param id Session-ID
+     */
+    @Override
+    public void deleteById( String id ) {
+
+        _cache.remove( id );
+        _offen.remove( id );
+        _zuLoeschen.add( id );
+    }
+
+
+    /**
+     * Schreibt alle vorgemerkten Änderungen in einer Transaktion als Batch in die Datenbank.
+     */
+    @Scheduled( fixedDelayString = "${blog.sitzung.flush-intervall-ms:1000}" )
+    @PreDestroy
+    public synchronized void schreiben() {
+
+        if ( _offen.isEmpty() && _zuLoeschen.isEmpty() ) {
+
+            return;
+        }
+
+        final Map<String, Eintrag> merges    = new HashMap<>();
+        final List<Object[]>       mergeArgs = new ArrayList<>();
+        for ( Iterator<String> iter = _offen.keySet().iterator(); iter.hasNext(); ) {
+
+            final String  id      = iter.next();
+            final Eintrag eintrag = _offen.remove( id );
+            if ( eintrag == null ) { continue; }
+
+            final MapSession daten = eintrag.daten();
+            final long       ablauf = eintrag.gespeicherterZugriff() + daten.getMaxInactiveInterval().toMillis();
+            merges.put( id, eintrag );
+            mergeArgs.add( new Object[]{ id,
+                                         daten.getCreationTime().toEpochMilli(),
+                                         eintrag.gespeicherterZugriff(),
+                                         (int) daten.getMaxInactiveInterval().toSeconds(),
+                                         ablauf,
+                                         eintrag.attribute() } );
+        }
+
+        final List<Object[]> loeschArgs = new ArrayList<>();
+        for ( Iterator<String> iter = _zuLoeschen.iterator(); iter.hasNext(); ) {
+
+            loeschArgs.add( new Object[]{ iter.next() } );
+            iter.remove();
+        }
+
+        try {
+
+            _transactionTemplate.executeWithoutResult( status -> {
+
+                if ( !mergeArgs.isEmpty()  ) { _jdbcTemplate.batchUpdate( SQL_SCHREIBEN, mergeArgs  ); }
+                if ( !loeschArgs.isEmpty() ) { _jdbcTemplate.batchUpdate( SQL_LOESCHEN,  loeschArgs ); }
+            });
+
+            LOG.debug( "Sitzungen geschrieben: {} gespeichert, {} gelöscht.", mergeArgs.size(), loeschArgs.size() );
+        }
+        catch ( DataAccessException ex ) {
+
+            LOG.error( "Sitzungen konnten nicht geschrieben werden, nächster Versuch beim nächsten Durchlauf: "
+                       + ex.getMessage() );
+
+            merges.forEach( _offen::putIfAbsent );
+            loeschArgs.forEach( args -> _zuLoeschen.add( (String) args[ 0 ] ) );
+        }
+    }
+
+
+    /**
+     * Löscht abgelaufene Sitzungen aus der Datenbank und entfernt abgelaufene oder veraltete
+     * Einträge aus dem Near-Cache, damit dieser nicht unbegrenzt wächst.
+     */
+    @Scheduled( fixedDelayString = "${blog.sitzung.bereinigung-intervall-ms:60000}" )
+    public void bereinigen() {
+
+        final long jetzt = currentTimeMillis();
+
+        _cache.entrySet().removeIf( eintrag -> !_offen.containsKey( eintrag.getKey() ) &&
+                                               ( eintrag.getValue().daten().isExpired() ||
+                                                 jetzt - eintrag.getValue().geladen() > _cacheTtlMillis ) );
+        try {
+
+            final int anzahl = _jdbcTemplate.update( SQL_ABGELAUFENE_LOESCHEN, jetzt );
+            if ( anzahl > 0 ) {
+
+                LOG.info( "{} abgelaufene Sitzung(en) gelöscht.", anzahl );
+            }
+        }
+        catch ( DataAccessException ex ) {
+
+            LOG.error( "Abgelaufene Sitzungen konnten nicht gelöscht werden: " + ex.getMessage() );
+        }
+    }
+
+
+    /**
+     * Lädt eine Sitzung aus der Datenbank.
+     *
+     * @param id Session-ID
+     *
+     * @return Eintrag für Near-Cache oder {@code null}, wenn nicht gefunden
+     */
+    private Eintrag laden( String id ) {
+
+        final List<Eintrag> ergebnis = _jdbcTemplate.query( SQL_LESEN, (rs, rowNum) -> {
+
+            final MapSession daten = new MapSession( rs.getString( "ID" ) );
+            daten.setCreationTime(       Instant.ofEpochMilli( rs.getLong( "ERSTELLT"        ) ) );
+            daten.setLastAccessedTime(   Instant.ofEpochMilli( rs.getLong( "LETZTER_ZUGRIFF" ) ) );
+            daten.setMaxInactiveInterval( Duration.ofSeconds( rs.getInt( "MAX_INAKTIV_SEKUNDEN" ) ) );
+
+            final byte[] attribute = rs.getBytes( "ATTRIBUTE" );
+            if ( attribute != null ) {
+
+                @SuppressWarnings( "unchecked" )
+                final Map<String, Object> map = (Map<String, Object>) _deserialisierer.convert( attribute );
+                map.forEach( daten::setAttribute );
+            }
+
+            return new Eintrag( daten, attribute, rs.getLong( "LETZTER_ZUGRIFF" ), currentTimeMillis() );
+        }, id );
+
+        return ergebnis.isEmpty() ? null : ergebnis.get( 0 );
+    }
+
+
+    /**
+     * Serialisiert alle Attribute einer Sitzung.
+     *
+     * @param daten Sitzung
+     *
+     * @return Serialisierte {@code HashMap} mit den Attributen
+     */
+    private byte[] serialisieren( MapSession daten ) {
+
+        final HashMap<String, Object> map = new HashMap<>();
+        for ( String name : daten.getAttributeNames() ) {
+
+            map.put( name, daten.getAttribute( name ) );
+        }
+
+        return _serialisierer.convert( map );
+    }
+
+
+    /**
+     * Sitzung für einen Request: Kopie des Stands im Near-Cache, die sich merkt, ob sie
+     * geändert wurde.
+     */
+    public static final class Sitzung implements Session {
+
+        /** Attribute und Zeitpunkte der Sitzung. */
+        private final MapSession _daten;
+
+        /** ID beim Laden; {@code null} bei neuer Sitzung. */
+        private String _urspruenglicheId;
+
+        /** Serialisierte Attribute wie zuletzt gespeichert, {@code null} bei neuer Sitzung. */
+        private byte[] _gespeicherteAttribute;
+
+        /** Letzter Zugriff wie zuletzt gespeichert. */
+        private long _gespeicherterZugriff;
+
+        /** Zeitpunkt, zu dem die Sitzung zuletzt aus der Datenbank geladen wurde. */
+        private final long _geladen;
+
+        /** Wurde ein Attribut gesetzt oder entfernt? */
+        private boolean _attributeGeaendert = false;
+
+        /** Wurde die maximale Inaktivität geändert? */
+        private boolean _maxInaktivGeaendert = false;
+
+
+        /**
+         * Konstruktor.
+         */
+        private Sitzung( MapSession daten, String urspruenglicheId,
+                         byte[] gespeicherteAttribute, long gespeicherterZugriff, long geladen ) {
+
+            _daten                 = daten;
+            _urspruenglicheId      = urspruenglicheId;
+            _gespeicherteAttribute = gespeicherteAttribute;
+            _gespeicherterZugriff  = gespeicherterZugriff;
+            _geladen               = geladen;
+        }
+
+
+        /**
+         * Setzt die Änderungsmarkierungen zurück, nachdem die Sitzung gespeichert wurde
+         * (kann während eines Requests mehrmals passieren).
+         */
+        private void gespeichert( byte[] attribute, long gespeicherterZugriff ) {
+
+            _urspruenglicheId      = _daten.getId();
+            _gespeicherteAttribute = attribute;
+            _gespeicherterZugriff  = gespeicherterZugriff;
+            _attributeGeaendert    = false;
+            _maxInaktivGeaendert   = false;
+        }
+
+        @Override
+        public String getId() {
+
+            return _daten.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+
+            return _daten.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute( String name ) {
+
+            // Attribut könnte vom Aufrufer verändert werden, deshalb bei save() vergleichen
+            _attributeGeaendert = true;
+            return _daten.getAttribute( name );
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+
+            return _daten.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute( String name, Object wert ) {
+
+            _daten.setAttribute( name, wert );
+            _attributeGeaendert = true;
+        }
+
+        @Override
+        public void removeAttribute( String name ) {
+
+            _daten.removeAttribute( name );
+            _attributeGeaendert = true;
+        }
+
+        @Override
+        public Instant getCreationTime() {
+
+            return _daten.getCreationTime();
+        }
+
+        @Override
+        public void setLastAccessedTime( Instant zeitpunkt ) {
+
+            _daten.setLastAccessedTime( zeitpunkt );
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+
+            return _daten.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval( Duration dauer ) {
+
+            _daten.setMaxInactiveInterval( dauer );
+            _maxInaktivGeaendert = true;
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+
+            return _daten.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+
+            return _daten.isExpired();
+        }
+    }
+
+}
@@ -6,10 +6,14 @@ import static tools.jackson.databind.SerializationFeature.INDENT_OUTPUT;
 import static org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder.BCryptVersion.$2B;
 
 import java.security.SecureRandom;
+import java.util.List;
+import java.util.Locale;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.servlet.LocaleResolver;
+import org.springframework.web.servlet.i18n.AcceptHeaderLocaleResolver;
 
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.json.JsonMapper;
@@ -22,6 +26,30 @@ import tools.jackson.databind.json.JsonMapper;
 @Configuration
 public class BohnenFabrik {
 
+    /**
+     * Sprachen, für die Seiten gerendert werden; die erste ist der Default für alle anderen
+     * Sprachen im Header {@code Accept-Language}.
+     */
+    public static final List<Locale> SPRACHEN = List.of( Locale.GERMAN, Locale.ENGLISH );
+
+
+    /**
+     * Ermittelt die Sprache des Requests aus dem Header {@code Accept-Language}, aber nur aus
+     * {@link #SPRACHEN}. Sonst kann ein Client mit immer neuen Werten im Header die Caches
+     * für gerenderte Seiten, die nach Sprache gehen, beliebig füllen.
+     *
+     * @return Resolver für Parameter vom Typ {@link Locale} in Controller-Methoden
+     */
+    @Bean( name = "localeResolver" )
+    public LocaleResolver erzeugeLocaleResolver() {
+
+        final AcceptHeaderLocaleResolver resolver = new AcceptHeaderLocaleResolver();
+        resolver.setSupportedLocales( SPRACHEN );
+        resolver.setDefaultLocale( SPRACHEN.getFirst() );
+        return resolver;
+    }
+
+
     /**
      * Liefert konfiguriertes ObjectMapper-Objekt zurück, welches für Object-nach-JSON (Serialisierung)
      * oder JSON-nach-Objekt (Deserialisierung) benötigt wird.
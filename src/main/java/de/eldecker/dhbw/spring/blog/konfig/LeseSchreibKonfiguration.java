@@ -0,0 +1,108 @@
+package de.eldecker.dhbw.spring.blog.konfig;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import de.eldecker.dhbw.spring.blog.db.LeseSchreibRouting;
+import de.eldecker.dhbw.spring.blog.db.ReplikatStatus;
+
+
+/**
+ * Konfiguration für die Aufteilung der Datenbankzugriffe: lesende Transaktionen
+ * auf ein Replikat, schreibende Transaktionen auf die primäre Datenbank. Nur aktiv
+ * mit {@code blog.replikation.aktiv=true}, am einfachsten über das Profil "replikation"
+ * (Datei {@code application-replikation.properties}); sonst legt Spring Boot wie
+ * bisher eine einzige {@code DataSource} an.
+ * <br><br>
+ *
+ * Als Replikat dient eine zweite lokale H2-Datenbank, die von der Klasse
+ * {@code Replikation} aus dem Änderungsprotokoll der primären Datenbank befüllt
+ * wird; in Produktion würde hier stattdessen die URL eines Lese-Replikats stehen.
+ */
+@Configuration
+@ConditionalOnProperty( name = "blog.replikation.aktiv", havingValue = "true" )
+public class LeseSchreibKonfiguration {
+
+    /**
+     * Verbindungs-Pool für die primäre Datenbank, konfiguriert mit den Properties
+     * {@code spring.datasource.*} und {@code spring.datasource.hikari.*}.
+     *
+     * @param properties Properties {@code spring.datasource.*}
+     *
+     * @return Pool für primäre Datenbank
+     */
+    @Bean
+    @ConfigurationProperties( "spring.datasource.hikari" )
+    public HikariDataSource primaerDatenquelle( DataSourceProperties properties ) {
+
+        return properties.initializeDataSourceBuilder()
+                         .type( HikariDataSource.class )
+                         .build();
+    }
+
+
+    /**
+     * Verbindungs-Pool für das Replikat; Nutzername und Passwort sind dieselben
+     * wie für die primäre Datenbank. Die Verbindungen sind nicht schreibgeschützt,
+     * weil auch die Replikation über diesen Pool schreibt.
+     *
+     * @param properties Properties {@code spring.datasource.*}
+     *
+     * @param url JDBC-URL des Replikats
+     *
+     * @param poolGroesse Maximale Anzahl Verbindungen
+     *
+     * @return Pool für Replikat
+     */
+    @Bean
+    public HikariDataSource replikatDatenquelle( DataSourceProperties properties,
+                                                 @Value( "${blog.replikation.url}"              ) String url,
+                                                 @Value( "${blog.replikation.pool-groesse:10}" ) int    poolGroesse ) {
+
+        final HikariDataSource datenquelle = properties.initializeDataSourceBuilder()
+                                                       .type( HikariDataSource.class )
+                                                       .url( url )
+                                                       .build();
+        datenquelle.setPoolName( "Replikat" );
+        datenquelle.setMaximumPoolSize( poolGroesse );
+
+        return datenquelle;
+    }
+
+
+    /**
+     * Datenquelle für JPA, {@code JdbcTemplate} usw., die je nach Transaktion
+     * auf primäre Datenbank oder Replikat verteilt.
+     *
+     * @param primaer Pool für primäre Datenbank
+     *
+     * @param replikat Pool für Replikat
+     *
+     * @param replikatStatus Stand der Replikation
+     *
+     * @return Datenquelle mit Routing
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource( @Qualifier( "primaerDatenquelle"  ) DataSource primaer,
+                                  @Qualifier( "replikatDatenquelle" ) DataSource replikat,
+                                  ReplikatStatus replikatStatus ) {
+
+        final LeseSchreibRouting routing = new LeseSchreibRouting( primaer, replikat, replikatStatus );
+        routing.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy( routing );
+    }
+
+}
@@ -0,0 +1,73 @@
+package de.eldecker.dhbw.spring.blog.konfig;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import jakarta.annotation.PostConstruct;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+
+/**
+ * Konfiguration für verzögertes Erzeugen der Beans ({@code spring.main.lazy-initialization=true},
+ * siehe Profil {@code schnellstart}): Beans werden erst beim ersten Zugriff erzeugt, nicht beim
+ * Start. Das ist aber nicht für alle Beans sicher; folgende werden weiterhin beim Start erzeugt:
+ * <ul>
+ * <li>Beans mit {@code Scheduled}-Methoden, weil diese sonst nie eingeplant würden
+ *     (z.B. Schreiben der Aufrufzähler)</li>
+ * <li>Beans mit {@code PostConstruct}-Methoden, die beim Start etwas einrichten</li>
+ * <li>Beans mit {@link SmartLifecycle}, die beim Start etwas starten</li>
+ * </ul>
+ * Listener für Events (z.B. Aufbau der Indizes nach {@code ApplicationReadyEvent}) brauchen
+ * keine Ausnahme, weil die Bean beim ersten Event erzeugt wird.
+ */
+@Configuration
+@ConditionalOnProperty( name = "spring.main.lazy-initialization", havingValue = "true" )
+public class SchnellstartKonfiguration {
+
+    /**
+     * Filter für Beans, die trotz {@code lazy-initialization} beim Start erzeugt werden.
+     * Statisch, weil der Filter schon vor dem Erzeugen der anderen Beans gebraucht wird.
+     *
+     * @return Filter
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter nichtVerzoegern() {
+
+        return (beanName, beanDefinition, beanTyp) -> {
+
+            if ( beanTyp == null ) { return false; }
+
+            final Class<?> klasse = ClassUtils.getUserClass( beanTyp );
+
+            return SmartLifecycle.class.isAssignableFrom( klasse ) ||
+                   hatMethodeMit( klasse, Scheduled.class     )    ||
+                   hatMethodeMit( klasse, PostConstruct.class );
+        };
+    }
+
+
+    /**
+     * Hat Klasse (oder Oberklasse) mindestens eine Methode mit der Annotation?
+     */
+    private static boolean hatMethodeMit( Class<?> klasse, Class<? extends Annotation> annotation ) {
+
+        for ( Method methode : ReflectionUtils.getUniqueDeclaredMethods( klasse ) ) {
+
+            if ( AnnotatedElementUtils.hasAnnotation( methode, annotation ) ) {
+
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,38 @@
+package de.eldecker.dhbw.spring.blog.konfig;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.web.http.CookieSerializer;
+import org.springframework.session.web.http.DefaultCookieSerializer;
+
+import de.eldecker.dhbw.spring.blog.db.SitzungsSpeicher;
+
+
+/**
+ * HTTP-Sitzungen werden nicht im Servlet-Container, sondern mit <i>Spring Session</i>
+ * in der Datenbank gespeichert (siehe {@link SitzungsSpeicher}), damit angemeldete
+ * Nutzer einen Neustart oder den Wechsel auf eine andere Instanz überstehen.
+ * Der Filter von Spring Session läuft vor dem Filter von Spring Security.
+ */
+@Configuration
+@EnableSpringHttpSession
+public class SitzungsKonfiguration {
+
+    /**
+     * Cookie für Session-ID soll weiter {@code JSESSIONID} heißen (Default bei Spring Session
+     * ist {@code SESSION}), weil es beim Abmelden unter diesem Namen gelöscht wird,
+     * siehe {@code Sicherheitskonfiguration}.
+     *
+     * @return Konfiguration für Session-Cookie
+     */
+    @Bean
+    public CookieSerializer sitzungsCookie() {
+
+        final DefaultCookieSerializer serializer = new DefaultCookieSerializer();
+        serializer.setCookieName( "JSESSIONID" );
+
+        return serializer;
+    }
+
+}
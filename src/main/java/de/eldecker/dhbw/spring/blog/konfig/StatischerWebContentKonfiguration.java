@@ -1,15 +1,21 @@
 package de.eldecker.dhbw.spring.blog.konfig;
 
+import static org.springframework.boot.security.autoconfigure.web.servlet.SecurityFilterProperties.DEFAULT_FILTER_ORDER;
+import static org.springframework.core.Ordered.HIGHEST_PRECEDENCE;
+
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.filter.CharacterEncodingFilter;
 
+import de.eldecker.dhbw.spring.blog.web.StatischeAssets;
+import de.eldecker.dhbw.spring.blog.web.StatischeAssetsFilter;
+
 
 /**
- * Diese Klasse enthält eine Methode, die eine Konfigurations-Bean für die
+ * Diese Klasse enthält Methoden, die Konfigurations-Beans für die
  * Auslieferung der statischen Web-Dateien aus dem Ordner
- * {@code src/main/resources/public } zurückliefert.  
+ * {@code src/main/resources/static} zurückliefern.  
  */
 @Configuration
 public class StatischerWebContentKonfiguration {
@@ -43,4 +49,46 @@ public class StatischerWebContentKonfiguration {
         return filterBean;
     }
     
-}
\ No newline at end of file
+
+
+    /**
+     * Dateien mit Hash-Wert im Pfad ({@code /assets/*}) werden von einem Filter mit der
+     * höchsten Priorität ausgeliefert, also vor allen anderen Filtern (Sitzung, Spring Security,
+     * {@link CharacterEncodingFilter}); sie enthalten nichts Vertrauliches.
+     *
+     * @param statischeAssets Bean mit den Dateien im Speicher
+     *
+     * @return Bean mit Konfiguration
+     */
+    @Bean
+    public FilterRegistrationBean<StatischeAssetsFilter> assetsMitHashWert( StatischeAssets statischeAssets ) {
+
+        final FilterRegistrationBean<StatischeAssetsFilter> filterBean =
+                new FilterRegistrationBean<>( new StatischeAssetsFilter( statischeAssets ) );
+        filterBean.addUrlPatterns( StatischeAssets.PRAEFIX + "*" );
+        filterBean.setOrder( HIGHEST_PRECEDENCE );
+
+        return filterBean;
+    }
+
+
+    /**
+     * Statische HTML-Seiten (mit ersetzten Verweisen) werden erst nach Spring Security aus dem
+     * Speicher ausgeliefert, weil z.B. {@code /editor.html} eine Anmeldung erfordert.
+     *
+     * @param statischeAssets Bean mit den Dateien im Speicher
+     *
+     * @return Bean mit Konfiguration
+     */
+    @Bean
+    public FilterRegistrationBean<StatischeAssetsFilter> htmlSeiten( StatischeAssets statischeAssets ) {
+
+        final FilterRegistrationBean<StatischeAssetsFilter> filterBean =
+                new FilterRegistrationBean<>( new StatischeAssetsFilter( statischeAssets ) );
+        filterBean.addUrlPatterns( "/*" );
+        filterBean.setOrder( DEFAULT_FILTER_ORDER + 1 );
+
+        return filterBean;
+    }
+
+}
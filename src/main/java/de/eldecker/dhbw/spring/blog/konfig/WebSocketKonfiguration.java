@@ -0,0 +1,44 @@
+package de.eldecker.dhbw.spring.blog.konfig;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import de.eldecker.dhbw.spring.blog.web.ZusammenarbeitHandler;
+
+
+/**
+ * Konfiguration der WebSocket-Endpunkte, bisher nur für die gemeinsame Bearbeitung von
+ * Artikeln im Editor. Der Pfad liegt unter {@code /api}, d.h. der Handshake ist nur
+ * nach Anmeldung möglich.
+ */
+@Configuration
+@EnableWebSocket
+public class WebSocketKonfiguration implements WebSocketConfigurer {
+
+    /** Handler für die gemeinsame Bearbeitung. */
+    private final ZusammenarbeitHandler _zusammenarbeitHandler;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public WebSocketKonfiguration( ZusammenarbeitHandler zusammenarbeitHandler ) {
+
+        _zusammenarbeitHandler = zusammenarbeitHandler;
+    }
+
+
+    /**
+     * Handler für gemeinsame Bearbeitung registrieren; Verbindungen nur von derselben Origin.
+     */
+    @Override
+    public void registerWebSocketHandlers( WebSocketHandlerRegistry registry ) {
+
+        registry.addHandler( _zusammenarbeitHandler, "/api/v1/zusammenarbeit/*" );
+    }
+
+}
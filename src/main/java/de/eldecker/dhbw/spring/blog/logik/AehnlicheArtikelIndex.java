@@ -0,0 +1,298 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.logik.MinHashBerechnung.ANZAHL_HASHFUNKTIONEN;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.db.ArtikelSignaturProjektion;
+import de.eldecker.dhbw.spring.blog.model.AehnlicherArtikel;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+
+
+/**
+ * In-Memory-Index für die Suche nach ähnlichen Artikeln mit <i>Locality-Sensitive Hashing</i>
+ * (LSH) über die MinHash-Signaturen der Artikel.
+ * <br><br>
+ *
+ * Jede Signatur wird in {@link #ANZAHL_BAENDER} Bänder zu je {@link #ZEILEN_PRO_BAND}
+ * Werten aufgeteilt; für jedes Band wird der Artikel in einen Bucket einsortiert.
+ * Kandidaten für ähnliche Artikel sind alle Artikel, die mit dem gesuchten Artikel in
+ * mindestens einem Bucket liegen, so dass nicht alle Artikel verglichen werden müssen.
+ * Bei 32 Bändern à 4 Zeilen liegt die Ähnlichkeitsschwelle, ab der Artikel mit hoher
+ * Wahrscheinlichkeit Kandidaten werden, bei ca. {@code (1/32)^(1/4) = 0,42}.
+ * <br><br>
+ *
+ * Der Index wird beim Start der Anwendung aus den gespeicherten Signaturen aufgebaut
+ * und danach bei jedem {@link ArtikelGespeichertEvent} für den betroffenen Artikel
+ * aktualisiert.
+ */
+@Service
+public class AehnlicheArtikelIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger( AehnlicheArtikelIndex.class );
+
+    /** Anzahl der Bänder, in die eine Signatur aufgeteilt wird. */
+    private static final int ANZAHL_BAENDER = 32;
+
+    /** Anzahl der Signaturwerte pro Band. */
+    private static final int ZEILEN_PRO_BAND = ANZAHL_HASHFUNKTIONEN / ANZAHL_BAENDER;
+
+    /** SQL-Abfrage für Plaintext eines Artikels ohne Signatur, Parameter ist Artikel-ID. */
+    private static final String SQL_INHALT = "SELECT INHALT_PLAINTEXT FROM ARTIKEL WHERE ID = ? AND MINHASH_SIGNATUR IS NULL";
+
+    /**
+     * SQL-Befehl zum Schreiben einer nachberechneten Signatur, Parameter sind Signatur und
+     * Artikel-ID; ändert nichts, wenn der Artikel inzwischen gespeichert wurde.
+     */
+    private static final String SQL_UPDATE = "UPDATE ARTIKEL SET MINHASH_SIGNATUR = ? WHERE ID = ? AND MINHASH_SIGNATUR IS NULL";
+
+    /** Kandidaten mit geringerer geschätzter Ähnlichkeit werden nicht empfohlen. */
+    private static final double MIN_AEHNLICHKEIT = 0.2;
+
+    /**
+     * Eintrag im Index für einen Artikel.
+     *
+     * @param titel Titel für Anzeige in Empfehlungsbox
+     *
+     * @param signatur MinHash-Signatur
+     *
+     * @param bucketSchluessel Schlüssel der Buckets (einer pro Band), in denen der Artikel liegt
+     */
+    private record Eintrag( String titel, int[] signatur, long[] bucketSchluessel ) {}
+
+    /** Bean für Berechnung/Vergleich von Signaturen. */
+    private final MinHashBerechnung _minHash;
+
+    /** Repo-Bean für Zugriff auf Tabelle mit Artikeln. */
+    private final ArtikelRepo _artikelRepo;
+
+    /**
+     * Bean für JDBC-Zugriff: Nachberechnete Signaturen werden nur in ihre Spalte geschrieben,
+     * ohne Version zu erhöhen und ohne Eintrag im Änderungsprotokoll.
+     */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Buckets: Schlüssel aus Band-Nummer und Band-Werten auf Menge von Artikel-IDs. */
+    private final Map<Long, Set<Long>> _buckets = new ConcurrentHashMap<>();
+
+    /** Einträge für alle indizierten Artikel, Schlüssel ist Artikel-ID. */
+    private final Map<Long, Eintrag> _eintraege = new ConcurrentHashMap<>();
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public AehnlicheArtikelIndex( MinHashBerechnung minHash,
+                                  ArtikelRepo artikelRepo,
+                                  JdbcTemplate jdbcTemplate ) {
+
+        _minHash      = minHash;
+        _artikelRepo  = artikelRepo;
+        _jdbcTemplate = jdbcTemplate;
+    }
+
+
+    /**
+     * Baut den Index nach dem Start der Anwendung auf (also auch nach dem evtl.
+     * Import von Demo-Content). Für Artikel ohne Signatur (angelegt vor Einführung
+     * dieser Funktion) wird die Signatur nachträglich berechnet und gespeichert.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public void indexAufbauen() {
+
+        int nachberechnet = 0;
+        for ( ArtikelSignaturProjektion projektion : _artikelRepo.holeAlleSignaturen() ) {
+
+            byte[] signatur = projektion.getMinHashSignatur();
+            if ( signatur == null ) {
+
+                signatur = signaturNachberechnen( projektion.getId() );
+                nachberechnet++;
+            }
+            eintragen( projektion.getId(), projektion.getTitel(), signatur );
+        }
+
+        LOG.info( "Index für ähnliche Artikel aufgebaut: {} Artikel, {} Buckets, {} Signaturen nachberechnet.",
+                  _eintraege.size(), _buckets.size(), nachberechnet );
+    }
+
+
+    /**
+     * Aktualisiert den Index für einen neu angelegten oder geänderten Artikel;
+     * wird erst nach dem Commit der zugehörigen Transaktion aufgerufen.
+     *
+     * @param event Event mit ID des gespeicherten Artikels
+     */
+    @TransactionalEventListener( fallbackExecution = true )
+    public void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+        final long artikelId = event.artikelId();
+
+        final Optional<ArtikelSignaturProjektion> projektionOptional = _artikelRepo.holeSignatur( artikelId );
+        if ( projektionOptional.isEmpty() ) {
+
+            austragen( artikelId );
+            return;
+        }
+
+        final ArtikelSignaturProjektion projektion = projektionOptional.get();
+        eintragen( artikelId, projektion.getTitel(), projektion.getMinHashSignatur() );
+
+        LOG.debug( "Index für ähnliche Artikel für Artikel mit ID={} aktualisiert.", artikelId );
+    }
+
+
+    /**
+     * Sucht die ähnlichsten Artikel zu einem Artikel. Es werden nur die Artikel in den
+     * Buckets des Artikels betrachtet, nicht alle Artikel.
+     *
+     * @param artikelId ID des Artikels, zu dem ähnliche Artikel gesucht werden
+     *
+     * @param maxAnzahl Maximale Anzahl der zurückgelieferten Artikel
+     *
+     * @return Liste der ähnlichen Artikel, absteigend nach Ähnlichkeit sortiert;
+     *         kann leer sein, aber nicht {@code null}
+     */
+    public List<AehnlicherArtikel> holeAehnlicheArtikel( long artikelId, int maxAnzahl ) {
+
+        final Eintrag eintrag = _eintraege.get( artikelId );
+        if ( eintrag == null ) {
+
+            return List.of();
+        }
+
+        final Set<Long> kandidaten = new HashSet<>();
+        for ( long schluessel : eintrag.bucketSchluessel() ) {
+
+            final Set<Long> bucket = _buckets.get( schluessel );
+            if ( bucket != null ) {
+
+                kandidaten.addAll( bucket );
+            }
+        }
+        kandidaten.remove( artikelId );
+
+        final List<AehnlicherArtikel> ergebnis = new ArrayList<>( kandidaten.size() );
+        for ( long kandidatId : kandidaten ) {
+
+            final Eintrag kandidat = _eintraege.get( kandidatId );
+            if ( kandidat == null ) { continue; } // inzwischen ausgetragen
+
+            final double aehnlichkeit = _minHash.schaetzeAehnlichkeit( eintrag.signatur(),
+                                                                       kandidat.signatur() );
+            if ( aehnlichkeit >= MIN_AEHNLICHKEIT ) {
+
+                ergebnis.add( new AehnlicherArtikel( kandidatId, kandidat.titel(), aehnlichkeit ) );
+            }
+        }
+
+        ergebnis.sort( Comparator.comparingDouble( AehnlicherArtikel::aehnlichkeit ).reversed() );
+
+        return ergebnis.size() > maxAnzahl ? ergebnis.subList( 0, maxAnzahl ) : ergebnis;
+    }
+
+
+    /**
+     * Trägt einen Artikel in den Index ein; ein evtl. vorhandener alter Eintrag
+     * wird vorher entfernt.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param titel Titel des Artikels
+     *
+     * @param signaturBytes MinHash-Signatur; wenn {@code null} oder für leeren Text,
+     *                      dann wird der Artikel nur ausgetragen
+     */
+    private synchronized void eintragen( long artikelId, String titel, byte[] signaturBytes ) {
+
+        austragen( artikelId );
+
+        final int[] signatur = _minHash.alsIntArray( signaturBytes );
+        if ( signatur == null || signatur[ 0 ] == Integer.MAX_VALUE ) {
+
+            return; // keine Signatur oder leerer Text
+        }
+
+        final long[] schluessel = new long[ ANZAHL_BAENDER ];
+        for ( int band = 0; band < ANZAHL_BAENDER; band++ ) {
+
+            long h = band;
+            for ( int zeile = 0; zeile < ZEILEN_PRO_BAND; zeile++ ) {
+
+                h = h * 31 + signatur[ band * ZEILEN_PRO_BAND + zeile ];
+            }
+            schluessel[ band ] = MinHashBerechnung.mische( h );
+
+            _buckets.computeIfAbsent( schluessel[ band ], k -> ConcurrentHashMap.newKeySet() )
+                    .add( artikelId );
+        }
+
+        _eintraege.put( artikelId, new Eintrag( titel, signatur, schluessel ) );
+    }
+
+
+    /**
+     * Entfernt einen Artikel aus allen seinen Buckets und aus der Map der Einträge.
+     *
+     * @param artikelId ID des Artikels
+     */
+    private synchronized void austragen( long artikelId ) {
+
+        final Eintrag alt = _eintraege.remove( artikelId );
+        if ( alt == null ) {
+
+            return;
+        }
+
+        for ( long schluessel : alt.bucketSchluessel() ) {
+
+            _buckets.computeIfPresent( schluessel, (k, bucket) -> {
+
+                bucket.remove( artikelId );
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+
+    /**
+     * Berechnet die Signatur für einen Artikel, der noch keine hat, und speichert sie.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @return Berechnete Signatur, oder {@code null} wenn Artikel nicht gefunden oder
+     *         inzwischen mit Signatur gespeichert
+     */
+    private byte[] signaturNachberechnen( long artikelId ) {
+
+        final List<String> inhalt = _jdbcTemplate.queryForList( SQL_INHALT, String.class, artikelId );
+        if ( inhalt.isEmpty() ) {
+
+            return null;
+        }
+
+        final byte[] signatur = _minHash.berechneSignatur( inhalt.getFirst() );
+        _jdbcTemplate.update( SQL_UPDATE, signatur, artikelId );
+
+        return signatur;
+    }
+
+}
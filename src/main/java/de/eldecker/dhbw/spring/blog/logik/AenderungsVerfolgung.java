@@ -0,0 +1,167 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.db.AenderungEntity.ART_AUFRUFE;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import de.eldecker.dhbw.spring.blog.db.AenderungsCursor;
+import de.eldecker.dhbw.spring.blog.db.ReplikatStatus;
+import de.eldecker.dhbw.spring.blog.model.Aenderung;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+
+/**
+ * Hält die lokalen Caches dieser Instanz aktuell, wenn mehrere Instanzen der Anwendung
+ * auf dieselbe Datenbank zugreifen (z.B. H2 im Modus {@code AUTO_SERVER=TRUE}).
+ * <br><br>
+ *
+ * Das Änderungsprotokoll wird periodisch inkrementell gelesen (nur neue IDs, siehe
+ * {@link AenderungsCursor}). Für jede Änderung eines Artikels durch eine <b>andere</b>
+ * Instanz wird lokal ein {@link ArtikelGespeichertEvent} veröffentlicht, so als ob der
+ * Artikel auf dieser Instanz gespeichert worden wäre; alle Caches und Indexe, die auf
+ * dieses Event hören, werden also ohne weiteren Code aktualisiert. Eigene Änderungen
+ * werden übersprungen, weil für sie das Event schon beim Speichern veröffentlicht wurde.
+ * <br><br>
+ *
+ * Metriken (über Actuator unter {@code /actuator/metrics}):
+ * <ul>
+ * <li>{@code blog.aenderungen.verzoegerung}: Zeit vom Schreiben der Änderung auf einer
+ *     anderen Instanz bis zur Aktualisierung auf dieser Instanz (setzt synchronisierte
+ *     Uhren voraus)</li>
+ * <li>{@code blog.aenderungen.empfangen}: Anzahl der verarbeiteten fremden Änderungen</li>
+ * </ul>
+ */
+@Service
+public class AenderungsVerfolgung {
+
+    private static final Logger LOG = LoggerFactory.getLogger( AenderungsVerfolgung.class );
+
+    /** Maximale Anzahl Protokolleinträge pro Abfrage. */
+    private static final int MAX_PRO_DURCHLAUF = 500;
+
+    /** Zugriff auf Datenbank mit Änderungsprotokoll (außerhalb Transaktion immer primäre Datenbank). */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Kennung dieser Instanz, um eigene Änderungen zu erkennen. */
+    private final Knoten _knoten;
+
+    /** Bean für Veröffentlichung von {@link ArtikelGespeichertEvent}. */
+    private final ApplicationEventPublisher _eventPublisher;
+
+    /** Damit die Caches nicht von einem Replikat neu geladen werden, das noch nicht aktuell ist. */
+    private final ReplikatStatus _replikatStatus;
+
+    /** Metrik für Verzögerung zwischen Schreiben und lokaler Aktualisierung. */
+    private final Timer _verzoegerungTimer;
+
+    /** Metrik für Anzahl verarbeiteter fremder Änderungen. */
+    private final Counter _empfangenZaehler;
+
+    /** Cursor auf Änderungsprotokoll, {@code null} vor dem Start. */
+    private AenderungsCursor _cursor;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public AenderungsVerfolgung( JdbcTemplate jdbcTemplate,
+                                 Knoten knoten,
+                                 ApplicationEventPublisher eventPublisher,
+                                 ReplikatStatus replikatStatus,
+                                 MeterRegistry meterRegistry ) {
+
+        _jdbcTemplate   = jdbcTemplate;
+        _knoten         = knoten;
+        _eventPublisher = eventPublisher;
+        _replikatStatus = replikatStatus;
+
+        _verzoegerungTimer = Timer.builder( "blog.aenderungen.verzoegerung" )
+                                  .description( "Verzögerung von Änderung auf anderer Instanz bis Aktualisierung der lokalen Caches" )
+                                  .publishPercentiles( 0.5, 0.99 )
+                                  .register( meterRegistry );
+
+        _empfangenZaehler = Counter.builder( "blog.aenderungen.empfangen" )
+                                   .description( "Anzahl verarbeiteter Änderungen von anderen Instanzen" )
+                                   .register( meterRegistry );
+    }
+
+
+    /**
+     * Setzt den Cursor beim Start auf das Ende des Protokolls; die Caches werden beim
+     * Start ohnehin aus der Datenbank aufgebaut. Läuft vor dem Aufbau der Caches, damit
+     * keine Änderung dazwischen verloren geht.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    @Order( Ordered.HIGHEST_PRECEDENCE )
+    public synchronized void starten() {
+
+        final long startId = AenderungsCursor.holeGroessteId( _jdbcTemplate );
+        _cursor = new AenderungsCursor( _jdbcTemplate, startId );
+
+        LOG.info( "Änderungsprotokoll wird ab ID={} auf Änderungen anderer Instanzen abgefragt.", startId );
+    }
+
+
+    /**
+     * Fragt neue Einträge im Änderungsprotokoll ab und aktualisiert die lokalen Caches
+     * für Änderungen von anderen Instanzen.
+     */
+    @Scheduled( fixedDelayString = "${blog.aenderungen.abfrage-intervall-ms:1000}" )
+    public synchronized void abfragen() {
+
+        if ( _cursor == null ) {
+
+            return;
+        }
+
+        final List<Aenderung> aenderungen;
+        try {
+
+            aenderungen = _cursor.naechsteAenderungen( MAX_PRO_DURCHLAUF );
+        }
+        catch ( DataAccessException ex ) {
+
+            LOG.error( "Änderungsprotokoll konnte nicht abgefragt werden: " + ex.getMessage() );
+            return;
+        }
+
+        for ( Aenderung aenderung : aenderungen ) {
+
+            if ( _knoten.getId().equals( aenderung.knoten() ) ) { continue; }
+
+            if ( ART_AUFRUFE.equals( aenderung.art() ) ) { continue; } // Aufrufzähler werden nicht gecacht
+
+            if ( "ARTIKEL".equals( aenderung.tabelle() ) ) {
+
+                _replikatStatus.aufPrimaerAusfuehren( () ->
+                        _eventPublisher.publishEvent( new ArtikelGespeichertEvent( aenderung.datensatzId() ) ) );
+            }
+
+            _verzoegerungTimer.record( Duration.between( aenderung.zeitpunkt(), LocalDateTime.now() ) );
+            _empfangenZaehler.increment();
+
+            LOG.debug( "Änderung von Knoten {} übernommen: {} mit ID={}",
+                       aenderung.knoten(), aenderung.tabelle(), aenderung.datensatzId() );
+        }
+    }
+
+}
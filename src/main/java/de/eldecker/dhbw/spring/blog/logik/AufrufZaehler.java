@@ -0,0 +1,188 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.db.AenderungEntity.ART_AUFRUFE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.model.ArtikelAufgerufenEvent;
+
+
+/**
+ * Zähler für die Aufrufe der Artikel-Seiten.
+ * <br><br>
+ *
+ * Ein {@code UPDATE} auf der Datenbank pro Seitenaufruf würde die lesenden Requests
+ * an den Zeilen-Sperren von H2 serialisieren. Deshalb werden die Aufrufe zunächst
+ * nur im Speicher gezählt, und zwar pro Artikel mit einem {@link LongAdder}: dieser
+ * verteilt gleichzeitige Inkrementierungen auf mehrere Zellen (Striping), so dass
+ * sich die Threads nicht gegenseitig blockieren. Die aufgelaufenen Zählerstände werden
+ * periodisch mit einem einzigen Batch-{@code UPDATE} in die Datenbank geschrieben.
+ * <br><br>
+ *
+ * Bei einem Absturz gehen höchstens die Aufrufe seit dem letzten Schreiben verloren,
+ * also maximal ein Intervall (Property {@code blog.aufrufe.flush-intervall-ms});
+ * beim regulären Herunterfahren wird noch einmal geschrieben.
+ */
+@Service
+public class AufrufZaehler {
+
+    private static final Logger LOG = LoggerFactory.getLogger( AufrufZaehler.class );
+
+    /** SQL-Befehl für Batch-Update, Parameter sind Delta und Artikel-ID. */
+    private static final String SQL_UPDATE = "UPDATE ARTIKEL SET AUFRUFE = AUFRUFE + ? WHERE ID = ?";
+
+    /** SQL-Befehl für Eintrag im Änderungsprotokoll, Parameter sind Artikel-ID und Knoten. */
+    private static final String SQL_PROTOKOLL =
+            "INSERT INTO AENDERUNG_PROTOKOLL (TABELLE, DATENSATZ_ID, ART, ZEITPUNKT, KNOTEN) " +
+            "VALUES ('ARTIKEL', ?, '" + ART_AUFRUFE + "', LOCALTIMESTAMP, ?)";
+
+    /** Bean für JDBC-Zugriff, weil Batch-Updates mit JPA umständlich wären. */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Für gemeinsame Transaktion von Update und Eintrag im Änderungsprotokoll. */
+    private final TransactionTemplate _transactionTemplate;
+
+    /** Kennung dieser Instanz für Änderungsprotokoll. */
+    private final Knoten _knoten;
+
+    /** Noch nicht in die Datenbank geschriebene Aufrufe pro Artikel-ID. */
+    private final Map<Long, LongAdder> _offeneAufrufe = new ConcurrentHashMap<>();
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public AufrufZaehler( JdbcTemplate jdbcTemplate,
+                          TransactionTemplate transactionTemplate,
+                          Knoten knoten ) {
+
+        _jdbcTemplate        = jdbcTemplate;
+        _transactionTemplate = transactionTemplate;
+        _knoten              = knoten;
+    }
+
+
+    /**
+     * Zählt einen Aufruf eines Artikels; blockiert nicht und greift nicht auf die
+     * Datenbank zu.
+     *
+     * @param event Event mit ID des aufgerufenen Artikels
+     */
+    @EventListener
+    public void onArtikelAufgerufen( ArtikelAufgerufenEvent event ) {
+
+        final long artikelId = event.artikelId();
+
+        LongAdder zaehler = _offeneAufrufe.get( artikelId );
+        if ( zaehler == null ) {
+
+            zaehler = _offeneAufrufe.computeIfAbsent( artikelId, k -> new LongAdder() );
+        }
+        zaehler.increment();
+    }
+
+
+    /**
+     * Liefert die aktuelle Anzahl der Aufrufe eines Artikels, also den Wert aus der
+     * Datenbank plus die noch nicht geschriebenen Aufrufe.
+     *
+     * @param artikel Artikel, wie er aus der Datenbank geladen wurde
+     *
+     * @return Anzahl der Aufrufe
+     */
+    public long holeAufrufe( ArtikelEntity artikel ) {
+
+        return holeAufrufe( artikel.getId(), artikel.getAufrufe() );
+    }
+
+
+    /**
+     * Liefert die aktuelle Anzahl der Aufrufe eines Artikels, für den nur die Spalte
+     * {@code AUFRUFE} gelesen wurde (z.B. beim Lesen der Artikelliste mit Cursor).
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param aufrufeDatenbank Wert der Spalte {@code AUFRUFE}
+     *
+     * @return Anzahl der Aufrufe
+     */
+    public long holeAufrufe( long artikelId, long aufrufeDatenbank ) {
+
+        final LongAdder zaehler = _offeneAufrufe.get( artikelId );
+
+        return zaehler == null ? aufrufeDatenbank : aufrufeDatenbank + zaehler.sum();
+    }
+
+
+    /**
+     * Schreibt die aufgelaufenen Aufrufe mit einem Batch-Update in die Datenbank.
+     * In derselben Transaktion wird pro Artikel ein Eintrag an das Änderungsprotokoll
+     * angehängt, damit z.B. das Replikat die Zählerstände übernimmt.
+     * <br><br>
+     *
+     * Wenn das Schreiben fehlschlägt, dann werden die Zählerstände wieder zurückgebucht,
+     * so dass sie beim nächsten Mal geschrieben werden.
+     */
+    @Scheduled( fixedDelayString = "${blog.aufrufe.flush-intervall-ms:5000}" )
+    @PreDestroy
+    public void schreibeAufrufe() {
+
+        final List<Object[]> batchArgs     = new ArrayList<>();
+        final List<Object[]> protokollArgs = new ArrayList<>();
+        for ( Map.Entry<Long, LongAdder> eintrag : _offeneAufrufe.entrySet() ) {
+
+            final long delta = eintrag.getValue().sumThenReset();
+            if ( delta > 0 ) {
+
+                batchArgs.add(     new Object[]{ delta, eintrag.getKey() } );
+                protokollArgs.add( new Object[]{ eintrag.getKey(), _knoten.getId() } );
+            }
+        }
+
+        if ( batchArgs.isEmpty() ) {
+
+            return;
+        }
+
+        try {
+
+            _transactionTemplate.executeWithoutResult( status -> {
+
+                _jdbcTemplate.batchUpdate( SQL_UPDATE   , batchArgs     );
+                _jdbcTemplate.batchUpdate( SQL_PROTOKOLL, protokollArgs );
+            });
+
+            LOG.debug( "Aufrufe für {} Artikel in Datenbank geschrieben.", batchArgs.size() );
+        }
+        catch ( DataAccessException ex ) {
+
+            LOG.error( "Aufrufe konnten nicht in Datenbank geschrieben werden, werden zurückgebucht: " +
+                       ex.getMessage() );
+
+            for ( Object[] args : batchArgs ) {
+
+                _offeneAufrufe.computeIfAbsent( (Long) args[ 1 ], k -> new LongAdder() )
+                              .add( (Long) args[ 0 ] );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import org.springframework.stereotype.Component;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelAuszug;
+
+
+/**
+ * Bean für die Berechnung von Auszug (Teaser), Anzahl Wörter und Lesezeit für den
+ * Plaintext-Inhalt von Artikeln. Wird beim Speichern aufgerufen, das Ergebnis steht in
+ * kleinen Spalten der Artikel-Tabelle, damit Artikelliste und Suchergebnis den Inhalt
+ * ({@code CLOB}) nicht lesen müssen.
+ */
+@Component
+public class AuszugBerechnung {
+
+    /** Maximale Länge des Auszugs ohne Auslassungszeichen, passt in die Spalte {@code AUSZUG}. */
+    public static final int MAX_ZEICHEN = 200;
+
+    /** Lesegeschwindigkeit für die Schätzung der Lesezeit. */
+    public static final int WOERTER_PRO_MINUTE = 200;
+
+    /** Wird an gekürzten Auszug angehängt. */
+    private static final String AUSLASSUNG = "…";
+
+
+    /**
+     * Berechnet Auszug, Anzahl Wörter und Lesezeit.
+     *
+     * @param text Plaintext-Inhalt eines Artikels, darf {@code null} sein
+     *
+     * @return Berechnete Werte; für leeren Text leerer Auszug, 0 Wörter und 0 Minuten
+     */
+    public ArtikelAuszug berechne( String text ) {
+
+        if ( text == null || text.isBlank() ) {
+
+            return new ArtikelAuszug( "", 0, 0 );
+        }
+
+        final String normalisiert = text.strip().replaceAll( "\\s+", " " );
+
+        int wortanzahl = 0;
+        for ( String wort : normalisiert.split( " " ) ) {
+
+            if ( wort.codePoints().anyMatch( Character::isLetterOrDigit ) ) { wortanzahl++; }
+        }
+
+        final int lesezeit = wortanzahl == 0 ? 0 : Math.max( 1, ( wortanzahl + WOERTER_PRO_MINUTE / 2 ) / WOERTER_PRO_MINUTE );
+
+        return new ArtikelAuszug( kuerzen( normalisiert ), wortanzahl, lesezeit );
+    }
+
+
+    /**
+     * Kürzt den Text an der letzten Wortgrenze vor {@link #MAX_ZEICHEN}.
+     */
+    private static String kuerzen( String text ) {
+
+        if ( text.length() <= MAX_ZEICHEN ) {
+
+            return text;
+        }
+
+        int ende = text.lastIndexOf( ' ', MAX_ZEICHEN );
+        if ( ende < MAX_ZEICHEN / 2 ) {
+
+            ende = MAX_ZEICHEN; // sehr langes Wort, z.B. URL
+        }
+        if ( Character.isHighSurrogate( text.charAt( ende - 1 ) ) ) {
+
+            ende--; // Zeichen außerhalb BMP (z.B. Emoji) nicht zerteilen
+        }
+        return text.substring( 0, ende ).stripTrailing() + AUSLASSUNG;
+    }
+
+}
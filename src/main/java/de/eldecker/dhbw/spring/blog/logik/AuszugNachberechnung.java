@@ -0,0 +1,186 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.db.AenderungEntity.ART_GESPEICHERT;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.model.ArtikelAuszug;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+
+
+/**
+ * Hintergrund-Job, der Auszug, Anzahl Wörter und Lesezeit für Artikel nachberechnet, die
+ * noch ohne diese Spalten gespeichert wurden (neue und geänderte Artikel bekommen sie schon
+ * beim Speichern, siehe {@link AuszugBerechnung}).
+ * <br><br>
+ *
+ * Pro Lauf werden höchstens {@code blog.auszug.nachberechnung-batch} Artikel bearbeitet, danach
+ * wird {@code blog.auszug.nachberechnung-ms} gewartet; der Start der Anwendung wird also nicht
+ * verzögert und die Datenbank nicht mit einem Schlag belastet. Sind alle Artikel bearbeitet,
+ * dann fragt der Job nicht mehr nach. Bis dahin zeigen Artikelliste und Suchergebnis für
+ * die restlichen Artikel keinen Teaser und keine Lesezeit an.
+ * <br><br>
+ *
+ * Die Werte werden mit einem gezielten {@code UPDATE} nur in ihre drei Spalten geschrieben und
+ * nicht über {@link Speicherdienst}: Der Artikel selbst ändert sich nicht, also wird die Version
+ * nicht erhöht (ein Autor, der den Artikel gerade bearbeitet, bekäme sonst beim Speichern einen
+ * Konflikt), und die {@code CLOB}-Spalten werden nicht neu geschrieben. Gelesen wird nur der
+ * Plaintext-Inhalt.
+ * <br><br>
+ *
+ * In derselben Transaktion wird wie beim Speichern ein Eintrag im Änderungsprotokoll angehängt,
+ * damit das Replikat die Zeile übernimmt und die anderen Instanzen ihre Caches aktualisieren;
+ * nach dem Commit wird ein {@link ArtikelGespeichertEvent} veröffentlicht, damit die Caches
+ * dieser Instanz (Fragmente, Artikelliste, Feeds) den Teaser zeigen.
+ */
+@Service
+public class AuszugNachberechnung {
+
+    private static final Logger LOG = LoggerFactory.getLogger( AuszugNachberechnung.class );
+
+    /** SQL-Abfrage für Plaintext eines Artikels, der noch keinen Auszug hat; Parameter ist Artikel-ID. */
+    private static final String SQL_INHALT = "SELECT INHALT_PLAINTEXT FROM ARTIKEL WHERE ID = ? AND WORTANZAHL IS NULL";
+
+    /**
+     * SQL-Befehl zum Schreiben der nachberechneten Werte, Parameter sind Auszug, Anzahl Wörter,
+     * Lesezeit und Artikel-ID; ändert nichts, wenn der Artikel inzwischen gespeichert wurde.
+     */
+    private static final String SQL_UPDATE =
+            "UPDATE ARTIKEL SET AUSZUG = ?, WORTANZAHL = ?, LESEZEIT = ? WHERE ID = ? AND WORTANZAHL IS NULL";
+
+    /** SQL-Befehl für Eintrag im Änderungsprotokoll, Parameter sind Artikel-ID und Knoten. */
+    private static final String SQL_PROTOKOLL =
+            "INSERT INTO AENDERUNG_PROTOKOLL (TABELLE, DATENSATZ_ID, ART, ZEITPUNKT, KNOTEN) " +
+            "VALUES ('ARTIKEL', ?, '" + ART_GESPEICHERT + "', LOCALTIMESTAMP, ?)";
+
+    /** Repo-Bean für Zugriff auf Tabelle mit Artikeln. */
+    private final ArtikelRepo _artikelRepo;
+
+    /** Bean für Berechnung der Werte. */
+    private final AuszugBerechnung _auszugBerechnung;
+
+    /** Bean für JDBC-Zugriff, um nur die berechneten Spalten zu lesen und zu schreiben. */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Für gemeinsame Transaktion von Update und Eintrag im Änderungsprotokoll. */
+    private final TransactionTemplate _transactionTemplate;
+
+    /** Kennung dieser Instanz für Änderungsprotokoll. */
+    private final Knoten _knoten;
+
+    /** Bean für Event nach dem Schreiben. */
+    private final ApplicationEventPublisher _eventPublisher;
+
+    /** Maximale Anzahl Artikel pro Lauf. */
+    private final int _batchGroesse;
+
+    /** Anzahl bisher nachberechneter Artikel. */
+    private int _anzahl = 0;
+
+    /** {@code true}, wenn alle Artikel bearbeitet sind. */
+    private volatile boolean _fertig = false;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public AuszugNachberechnung( ArtikelRepo artikelRepo,
+                                 AuszugBerechnung auszugBerechnung,
+                                 JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 Knoten knoten,
+                                 ApplicationEventPublisher eventPublisher,
+                                 @Value( "${blog.auszug.nachberechnung-batch:100}" ) int batchGroesse ) {
+
+        _artikelRepo         = artikelRepo;
+        _auszugBerechnung    = auszugBerechnung;
+        _jdbcTemplate        = jdbcTemplate;
+        _transactionTemplate = transactionTemplate;
+        _knoten              = knoten;
+        _eventPublisher      = eventPublisher;
+        _batchGroesse        = batchGroesse;
+    }
+
+
+    /**
+     * Berechnet die Werte für die nächsten Artikel ohne Auszug.
+     */
+    @Scheduled( initialDelayString = "${blog.auszug.nachberechnung-ms:5000}",
+                fixedDelayString   = "${blog.auszug.nachberechnung-ms:5000}" )
+    public void nachberechnen() {
+
+        if ( _fertig ) {
+
+            return;
+        }
+
+        final List<Long> artikelIds = _artikelRepo.holeIdsOhneAuszug( Limit.of( _batchGroesse ) );
+        if ( artikelIds.isEmpty() ) {
+
+            _fertig = true;
+            if ( _anzahl > 0 ) {
+
+                LOG.info( "Auszug, Anzahl Wörter und Lesezeit für {} Artikel nachberechnet.", _anzahl );
+            }
+            return;
+        }
+
+        for ( long artikelId : artikelIds ) {
+
+            if ( nachberechnen( artikelId ) ) {
+
+                _anzahl++;
+            }
+        }
+        LOG.debug( "Auszug für {} Artikel nachberechnet, bisher insgesamt {}.", artikelIds.size(), _anzahl );
+    }
+
+
+    /**
+     * Berechnet die Werte für einen Artikel und speichert sie zusammen mit einem Eintrag
+     * im Änderungsprotokoll.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @return {@code true} wenn gespeichert, {@code false} wenn Artikel nicht (mehr) gefunden
+     *         oder inzwischen schon berechnet
+     */
+    private boolean nachberechnen( long artikelId ) {
+
+        final List<String> inhalt = _jdbcTemplate.queryForList( SQL_INHALT, String.class, artikelId );
+        if ( inhalt.isEmpty() ) {
+
+            return false;
+        }
+
+        final ArtikelAuszug auszug = _auszugBerechnung.berechne( inhalt.getFirst() );
+
+        final Boolean gespeichert = _transactionTemplate.execute( status -> {
+
+            if ( _jdbcTemplate.update( SQL_UPDATE, auszug.auszug(), auszug.wortanzahl(), auszug.lesezeit(), artikelId ) != 1 ) {
+
+                return false;
+            }
+            _jdbcTemplate.update( SQL_PROTOKOLL, artikelId, _knoten.getId() );
+            _eventPublisher.publishEvent( new ArtikelGespeichertEvent( artikelId ) ); // Listener erst nach Commit
+
+            return true;
+        });
+
+        return Boolean.TRUE.equals( gespeichert );
+    }
+
+}
@@ -0,0 +1,691 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import de.eldecker.dhbw.spring.blog.model.BlogException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.JsonNodeFactory;
+import tools.jackson.databind.node.ObjectNode;
+
+
+/**
+ * Dokument bzw. Änderung im <i>Delta</i>-Format von quilljs mit den Operationen für
+ * <i>Operational Transformation</i> (OT), die für die gemeinsame Bearbeitung im Editor
+ * auf dem Server benötigt werden:
+ * <ul>
+ * <li>{@link #verketten(Delta)}: zwei aufeinanderfolgende Änderungen zu einer zusammenfassen
+ *     bzw. eine Änderung auf ein Dokument anwenden (in quilljs {@code compose}).</li>
+ * <li>{@link #transformieren(Delta, boolean)}: eine gleichzeitig auf demselben Stand
+ *     erstellte Änderung so anpassen, dass sie nach dieser Änderung angewendet werden kann
+ *     (in quilljs {@code transform}).</li>
+ * </ul>
+ * Die Implementierung folgt der Bibliothek
+ * <a href="https://github.com/slab/delta" target="_blank">quill-delta</a>, damit Server und
+ * Browser (dort {@code Quill.import("delta")}) bei der Transformation zum gleichen Ergebnis
+ * kommen. Nicht unterstützt wird {@code retain} mit Objekt statt Länge (nur für eigene
+ * Embed-Formate relevant).
+ * <br><br>
+ *
+ * Objekte dieser Klasse sind nach der Erzeugung unveränderlich.
+ */
+public final class Delta {
+
+    /** Länge einer Operation nach dem Ende eines Deltas (implizites {@code retain}). */
+    private static final int UNENDLICH = Integer.MAX_VALUE;
+
+    /** Operationen in Reihenfolge, normalisiert (siehe {@link #anhaengen(Operation)}). */
+    private final List<Operation> _operationen = new ArrayList<>();
+
+
+    /**
+     * Eine Operation eines Deltas; genau eines von {@code text}/{@code objekt} (Einfügen),
+     * {@code retain} (Beibehalten) oder {@code delete} (Löschen) ist gesetzt.
+     *
+     * @param text Eingefügter Text oder {@code null}
+     *
+     * @param objekt Eingefügtes Objekt (z.B. Bild), hat Länge 1, oder {@code null}
+     *
+     * @param retain Anzahl beibehaltener Zeichen oder 0
+     *
+     * @param delete Anzahl gelöschter Zeichen oder 0
+     *
+     * @param attribute Formatierung (z.B. {@code bold}) oder {@code null}; ein Wert
+     *                  {@code null} bei {@code retain} entfernt die Formatierung
+     */
+    private record Operation( String                text,
+                              JsonNode              objekt,
+                              int                   retain,
+                              int                   delete,
+                              Map<String, JsonNode> attribute
+                            ) {
+
+        boolean istEinfuegen() {
+
+            return text != null || objekt != null;
+        }
+
+        boolean istLoeschen() {
+
+            return delete > 0;
+        }
+
+        int laenge() {
+
+            if ( delete > 0 ) { return delete; }
+            if ( retain > 0 ) { return retain; }
+
+            return text != null ? text.length() : 1;
+        }
+    }
+
+
+    /**
+     * Iterator über die Operationen eines Deltas, der Operationen auch teilweise liefern kann.
+     */
+    private static final class Iterator {
+
+        private final List<Operation> _ops;
+
+        private int _index  = 0;
+
+        private int _offset = 0;
+
+
+        Iterator( List<Operation> ops ) {
+
+            _ops = ops;
+        }
+
+        boolean hatNaechste() {
+
+            return laengeNaechste() < UNENDLICH;
+        }
+
+        int laengeNaechste() {
+
+            return _index < _ops.size() ? _ops.get( _index ).laenge() - _offset : UNENDLICH;
+        }
+
+        /** Nach der letzten Operation wird "retain" angenommen. */
+        boolean naechsteIstEinfuegen() {
+
+            return _index < _ops.size() && _ops.get( _index ).istEinfuegen();
+        }
+
+        boolean naechsteIstLoeschen() {
+
+            return _index < _ops.size() && _ops.get( _index ).istLoeschen();
+        }
+
+        Operation naechste() {
+
+            return naechste( UNENDLICH );
+        }
+
+        /**
+         * Liefert die nächste Operation, aber höchstens {@code laenge} Zeichen davon.
+         */
+        Operation naechste( int laenge ) {
+
+            if ( _index >= _ops.size() ) {
+
+                return new Operation( null, null, UNENDLICH, 0, null );
+            }
+
+            final Operation op     = _ops.get( _index );
+            final int       offset = _offset;
+            final int       rest   = op.laenge() - offset;
+            if ( laenge >= rest ) {
+
+                laenge  = rest;
+                _index++;
+                _offset = 0;
+
+            } else {
+
+                _offset += laenge;
+            }
+
+            if ( op.istLoeschen() ) {
+
+                return new Operation( null, null, 0, laenge, null );
+            }
+            if ( op.retain() > 0 ) {
+
+                return new Operation( null, null, laenge, 0, op.attribute() );
+            }
+            if ( op.text() != null ) {
+
+                return new Operation( op.text().substring( offset, offset + laenge ), null, 0, 0, op.attribute() );
+            }
+            return op; // Objekt, Länge 1
+        }
+
+        List<Operation> rest() {
+
+            final List<Operation> ergebnis = new ArrayList<>();
+            while ( hatNaechste() ) {
+
+                ergebnis.add( naechste() );
+            }
+            return ergebnis;
+        }
+    }
+
+
+    /**
+     * Konstruktor für leeres Delta.
+     */
+    public Delta() {}
+
+
+    /**
+     * Leeres Dokument, wie es quilljs erzeugt (nur ein Zeilenumbruch).
+     *
+     * @return Neues Delta
+     */
+    public static Delta leeresDokument() {
+
+        final Delta delta = new Delta();
+        delta.anhaengen( new Operation( "\n", null, 0, 0, null ) );
+        return delta;
+    }
+
+
+    /**
+     * Erzeugt Delta aus JSON, entweder Objekt mit Array {@code ops} (wie von
+     * {@code quill.getContents()}) oder direkt der Array.
+     *
+     * @param json JSON-Knoten
+     *
+     * @return Delta, normalisiert
+     *
+     * @throws BlogException JSON ist kein gültiges Delta
+     */
+    public static Delta ausJson( JsonNode json ) throws BlogException {
+
+        final JsonNode ops = json != null && json.isObject() ? json.get( "ops" ) : json;
+        if ( ops == null || !ops.isArray() ) {
+
+            throw new BlogException( "Delta enthält keinen Array \"ops\"." );
+        }
+
+        final Delta delta = new Delta();
+        for ( JsonNode op : ops.values() ) {
+
+            if ( !op.isObject() ) {
+
+                throw new BlogException( "Operation in Delta ist kein Objekt: " + op );
+            }
+
+            final Map<String, JsonNode> attribute = leseAttribute( op.get( "attributes" ) );
+            final JsonNode              insert    = op.get( "insert" );
+            final JsonNode              retain    = op.get( "retain" );
+            final JsonNode              delete    = op.get( "delete" );
+
+            if ( insert != null && insert.isString() ) {
+
+                if ( !insert.stringValue().isEmpty() ) {
+
+                    delta.anhaengen( new Operation( insert.stringValue(), null, 0, 0, attribute ) );
+                }
+
+            } else if ( insert != null && insert.isObject() ) {
+
+                delta.anhaengen( new Operation( null, insert, 0, 0, attribute ) );
+
+            } else if ( retain != null && retain.isIntegralNumber() && retain.canConvertToInt() ) {
+
+                delta.beibehalten( retain.intValue(), attribute );
+
+            } else if ( delete != null && delete.isIntegralNumber() && delete.canConvertToInt() ) {
+
+                delta.loeschen( delete.intValue() );
+
+            } else {
+
+                throw new BlogException( "Ungültige Operation in Delta: " + op );
+            }
+        }
+
+        return delta;
+    }
+
+
+    /**
+     * Liefert das Delta als JSON-Objekt mit Array {@code ops}, wie es quilljs erwartet.
+     *
+     * @return JSON-Objekt
+     */
+    public ObjectNode alsJson() {
+
+        final ObjectNode json = JsonNodeFactory.instance.objectNode();
+        final ArrayNode  ops  = json.putArray( "ops" );
+        for ( Operation op : _operationen ) {
+
+            final ObjectNode opJson = ops.addObject();
+            if ( op.text() != null ) {
+
+                opJson.put( "insert", op.text() );
+
+            } else if ( op.objekt() != null ) {
+
+                opJson.set( "insert", op.objekt() );
+
+            } else if ( op.retain() > 0 ) {
+
+                opJson.put( "retain", op.retain() );
+
+            } else {
+
+                opJson.put( "delete", op.delete() );
+            }
+
+            if ( op.attribute() != null ) {
+
+                final ObjectNode attributeJson = opJson.putObject( "attributes" );
+                op.attribute().forEach( attributeJson::set );
+            }
+        }
+
+        return json;
+    }
+
+
+    /**
+     * Länge des Dokuments, das sich ergibt, wenn dieses Delta nur aus Einfügungen besteht.
+     *
+     * @return Anzahl Zeichen (Objekte zählen als ein Zeichen)
+     */
+    public int laenge() {
+
+        int summe = 0;
+        for ( Operation op : _operationen ) {
+
+            summe += op.laenge();
+        }
+        return summe;
+    }
+
+
+    /**
+     * Länge des Dokuments, das dieses Delta mindestens voraussetzt, also die Summe aller
+     * beibehaltenen und gelöschten Zeichen.
+     *
+     * @return Anzahl Zeichen
+     */
+    public int basisLaenge() {
+
+        int summe = 0;
+        for ( Operation op : _operationen ) {
+
+            if ( !op.istEinfuegen() ) {
+
+                summe += op.laenge();
+            }
+        }
+        return summe;
+    }
+
+
+    /**
+     * Prüft, ob das Delta nur aus Einfügungen besteht, also ein Dokument ist.
+     *
+     * @return {@code true} gdw. keine Operation {@code retain} oder {@code delete} enthalten ist
+     */
+    public boolean istDokument() {
+
+        return _operationen.stream().allMatch( Operation::istEinfuegen );
+    }
+
+
+    /**
+     * Prüft, ob das Delta keine Operation enthält, also nichts ändert.
+     *
+     * @return {@code true} gdw. leer
+     */
+    public boolean istLeer() {
+
+        return _operationen.isEmpty();
+    }
+
+
+    /**
+     * Fasst dieses Delta und das danach angewendete Delta {@code danach} zu einem Delta zusammen;
+     * ist dieses Delta ein Dokument, dann ist das Ergebnis das geänderte Dokument.
+     *
+     * @param danach Delta, das auf das Ergebnis dieses Deltas angewendet wird
+     *
+     * @return Neues Delta mit der Wirkung beider Deltas
+     */
+    public Delta verketten( Delta danach ) {
+
+        final Iterator diesesIter = new Iterator( _operationen );
+        final Iterator danachIter = new Iterator( danach._operationen );
+        final Delta    ergebnis   = new Delta();
+
+        // Einfügungen am Anfang, die "danach" nur beibehält, unverändert übernehmen
+        if ( !danach._operationen.isEmpty() ) {
+
+            final Operation erste = danach._operationen.get( 0 );
+            if ( erste.retain() > 0 && erste.attribute() == null ) {
+
+                int uebrig = erste.retain();
+                while ( diesesIter.naechsteIstEinfuegen() && diesesIter.laengeNaechste() <= uebrig ) {
+
+                    uebrig -= diesesIter.laengeNaechste();
+                    ergebnis._operationen.add( diesesIter.naechste() );
+                }
+                if ( erste.retain() - uebrig > 0 ) {
+
+                    danachIter.naechste( erste.retain() - uebrig );
+                }
+            }
+        }
+
+        while ( diesesIter.hatNaechste() || danachIter.hatNaechste() ) {
+
+            if ( danachIter.naechsteIstEinfuegen() ) {
+
+                ergebnis.anhaengen( danachIter.naechste() );
+
+            } else if ( diesesIter.naechsteIstLoeschen() ) {
+
+                ergebnis.anhaengen( diesesIter.naechste() );
+
+            } else {
+
+                final int       laenge    = Math.min( diesesIter.laengeNaechste(), danachIter.laengeNaechste() );
+                final Operation diesesOp  = diesesIter.naechste( laenge );
+                final Operation danachOp  = danachIter.naechste( laenge );
+
+                if ( danachOp.retain() > 0 ) {
+
+                    final boolean               beibehalten = diesesOp.retain() > 0;
+                    final Map<String, JsonNode> attribute   =
+                            verketteAttribute( diesesOp.attribute(), danachOp.attribute(), beibehalten );
+
+                    final Operation neu = beibehalten
+                                          ? new Operation( null, null, laenge, 0, attribute )
+                                          : new Operation( diesesOp.text(), diesesOp.objekt(), 0, 0, attribute );
+                    ergebnis.anhaengen( neu );
+
+                    // Rest von "danach" ändert nichts mehr: Rest von diesem Delta übernehmen
+                    if ( !danachIter.hatNaechste() &&
+                         ergebnis._operationen.get( ergebnis._operationen.size() - 1 ).equals( neu ) ) {
+
+                        for ( Operation op : diesesIter.rest() ) {
+
+                            ergebnis.anhaengen( op );
+                        }
+                        return ergebnis.abschneiden();
+                    }
+
+                } else if ( danachOp.istLoeschen() && diesesOp.retain() > 0 ) {
+
+                    ergebnis.anhaengen( danachOp );
+                }
+                // sonst löscht "danach" eine Einfügung dieses Deltas: beide entfallen
+            }
+        }
+
+        return ergebnis.abschneiden();
+    }
+
+
+    /**
+     * Transformiert das Delta {@code anderes}, das auf demselben Stand wie dieses Delta erstellt
+     * wurde, so dass es nach diesem Delta angewendet werden kann.
+     *
+     * @param anderes Gleichzeitig erstelltes Delta
+     *
+     * @param vorrang {@code true}, wenn dieses Delta als zuerst angewendet gilt, d.h. bei
+     *                Einfügungen an derselben Stelle steht der Text dieses Deltas vorne
+     *
+     * @return Transformiertes {@code anderes}
+     */
+    public Delta transformieren( Delta anderes, boolean vorrang ) {
+
+        final Iterator diesesIter  = new Iterator( _operationen );
+        final Iterator anderesIter = new Iterator( anderes._operationen );
+        final Delta    ergebnis    = new Delta();
+
+        while ( diesesIter.hatNaechste() || anderesIter.hatNaechste() ) {
+
+            if ( diesesIter.naechsteIstEinfuegen() && ( vorrang || !anderesIter.naechsteIstEinfuegen() ) ) {
+
+                ergebnis.beibehalten( diesesIter.naechste().laenge(), null );
+
+            } else if ( anderesIter.naechsteIstEinfuegen() ) {
+
+                ergebnis.anhaengen( anderesIter.naechste() );
+
+            } else {
+
+                final int       laenge    = Math.min( diesesIter.laengeNaechste(), anderesIter.laengeNaechste() );
+                final Operation diesesOp  = diesesIter.naechste( laenge );
+                final Operation anderesOp = anderesIter.naechste( laenge );
+
+                if ( diesesOp.istLoeschen() ) {
+
+                    continue; // schon gelöscht, "anderes" muss nichts mehr tun
+                }
+                if ( anderesOp.istLoeschen() ) {
+
+                    ergebnis.anhaengen( anderesOp );
+
+                } else {
+
+                    ergebnis.beibehalten( laenge,
+                                          transformiereAttribute( diesesOp.attribute(), anderesOp.attribute(), vorrang ) );
+                }
+            }
+        }
+
+        return ergebnis.abschneiden();
+    }
+
+
+    /**
+     * Fügt eine Operation hinzu und fasst sie dabei wenn möglich mit der letzten zusammen;
+     * Einfügungen werden vor eine Löschung an derselben Stelle gestellt.
+     *
+     * @param op Neue Operation
+     */
+    private void anhaengen( Operation op ) {
+
+        int index = _operationen.size();
+        if ( index > 0 ) {
+
+            Operation letzte = _operationen.get( index - 1 );
+            if ( op.istLoeschen() && letzte.istLoeschen() ) {
+
+                _operationen.set( index - 1, new Operation( null, null, 0, letzte.delete() + op.delete(), null ) );
+                return;
+            }
+
+            if ( letzte.istLoeschen() && op.istEinfuegen() ) {
+
+                index--;
+                if ( index == 0 ) {
+
+                    _operationen.add( 0, op );
+                    return;
+                }
+                letzte = _operationen.get( index - 1 );
+            }
+
+            if ( Objects.equals( op.attribute(), letzte.attribute() ) ) {
+
+                if ( op.text() != null && letzte.text() != null ) {
+
+                    _operationen.set( index - 1, new Operation( letzte.text() + op.text(), null, 0, 0, op.attribute() ) );
+                    return;
+                }
+                if ( op.retain() > 0 && letzte.retain() > 0 ) {
+
+                    final int summe = (int) Math.min( (long) letzte.retain() + op.retain(), UNENDLICH );
+                    _operationen.set( index - 1, new Operation( null, null, summe, 0, op.attribute() ) );
+                    return;
+                }
+            }
+        }
+
+        _operationen.add( index, op );
+    }
+
+
+    /**
+     * Hängt ein {@code retain} an, wenn {@code laenge} positiv ist.
+     */
+    private void beibehalten( int laenge, Map<String, JsonNode> attribute ) {
+
+        if ( laenge > 0 ) {
+
+            anhaengen( new Operation( null, null, laenge, 0, attribute ) );
+        }
+    }
+
+
+    /**
+     * Hängt ein {@code delete} an, wenn {@code laenge} positiv ist.
+     */
+    private void loeschen( int laenge ) {
+
+        if ( laenge > 0 ) {
+
+            anhaengen( new Operation( null, null, 0, laenge, null ) );
+        }
+    }
+
+
+    /**
+     * Entfernt ein {@code retain} ohne Attribute am Ende, weil es nichts bewirkt.
+     *
+     * @return Dieses Objekt
+     */
+    private Delta abschneiden() {
+
+        if ( !_operationen.isEmpty() ) {
+
+            final Operation letzte = _operationen.get( _operationen.size() - 1 );
+            if ( letzte.retain() > 0 && letzte.attribute() == null ) {
+
+                _operationen.remove( _operationen.size() - 1 );
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * Attribute einer Operation lesen.
+     *
+     * @return Unveränderliche Map oder {@code null}, wenn keine Attribute vorhanden sind
+     */
+    private static Map<String, JsonNode> leseAttribute( JsonNode json ) throws BlogException {
+
+        if ( json == null || json.isNull() ) {
+
+            return null;
+        }
+        if ( !json.isObject() ) {
+
+            throw new BlogException( "Attribute in Delta sind kein Objekt: " + json );
+        }
+
+        final Map<String, JsonNode> attribute = new LinkedHashMap<>();
+        for ( Map.Entry<String, JsonNode> eintrag : json.properties() ) {
+
+            attribute.put( eintrag.getKey(), eintrag.getValue() );
+        }
+        return attribute.isEmpty() ? null : Collections.unmodifiableMap( attribute );
+    }
+
+
+    /**
+     * Attribute zusammenfassen, die Attribute von {@code b} haben Vorrang.
+     *
+     * @param nullBehalten {@code true}, wenn {@code null}-Werte (Formatierung entfernen)
+     *                     erhalten bleiben sollen, weil das Ergebnis ein {@code retain} ist
+     */
+    private static Map<String, JsonNode> verketteAttribute( Map<String, JsonNode> a,
+                                                            Map<String, JsonNode> b,
+                                                            boolean nullBehalten ) {
+
+        final Map<String, JsonNode> ergebnis = new LinkedHashMap<>();
+        if ( b != null ) {
+
+            b.forEach( ( schluessel, wert ) -> {
+
+                if ( nullBehalten || !wert.isNull() ) {
+
+                    ergebnis.put( schluessel, wert );
+                }
+            });
+        }
+        if ( a != null ) {
+
+            a.forEach( ( schluessel, wert ) -> {
+
+                if ( b == null || !b.containsKey( schluessel ) ) {
+
+                    ergebnis.put( schluessel, wert );
+                }
+            });
+        }
+        return ergebnis.isEmpty() ? null : Collections.unmodifiableMap( ergebnis );
+    }
+
+
+    /**
+     * Attribute von {@code b} gegen gleichzeitig gesetzte Attribute {@code a} transformieren:
+     * bei Vorrang von {@code a} entfallen die Attribute von {@code b}, die auch {@code a} setzt.
+     */
+    private static Map<String, JsonNode> transformiereAttribute( Map<String, JsonNode> a,
+                                                                 Map<String, JsonNode> b,
+                                                                 boolean vorrang ) {
+
+        if ( a == null ) { return b; }
+        if ( b == null ) { return null; }
+        if ( !vorrang  ) { return b; }
+
+        final Map<String, JsonNode> ergebnis = new LinkedHashMap<>();
+        b.forEach( ( schluessel, wert ) -> {
+
+            if ( !a.containsKey( schluessel ) ) {
+
+                ergebnis.put( schluessel, wert );
+            }
+        });
+        return ergebnis.isEmpty() ? null : Collections.unmodifiableMap( ergebnis );
+    }
+
+
+    @Override
+    public boolean equals( Object obj ) {
+
+        return obj instanceof Delta anderes && _operationen.equals( anderes._operationen );
+    }
+
+
+    @Override
+    public int hashCode() {
+
+        return _operationen.hashCode();
+    }
+
+
+    @Override
+    public String toString() {
+
+        return alsJson().toString();
+    }
+
+}
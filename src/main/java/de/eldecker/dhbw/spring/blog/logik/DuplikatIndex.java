@@ -0,0 +1,307 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.db.ArtikelSignaturProjektion;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.DuplikatPaar;
+
+
+/**
+ * In-Memory-Index der SimHash-Fingerabdrücke aller Artikel für die Erkennung
+ * von Beinahe-Duplikaten.
+ * <br><br>
+ *
+ * Der 64-Bit-Fingerabdruck wird in {@link #ANZAHL_BLOECKE} Blöcke zu je 16 Bit
+ * aufgeteilt, für jeden Block gibt es eine Hash-Tabelle von Blockwert auf Artikel-IDs.
+ * Unterscheiden sich zwei Fingerabdrücke in höchstens {@link #MAX_DISTANZ} Bits,
+ * dann muss nach dem Schubfachprinzip mindestens ein Block identisch sein. Für eine
+ * Suche müssen also nur die Artikel in vier Buckets verglichen werden, nicht alle
+ * Artikel.
+ */
+@Service
+public class DuplikatIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger( DuplikatIndex.class );
+
+    /** Maximale Hamming-Distanz, bis zu der zwei Artikel als Beinahe-Duplikate gelten. */
+    public static final int MAX_DISTANZ = 3;
+
+    /** Anzahl der Blöcke, muss größer als {@link #MAX_DISTANZ} sein. */
+    private static final int ANZAHL_BLOECKE = MAX_DISTANZ + 1;
+
+    /** Anzahl Bits pro Block. */
+    private static final int BITS_PRO_BLOCK = Long.SIZE / ANZAHL_BLOECKE;
+
+    /** SQL-Abfrage für Plaintext eines Artikels ohne Fingerabdruck, Parameter ist Artikel-ID. */
+    private static final String SQL_INHALT = "SELECT INHALT_PLAINTEXT FROM ARTIKEL WHERE ID = ? AND SIMHASH IS NULL";
+
+    /**
+     * SQL-Befehl zum Schreiben eines nachberechneten Fingerabdrucks, Parameter sind Fingerabdruck
+     * und Artikel-ID; ändert nichts, wenn der Artikel inzwischen gespeichert wurde.
+     */
+    private static final String SQL_UPDATE = "UPDATE ARTIKEL SET SIMHASH = ? WHERE ID = ? AND SIMHASH IS NULL";
+
+    /** Bean für Berechnung der Fingerabdrücke. */
+    private final SimHashBerechnung _simHash;
+
+    /** Repo-Bean für Zugriff auf Tabelle mit Artikeln. */
+    private final ArtikelRepo _artikelRepo;
+
+    /**
+     * Bean für JDBC-Zugriff: Nachberechnete Fingerabdrücke werden nur in ihre Spalte geschrieben,
+     * ohne Version zu erhöhen und ohne Eintrag im Änderungsprotokoll.
+     */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Fingerabdrücke aller indizierten Artikel, Schlüssel ist Artikel-ID. */
+    private final Map<Long, Long> _fingerabdruecke = new ConcurrentHashMap<>();
+
+    /** Eine Tabelle pro Block: Blockwert auf Menge der Artikel-IDs. */
+    private final List<Map<Integer, Set<Long>>> _blockTabellen = new ArrayList<>( ANZAHL_BLOECKE );
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public DuplikatIndex( SimHashBerechnung simHash,
+                          ArtikelRepo artikelRepo,
+                          JdbcTemplate jdbcTemplate ) {
+
+        _simHash      = simHash;
+        _artikelRepo  = artikelRepo;
+        _jdbcTemplate = jdbcTemplate;
+
+        for ( int i = 0; i < ANZAHL_BLOECKE; i++ ) {
+
+            _blockTabellen.add( new ConcurrentHashMap<>() );
+        }
+    }
+
+
+    /**
+     * Baut den Index nach dem Start der Anwendung auf. Für Artikel ohne Fingerabdruck
+     * wird dieser nachträglich berechnet und gespeichert.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public void indexAufbauen() {
+
+        int nachberechnet = 0;
+        for ( ArtikelSignaturProjektion projektion : _artikelRepo.holeAlleSignaturen() ) {
+
+            Long fingerabdruck = projektion.getSimHash();
+            if ( fingerabdruck == null ) {
+
+                fingerabdruck = fingerabdruckNachberechnen( projektion.getId() );
+                nachberechnet++;
+            }
+            eintragen( projektion.getId(), fingerabdruck );
+        }
+
+        LOG.info( "SimHash-Index aufgebaut: {} Artikel, {} Fingerabdrücke nachberechnet.",
+                  _fingerabdruecke.size(), nachberechnet );
+    }
+
+
+    /**
+     * Aktualisiert den Index für einen neu angelegten oder geänderten Artikel.
+     *
+     * @param event Event mit ID des gespeicherten Artikels
+     */
+    @TransactionalEventListener( fallbackExecution = true )
+    public void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+        final long artikelId = event.artikelId();
+
+        final Optional<ArtikelSignaturProjektion> projektionOptional = _artikelRepo.holeSignatur( artikelId );
+        if ( projektionOptional.isEmpty() ) {
+
+            austragen( artikelId );
+        } else {
+
+            eintragen( artikelId, projektionOptional.get().getSimHash() );
+        }
+    }
+
+
+    /**
+     * Sucht Beinahe-Duplikate für einen Fingerabdruck.
+     *
+     * @param fingerabdruck SimHash-Fingerabdruck eines (evtl. noch nicht gespeicherten) Artikels
+     *
+     * @param eigeneId ID des Artikels selbst, der nicht als Duplikat von sich selbst
+     *                 gemeldet werden soll; {@code -1} für neuen Artikel
+     *
+     * @return Menge der IDs von Artikeln mit Hamming-Distanz höchstens {@link #MAX_DISTANZ},
+     *         aufsteigend sortiert; kann leer sein
+     */
+    public Set<Long> findeDuplikate( long fingerabdruck, long eigeneId ) {
+
+        final Set<Long> ergebnis = new TreeSet<>();
+        if ( fingerabdruck == 0L ) {
+
+            return ergebnis; // leerer Text
+        }
+
+        for ( int block = 0; block < ANZAHL_BLOECKE; block++ ) {
+
+            final Set<Long> bucket = _blockTabellen.get( block ).get( blockWert( fingerabdruck, block ) );
+            if ( bucket == null ) { continue; }
+
+            for ( long kandidatId : bucket ) {
+
+                if ( kandidatId == eigeneId ) { continue; }
+
+                final Long kandidatFingerabdruck = _fingerabdruecke.get( kandidatId );
+                if ( kandidatFingerabdruck != null &&
+                     _simHash.hammingDistanz( fingerabdruck, kandidatFingerabdruck ) <= MAX_DISTANZ ) {
+
+                    ergebnis.add( kandidatId );
+                }
+            }
+        }
+        return ergebnis;
+    }
+
+
+    /**
+     * Batch-Modus: Durchsucht das gesamte Archiv nach Paaren von Beinahe-Duplikaten.
+     * Pro Artikel wird {@link #findeDuplikate(long, long)} aufgerufen, der Aufwand ist
+     * also linear in der Anzahl der Artikel und nicht quadratisch.
+     *
+     * @return Liste aller Paare, sortiert nach aufsteigender Distanz; jedes Paar
+     *         ist nur einmal enthalten
+     */
+    public List<DuplikatPaar> findeAlleDuplikatPaare() {
+
+        final List<DuplikatPaar> ergebnis = new ArrayList<>();
+        for ( Map.Entry<Long, Long> eintrag : _fingerabdruecke.entrySet() ) {
+
+            final long artikelId     = eintrag.getKey();
+            final long fingerabdruck = eintrag.getValue();
+
+            for ( long andereId : findeDuplikate( fingerabdruck, artikelId ) ) {
+
+                if ( andereId < artikelId ) { continue; } // Paar nur einmal aufnehmen
+
+                final Long andererFingerabdruck = _fingerabdruecke.get( andereId );
+                if ( andererFingerabdruck == null ) { continue; }
+
+                final int distanz = _simHash.hammingDistanz( fingerabdruck, andererFingerabdruck );
+                ergebnis.add( new DuplikatPaar( artikelId, andereId, distanz ) );
+            }
+        }
+
+        ergebnis.sort( Comparator.comparingInt( DuplikatPaar::distanz )
+                                 .thenComparingLong( DuplikatPaar::artikelId1 ) );
+        return ergebnis;
+    }
+
+
+    /**
+     * Trägt den Fingerabdruck eines Artikels ein, ein evtl. alter Eintrag wird entfernt.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param fingerabdruck Fingerabdruck; bei {@code null} oder {@code 0} (leerer Text)
+     *                      wird der Artikel nur ausgetragen
+     */
+    private synchronized void eintragen( long artikelId, Long fingerabdruck ) {
+
+        austragen( artikelId );
+
+        if ( fingerabdruck == null || fingerabdruck == 0L ) {
+
+            return;
+        }
+
+        for ( int block = 0; block < ANZAHL_BLOECKE; block++ ) {
+
+            _blockTabellen.get( block )
+                          .computeIfAbsent( blockWert( fingerabdruck, block ), k -> ConcurrentHashMap.newKeySet() )
+                          .add( artikelId );
+        }
+        _fingerabdruecke.put( artikelId, fingerabdruck );
+    }
+
+
+    /**
+     * Entfernt einen Artikel aus dem Index.
+     *
+     * @param artikelId ID des Artikels
+     */
+    private synchronized void austragen( long artikelId ) {
+
+        final Long alt = _fingerabdruecke.remove( artikelId );
+        if ( alt == null ) {
+
+            return;
+        }
+
+        for ( int block = 0; block < ANZAHL_BLOECKE; block++ ) {
+
+            _blockTabellen.get( block ).computeIfPresent( blockWert( alt, block ), (k, bucket) -> {
+
+                bucket.remove( artikelId );
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+
+    /**
+     * Liefert den Wert eines 16-Bit-Blocks eines Fingerabdrucks.
+     *
+     * @param fingerabdruck 64-Bit-Fingerabdruck
+     *
+     * @param block Nummer des Blocks (0 bis {@code ANZAHL_BLOECKE-1})
+     *
+     * @return Blockwert
+     */
+    private static int blockWert( long fingerabdruck, int block ) {
+
+        return (int) ( ( fingerabdruck >>> ( block * BITS_PRO_BLOCK ) ) & 0xFFFFL );
+    }
+
+
+    /**
+     * Berechnet den Fingerabdruck für einen Artikel, der noch keinen hat, und speichert ihn.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @return Berechneter Fingerabdruck, oder {@code null} wenn Artikel nicht gefunden oder
+     *         inzwischen mit Fingerabdruck gespeichert
+     */
+    private Long fingerabdruckNachberechnen( long artikelId ) {
+
+        final List<String> inhalt = _jdbcTemplate.queryForList( SQL_INHALT, String.class, artikelId );
+        if ( inhalt.isEmpty() ) {
+
+            return null;
+        }
+
+        final long fingerabdruck = _simHash.berechneFingerabdruck( inhalt.getFirst() );
+        _jdbcTemplate.update( SQL_UPDATE, fingerabdruck, artikelId );
+
+        return fingerabdruck;
+    }
+
+}
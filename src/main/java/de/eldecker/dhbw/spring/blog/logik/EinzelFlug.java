@@ -0,0 +1,182 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Zusammenfassen gleichzeitiger identischer Berechnungen (<i>Single Flight</i>, <i>Request
+ * Coalescing</i>): Wird für einen Schlüssel eine Berechnung angefordert, während für denselben
+ * Schlüssel schon eine läuft, dann wird nicht noch einmal gerechnet, sondern auf das Ergebnis
+ * der laufenden Berechnung gewartet. Sobald die Berechnung fertig ist, wird der Schlüssel
+ * wieder freigegeben (noch bevor das Ergebnis an die Wartenden geht); es wird also nichts gecacht.
+ * <br><br>
+ *
+ * Wer sich einer laufenden Berechnung anschließt, bekommt deren Ergebnis, auch wenn sie vor
+ * einer Änderung der Daten gestartet wurde. Damit z.B. ein Autor nach dem Speichern seine
+ * Änderung sieht, muss nach dem Commit {@link #vergessen(Object)} aufgerufen werden; danach
+ * startet der nächste Aufruf eine neue Berechnung.
+ * <br><br>
+ *
+ * Die Anzahl der zusammengefassten Aufrufe wird als Metrik {@code blog.einzelflug.zusammengefasst}
+ * mit dem Namen der Instanz als Tag {@code name} gezählt.
+ *
+ * @param <K> Typ Schlüssel, muss {@code equals()} und {@code hashCode()} implementieren
+ *
+ * @param <V> Typ Ergebnis
+ */
+public class EinzelFlug<K, V> {
+
+    /** Laufende Berechnungen. */
+    private final Map<K, CompletableFuture<V>> _laufend = new ConcurrentHashMap<>();
+
+    /** Zähler für Aufrufe, die auf eine laufende Berechnung gewartet haben. */
+    private final Counter _zusammengefasstZaehler;
+
+
+    /**
+     * Konstruktor.
+     *
+     * @param name Name für Metrik, z.B. {@code artikel-laden}
+     *
+     * @param meterRegistry Registry für Metrik
+     */
+    public EinzelFlug( String name, MeterRegistry meterRegistry ) {
+
+        _zusammengefasstZaehler = Counter.builder( "blog.einzelflug.zusammengefasst" )
+                                         .description( "Anzahl Aufrufe, die das Ergebnis einer laufenden Berechnung übernommen haben" )
+                                         .tag( "name", name )
+                                         .register( meterRegistry );
+    }
+
+
+    /**
+     * Führt {@code berechnung} aus oder wartet auf das Ergebnis einer laufenden Berechnung
+     * mit demselben Schlüssel. Eine Exception der Berechnung wird an alle Wartenden
+     * weitergegeben.
+     *
+     * @param schluessel Schlüssel, der die Berechnung identifiziert
+     *
+     * @param berechnung Berechnung, wird nur ausgeführt, wenn keine für {@code schluessel} läuft
+     *
+     * @return Ergebnis der Berechnung (kann von allen Wartenden gemeinsam verwendet werden,
+     *         sollte also nicht verändert werden)
+     */
+    public V ausfuehren( K schluessel, Supplier<V> berechnung ) {
+
+        final CompletableFuture<V> neu     = new CompletableFuture<>();
+        final CompletableFuture<V> laufend = _laufend.putIfAbsent( schluessel, neu );
+        if ( laufend != null ) {
+
+            _zusammengefasstZaehler.increment();
+            return warten( laufend );
+        }
+
+        try {
+
+            final V ergebnis = berechnung.get();
+            _laufend.remove( schluessel, neu );
+            neu.complete( ergebnis );
+            return ergebnis;
+        }
+        catch ( RuntimeException | Error ex ) {
+
+            _laufend.remove( schluessel, neu );
+            neu.completeExceptionally( ex );
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Wie {@link #ausfuehren(Object, Supplier)}, aber die Berechnung läuft auf {@code executor}
+     * und der Aufrufer bekommt sofort ein Future; damit kann der Aufrufer nach einer gewissen
+     * Zeit aufhören zu warten, während die Berechnung weiterläuft.
+     *
+     * @param schluessel Schlüssel, der die Berechnung identifiziert
+     *
+     * @param berechnung Berechnung, wird nur gestartet, wenn keine für {@code schluessel} läuft
+     *
+     * @param executor Executor für die Berechnung
+     *
+     * @return Future mit Ergebnis der neuen oder der schon laufenden Berechnung
+     */
+    public CompletableFuture<V> ausfuehrenAsynchron( K schluessel, Supplier<V> berechnung, Executor executor ) {
+
+        final CompletableFuture<V> neu     = new CompletableFuture<>();
+        final CompletableFuture<V> laufend = _laufend.putIfAbsent( schluessel, neu );
+        if ( laufend != null ) {
+
+            _zusammengefasstZaehler.increment();
+            return laufend;
+        }
+
+        try {
+
+            executor.execute( () -> {
+
+                try {
+
+                    final V ergebnis = berechnung.get();
+                    _laufend.remove( schluessel, neu );
+                    neu.complete( ergebnis );
+                }
+                catch ( Throwable ex ) {
+
+                    _laufend.remove( schluessel, neu );
+                    neu.completeExceptionally( ex );
+                }
+            });
+        }
+        catch ( RuntimeException ex ) { // z.B. RejectedExecutionException
+
+            _laufend.remove( schluessel, neu );
+            neu.completeExceptionally( ex );
+        }
+
+        return neu;
+    }
+
+
+    /**
+     * Gibt den Schlüssel frei, ohne die laufende Berechnung abzubrechen: Wer schon wartet,
+     * bekommt deren Ergebnis, der nächste Aufruf startet eine neue Berechnung. Aufrufen,
+     * nachdem sich die Daten für den Schlüssel geändert haben.
+     *
+     * @param schluessel Schlüssel, für den evtl. eine Berechnung läuft
+     */
+    public void vergessen( K schluessel ) {
+
+        _laufend.remove( schluessel );
+    }
+
+
+    /**
+     * Wartet auf das Ergebnis einer laufenden Berechnung.
+     *
+     * @param laufend Future der laufenden Berechnung
+     *
+     * @return Ergebnis
+     */
+    private V warten( CompletableFuture<V> laufend ) {
+
+        try {
+
+            return laufend.join();
+        }
+        catch ( CompletionException ex ) {
+
+            if ( ex.getCause() instanceof RuntimeException rex ) { throw rex; }
+            if ( ex.getCause() instanceof Error err            ) { throw err; }
+            throw ex;
+        }
+    }
+
+}
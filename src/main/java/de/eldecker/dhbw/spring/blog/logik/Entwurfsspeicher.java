@@ -0,0 +1,265 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.time.LocalDateTime.now;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.db.EntwurfEntity;
+import de.eldecker.dhbw.spring.blog.model.ArtikelDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Speicher für Entwürfe von Artikeln (Tabelle {@code ENTWURF}, siehe {@link EntwurfEntity}).
+ * <br><br>
+ *
+ * Der Editor speichert während des Schreibens alle paar Sekunden automatisch; würde jede
+ * dieser Auto-Speicherungen sofort geschrieben, dann hätte die Datenbank viele Schreibvorgänge,
+ * von denen die meisten gleich wieder überschrieben werden. Deshalb wird pro Autor und Artikel
+ * nur der letzte Stand im Speicher gehalten (ältere, noch nicht geschriebene Stände werden
+ * verworfen) und alle {@code blog.entwuerfe.flush-intervall-ms} mit einem Batch-{@code MERGE}
+ * geschrieben, beim Herunterfahren auch.
+ * <br><br>
+ *
+ * Entwürfe lösen kein {@link de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent}
+ * aus und werden nicht im Änderungsprotokoll eingetragen, d.h. die Caches und Indizes der
+ * veröffentlichten Artikel bleiben unberührt. Erst beim Veröffentlichen wird der Entwurf
+ * über den normalen Speicherweg in die Tabelle {@code ARTIKEL} übernommen und danach gelöscht.
+ * <br><br>
+ *
+ * Die Anzahl der verworfenen Zwischenstände wird als Metrik {@code blog.entwuerfe.zusammengefasst}
+ * gezählt.
+ */
+@Service
+public class Entwurfsspeicher {
+
+    private static final Logger LOG = LoggerFactory.getLogger( Entwurfsspeicher.class );
+
+    /** Artikel-ID für Entwurf eines noch nicht angelegten Artikels. */
+    public static final long NEUER_ARTIKEL = -1;
+
+    /** SQL für Lesen eines Entwurfs, Parameter sind Autor und Artikel-ID. */
+    private static final String SQL_LESEN =
+            "SELECT TITEL, INHALT_DELTA, INHALT_HTML, INHALT_PLAINTEXT, TAGS FROM ENTWURF WHERE AUTOR = ? AND ARTIKEL_ID = ?";
+
+    /** SQL für Anlegen oder Überschreiben eines Entwurfs. */
+    private static final String SQL_SCHREIBEN =
+            "MERGE INTO ENTWURF (AUTOR, ARTIKEL_ID, TITEL, INHALT_DELTA, INHALT_HTML, INHALT_PLAINTEXT, TAGS, ZEITPUNKT_GEAENDERT) " +
+            "KEY (AUTOR, ARTIKEL_ID) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /** SQL für Löschen eines Entwurfs, Parameter sind Autor und Artikel-ID. */
+    private static final String SQL_LOESCHEN = "DELETE FROM ENTWURF WHERE AUTOR = ? AND ARTIKEL_ID = ?";
+
+    /** Bean für JDBC-Zugriff, weil Batch-Updates mit JPA umständlich wären. */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Für gemeinsame Transaktion aller Entwürfe eines Batches. */
+    private final TransactionTemplate _transactionTemplate;
+
+    /** Noch nicht in die Datenbank geschriebene Entwürfe, jeweils nur der letzte Stand. */
+    private final Map<Schluessel, Stand> _offen = new ConcurrentHashMap<>();
+
+    /** Zähler für Zwischenstände, die überschrieben wurden, bevor sie geschrieben wurden. */
+    private final Counter _zusammengefasstZaehler;
+
+
+    /**
+     * Schlüssel eines Entwurfs.
+     *
+     * @param autor Anmeldename des Autors
+     *
+     * @param artikelId ID des Artikels oder {@link #NEUER_ARTIKEL}
+     */
+    private record Schluessel( String autor, long artikelId ) {
+    }
+
+
+    /**
+     * Noch nicht geschriebener Stand eines Entwurfs.
+     *
+     * @param entwurf Inhalt wie vom Editor gesendet
+     *
+     * @param zeitpunkt Zeitpunkt der Auto-Speicherung
+     */
+    private record Stand( ArtikelDTO entwurf, LocalDateTime zeitpunkt ) {
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public Entwurfsspeicher( JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry ) {
+
+        _jdbcTemplate        = jdbcTemplate;
+        _transactionTemplate = transactionTemplate;
+
+        _zusammengefasstZaehler = Counter.builder( "blog.entwuerfe.zusammengefasst" )
+                                         .description( "Anzahl Auto-Speicherungen von Entwürfen, die vor dem Schreiben überschrieben wurden" )
+                                         .register( meterRegistry );
+    }
+
+
+    /**
+     * Merkt sich den neuen Stand eines Entwurfs; greift nicht auf die Datenbank zu.
+     *
+     * @param autor Anmeldename des Autors
+     *
+     * @param artikelId ID des Artikels, Werte kleiner 1 für neuen Artikel
+     *
+     * @param entwurf Inhalt des Entwurfs; die darin enthaltene Artikel-ID wird ignoriert
+     */
+    public void speichern( String autor, long artikelId, ArtikelDTO entwurf ) {
+
+        final long   id    = normalisiere( artikelId );
+        final String titel = entwurf.titel() == null ? "" : entwurf.titel(); // Titel noch nicht eingegeben
+
+        final ArtikelDTO dto = new ArtikelDTO( id,
+                                               titel                 ,
+                                               entwurf.inhaltDelta() ,
+                                               entwurf.inhaltHTML()  ,
+                                               entwurf.inhaltPlain() ,
+                                               entwurf.tags()        );
+
+        final Stand alt = _offen.put( new Schluessel( autor, id ), new Stand( dto, now() ) );
+        if ( alt != null ) {
+
+            _zusammengefasstZaehler.increment();
+        }
+    }
+
+
+    /**
+     * Liefert den aktuellen Stand eines Entwurfs, also den noch nicht geschriebenen
+     * oder sonst den aus der Datenbank.
+     *
+     * @param autor Anmeldename des Autors
+     *
+     * @param artikelId ID des Artikels, Werte kleiner 1 für neuen Artikel
+     *
+     * @return Optional mit Entwurf oder leeres Optional, wenn es keinen gibt
+     */
+    public Optional<ArtikelDTO> holen( String autor, long artikelId ) {
+
+        final long  id    = normalisiere( artikelId );
+        final Stand stand = _offen.get( new Schluessel( autor, id ) );
+        if ( stand != null ) {
+
+            return Optional.of( stand.entwurf() );
+        }
+
+        final List<ArtikelDTO> ergebnis =
+                _jdbcTemplate.query( SQL_LESEN,
+                                     ( rs, zeile ) -> new ArtikelDTO( id,
+                                                                      rs.getString( "TITEL"            ),
+                                                                      rs.getString( "INHALT_DELTA"     ),
+                                                                      rs.getString( "INHALT_HTML"      ),
+                                                                      rs.getString( "INHALT_PLAINTEXT" ),
+                                                                      rs.getString( "TAGS"             ) ),
+                                     autor, id );
+
+        return ergebnis.stream().findFirst();
+    }
+
+
+    /**
+     * Löscht einen Entwurf im Speicher und in der Datenbank, z.B. nach dem Veröffentlichen.
+     * Läuft gerade ein Batch, dann wird dessen Ende abgewartet, damit der Entwurf nicht
+     * danach wieder geschrieben wird.
+     *
+     * @param autor Anmeldename des Autors
+     *
+     * @param artikelId ID des Artikels, Werte kleiner 1 für neuen Artikel
+     */
+    public synchronized void loeschen( String autor, long artikelId ) {
+
+        final long id = normalisiere( artikelId );
+
+        _offen.remove( new Schluessel( autor, id ) );
+        _jdbcTemplate.update( SQL_LOESCHEN, autor, id );
+    }
+
+
+    /**
+     * Schreibt alle noch nicht geschriebenen Entwürfe mit einem Batch-{@code MERGE} in einer
+     * Transaktion. Ein Entwurf wird nur dann aus dem Speicher entfernt, wenn er seit dem
+     * Schreiben nicht erneut gespeichert wurde; schlägt das Schreiben fehl, dann bleiben
+     * alle im Speicher und werden beim nächsten Mal geschrieben.
+     */
+    @Scheduled( fixedDelayString = "${blog.entwuerfe.flush-intervall-ms:10000}" )
+    @PreDestroy
+    public synchronized void schreibeEntwuerfe() {
+
+        final List<Map.Entry<Schluessel, Stand>> stapel = new ArrayList<>( _offen.size() );
+        final List<Object[]>                     args   = new ArrayList<>();
+        for ( Map.Entry<Schluessel, Stand> eintrag : _offen.entrySet() ) {
+
+            final Schluessel schluessel = eintrag.getKey();
+            final Stand      stand      = eintrag.getValue();
+            final ArtikelDTO entwurf    = stand.entwurf();
+
+            stapel.add( Map.entry( schluessel, stand ) );
+            args.add( new Object[]{ schluessel.autor(), schluessel.artikelId(),
+                                    entwurf.titel(), entwurf.inhaltDelta(), entwurf.inhaltHTML(),
+                                    entwurf.inhaltPlain(), entwurf.tags(), Timestamp.valueOf( stand.zeitpunkt() ) } );
+        }
+
+        if ( args.isEmpty() ) {
+
+            return;
+        }
+
+        try {
+
+            _transactionTemplate.executeWithoutResult( status ->
+                    _jdbcTemplate.batchUpdate( SQL_SCHREIBEN, args ) );
+        }
+        catch ( DataAccessException ex ) {
+
+            LOG.error( "{} Entwürfe konnten nicht in Datenbank geschrieben werden: {}",
+                       args.size(), ex.getMessage() );
+            return;
+        }
+
+        for ( Map.Entry<Schluessel, Stand> eintrag : stapel ) {
+
+            _offen.remove( eintrag.getKey(), eintrag.getValue() );
+        }
+
+        LOG.debug( "{} Entwürfe in Datenbank geschrieben.", args.size() );
+    }
+
+
+    /**
+     * Alle Artikel-IDs kleiner 1 stehen für einen neuen Artikel.
+     *
+     * @param artikelId Artikel-ID aus Request
+     *
+     * @return {@code artikelId} oder {@link #NEUER_ARTIKEL}
+     */
+    private static long normalisiere( long artikelId ) {
+
+        return artikelId < 1 ? NEUER_ARTIKEL : artikelId;
+    }
+
+}
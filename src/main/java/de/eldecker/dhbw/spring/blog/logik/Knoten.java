@@ -0,0 +1,49 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Kennung dieser Instanz der Anwendung (Knoten), wenn mehrere Instanzen auf dieselbe
+ * Datenbank zugreifen. Wird in jeden Eintrag im Änderungsprotokoll geschrieben, damit
+ * ein Knoten seine eigenen Änderungen erkennt.
+ */
+@Component
+public class Knoten {
+
+    private static final Logger LOG = LoggerFactory.getLogger( Knoten.class );
+
+    /** Kennung des Knotens, höchstens 36 Zeichen. */
+    private final String _id;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     *
+     * @param id Konfigurierte Kennung; wenn leer, dann wird eine zufällige Kennung erzeugt,
+     *           die nur bis zum nächsten Neustart gilt
+     */
+    public Knoten( @Value( "${blog.knoten.id:}" ) String id ) {
+
+        _id = id.isBlank() ? UUID.randomUUID().toString() : id.trim();
+
+        LOG.info( "Kennung dieses Knotens: {}", _id );
+    }
+
+
+    /**
+     * Getter für Kennung des Knotens.
+     *
+     * @return Kennung, nicht leer
+     */
+    public String getId() {
+
+        return _id;
+    }
+
+}
@@ -0,0 +1,262 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import de.eldecker.dhbw.spring.blog.model.SchutzschalterOffenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Merkt sich pro Schlüssel den letzten erfolgreich geladenen Wert (z.B. eine gerenderte Seite),
+ * um ihn auszuliefern, wenn die Datenbank nicht rechtzeitig antwortet (<i>Stale While
+ * Revalidate</i>):
+ * <ul>
+ * <li>Normalerweise wird neu geladen (über {@link Schutzschalter}) und der neue Wert geliefert.</li>
+ * <li>Dauert das Laden länger als {@code warteMillis} oder schlägt es fehl, dann wird der
+ *     letzte gute Wert geliefert; das Laden läuft im Hintergrund weiter und aktualisiert
+ *     den Wert, sobald es fertig ist.</li>
+ * <li>Ist der Schutzschalter offen, dann wird der letzte gute Wert sofort geliefert.</li>
+ * <li>Gibt es noch keinen Wert, dann wird bis {@code maxWarteMillis} gewartet, danach oder bei
+ *     offenem Schutzschalter gibt es eine {@link SchutzschalterOffenException}.</li>
+ * </ul>
+ * Gleichzeitige Ladevorgänge für denselben Schlüssel werden mit {@link EinzelFlug} zusammengefasst,
+ * so dass bei einer hängenden Datenbank pro Schlüssel höchstens ein Thread wartet.
+ * <br><br>
+ *
+ * Der Executor für die Ladevorgänge sollte mit {@link #erzeugeLadeExecutor(String, int)} erzeugt
+ * werden und nicht mit anderen Aufgaben geteilt werden: Ladevorgänge für verschiedene Schlüssel
+ * dürfen nicht in einer Warteschlange hintereinander stehen, sonst liefern sie bei normaler Last
+ * veraltete Werte oder Fehler, obwohl die Datenbank schnell antwortet.
+ * <br><br>
+ *
+ * Es werden höchstens {@code maxEintraege} Werte gemerkt; ist die Grenze erreicht, dann wird
+ * der am längsten nicht mehr abgefragte Wert verdrängt (LRU). {@code null} und leere
+ * {@link Optional}s (z.B. für nicht vorhandene Artikel) werden nicht gemerkt, damit Aufrufe
+ * mit beliebigen Schlüsseln die gemerkten Werte nicht verdrängen können. Der gelieferte
+ * letzte gute Wert ist ganz veraltet, also z.B. auch mit den Aufrufzahlen von damals.
+ * <br><br>
+ *
+ * Die Anzahl der ausgelieferten veralteten Werte wird als Metrik {@code blog.seiten.veraltet}
+ * mit dem Namen der Instanz als Tag {@code name} gezählt.
+ *
+ * @param <K> Typ Schlüssel
+ *
+ * @param <V> Typ Wert, sollte unveränderlich sein
+ */
+public class LetzterGuterStand<K, V> {
+
+    /** Letzte gute Werte, in Reihenfolge des letzten Zugriffs für LRU. */
+    private final Map<K, V> _stand;
+
+    /** Zusammenfassen gleichzeitiger Ladevorgänge. */
+    private final EinzelFlug<K, V> _einzelFlug;
+
+    /** Schutzschalter für Datenbankzugriffe. */
+    private final Schutzschalter _schutzschalter;
+
+    /** Executor für Ladevorgänge, die im Hintergrund weiterlaufen können. */
+    private final Executor _executor;
+
+    /** So lange wird auf das Laden gewartet, bevor der letzte gute Wert geliefert wird. */
+    private final long _warteMillis;
+
+    /** So lange wird gewartet, wenn es noch keinen letzten guten Wert gibt. */
+    private final long _maxWarteMillis;
+
+    /** Zähler für ausgelieferte veraltete Werte. */
+    private final Counter _veraltetZaehler;
+
+
+    /**
+     * Konstruktor.
+     *
+     * @param name Name für Metriken, z.B. {@code artikel-seite}
+     *
+     * @param schutzschalter Schutzschalter für Datenbankzugriffe
+     *
+     * @param executor Executor für Ladevorgänge, siehe {@link #erzeugeLadeExecutor(String, int)}
+     *
+     * @param maxEintraege Maximale Anzahl gemerkter Werte, danach wird der am längsten nicht
+     *                     abgefragte verdrängt
+     *
+     * @param warteMillis Wartezeit, bevor der letzte gute Wert geliefert wird
+     *
+     * @param maxWarteMillis Wartezeit, wenn es noch keinen letzten guten Wert gibt
+     *
+     * @param meterRegistry Registry für Metriken
+     */
+    public LetzterGuterStand( String name,
+                              Schutzschalter schutzschalter,
+                              Executor executor,
+                              int maxEintraege,
+                              long warteMillis,
+                              long maxWarteMillis,
+                              MeterRegistry meterRegistry ) {
+
+        _einzelFlug     = new EinzelFlug<>( name, meterRegistry );
+        _schutzschalter = schutzschalter;
+        _executor       = executor;
+        _warteMillis    = warteMillis;
+        _maxWarteMillis = maxWarteMillis;
+
+        _stand = Collections.synchronizedMap( new LinkedHashMap<K, V>( 16, 0.75f, true ) {
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<K, V> aeltester ) {
+
+                return size() > maxEintraege;
+            }
+        });
+
+        _veraltetZaehler = Counter.builder( "blog.seiten.veraltet" )
+                                  .description( "Anzahl ausgelieferter veralteter Werte, weil die Datenbank nicht rechtzeitig geantwortet hat" )
+                                  .tag( "name", name )
+                                  .register( meterRegistry );
+    }
+
+
+    /**
+     * Erzeugt einen Executor für Ladevorgänge ohne Warteschlange: Bis zu {@code maxThreads}
+     * Ladevorgänge laufen in eigenen Threads; sind alle belegt, dann lädt der aufrufende
+     * Request-Thread selbst (und kann dann nicht vorzeitig den letzten guten Wert liefern).
+     * Ladevorgänge für verschiedene Schlüssel warten also nie aufeinander. Nicht benötigte
+     * Threads werden nach einer Minute beendet.
+     *
+     * @param name Präfix für Namen der Threads
+     *
+     * @param maxThreads Maximale Anzahl Threads
+     *
+     * @return Executor, muss beim Herunterfahren mit {@code shutdown()} beendet werden
+     */
+    public static ExecutorService erzeugeLadeExecutor( String name, int maxThreads ) {
+
+        final AtomicInteger nummer = new AtomicInteger();
+
+        final ThreadPoolExecutor executor =
+                new ThreadPoolExecutor( maxThreads, maxThreads, 1, TimeUnit.MINUTES,
+                                        new SynchronousQueue<>(),
+                                        runnable -> {
+
+                                            final Thread thread = new Thread( runnable, name + "-" + nummer.incrementAndGet() );
+                                            thread.setDaemon( true );
+                                            return thread;
+                                        },
+                                        new ThreadPoolExecutor.CallerRunsPolicy() );
+        executor.allowCoreThreadTimeOut( true );
+
+        return executor;
+    }
+
+
+    /**
+     * Liefert den aktuellen oder, wenn die Datenbank nicht rechtzeitig antwortet, den
+     * letzten guten Wert.
+     *
+     * @param schluessel Schlüssel
+     *
+     * @param laden Lädt den aktuellen Wert aus der Datenbank
+     *
+     * @return Aktueller oder letzter guter Wert
+     *
+     * @throws SchutzschalterOffenException Kein letzter guter Wert vorhanden und Datenbank
+     *                                      antwortet nicht rechtzeitig oder Schutzschalter offen
+     */
+    public V hole( K schluessel, Supplier<V> laden ) {
+
+        final V alt = _stand.get( schluessel );
+        if ( alt != null && _schutzschalter.istOffen() ) {
+
+            _veraltetZaehler.increment();
+            return alt;
+        }
+
+        final CompletableFuture<V> zukunft =
+                _einzelFlug.ausfuehrenAsynchron( schluessel, () -> {
+
+                    final V neu = _schutzschalter.ausfuehren( laden );
+                    merken( schluessel, neu );
+                    return neu;
+                }, _executor );
+
+        try {
+
+            return zukunft.get( alt == null ? _maxWarteMillis : _warteMillis, MILLISECONDS );
+        }
+        catch ( TimeoutException ex ) {
+
+            if ( alt == null ) {
+
+                throw new SchutzschalterOffenException( "Datenbank antwortet nicht rechtzeitig, bitte später noch einmal versuchen." );
+            }
+        }
+        catch ( ExecutionException ex ) {
+
+            if ( alt == null ) {
+
+                if ( ex.getCause() instanceof RuntimeException rex ) { throw rex; }
+                throw new IllegalStateException( ex.getCause() );
+            }
+        }
+        catch ( InterruptedException ex ) {
+
+            Thread.currentThread().interrupt();
+            if ( alt == null ) {
+
+                throw new SchutzschalterOffenException( "Laden wurde unterbrochen." );
+            }
+        }
+
+        _veraltetZaehler.increment();
+        return alt;
+    }
+
+
+    /**
+     * Sorgt dafür, dass der nächste Aufruf von {@link #hole(Object, Supplier)} neu lädt,
+     * statt sich einem Ladevorgang anzuschließen, der vor einer Änderung gestartet wurde
+     * (siehe {@link EinzelFlug#vergessen(Object)}). Der letzte gute Wert bleibt erhalten.
+     *
+     * @param schluessel Schlüssel, dessen Daten sich geändert haben
+     */
+    public void vergessen( K schluessel ) {
+
+        _einzelFlug.vergessen( schluessel );
+    }
+
+
+    /**
+     * Merkt sich einen neuen guten Wert; ist die maximale Anzahl erreicht, dann wird der am
+     * längsten nicht abgefragte Wert verdrängt.
+     *
+     * @param schluessel Schlüssel
+     *
+     * @param wert Neuer Wert, {@code null} und leeres {@link Optional} werden nicht gemerkt
+     *             (ein evtl. vorhandener alter Wert wird dann entfernt)
+     */
+    private void merken( K schluessel, V wert ) {
+
+        if ( wert == null || wert instanceof Optional<?> optional && optional.isEmpty() ) {
+
+            _stand.remove( schluessel );
+            return;
+        }
+        _stand.put( schluessel, wert );
+    }
+
+}
@@ -0,0 +1,198 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.Locale.GERMAN;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Bean für die Berechnung von <i>MinHash</i>-Signaturen für den Plaintext-Inhalt
+ * von Artikeln. Zwei Signaturen erlauben eine Schätzung der Jaccard-Ähnlichkeit
+ * der Shingle-Mengen der beiden Texte, ohne die Texte selbst vergleichen zu müssen.
+ * <br><br>
+ *
+ * Als Shingles werden überlappende Zeichenfolgen der Länge {@link #SHINGLE_LAENGE}
+ * des normalisierten Textes verwendet (Kleinschreibung, Whitespace zusammengefasst).
+ * <br><br>
+ *
+ * siehe auch:
+ * <a href="https://en.wikipedia.org/wiki/MinHash" target="_blank">Artikel zu "MinHash" in engl. Wikipedia</a>.
+ */
+@Component
+public class MinHashBerechnung {
+
+    /** Anzahl Hash-Funktionen, also Anzahl {@code int}-Werte pro Signatur. */
+    public static final int ANZAHL_HASHFUNKTIONEN = 128;
+
+    /** Länge der Signatur in Bytes, für Spaltendefinition in {@code ArtikelEntity}. */
+    public static final int SIGNATUR_BYTES = ANZAHL_HASHFUNKTIONEN * Integer.BYTES;
+
+    /** Länge der Zeichen-Shingles. */
+    private static final int SHINGLE_LAENGE = 5;
+
+    /**
+     * Seed für Koeffizienten der Hash-Funktionen; darf nicht geändert werden, weil
+     * sonst die in der DB gespeicherten Signaturen nicht mehr vergleichbar sind.
+     */
+    private static final long SEED = 0x5EED_B10C_2024L;
+
+    /** Multiplikatoren der Hash-Funktionen (immer ungerade). */
+    private final long[] _a = new long[ ANZAHL_HASHFUNKTIONEN ];
+
+    /** Summanden der Hash-Funktionen. */
+    private final long[] _b = new long[ ANZAHL_HASHFUNKTIONEN ];
+
+
+    /**
+     * Konstruktor, erzeugt die Koeffizienten der Hash-Funktionen deterministisch.
+     */
+    public MinHashBerechnung() {
+
+        final Random random = new Random( SEED );
+        for ( int i = 0; i < ANZAHL_HASHFUNKTIONEN; i++ ) {
+
+            _a[ i ] = random.nextLong() | 1L;
+            _b[ i ] = random.nextLong();
+        }
+    }
+
+
+    /**
+     * Berechnet die MinHash-Signatur für einen Text.
+     *
+     * @param text Plaintext-Inhalt eines Artikels, darf {@code null} sein
+     *
+     * @return Signatur mit {@link #SIGNATUR_BYTES} Bytes; für leeren Text besteht
+     *         die Signatur nur aus {@code Integer.MAX_VALUE}-Werten
+     */
+    public byte[] berechneSignatur( String text ) {
+
+        final int[] minima = new int[ ANZAHL_HASHFUNKTIONEN ];
+        for ( int i = 0; i < ANZAHL_HASHFUNKTIONEN; i++ ) {
+
+            minima[ i ] = Integer.MAX_VALUE;
+        }
+
+        for ( long shingleHash : holeShingleHashes( text ) ) {
+
+            for ( int i = 0; i < ANZAHL_HASHFUNKTIONEN; i++ ) {
+
+                // obere 31 Bit des 64-Bit-Produkts, damit Werte nicht negativ sind
+                final int wert = (int) ( ( _a[ i ] * shingleHash + _b[ i ] ) >>> 33 );
+                if ( wert < minima[ i ] ) {
+
+                    minima[ i ] = wert;
+                }
+            }
+        }
+
+        final ByteBuffer puffer = ByteBuffer.allocate( SIGNATUR_BYTES );
+        for ( int minimum : minima ) {
+
+            puffer.putInt( minimum );
+        }
+        return puffer.array();
+    }
+
+
+    /**
+     * Wandelt eine als Byte-Array gespeicherte Signatur in ein {@code int}-Array um.
+     *
+     * @param signatur Signatur wie von {@link #berechneSignatur(String)} erzeugt
+     *
+     * @return Signatur als {@code int}-Array, oder {@code null} wenn {@code signatur}
+     *         {@code null} ist oder die falsche Länge hat
+     */
+    public int[] alsIntArray( byte[] signatur ) {
+
+        if ( signatur == null || signatur.length != SIGNATUR_BYTES ) {
+
+            return null;
+        }
+
+        final int[] ergebnis = new int[ ANZAHL_HASHFUNKTIONEN ];
+        ByteBuffer.wrap( signatur ).asIntBuffer().get( ergebnis );
+        return ergebnis;
+    }
+
+
+    /**
+     * Schätzt die Jaccard-Ähnlichkeit zweier Texte anhand ihrer Signaturen:
+     * Anteil der Positionen, an denen die Minima übereinstimmen.
+     *
+     * @param sig1 Erste Signatur
+     *
+     * @param sig2 Zweite Signatur
+     *
+     * @return Geschätzte Ähnlichkeit zwischen {@code 0.0} und {@code 1.0}
+     */
+    public double schaetzeAehnlichkeit( int[] sig1, int[] sig2 ) {
+
+        int gleich = 0;
+        for ( int i = 0; i < ANZAHL_HASHFUNKTIONEN; i++ ) {
+
+            if ( sig1[ i ] == sig2[ i ] ) { gleich++; }
+        }
+        return (double) gleich / ANZAHL_HASHFUNKTIONEN;
+    }
+
+
+    /**
+     * Zerlegt den normalisierten Text in Shingles und berechnet für jedes
+     * Shingle einen 64-Bit-Hashwert.
+     *
+     * @param text Zu zerlegender Text
+     *
+     * @return Menge der Hash-Werte der Shingles, kann leer sein
+     */
+    private Set<Long> holeShingleHashes( String text ) {
+
+        final Set<Long> ergebnis = new HashSet<>();
+        if ( text == null ) {
+
+            return ergebnis;
+        }
+
+        final String normalisiert = text.toLowerCase( GERMAN ).replaceAll( "\\s+", " " ).trim();
+        if ( normalisiert.isEmpty() ) {
+
+            return ergebnis;
+        }
+        if ( normalisiert.length() <= SHINGLE_LAENGE ) {
+
+            ergebnis.add( mische( normalisiert.hashCode() ) );
+            return ergebnis;
+        }
+
+        for ( int i = 0; i <= normalisiert.length() - SHINGLE_LAENGE; i++ ) {
+
+            final String shingle = normalisiert.substring( i, i + SHINGLE_LAENGE );
+            ergebnis.add( mische( shingle.hashCode() ) );
+        }
+        return ergebnis;
+    }
+
+
+    /**
+     * Verteilt die Bits eines 32-Bit-Hashwerts auf 64 Bit (Finalizer von MurmurHash3).
+     *
+     * @param wert Hash-Wert von {@code String.hashCode()}
+     *
+     * @return Gemischter 64-Bit-Wert
+     */
+    static long mische( long wert ) {
+
+        wert ^= wert >>> 33;
+        wert *= 0xff51afd7ed558ccdL;
+        wert ^= wert >>> 33;
+        wert *= 0xc4ceb9fe1a85ec53L;
+        wert ^= wert >>> 33;
+        return wert;
+    }
+
+}
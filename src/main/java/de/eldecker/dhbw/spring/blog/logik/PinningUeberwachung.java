@@ -0,0 +1,183 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.time.Duration.ofMillis;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+
+/**
+ * Erkennt mit <i>Java Flight Recorder</i> (JFR), wann ein virtueller Thread an seinen
+ * Träger-Thread gepinnt ist, also blockiert, ohne den Träger-Thread freizugeben.
+ * Unter Java 21 passiert das z.B., wenn innerhalb eines {@code synchronized}-Blocks
+ * auf I/O gewartet wird, wie es in Teilen von JDBC-Treibern und H2 der Fall ist.
+ * <br><br>
+ *
+ * Die Bean ist nur aktiv, wenn virtuelle Threads eingeschaltet sind
+ * ({@code spring.threads.virtual.enabled=true}). Jedes JFR-Event
+ * {@code jdk.VirtualThreadPinned}, das länger als die Schwelle dauert, wird
+ * nach der obersten Stack-Frame außerhalb des JDK gezählt; eine Zusammenfassung
+ * wird periodisch ins Log geschrieben.
+ */
+@Service
+@ConditionalOnProperty( name = "spring.threads.virtual.enabled", havingValue = "true" )
+public class PinningUeberwachung {
+
+    private static final Logger LOG = LoggerFactory.getLogger( PinningUeberwachung.class );
+
+    /** Name des JFR-Events für gepinnte virtuelle Threads. */
+    private static final String JFR_EVENT = "jdk.VirtualThreadPinned";
+
+    /** Anzahl der Pinning-Events pro verursachender Stack-Frame. */
+    private final Map<String, LongAdder> _zaehlerProStelle = new ConcurrentHashMap<>();
+
+    /** Summe der Pinning-Dauer in Millisekunden pro verursachender Stack-Frame. */
+    private final Map<String, LongAdder> _dauerProStelle = new ConcurrentHashMap<>();
+
+    /** Events kürzer als diese Schwelle werden ignoriert. */
+    private final Duration _schwelle;
+
+    /** JFR-Stream, über den die Events empfangen werden. */
+    private RecordingStream _recordingStream;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     *
+     * @param schwelleMillis Mindestdauer eines Pinning-Events in Millisekunden
+     */
+    public PinningUeberwachung( @Value( "${blog.pinning.schwelle-ms:20}" ) long schwelleMillis ) {
+
+        _schwelle = ofMillis( schwelleMillis );
+    }
+
+
+    /**
+     * Startet den JFR-Stream im Hintergrund.
+     */
+    @PostConstruct
+    public void starten() {
+
+        _recordingStream = new RecordingStream();
+        _recordingStream.enable( JFR_EVENT ).withThreshold( _schwelle ).withStackTrace();
+        _recordingStream.onEvent( JFR_EVENT, this::onPinning );
+        _recordingStream.startAsync();
+
+        LOG.info( "Überwachung für gepinnte virtuelle Threads gestartet (Schwelle: {} ms).",
+                  _schwelle.toMillis() );
+    }
+
+
+    /**
+     * Beendet den JFR-Stream.
+     */
+    @PreDestroy
+    public void beenden() {
+
+        if ( _recordingStream != null ) {
+
+            _recordingStream.close();
+        }
+    }
+
+
+    /**
+     * Verbucht ein Pinning-Event.
+     *
+     * @param event JFR-Event {@code jdk.VirtualThreadPinned}
+     */
+    private void onPinning( RecordedEvent event ) {
+
+        final String stelle = ermittleStelle( event.getStackTrace() );
+
+        _zaehlerProStelle.computeIfAbsent( stelle, k -> new LongAdder() ).increment();
+        _dauerProStelle.computeIfAbsent(   stelle, k -> new LongAdder() ).add( event.getDuration().toMillis() );
+
+        LOG.debug( "Virtueller Thread für {} ms gepinnt bei {}", event.getDuration().toMillis(), stelle );
+    }
+
+
+    /**
+     * Schreibt eine Zusammenfassung der bisherigen Pinning-Events ins Log.
+     */
+    @Scheduled( fixedDelayString = "${blog.pinning.bericht-intervall-ms:60000}" )
+    public void berichtSchreiben() {
+
+        if ( _zaehlerProStelle.isEmpty() ) {
+
+            return;
+        }
+
+        final StringBuilder sb = new StringBuilder( "Gepinnte virtuelle Threads (Anzahl, Summe ms, Stelle):" );
+        _zaehlerProStelle.forEach( (stelle, anzahl) ->
+                sb.append( "\n    " )
+                  .append( anzahl.sum() ).append( ", " )
+                  .append( _dauerProStelle.get( stelle ).sum() ).append( ", " )
+                  .append( stelle ) );
+
+        LOG.warn( sb.toString() );
+    }
+
+
+    /**
+     * Liefert die Anzahl der Pinning-Events pro verursachender Stelle.
+     *
+     * @return Map von Stelle (Klasse.Methode:Zeile) auf Anzahl
+     */
+    public Map<String, Long> holeBericht() {
+
+        final Map<String, Long> ergebnis = new ConcurrentHashMap<>();
+        _zaehlerProStelle.forEach( (stelle, anzahl) -> ergebnis.put( stelle, anzahl.sum() ) );
+        return ergebnis;
+    }
+
+
+    /**
+     * Ermittelt die oberste Stack-Frame außerhalb von {@code java.*} und {@code jdk.*},
+     * das ist typischerweise die Stelle im JDBC-Treiber oder in der Anwendung,
+     * die den Monitor hält.
+     *
+     * @param stackTrace Stack-Trace aus JFR-Event, kann {@code null} sein
+     *
+     * @return Beschreibung der Stelle
+     */
+    private static String ermittleStelle( RecordedStackTrace stackTrace ) {
+
+        if ( stackTrace == null ) {
+
+            return "(kein Stack-Trace)";
+        }
+
+        for ( RecordedFrame frame : stackTrace.getFrames() ) {
+
+            if ( !frame.isJavaFrame() ) { continue; }
+
+            final String klasse = frame.getMethod().getType().getName();
+            if ( klasse.startsWith( "java." ) || klasse.startsWith( "jdk." ) || klasse.startsWith( "sun." ) ) {
+
+                continue;
+            }
+            return klasse + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+        }
+
+        return "(nur JDK-Frames)";
+    }
+
+}
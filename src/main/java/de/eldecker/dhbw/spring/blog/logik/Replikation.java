@@ -0,0 +1,256 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import de.eldecker.dhbw.spring.blog.db.AenderungsCursor;
+import de.eldecker.dhbw.spring.blog.db.ReplikatStatus;
+import de.eldecker.dhbw.spring.blog.model.Aenderung;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Stellvertreter für eine echte Datenbank-Replikation, damit das Lesen vom Replikat
+ * auch lokal ohne zweiten Datenbank-Server getestet werden kann: das Replikat ist
+ * eine zweite H2-Datenbank im selben Prozess.
+ * <br><br>
+ *
+ * Beim Start wird die primäre Datenbank mit {@code SCRIPT} exportiert und mit
+ * {@code RUNSCRIPT} in das leere Replikat geladen. Danach wird das Änderungsprotokoll
+ * der primären Datenbank periodisch inkrementell gelesen; für jeden geänderten
+ * Datensatz wird die aktuelle Zeile kopiert ({@code MERGE}) bzw. gelöscht, wenn es
+ * sie nicht mehr gibt. Das Anwenden ist idempotent, Einträge dürfen also auch
+ * mehrfach gelesen werden.
+ * <br><br>
+ *
+ * Nach jedem Durchlauf wird der Stand in {@link ReplikatStatus} gemeldet; ist das
+ * Replikat zu weit zurück, wird wieder von der primären Datenbank gelesen.
+ */
+@Service
+@ConditionalOnProperty( name = "blog.replikation.aktiv", havingValue = "true" )
+public class Replikation {
+
+    private static final Logger LOG = LoggerFactory.getLogger( Replikation.class );
+
+    /** Tabellen, deren Änderungen repliziert werden; schützt auch vor SQL-Injection. */
+    private static final Set<String> TABELLEN = Set.of( "ARTIKEL", "AUTOR" );
+
+    /** Maximale Anzahl Protokolleinträge pro Durchlauf. */
+    private static final int MAX_PRO_DURCHLAUF = 500;
+
+    /**
+     * Liest eine Zeile als Map von Spaltenname auf Wert; {@code CLOB}s und {@code BLOB}s
+     * werden ausgelesen, weil sie nur mit der Verbindung gültig sind, aus der sie stammen.
+     */
+    private static final RowMapper<Map<String, Object>> ZEILE_MAPPER = (rs, rowNum) -> {
+
+        final ResultSetMetaData metaDaten = rs.getMetaData();
+        final Map<String, Object> zeile = new LinkedHashMap<>();
+        for ( int i = 1; i <= metaDaten.getColumnCount(); i++ ) {
+
+            final Object wert = switch ( metaDaten.getColumnType( i ) ) {
+
+                case Types.CLOB, Types.NCLOB -> rs.getString( i );
+                case Types.BLOB              -> rs.getBytes( i );
+                default                      -> rs.getObject( i );
+            };
+            zeile.put( metaDaten.getColumnName( i ), wert );
+        }
+        return zeile;
+    };
+
+    /** Zugriff auf primäre Datenbank. */
+    private final JdbcTemplate _primaer;
+
+    /** Zugriff auf Replikat. */
+    private final JdbcTemplate _replikat;
+
+    /** Bean, an die der Stand der Replikation gemeldet wird. */
+    private final ReplikatStatus _replikatStatus;
+
+    /** Cursor auf Änderungsprotokoll, {@code null} bis Replikat initial befüllt ist. */
+    private AenderungsCursor _cursor;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public Replikation( @Qualifier( "primaerDatenquelle"  ) DataSource primaer,
+                        @Qualifier( "replikatDatenquelle" ) DataSource replikat,
+                        ReplikatStatus replikatStatus,
+                        MeterRegistry meterRegistry ) {
+
+        _primaer        = new JdbcTemplate( primaer  );
+        _replikat       = new JdbcTemplate( replikat );
+        _replikatStatus = replikatStatus;
+
+        Gauge.builder( "blog.replikation.verzoegerung", replikatStatus, ReplikatStatus::getVerzoegerungMillis )
+             .description( "Verzögerung des Replikats gegenüber der primären Datenbank" )
+             .baseUnit( "milliseconds" )
+             .register( meterRegistry );
+    }
+
+
+    /**
+     * Befüllt das Replikat nach dem Start der Anwendung mit einer Kopie der primären
+     * Datenbank (Schema und Daten). Bis dahin wird nur von der primären Datenbank gelesen.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    @Order( 0 )
+    public synchronized void replikatInitialisieren() {
+
+        Path skriptDatei = null;
+        try {
+
+            // Einträge danach werden nachgezogen, doppeltes Anwenden schadet nicht
+            final long startId = AenderungsCursor.holeGroessteId( _primaer );
+
+            skriptDatei = Files.createTempFile( "blog-replikat-", ".sql" );
+            final String pfad = skriptDatei.toAbsolutePath().toString().replace( "'", "''" );
+
+            _primaer.execute(  "SCRIPT TO '" + pfad + "'"  );
+            _replikat.execute( "DROP ALL OBJECTS"          );
+            _replikat.execute( "RUNSCRIPT FROM '" + pfad + "'" );
+
+            _cursor = new AenderungsCursor( _primaer, startId );
+            _replikatStatus.fortschrittMelden( startId, 0L );
+            _replikatStatus.setBereit( true );
+
+            LOG.info( "Replikat initial befüllt, Änderungsprotokoll wird ab ID={} nachgezogen.", startId );
+        }
+        catch ( IOException | DataAccessException ex ) {
+
+            LOG.error( "Replikat konnte nicht befüllt werden, es wird nur von primärer Datenbank gelesen: " +
+                       ex.getMessage() );
+        }
+        finally {
+
+            if ( skriptDatei != null ) {
+
+                try { Files.deleteIfExists( skriptDatei ); } catch ( IOException ex ) { /* ignorieren */ }
+            }
+        }
+    }
+
+
+    /**
+     * Liest neue Einträge aus dem Änderungsprotokoll und wendet sie auf das Replikat an.
+     */
+    @Scheduled( fixedDelayString = "${blog.replikation.intervall-ms:500}" )
+    public synchronized void nachziehen() {
+
+        if ( _cursor == null ) {
+
+            return;
+        }
+
+        final long vorherBisId = _cursor.getLueckenlosBisId();
+        try {
+
+            final List<Aenderung> aenderungen = _cursor.naechsteAenderungen( MAX_PRO_DURCHLAUF );
+
+            final Set<String> schonKopiert = new HashSet<>();
+            for ( Aenderung aenderung : aenderungen ) {
+
+                if ( !TABELLEN.contains( aenderung.tabelle() ) ) { continue; }
+
+                if ( schonKopiert.add( aenderung.tabelle() + ":" + aenderung.datensatzId() ) ) {
+
+                    datensatzKopieren( aenderung.tabelle(), aenderung.datensatzId() );
+                }
+            }
+
+            _replikatStatus.fortschrittMelden( _cursor.getLueckenlosBisId(), verzoegerungBerechnen() );
+
+            if ( !aenderungen.isEmpty() ) {
+
+                LOG.debug( "{} Änderungen auf Replikat angewendet, Stand: ID={}.",
+                           aenderungen.size(), _cursor.getLetzteId() );
+            }
+        }
+        catch ( DataAccessException ex ) {
+
+            LOG.error( "Fehler bei Replikation, wird im nächsten Durchlauf wiederholt: " + ex.getMessage() );
+
+            // Cursor zurücksetzen, damit keine Änderung verloren geht; bis dahin nur primäre Datenbank lesen
+            _cursor = new AenderungsCursor( _primaer, vorherBisId );
+            _replikatStatus.fortschrittMelden( vorherBisId, Long.MAX_VALUE );
+        }
+    }
+
+
+    /**
+     * Kopiert die aktuelle Version eines Datensatzes von der primären Datenbank
+     * auf das Replikat.
+     *
+     * @param tabelle Name der Tabelle, muss in {@link #TABELLEN} enthalten sein
+     *
+     * @param id Primärschlüssel des Datensatzes
+     */
+    private void datensatzKopieren( String tabelle, long id ) {
+
+        final List<Map<String, Object>> zeilen =
+                _primaer.query( "SELECT * FROM " + tabelle + " WHERE ID = ?", ZEILE_MAPPER, id );
+
+        if ( zeilen.isEmpty() ) {
+
+            _replikat.update( "DELETE FROM " + tabelle + " WHERE ID = ?", id );
+            return;
+        }
+
+        final Map<String, Object> zeile = zeilen.get( 0 );
+        final String spalten       = String.join( ", ", zeile.keySet() );
+        final String platzhalter   = String.join( ", ", Collections.nCopies( zeile.size(), "?" ) );
+
+        _replikat.update( "MERGE INTO " + tabelle + " (" + spalten + ") KEY(ID) VALUES (" + platzhalter + ")",
+                          zeile.values().toArray() );
+    }
+
+
+    /**
+     * Berechnet das Alter der ältesten Änderung, die noch nicht angewendet wurde.
+     *
+     * @return Verzögerung in Millisekunden, {@code 0} wenn alles angewendet ist
+     */
+    private long verzoegerungBerechnen() {
+
+        final LocalDateTime aeltesteOffene =
+                _primaer.queryForObject( "SELECT MIN(ZEITPUNKT) FROM AENDERUNG_PROTOKOLL WHERE ID > ?",
+                                         LocalDateTime.class, _cursor.getLueckenlosBisId() );
+        if ( aeltesteOffene == null ) {
+
+            return 0L;
+        }
+        return Math.max( 0L, Duration.between( aeltesteOffene, LocalDateTime.now() ).toMillis() );
+    }
+
+}
@@ -0,0 +1,367 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.VersionKonfliktException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+
+/**
+ * Optionale Schreib-Pipeline für Artikel (<i>Write Behind</i> mit <i>Group Commit</i>),
+ * einzuschalten mit {@code blog.schreibpipeline.aktiv=true}: Statt jeden Speichervorgang
+ * in einer eigenen Transaktion zu schreiben, werden die bereits geprüften und gereinigten
+ * Speichervorgänge gesammelt und alle {@code blog.schreibpipeline.intervall-ms} gemeinsam in
+ * einer Transaktion geschrieben.
+ * <br><br>
+ *
+ * Jeder Aufrufer bekommt ein Future, das nach dem Commit mit der Artikel-ID erfüllt wird
+ * (Bestätigung der Dauerhaftigkeit); ob er darauf wartet, entscheidet der Aufrufer.
+ * <br><br>
+ *
+ * Jede Änderung enthält die Version des Artikels, auf der sie beruht (optimistisches Sperren).
+ * Pro Artikel wartet höchstens eine Änderung: Kommt eine zweite, dann beruhen beide auf derselben
+ * Version oder eine auf einer veralteten; die Änderung mit der älteren Version bzw. bei gleicher
+ * Version die spätere wird mit {@link VersionKonfliktException} abgelehnt, statt die andere still
+ * zu überschreiben. Beim Schreiben wird die Version noch einmal geprüft.
+ * <br><br>
+ *
+ * Schlägt die Transaktion für eine Gruppe fehl, dann werden die Speichervorgänge einzeln
+ * wiederholt, damit ein fehlerhafter Speichervorgang nicht die ganze Gruppe verhindert.
+ */
+@Service
+public class Schreibpipeline {
+
+    private static final Logger LOG = LoggerFactory.getLogger( Schreibpipeline.class );
+
+    /** Repo-Bean für Zugriff auf Tabelle mit Artikeln. */
+    private final ArtikelRepo _artikelRepo;
+
+    /** Speichert Artikel mit Eintrag im Änderungsprotokoll. */
+    private final Speicherdienst _speicherdienst;
+
+    /** Für die gemeinsame Transaktion einer Gruppe. */
+    private final TransactionTemplate _transactionTemplate;
+
+    /** Bean für Veröffentlichung von {@link ArtikelGespeichertEvent} nach dem Commit. */
+    private final ApplicationEventPublisher _eventPublisher;
+
+    /** Ist die Pipeline eingeschaltet? */
+    private final boolean _aktiv;
+
+    /** Maximale Anzahl Speichervorgänge pro Transaktion. */
+    private final int _maxGruppe;
+
+    /** Ausstehende Änderungen pro Artikel-ID. */
+    private final Map<Long, Auftrag> _aenderungen = new ConcurrentHashMap<>();
+
+    /** Ausstehende neue Artikel in der Reihenfolge des Eingangs. */
+    private final Queue<Auftrag> _neueArtikel = new ConcurrentLinkedQueue<>();
+
+    /** Metrik für Anzahl Speichervorgänge pro Transaktion. */
+    private final DistributionSummary _gruppenGroesse;
+
+    /** Metrik für Änderungen, die wegen einer anderen wartenden Änderung abgelehnt wurden. */
+    private final Counter _konfliktZaehler;
+
+
+    /**
+     * Auftrag in der Pipeline: entweder neuer Artikel oder Änderung an bestehendem Artikel.
+     *
+     * @param artikelId ID des zu ändernden Artikels, {@code null} bei neuem Artikel
+     *
+     * @param neuerArtikel Erzeugt den neuen Artikel (bei Wiederholung erneut), sonst {@code null}
+     *
+     * @param aenderung Ändert den geladenen Artikel, bei neuem Artikel {@code null}
+     *
+     * @param erwarteteVersion Version, auf der die Änderung beruht; bei neuem Artikel {@code null}
+     *
+     * @param sicherheitsKontext Anmeldung des Aufrufers, für Änderungsprotokoll und Replikat
+     *
+     * @param bestaetigung Wird nach dem Commit mit der Artikel-ID erfüllt
+     */
+    private record Auftrag( Long                      artikelId,
+                            Supplier<ArtikelEntity>   neuerArtikel,
+                            Consumer<ArtikelEntity>   aenderung,
+                            Long                      erwarteteVersion,
+                            SecurityContext           sicherheitsKontext,
+                            CompletableFuture<Long>   bestaetigung
+                          ) {
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public Schreibpipeline( ArtikelRepo artikelRepo,
+                            Speicherdienst speicherdienst,
+                            TransactionTemplate transactionTemplate,
+                            ApplicationEventPublisher eventPublisher,
+                            @Value( "${blog.schreibpipeline.aktiv:false}"       ) boolean aktiv,
+                            @Value( "${blog.schreibpipeline.max-gruppe:200}"    ) int maxGruppe,
+                            MeterRegistry meterRegistry ) {
+
+        _artikelRepo         = artikelRepo;
+        _speicherdienst      = speicherdienst;
+        _transactionTemplate = transactionTemplate;
+        _eventPublisher      = eventPublisher;
+        _aktiv               = aktiv;
+        _maxGruppe           = maxGruppe;
+
+        _gruppenGroesse = DistributionSummary.builder( "blog.schreibpipeline.gruppe" )
+                                             .description( "Anzahl Speichervorgänge pro Transaktion" )
+                                             .register( meterRegistry );
+
+        _konfliktZaehler = Counter.builder( "blog.schreibpipeline.konflikt" )
+                                  .description( "Anzahl Änderungen, die wegen einer anderen wartenden Änderung desselben Artikels abgelehnt wurden" )
+                                  .register( meterRegistry );
+    }
+
+
+    /**
+     * Abfrage, ob die Pipeline eingeschaltet ist.
+     *
+     * @return {@code true}, wenn Speichervorgänge über die Pipeline laufen sollen
+     */
+    public boolean istAktiv() {
+
+        return _aktiv;
+    }
+
+
+    /**
+     * Stellt einen neuen Artikel in die Pipeline.
+     *
+     * @param neuerArtikel Erzeugt den noch nicht gespeicherten Artikel; wird bei einer
+     *                     Wiederholung erneut aufgerufen
+     *
+     * @return Future, das nach dem Commit mit der ID des neuen Artikels erfüllt wird
+     */
+    public CompletableFuture<Long> neuerArtikel( Supplier<ArtikelEntity> neuerArtikel ) {
+
+        final Auftrag auftrag = new Auftrag( null, neuerArtikel, null, null,
+                                             kopiereSicherheitsKontext(), new CompletableFuture<>() );
+        _neueArtikel.add( auftrag );
+
+        return auftrag.bestaetigung();
+    }
+
+
+    /**
+     * Stellt eine Änderung an einem Artikel in die Pipeline. Wartet schon eine Änderung
+     * desselben Artikels, dann wird eine der beiden abgelehnt (siehe Klassenbeschreibung).
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param erwarteteVersion Version des Artikels, auf der die Änderung beruht
+     *
+     * @param aenderung Setzt die neuen Werte auf dem in der Transaktion geladenen Artikel
+     *
+     * @return Future, das nach dem Commit mit der Artikel-ID erfüllt wird, oder mit
+     *         {@link VersionKonfliktException} scheitert
+     */
+    public CompletableFuture<Long> artikelAendern( long artikelId, long erwarteteVersion,
+                                                   Consumer<ArtikelEntity> aenderung ) {
+
+        final Auftrag neu = new Auftrag( artikelId, null, aenderung, erwarteteVersion,
+                                         kopiereSicherheitsKontext(), new CompletableFuture<>() );
+
+        _aenderungen.compute( artikelId, (id, alt) -> {
+
+            if ( alt == null ) {
+
+                return neu;
+            }
+
+            _konfliktZaehler.increment();
+            final Auftrag verlierer = alt.erwarteteVersion() < erwarteteVersion ? alt : neu;
+            verlierer.bestaetigung().completeExceptionally(
+                    new VersionKonfliktException( "Artikel mit ID=" + artikelId + " wird gerade von jemand anderem geändert." ) );
+
+            return verlierer == alt ? neu : alt;
+        });
+
+        return neu.bestaetigung();
+    }
+
+
+    /**
+     * Schreibt alle ausstehenden Speichervorgänge (höchstens {@code blog.schreibpipeline.max-gruppe})
+     * in einer Transaktion.
+     */
+    @Scheduled( fixedDelayString = "${blog.schreibpipeline.intervall-ms:200}" )
+    public synchronized void gruppeSchreiben() {
+
+        final List<Auftrag> gruppe = new ArrayList<>();
+
+        Auftrag auftrag;
+        while ( gruppe.size() < _maxGruppe && ( auftrag = _neueArtikel.poll() ) != null ) {
+
+            gruppe.add( auftrag );
+        }
+        for ( Iterator<Long> iter = _aenderungen.keySet().iterator(); gruppe.size() < _maxGruppe && iter.hasNext(); ) {
+
+            auftrag = _aenderungen.remove( iter.next() );
+            if ( auftrag != null ) { gruppe.add( auftrag ); }
+        }
+
+        if ( gruppe.isEmpty() ) {
+
+            return;
+        }
+
+        try {
+
+            final List<Long> ids = _transactionTemplate.execute( status -> {
+
+                final List<Long> ergebnis = new ArrayList<>( gruppe.size() );
+                for ( Auftrag a : gruppe ) {
+
+                    ergebnis.add( anwenden( a ) );
+                }
+                return ergebnis;
+            });
+
+            for ( int i = 0; i < gruppe.size(); i++ ) {
+
+                bestaetigen( gruppe.get( i ), ids.get( i ) );
+            }
+            _gruppenGroesse.record( gruppe.size() );
+
+            LOG.debug( "Gruppe mit {} Speichervorgängen in einer Transaktion geschrieben.", gruppe.size() );
+        }
+        catch ( RuntimeException ex ) {
+
+            LOG.warn( "Gruppe mit {} Speichervorgängen konnte nicht geschrieben werden, wiederhole einzeln: {}",
+                      gruppe.size(), ex.getMessage() );
+
+            for ( Auftrag a : gruppe ) {
+
+                try {
+
+                    final Long id = _transactionTemplate.execute( status -> anwenden( a ) );
+                    bestaetigen( a, id );
+                    _gruppenGroesse.record( 1 );
+                }
+                catch ( RuntimeException einzelEx ) {
+
+                    LOG.error( "Speichervorgang für Artikel mit ID={} fehlgeschlagen: {}",
+                               a.artikelId(), einzelEx.getMessage() );
+                    a.bestaetigung().completeExceptionally( einzelEx );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Schreibt beim Herunterfahren alle noch ausstehenden Speichervorgänge.
+     */
+    @PreDestroy
+    public void herunterfahren() {
+
+        while ( !_neueArtikel.isEmpty() || !_aenderungen.isEmpty() ) {
+
+            gruppeSchreiben();
+        }
+    }
+
+
+    /**
+     * Kopiert die Anmeldung des aktuellen Threads, weil der Kontext nach dem Request
+     * zurückgesetzt wird.
+     *
+     * @return Neuer Kontext mit derselben Anmeldung
+     */
+    private static SecurityContext kopiereSicherheitsKontext() {
+
+        final SecurityContext kopie = SecurityContextHolder.createEmptyContext();
+        kopie.setAuthentication( SecurityContextHolder.getContext().getAuthentication() );
+
+        return kopie;
+    }
+
+
+    /**
+     * Führt einen Auftrag innerhalb der laufenden Transaktion aus, mit der Anmeldung des
+     * Aufrufers.
+     *
+     * @param auftrag Auftrag
+     *
+     * @return ID des gespeicherten Artikels
+     */
+    private Long anwenden( Auftrag auftrag ) {
+
+        final SecurityContext vorher = SecurityContextHolder.getContext();
+        SecurityContextHolder.setContext( auftrag.sicherheitsKontext() );
+        try {
+
+            if ( auftrag.artikelId() == null ) {
+
+                return _speicherdienst.artikelSpeichern( auftrag.neuerArtikel().get() ).getId();
+            }
+
+            final ArtikelEntity artikel =
+                    _artikelRepo.findById( auftrag.artikelId() )
+                                .orElseThrow( () -> new IllegalStateException( "Artikel mit ID=" +
+                                                                               auftrag.artikelId() + " nicht mehr vorhanden." ) );
+            if ( artikel.getVersion() != auftrag.erwarteteVersion() ) {
+
+                throw new VersionKonfliktException( "Artikel mit ID=" + auftrag.artikelId() +
+                                                    " wurde inzwischen geändert, aktuelle Version ist " +
+                                                    artikel.getVersion() + "." );
+            }
+            auftrag.aenderung().accept( artikel );
+            _speicherdienst.artikelSpeichern( artikel );
+
+            return auftrag.artikelId();
+        }
+        finally {
+
+            SecurityContextHolder.setContext( vorher );
+        }
+    }
+
+
+    /**
+     * Erfüllt das Future eines Auftrags nach dem Commit und veröffentlicht das Event für
+     * Indexe und Caches.
+     *
+     * @param auftrag Auftrag
+     *
+     * @param artikelId ID des gespeicherten Artikels
+     */
+    private void bestaetigen( Auftrag auftrag, Long artikelId ) {
+
+        _eventPublisher.publishEvent( new ArtikelGespeichertEvent( artikelId ) );
+        auftrag.bestaetigung().complete( artikelId );
+    }
+
+}
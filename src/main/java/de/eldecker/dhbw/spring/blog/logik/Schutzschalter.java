@@ -0,0 +1,407 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import de.eldecker.dhbw.spring.blog.model.SchutzschalterOffenException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Schutzschalter (<i>Circuit Breaker</i>) für lesende Datenbankzugriffe der Web-Seiten:
+ * Wenn die H2-Datenbank hängt (z.B. Checkpoint oder lange Schreibvorgänge), dann sollen
+ * sich die Requests nicht stauen, bis alle Threads belegt sind, sondern sofort abgelehnt
+ * bzw. aus {@link LetzterGuterStand} beantwortet werden.
+ * <br><br>
+ *
+ * Zustände:
+ * <ul>
+ * <li>{@code GESCHLOSSEN}: Aufrufe werden ausgeführt; die letzten {@code blog.schutzschalter.fenster}
+ *     Aufrufe werden bewertet, ein Aufruf ist schlecht, wenn er eine Exception wirft oder länger
+ *     als {@code blog.schutzschalter.langsam-ms} dauert. Ist der Anteil schlechter Aufrufe
+ *     mindestens {@code blog.schutzschalter.fehlerquote}, dann wird der Schalter geöffnet.</li>
+ * <li>{@code OFFEN}: Aufrufe werden sofort mit {@link SchutzschalterOffenException} abgelehnt,
+ *     für {@code blog.schutzschalter.offen-ms}.</li>
+ * <li>{@code HALB_OFFEN}: Ein einzelner Probe-Aufruf wird durchgelassen; ist er gut, dann wird
+ *     der Schalter geschlossen, sonst wieder geöffnet.</li>
+ * </ul>
+ * <br>
+ *
+ * Ein Aufruf wird nicht erst beim Zurückkehren bewertet: Läuft er länger als
+ * {@code blog.schutzschalter.langsam-ms}, dann zählt ihn {@link #pruefeLaufendeAufrufe()}
+ * schon vorher als schlecht. Sonst würde eine hängende Datenbank den Schalter nie öffnen,
+ * weil keiner der hängenden Aufrufe zurückkehrt; und ein hängender Probe-Aufruf würde den
+ * Schalter für immer im Zustand {@code HALB_OFFEN} halten. Die Prüfung läuft alle
+ * {@code blog.schutzschalter.pruef-intervall-ms} in einem eigenen Thread und nicht mit
+ * {@code Scheduled}: Der einzige Thread des Schedulers wird auch von Jobs mit Datenbankzugriff
+ * verwendet und hängt dann selbst.
+ * <br><br>
+ *
+ * Im Zustand {@code GESCHLOSSEN} kommen Aufrufe ohne Lock aus (Ringpuffer mit atomaren
+ * Operationen), damit der Schalter nicht selbst alle Seitenaufrufe serialisiert; nur die
+ * Zustandswechsel sind synchronisiert.
+ * <br><br>
+ *
+ * Metriken: {@code blog.schutzschalter.zustand} (0=geschlossen, 1=halb offen, 2=offen) und
+ * {@code blog.schutzschalter.abgelehnt}.
+ */
+@Component
+public class Schutzschalter {
+
+    private static final Logger LOG = LoggerFactory.getLogger( Schutzschalter.class );
+
+    /** Mögliche Zustände, Ordinalzahl wird als Metrik ausgegeben. */
+    public enum Zustand { GESCHLOSSEN, HALB_OFFEN, OFFEN }
+
+    /** Anzahl der bewerteten letzten Aufrufe. */
+    private final int _fenster;
+
+    /** Mindestanzahl schlechter Aufrufe im Fenster, ab der geöffnet wird. */
+    private final int _schwelle;
+
+    /** Ab dieser Dauer gilt ein Aufruf als schlecht. */
+    private final long _langsamNanos;
+
+    /** So lange bleibt der Schalter offen, bevor ein Probe-Aufruf erlaubt wird. */
+    private final long _offenMillis;
+
+    /** Ringpuffer: {@code 1} für schlechten Aufruf, {@code 0} für guten. */
+    private final AtomicIntegerArray _schlecht;
+
+    /** Anzahl der bisher im Ringpuffer eingetragenen Aufrufe, ergibt die nächste Schreibposition. */
+    private final AtomicLong _position = new AtomicLong();
+
+    /** Anzahl der schlechten Aufrufe im Ringpuffer. */
+    private final AtomicInteger _anzahlSchlecht = new AtomicInteger();
+
+    /** Aktueller Zustand. */
+    private volatile Zustand _zustand = Zustand.GESCHLOSSEN;
+
+    /** Zeitpunkt, zu dem der Schalter zuletzt geöffnet wurde. */
+    private volatile long _geoeffnetUm = 0L;
+
+    /** Zähler für abgelehnte Aufrufe. */
+    private final Counter _abgelehntZaehler;
+
+    /**
+     * Laufende Aufrufe, die noch nicht bewertet wurden; wer einen Aufruf aus der Menge
+     * entfernt (beim Zurückkehren oder bei der Prüfung), der bewertet ihn.
+     */
+    private final Set<Aufruf> _laufend = ConcurrentHashMap.newKeySet();
+
+    /** Eigener Thread für {@link #pruefeLaufendeAufrufe()}. */
+    private final ScheduledExecutorService _pruefer;
+
+
+    /**
+     * Ein laufender Aufruf.
+     */
+    private static final class Aufruf {
+
+        /** Startzeitpunkt in Nanosekunden. */
+        final long start = nanoTime();
+
+        /** {@code true} für den Probe-Aufruf im Zustand {@code HALB_OFFEN}. */
+        final boolean probe;
+
+        Aufruf( boolean probe ) {
+
+            this.probe = probe;
+        }
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public Schutzschalter( @Value( "${blog.schutzschalter.fenster:20}"             ) int fenster,
+                           @Value( "${blog.schutzschalter.fehlerquote:0.5}"        ) double fehlerquote,
+                           @Value( "${blog.schutzschalter.langsam-ms:1000}"        ) long langsamMillis,
+                           @Value( "${blog.schutzschalter.offen-ms:5000}"          ) long offenMillis,
+                           @Value( "${blog.schutzschalter.pruef-intervall-ms:250}" ) long pruefIntervallMillis,
+                           MeterRegistry meterRegistry ) {
+
+        _fenster      = fenster;
+        _schwelle     = Math.max( 1, (int) Math.ceil( fenster * fehlerquote ) );
+        _langsamNanos = langsamMillis * 1_000_000L;
+        _offenMillis  = offenMillis;
+        _schlecht     = new AtomicIntegerArray( fenster );
+
+        Gauge.builder( "blog.schutzschalter.zustand", this, schalter -> schalter._zustand.ordinal() )
+             .description( "Zustand Schutzschalter für Datenbank: 0=geschlossen, 1=halb offen, 2=offen" )
+             .register( meterRegistry );
+
+        _abgelehntZaehler = Counter.builder( "blog.schutzschalter.abgelehnt" )
+                                   .description( "Anzahl Datenbankzugriffe, die wegen offenem Schutzschalter abgelehnt wurden" )
+                                   .register( meterRegistry );
+
+        _pruefer = Executors.newSingleThreadScheduledExecutor( runnable -> {
+
+            final Thread thread = new Thread( runnable, "schutzschalter-pruefung" );
+            thread.setDaemon( true );
+            return thread;
+        });
+        _pruefer.scheduleWithFixedDelay( this::pruefeLaufendeAufrufe,
+                                         pruefIntervallMillis, pruefIntervallMillis, TimeUnit.MILLISECONDS );
+    }
+
+
+    /**
+     * Beendet den Thread für die Prüfung beim Herunterfahren.
+     */
+    @PreDestroy
+    public void herunterfahren() {
+
+        _pruefer.shutdownNow();
+    }
+
+
+    /**
+     * Führt einen Datenbankzugriff aus, wenn der Schalter es erlaubt, und bewertet ihn.
+     *
+     * @param aufruf Datenbankzugriff
+     *
+     * @return Ergebnis von {@code aufruf}
+     *
+     * @throws SchutzschalterOffenException Schalter ist offen, {@code aufruf} wurde nicht ausgeführt
+     */
+    public <T> T ausfuehren( Supplier<T> aufruf ) {
+
+        final Aufruf laufend = erlauben();
+        if ( laufend == null ) {
+
+            _abgelehntZaehler.increment();
+            throw new SchutzschalterOffenException( "Datenbank ist überlastet, bitte später noch einmal versuchen." );
+        }
+
+        try {
+
+            final T ergebnis = aufruf.get();
+            melden( laufend, nanoTime() - laufend.start > _langsamNanos );
+            return ergebnis;
+        }
+        catch ( RuntimeException | Error ex ) {
+
+            melden( laufend, true );
+            throw ex;
+        }
+    }
+
+
+    /**
+     * Zählt Aufrufe, die schon länger als {@code blog.schutzschalter.langsam-ms} laufen, als
+     * schlecht, ohne auf ihr Ende zu warten. Ein hängender Probe-Aufruf öffnet den Schalter
+     * damit wieder, sodass nach {@code blog.schutzschalter.offen-ms} ein neuer Probe-Aufruf
+     * erlaubt wird. Wird alle {@code blog.schutzschalter.pruef-intervall-ms} im eigenen
+     * Thread aufgerufen.
+     */
+    public void pruefeLaufendeAufrufe() {
+
+        final long jetzt = nanoTime();
+
+        for ( Aufruf laufend : _laufend ) {
+
+            if ( jetzt - laufend.start > _langsamNanos && _laufend.remove( laufend ) ) {
+
+                bewerten( laufend.probe, true );
+            }
+        }
+    }
+
+
+    /**
+     * Abfrage, ob Aufrufe derzeit sofort abgelehnt würden; ändert den Zustand nicht.
+     *
+     * @return {@code true}, wenn offen und noch kein Probe-Aufruf fällig ist, oder wenn
+     *         gerade ein Probe-Aufruf läuft
+     */
+    public boolean istOffen() {
+
+        return switch ( _zustand ) {
+
+            case GESCHLOSSEN -> false;
+            case HALB_OFFEN  -> true;
+            case OFFEN       -> currentTimeMillis() - _geoeffnetUm < _offenMillis;
+        };
+    }
+
+
+    /**
+     * Getter für aktuellen Zustand.
+     *
+     * @return Zustand
+     */
+    public Zustand getZustand() {
+
+        return _zustand;
+    }
+
+
+    /**
+     * Entscheidet, ob ein Aufruf ausgeführt werden darf; im Zustand {@code GESCHLOSSEN}
+     * ohne Lock.
+     *
+     * @return Laufender Aufruf, wenn er ausgeführt werden darf, sonst {@code null}
+     */
+    private Aufruf erlauben() {
+
+        final Aufruf laufend = _zustand == Zustand.GESCHLOSSEN ? new Aufruf( false ) : probeErlauben();
+        if ( laufend != null ) {
+
+            _laufend.add( laufend );
+        }
+        return laufend;
+    }
+
+
+    /**
+     * Wechselt nach Ablauf der Wartezeit von {@code OFFEN} auf {@code HALB_OFFEN} und
+     * erlaubt dann genau einen Probe-Aufruf.
+     *
+     * @return Laufender Aufruf, wenn er ausgeführt werden darf, sonst {@code null}
+     */
+    private synchronized Aufruf probeErlauben() {
+
+        switch ( _zustand ) {
+
+            case GESCHLOSSEN:
+                return new Aufruf( false ); // inzwischen geschlossen
+
+            case OFFEN:
+                if ( currentTimeMillis() - _geoeffnetUm < _offenMillis ) {
+
+                    return null;
+                }
+                _zustand = Zustand.HALB_OFFEN;
+                return new Aufruf( true );
+
+            default:
+                return null; // HALB_OFFEN: Probe-Aufruf läuft schon
+        }
+    }
+
+
+    /**
+     * Bewertet einen zurückgekehrten Aufruf, wenn das nicht schon
+     * {@link #pruefeLaufendeAufrufe()} gemacht hat.
+     *
+     * @param laufend Aufruf
+     *
+     * @param schlecht {@code true}, wenn Aufruf fehlgeschlagen oder zu langsam war
+     */
+    private void melden( Aufruf laufend, boolean schlecht ) {
+
+        if ( _laufend.remove( laufend ) ) {
+
+            bewerten( laufend.probe, schlecht );
+        }
+    }
+
+
+    /**
+     * Bewertet einen Aufruf. Im Zustand {@code GESCHLOSSEN} wird er ohne Lock in den
+     * Ringpuffer eingetragen; Aufrufe, die noch vor dem Öffnen gestartet wurden, werden
+     * in den anderen Zuständen ignoriert.
+     *
+     * @param probe {@code true}, wenn es der Probe-Aufruf war
+     *
+     * @param schlecht {@code true}, wenn Aufruf fehlgeschlagen oder zu langsam war
+     */
+    private void bewerten( boolean probe, boolean schlecht ) {
+
+        if ( probe ) {
+
+            probeBewerten( schlecht );
+            return;
+        }
+        if ( _zustand != Zustand.GESCHLOSSEN ) {
+
+            return;
+        }
+
+        final int position = (int) ( _position.getAndIncrement() % _fenster );
+        final int alt      = _schlecht.getAndSet( position, schlecht ? 1 : 0 );
+        final int anzahl   = _anzahlSchlecht.addAndGet( ( schlecht ? 1 : 0 ) - alt );
+        if ( schlecht && anzahl >= _schwelle ) {
+
+            oeffnenWennGeschlossen( anzahl );
+        }
+    }
+
+
+    /**
+     * Bewertet den Probe-Aufruf: schließt den Schalter oder öffnet ihn wieder.
+     *
+     * @param schlecht {@code true}, wenn Probe-Aufruf fehlgeschlagen oder zu langsam war
+     */
+    private synchronized void probeBewerten( boolean schlecht ) {
+
+        if ( _zustand != Zustand.HALB_OFFEN ) {
+
+            return;
+        }
+        if ( schlecht ) {
+
+            oeffnen();
+            return;
+        }
+
+        for ( int i = 0; i < _fenster; i++ ) {
+
+            _schlecht.set( i, 0 );
+        }
+        _anzahlSchlecht.set( 0 );
+        _position.set( 0 );
+
+        LOG.info( "Schutzschalter für Datenbank wieder geschlossen." );
+        _zustand = Zustand.GESCHLOSSEN; // erst nach dem Leeren, weil Aufrufe den Zustand ohne Lock lesen
+    }
+
+
+    /**
+     * Öffnet den Schalter, wenn er noch geschlossen ist.
+     *
+     * @param anzahlSchlecht Anzahl schlechter Aufrufe im Fenster, für Log
+     */
+    private synchronized void oeffnenWennGeschlossen( int anzahlSchlecht ) {
+
+        if ( _zustand == Zustand.GESCHLOSSEN ) {
+
+            LOG.warn( "Schutzschalter für Datenbank geöffnet: {} von {} Aufrufen zu langsam oder fehlgeschlagen.",
+                      anzahlSchlecht, Math.min( _position.get(), _fenster ) );
+            oeffnen();
+        }
+    }
+
+
+    /**
+     * Öffnet den Schalter; nur mit Lock aufrufen.
+     */
+    private void oeffnen() {
+
+        _geoeffnetUm = currentTimeMillis();
+        _zustand     = Zustand.OFFEN;
+    }
+
+}
@@ -0,0 +1,91 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.Locale.GERMAN;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Bean für die Berechnung von 64-Bit-<i>SimHash</i>-Fingerabdrücken für den
+ * Plaintext-Inhalt von Artikeln. Im Gegensatz zu normalen Hash-Funktionen
+ * unterscheiden sich die Fingerabdrücke von fast gleichen Texten nur in wenigen
+ * Bits, so dass Beinahe-Duplikate über die Hamming-Distanz erkannt werden können.
+ * <br><br>
+ *
+ * Als Merkmale werden Paare aufeinanderfolgender Wörter verwendet, gewichtet nach
+ * ihrer Häufigkeit im Text.
+ * <br><br>
+ *
+ * siehe auch:
+ * <a href="https://en.wikipedia.org/wiki/SimHash" target="_blank">Artikel zu "SimHash" in engl. Wikipedia</a>.
+ */
+@Component
+public class SimHashBerechnung {
+
+    /**
+     * Berechnet den SimHash-Fingerabdruck für einen Text.
+     *
+     * @param text Plaintext-Inhalt eines Artikels, darf {@code null} sein
+     *
+     * @return 64-Bit-Fingerabdruck; {@code 0} für leeren Text
+     */
+    public long berechneFingerabdruck( String text ) {
+
+        if ( text == null || text.isBlank() ) {
+
+            return 0L;
+        }
+
+        final String[] woerter = text.toLowerCase( GERMAN ).split( "[^\\p{L}\\p{N}]+" );
+
+        final Map<String, Integer> merkmale = new HashMap<>();
+        String vorgaenger = "";
+        for ( String wort : woerter ) {
+
+            if ( wort.isEmpty() ) { continue; }
+
+            merkmale.merge( vorgaenger + " " + wort, 1, Integer::sum );
+            vorgaenger = wort;
+        }
+
+        final int[] summen = new int[ Long.SIZE ];
+        for ( Map.Entry<String, Integer> merkmal : merkmale.entrySet() ) {
+
+            final long hash    = MinHashBerechnung.mische( merkmal.getKey().hashCode() );
+            final int  gewicht = merkmal.getValue();
+            for ( int bit = 0; bit < Long.SIZE; bit++ ) {
+
+                summen[ bit ] += ( ( hash >>> bit ) & 1L ) == 1L ? gewicht : -gewicht;
+            }
+        }
+
+        long fingerabdruck = 0L;
+        for ( int bit = 0; bit < Long.SIZE; bit++ ) {
+
+            if ( summen[ bit ] > 0 ) {
+
+                fingerabdruck |= 1L << bit;
+            }
+        }
+        return fingerabdruck;
+    }
+
+
+    /**
+     * Berechnet die Hamming-Distanz zwischen zwei Fingerabdrücken.
+     *
+     * @param fingerabdruck1 Erster Fingerabdruck
+     *
+     * @param fingerabdruck2 Zweiter Fingerabdruck
+     *
+     * @return Anzahl der unterschiedlichen Bits (0 bis 64)
+     */
+    public int hammingDistanz( long fingerabdruck1, long fingerabdruck2 ) {
+
+        return Long.bitCount( fingerabdruck1 ^ fingerabdruck2 );
+    }
+
+}
@@ -0,0 +1,146 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.time.LocalDateTime.now;
+
+import static de.eldecker.dhbw.spring.blog.db.AenderungEntity.ART_GESPEICHERT;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import de.eldecker.dhbw.spring.blog.db.AenderungEntity;
+import de.eldecker.dhbw.spring.blog.db.AenderungRepo;
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.db.AutorEntity;
+import de.eldecker.dhbw.spring.blog.db.AutorenRepo;
+import de.eldecker.dhbw.spring.blog.db.ReplikatStatus;
+
+
+/**
+ * Speichert Artikel und Autoren und hängt in derselben Transaktion einen Eintrag an
+ * das Änderungsprotokoll (Tabelle {@code AENDERUNG_PROTOKOLL}) an. Wer die Tabelle
+ * verfolgt (z.B. die Replikation), verpasst also keine Änderung und sieht keine
+ * Änderung, die nicht committet wurde.
+ * <br><br>
+ *
+ * Alle schreibenden Zugriffe auf Artikel und Autoren sollen über diese Klasse laufen,
+ * nicht direkt über {@link ArtikelRepo#save(Object)} oder {@link AutorenRepo#save(Object)}.
+ */
+@Service
+public class Speicherdienst {
+
+    private static final Logger LOG = LoggerFactory.getLogger( Speicherdienst.class );
+
+    /** Repo-Bean für Zugriff auf Tabelle mit Artikeln. */
+    private final ArtikelRepo _artikelRepo;
+
+    /** Repo-Bean für Zugriff auf Tabelle mit Autoren. */
+    private final AutorenRepo _autorenRepo;
+
+    /** Repo-Bean für Zugriff auf Änderungsprotokoll. */
+    private final AenderungRepo _aenderungRepo;
+
+    /** Stand der Replikation, für <i>Read-Your-Writes</i>. */
+    private final ReplikatStatus _replikatStatus;
+
+    /** Kennung dieser Instanz für Änderungsprotokoll. */
+    private final Knoten _knoten;
+
+    /** So lange werden Einträge im Änderungsprotokoll aufbewahrt. */
+    private final long _aufbewahrungStunden;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public Speicherdienst( ArtikelRepo artikelRepo,
+                           AutorenRepo autorenRepo,
+                           AenderungRepo aenderungRepo,
+                           ReplikatStatus replikatStatus,
+                           Knoten knoten,
+                           @Value( "${blog.aenderungen.aufbewahrung-stunden:24}" ) long aufbewahrungStunden ) {
+
+        _artikelRepo         = artikelRepo;
+        _autorenRepo         = autorenRepo;
+        _aenderungRepo       = aenderungRepo;
+        _replikatStatus      = replikatStatus;
+        _knoten              = knoten;
+        _aufbewahrungStunden = aufbewahrungStunden;
+    }
+
+
+    /**
+     * Speichert einen neuen oder geänderten Artikel.
+     *
+     * @param artikelEntity Artikel
+     *
+     * @return Gespeicherter Artikel, bei neuem Artikel mit ID
+     */
+    @Transactional
+    public ArtikelEntity artikelSpeichern( ArtikelEntity artikelEntity ) {
+
+        final ArtikelEntity gespeichert = _artikelRepo.save( artikelEntity );
+
+        protokollieren( "ARTIKEL", gespeichert.getId() );
+
+        return gespeichert;
+    }
+
+
+    /**
+     * Speichert einen neuen oder geänderten Autor.
+     *
+     * @param autorEntity Autor
+     *
+     * @return Gespeicherter Autor, bei neuem Autor mit ID
+     */
+    @Transactional
+    public AutorEntity autorSpeichern( AutorEntity autorEntity ) {
+
+        final AutorEntity gespeichert = _autorenRepo.save( autorEntity );
+
+        protokollieren( "AUTOR", gespeichert.getId() );
+
+        return gespeichert;
+    }
+
+
+    /**
+     * Löscht alte Einträge aus dem Änderungsprotokoll. Leser, die länger als die
+     * Aufbewahrungszeit nicht gelesen haben, müssen sich neu synchronisieren.
+     */
+    @Scheduled( fixedDelayString = "${blog.aenderungen.bereinigung-intervall-ms:3600000}" )
+    public void protokollBereinigen() {
+
+        final int anzahl = _aenderungRepo.loescheAelterAls( now().minusHours( _aufbewahrungStunden ) );
+        if ( anzahl > 0 ) {
+
+            LOG.info( "{} alte Einträge aus Änderungsprotokoll gelöscht.", anzahl );
+        }
+    }
+
+
+    /**
+     * Hängt einen Eintrag an das Änderungsprotokoll an; muss innerhalb der Transaktion
+     * aufgerufen werden, in der auch der Datensatz geschrieben wird.
+     *
+     * @param tabelle Name der Tabelle
+     *
+     * @param datensatzId ID des geänderten Datensatzes
+     */
+    private void protokollieren( String tabelle, long datensatzId ) {
+
+        final AenderungEntity aenderung =
+                new AenderungEntity( tabelle, datensatzId, ART_GESPEICHERT, _knoten.getId() );
+        _aenderungRepo.save( aenderung );
+
+        _replikatStatus.schreibzugriffMerken( aenderung.getId() );
+    }
+
+}
@@ -0,0 +1,464 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.Locale.GERMAN;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.db.ArtikelTagProjektion;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.TagTreffer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * In-Memory-Index für das Filtern von Artikeln nach Tags, Autor und Monat (des Anlegens).
+ * <br><br>
+ *
+ * Für jeden Tag, jeden Autor und jeden Monat gibt es eine komprimierte Bitmap
+ * (<i>Roaring Bitmap</i>) mit den IDs der Artikel. Ein Filter wie "Tags java UND spring,
+ * von alice, zwischen März und Juni" ist dann eine Verknüpfung weniger Bitmaps mit UND/ODER
+ * statt einer Abfrage mit mehreren Joins; dichte Bereiche (z.B. alle Artikel eines Monats)
+ * werden dabei als Läufe gespeichert und brauchen fast keinen Speicher.
+ * <br><br>
+ *
+ * Der Index wird nach dem Start aus einer Projektion ohne {@code CLOB}-Spalten aufgebaut und
+ * nach jedem {@link ArtikelGespeichertEvent} (auch für Änderungen auf anderen Instanzen) für
+ * den gespeicherten Artikel aktualisiert. Die Bitmaps sind nicht thread-sicher, deshalb
+ * wird mit einem Lese-Schreib-Lock gearbeitet; Filter blockieren sich nicht gegenseitig.
+ * <br><br>
+ *
+ * Die Anzahl der Bitmap-Einträge liefert außerdem ohne Datenbankzugriff die Anzahl der Artikel
+ * pro Monat und pro Autor für die Archivseiten.
+ * <br><br>
+ *
+ * Metrik: {@code blog.tags.bytes} (Größe aller Bitmaps).
+ */
+@Service
+public class TagIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger( TagIndex.class );
+
+    /** Maximale Anzahl Tags pro Artikel. */
+    public static final int MAX_TAGS = 10;
+
+    /** Maximale Länge eines Tags. */
+    public static final int MAX_LAENGE = 40;
+
+    /** Repo-Bean für Zugriff auf Tabelle mit Artikeln. */
+    private final ArtikelRepo _artikelRepo;
+
+    /** Lock für alle folgenden Attribute. */
+    private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+    /** IDs aller indizierten Artikel. */
+    private final RoaringBitmap _alle = new RoaringBitmap();
+
+    /** Bitmap pro Tag. */
+    private final Map<String, RoaringBitmap> _tags = new HashMap<>();
+
+    /** Bitmap pro Autor (Anmeldename). */
+    private final Map<String, RoaringBitmap> _autoren = new HashMap<>();
+
+    /** Bitmap pro Monat, sortiert für Zeiträume. */
+    private final NavigableMap<YearMonth, RoaringBitmap> _monate = new TreeMap<>();
+
+    /** Indizierte Werte pro Artikel, für das Austragen beim Ändern. */
+    private final Map<Integer, Eintrag> _eintraege = new HashMap<>();
+
+
+    /**
+     * Indizierte Werte eines Artikels.
+     *
+     * @param tags Tags
+     *
+     * @param autor Autor, kann {@code null} sein
+     *
+     * @param monat Monat des Anlegens
+     */
+    private record Eintrag( List<String> tags, String autor, YearMonth monat ) {
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public TagIndex( ArtikelRepo artikelRepo, MeterRegistry meterRegistry ) {
+
+        _artikelRepo = artikelRepo;
+
+        Gauge.builder( "blog.tags.bytes", this, tagIndex -> tagIndex.groesseInBytes() )
+             .description( "Größe der Bitmaps im Tag-Index" )
+             .register( meterRegistry );
+    }
+
+
+    /**
+     * Normalisiert die Eingabe von Tags: Kleinschreibung, Leerzeichen werden zu "-", nur
+     * Buchstaben, Ziffern, "-" und "_"; doppelte und leere Tags werden entfernt, zu lange
+     * gekürzt, höchstens {@link #MAX_TAGS} Tags.
+     *
+     * @param eingabe Tags durch Komma getrennt, z.B. {@code "Java, Spring Boot"};
+     *                darf {@code null} sein
+     *
+     * @return Normalisierte Tags in der Reihenfolge der Eingabe, z.B. {@code [java, spring-boot]}
+     */
+    public static List<String> normalisieren( String eingabe ) {
+
+        if ( eingabe == null || eingabe.isBlank() ) {
+
+            return List.of();
+        }
+
+        final Set<String> tags = new LinkedHashSet<>();
+        for ( String teil : eingabe.split( ArtikelEntity.TAG_TRENNER ) ) {
+
+            String tag = teil.strip()
+                             .toLowerCase( GERMAN )
+                             .replaceAll( "\\s+", "-" )
+                             .replaceAll( "[^\\p{L}\\p{N}_-]", "" );
+            if ( tag.isEmpty() ) { continue; }
+
+            if ( tag.length() > MAX_LAENGE ) {
+
+                tag = tag.substring( 0, MAX_LAENGE );
+            }
+            tags.add( tag );
+            if ( tags.size() == MAX_TAGS ) { break; }
+        }
+        return List.copyOf( tags );
+    }
+
+
+    /**
+     * Baut den Index nach dem Start der Anwendung auf.
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public void indexAufbauen() {
+
+        final List<ArtikelTagProjektion> projektionen = _artikelRepo.holeAlleTags();
+
+        _lock.writeLock().lock();
+        try {
+
+            for ( ArtikelTagProjektion projektion : projektionen ) {
+
+                eintragen( projektion );
+            }
+            alleBitmaps().forEach( RoaringBitmap::runOptimize );
+
+            LOG.info( "Tag-Index aufgebaut: {} Artikel, {} Tags, {} Autoren, {} Monate, {} Bytes.",
+                      _alle.getCardinality(), _tags.size(), _autoren.size(), _monate.size(),
+                      groesseInBytes() );
+        }
+        finally {
+
+            _lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Aktualisiert den Index für einen neu angelegten oder geänderten Artikel.
+     *
+     * @param event Event mit ID des gespeicherten Artikels
+     */
+    @TransactionalEventListener( fallbackExecution = true )
+    public void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+        final Optional<ArtikelTagProjektion> projektionOptional = _artikelRepo.holeTags( event.artikelId() );
+
+        _lock.writeLock().lock();
+        try {
+
+            if ( projektionOptional.isEmpty() ) {
+
+                austragen( Math.toIntExact( event.artikelId() ) );
+            } else {
+
+                eintragen( projektionOptional.get() );
+            }
+        }
+        finally {
+
+            _lock.writeLock().unlock();
+        }
+    }
+
+
+    /**
+     * Filtert die Artikel. Alle angegebenen Kriterien müssen erfüllt sein; ohne Kriterien
+     * werden alle Artikel geliefert.
+     *
+     * @param tags Normalisierte Tags, darf leer sein
+     *
+     * @param alleTags {@code true}: Artikel muss alle Tags haben (UND), {@code false}: mindestens
+     *                 einen davon (ODER)
+     *
+     * @param autor Anmeldename des Autors oder {@code null} für beliebigen Autor
+     *
+     * @param von Erster Monat oder {@code null} für unbegrenzt
+     *
+     * @param bis Letzter Monat (einschließlich) oder {@code null} für unbegrenzt; liegt er vor
+     *            {@code von}, dann ist der Zeitraum leer und es gibt keine Treffer
+     *
+     * @param maxIds Maximale Anzahl IDs im Ergebnis
+     *
+     * @return Anzahl der Treffer und IDs der neuesten Treffer
+     */
+    public TagTreffer filtern( Collection<String> tags, boolean alleTags, String autor,
+                               YearMonth von, YearMonth bis, int maxIds ) {
+
+        _lock.readLock().lock();
+        try {
+
+            final List<RoaringBitmap> bedingungen = new ArrayList<>( 3 );
+            if ( !tags.isEmpty() ) {
+
+                final RoaringBitmap[] tagBitmaps = tags.stream()
+                                                       .map( tag -> _tags.getOrDefault( tag, new RoaringBitmap() ) )
+                                                       .toArray( RoaringBitmap[]::new );
+
+                bedingungen.add( alleTags ? FastAggregation.and( tagBitmaps ) : FastAggregation.or( tagBitmaps ) );
+            }
+            if ( autor != null ) {
+
+                bedingungen.add( _autoren.getOrDefault( autor, new RoaringBitmap() ) );
+            }
+            if ( von != null && bis != null && von.isAfter( bis ) ) {
+
+                bedingungen.add( new RoaringBitmap() ); // subMap() würde IllegalArgumentException werfen
+
+            } else if ( von != null || bis != null ) {
+
+                final Collection<RoaringBitmap> monate =
+                        _monate.subMap( von == null ? YearMonth.of( 0, 1 ) : von, true,
+                                        bis == null ? YearMonth.of( 9999, 12 ) : bis, true ).values();
+
+                bedingungen.add( FastAggregation.or( monate.iterator() ) );
+            }
+
+            final RoaringBitmap ergebnis = bedingungen.isEmpty()
+                                           ? _alle
+                                           : FastAggregation.and( bedingungen.toArray( RoaringBitmap[]::new ) );
+
+            final List<Long>  ids      = new ArrayList<>( Math.min( maxIds, ergebnis.getCardinality() ) );
+            final IntIterator iterator = ergebnis.getReverseIntIterator(); // IDs steigen beim Anlegen
+            while ( iterator.hasNext() && ids.size() < maxIds ) {
+
+                ids.add( (long) iterator.next() );
+            }
+
+            return new TagTreffer( ergebnis.getCardinality(), ids );
+        }
+        finally {
+
+            _lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Liefert die häufigsten Tags, z.B. für eine Tag-Wolke.
+     *
+     * @param maxAnzahl Maximale Anzahl Tags
+     *
+     * @return Tags mit Anzahl Artikel, absteigend nach Anzahl und bei gleicher Anzahl
+     *         alphabetisch sortiert
+     */
+    public Map<String, Integer> holeHaeufigsteTags( int maxAnzahl ) {
+
+        _lock.readLock().lock();
+        try {
+
+            final Map<String, Integer> ergebnis = new LinkedHashMap<>();
+            _tags.entrySet().stream()
+                 .map( eintrag -> Map.entry( eintrag.getKey(), eintrag.getValue().getCardinality() ) )
+                 .sorted( Map.Entry.<String, Integer>comparingByValue( Comparator.reverseOrder() )
+                                   .thenComparing( Map.Entry.comparingByKey() ) )
+                 .limit( maxAnzahl )
+                 .forEach( eintrag -> ergebnis.put( eintrag.getKey(), eintrag.getValue() ) );
+
+            return ergebnis;
+        }
+        finally {
+
+            _lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Liefert die Anzahl der Artikel pro Monat des Anlegens, z.B. für die Navigation im Archiv.
+     *
+     * @return Monate mit mindestens einem Artikel und Anzahl Artikel, neuester Monat zuerst
+     */
+    public NavigableMap<YearMonth, Integer> holeAnzahlProMonat() {
+
+        _lock.readLock().lock();
+        try {
+
+            final NavigableMap<YearMonth, Integer> ergebnis = new TreeMap<>( Comparator.reverseOrder() );
+            _monate.forEach( (monat, bitmap) -> ergebnis.put( monat, bitmap.getCardinality() ) );
+
+            return ergebnis;
+        }
+        finally {
+
+            _lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Liefert die Anzahl der Artikel eines Autors.
+     *
+     * @param autor Anmeldename des Autors
+     *
+     * @return Anzahl Artikel, {@code 0} für unbekannten Autor
+     */
+    public int holeAnzahlVonAutor( String autor ) {
+
+        _lock.readLock().lock();
+        try {
+
+            final RoaringBitmap bitmap = _autoren.get( autor );
+
+            return bitmap == null ? 0 : bitmap.getCardinality();
+        }
+        finally {
+
+            _lock.readLock().unlock();
+        }
+    }
+
+
+    /**
+     * Trägt einen Artikel ein, vorher werden evtl. vorhandene Einträge entfernt.
+     * Aufrufer muss Schreib-Lock halten.
+     */
+    private void eintragen( ArtikelTagProjektion projektion ) {
+
+        final int artikelId = Math.toIntExact( projektion.getId() );
+        austragen( artikelId );
+
+        final Eintrag eintrag = new Eintrag( ArtikelEntity.tagsAlsListe( projektion.getTags() ),
+                                             projektion.getAutor(),
+                                             YearMonth.from( projektion.getZeitpunktAngelegt() ) );
+        _alle.add( artikelId );
+        for ( String tag : eintrag.tags() ) {
+
+            _tags.computeIfAbsent( tag, t -> new RoaringBitmap() ).add( artikelId );
+        }
+        if ( eintrag.autor() != null ) {
+
+            _autoren.computeIfAbsent( eintrag.autor(), a -> new RoaringBitmap() ).add( artikelId );
+        }
+        _monate.computeIfAbsent( eintrag.monat(), m -> new RoaringBitmap() ).add( artikelId );
+
+        _eintraege.put( artikelId, eintrag );
+    }
+
+
+    /**
+     * Entfernt einen Artikel aus allen Bitmaps; leere Bitmaps werden gelöscht.
+     * Aufrufer muss Schreib-Lock halten.
+     */
+    private void austragen( int artikelId ) {
+
+        final Eintrag eintrag = _eintraege.remove( artikelId );
+        if ( eintrag == null ) {
+
+            return;
+        }
+
+        _alle.remove( artikelId );
+        for ( String tag : eintrag.tags() ) {
+
+            entfernen( _tags, tag, artikelId );
+        }
+        if ( eintrag.autor() != null ) {
+
+            entfernen( _autoren, eintrag.autor(), artikelId );
+        }
+        entfernen( _monate, eintrag.monat(), artikelId );
+    }
+
+
+    /**
+     * Entfernt ID aus Bitmap und löscht die Bitmap, wenn sie danach leer ist.
+     */
+    private static <K> void entfernen( Map<K, RoaringBitmap> bitmaps, K schluessel, int artikelId ) {
+
+        final RoaringBitmap bitmap = bitmaps.get( schluessel );
+        if ( bitmap == null ) {
+
+            return;
+        }
+        bitmap.remove( artikelId );
+        if ( bitmap.isEmpty() ) {
+
+            bitmaps.remove( schluessel );
+        }
+    }
+
+
+    /**
+     * Alle Bitmaps des Index. Aufrufer muss Lock halten.
+     */
+    private List<RoaringBitmap> alleBitmaps() {
+
+        final List<RoaringBitmap> bitmaps = new ArrayList<>( _tags.values() );
+        bitmaps.addAll( _autoren.values() );
+        bitmaps.addAll( _monate.values() );
+        bitmaps.add( _alle );
+
+        return bitmaps;
+    }
+
+
+    /**
+     * Größe aller Bitmaps in Bytes, für Metrik.
+     */
+    private long groesseInBytes() {
+
+        _lock.readLock().lock();
+        try {
+
+            return alleBitmaps().stream().mapToLong( RoaringBitmap::getLongSizeInBytes ).sum();
+        }
+        finally {
+
+            _lock.readLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,270 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.lang.Math.exp;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelAufgerufenEvent;
+import de.eldecker.dhbw.spring.blog.model.TrendEintrag;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Ermittelt die gerade beliebten Artikel ("Trending") aus dem Strom der
+ * Artikel-Aufrufe, ohne alle Artikel nach Aufrufen sortieren zu müssen.
+ * <br><br>
+ *
+ * Verwendet wird der <i>Space-Saving</i>-Algorithmus mit einer festen Anzahl von
+ * {@link #ANZAHL_ZAEHLER} Zählern: wird ein Artikel aufgerufen, für den es noch keinen
+ * Zähler gibt, dann übernimmt er den Zähler mit dem kleinsten Wert samt diesem Wert
+ * (die Häufigkeit wird also höchstens überschätzt). Der Speicherbedarf ist damit
+ * unabhängig von der Anzahl der Artikel.
+ * <br><br>
+ *
+ * Damit ältere Aufrufe weniger zählen, wird <i>Forward Decay</i> verwendet: ein Aufruf
+ * zum Zeitpunkt {@code t} hat das Gewicht {@code exp((t - landmark) / tau)}. So müssen
+ * die Zähler nicht ständig abgewertet werden, die Reihenfolge entspricht trotzdem
+ * einer exponentiellen Abwertung mit der konfigurierten Halbwertszeit. Damit die
+ * Gewichte nicht überlaufen, werden alle Zähler gelegentlich umskaliert.
+ * <br><br>
+ *
+ * Aufrufe werden nicht im Request-Thread verbucht, sondern in eine begrenzte Warteschlange
+ * gestellt; verbucht werden sie von dem Thread, der gerade die Sperre bekommt, alle anderen
+ * warten nicht. Ist die Warteschlange voll, dann wird der Aufruf verworfen (Metrik
+ * {@code blog.trending.verworfen}); für "Gerade beliebt" ist das unkritisch.
+ * <br><br>
+ *
+ * Die aktuelle Top-K-Liste wird periodisch berechnet und als unveränderliche Liste
+ * vorgehalten, das Auslesen kostet also nur {@code O(K)}.
+ */
+@Service
+public class TrendingArtikel {
+
+    private static final Logger LOG = LoggerFactory.getLogger( TrendingArtikel.class );
+
+    /** Anzahl der Zähler, also maximal überwachte Artikel. */
+    static final int ANZAHL_ZAEHLER = 64;
+
+    /** Anzahl der Artikel in der Top-K-Liste. */
+    static final int TOP_K = 5;
+
+    /** Ab diesem Exponenten werden die Zähler umskaliert (e^50 ist ca. 5*10^21). */
+    private static final double MAX_EXPONENT = 50.0;
+
+    /** Maximale Anzahl noch nicht verbuchter Aufrufe. */
+    static final int KAPAZITAET = 4096;
+
+    /** Noch nicht verbuchter Aufruf. */
+    private record Aufruf( long artikelId, String titel, long zeitpunkt ) {}
+
+    /** Zähler für einen Artikel. */
+    private static final class Zaehler {
+
+        long   artikelId;
+        String titel;
+        double gewicht;
+    }
+
+    /** Noch nicht verbuchte Aufrufe. */
+    private final ArrayBlockingQueue<Aufruf> _aufrufe = new ArrayBlockingQueue<>( KAPAZITAET );
+
+    /** Sperre für die Zähler, wer sie hat, verbucht die Aufrufe aus {@link #_aufrufe}. */
+    private final ReentrantLock _sperre = new ReentrantLock();
+
+    /** Alle belegten Zähler, höchstens {@link #ANZAHL_ZAEHLER} Stück. */
+    private final List<Zaehler> _zaehlerListe = new ArrayList<>( ANZAHL_ZAEHLER );
+
+    /** Zähler nach Artikel-ID für Zugriff in O(1). */
+    private final Map<Long, Zaehler> _zaehlerMap = new HashMap<>( 2 * ANZAHL_ZAEHLER );
+
+    /** Zeitkonstante für exponentielle Abwertung in Millisekunden. */
+    private final double _tauMillis;
+
+    /** Bezugszeitpunkt für Forward Decay. */
+    private long _landmarkMillis;
+
+    /** Zuletzt berechnete Top-K-Liste. */
+    private volatile List<TrendEintrag> _topK = List.of();
+
+    /** Anzahl der Aufrufe, die wegen voller Warteschlange verworfen wurden. */
+    private final Counter _verworfen;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     *
+     * @param halbwertszeitMinuten Nach dieser Zeit zählt ein Aufruf nur noch halb so viel
+     *
+     * @param meterRegistry Für Zähler der verworfenen Aufrufe
+     */
+    public TrendingArtikel( @Value( "${blog.trending.halbwertszeit-minuten:60}" ) long halbwertszeitMinuten,
+                            MeterRegistry meterRegistry ) {
+
+        _tauMillis      = halbwertszeitMinuten * 60_000.0 / Math.log( 2 );
+        _landmarkMillis = System.currentTimeMillis();
+        _verworfen      = meterRegistry.counter( "blog.trending.verworfen" );
+    }
+
+
+    /**
+     * Nimmt einen Aufruf eines Artikels an, ohne auf die Sperre zu warten; ist sie frei,
+     * dann werden gleich alle anstehenden Aufrufe verbucht.
+     *
+     * @param event Event mit ID und Titel des aufgerufenen Artikels
+     */
+    @EventListener
+    public void onArtikelAufgerufen( ArtikelAufgerufenEvent event ) {
+
+        final Aufruf aufruf = new Aufruf( event.artikelId(), event.titel(), System.currentTimeMillis() );
+        if ( !_aufrufe.offer( aufruf ) ) {
+
+            _verworfen.increment();
+        }
+
+        if ( _sperre.tryLock() ) {
+
+            try {
+
+                verbuchen();
+            }
+            finally {
+
+                _sperre.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Verbucht die anstehenden Aufrufe, höchstens {@link #KAPAZITAET} Stück, damit ein
+     * Request-Thread bei Dauerlast nicht endlos für die anderen arbeitet. Nur mit
+     * {@link #_sperre} aufrufen.
+     */
+    private void verbuchen() {
+
+        Aufruf aufruf;
+        for ( int i = 0; i < KAPAZITAET && ( aufruf = _aufrufe.poll() ) != null; i++ ) {
+
+            verbuchen( aufruf );
+        }
+    }
+
+
+    /**
+     * Verbucht einen Aufruf im <i>Space-Saving</i>-Zähler. Nur mit {@link #_sperre} aufrufen.
+     *
+     * @param aufruf Aufruf mit Zeitpunkt
+     */
+    private void verbuchen( Aufruf aufruf ) {
+
+        double exponent = ( aufruf.zeitpunkt() - _landmarkMillis ) / _tauMillis;
+        if ( exponent > MAX_EXPONENT ) {
+
+            umskalieren( aufruf.zeitpunkt() );
+            exponent = 0.0;
+        }
+        final double gewicht = exp( exponent );
+
+        Zaehler zaehler = _zaehlerMap.get( aufruf.artikelId() );
+        if ( zaehler == null ) {
+
+            if ( _zaehlerListe.size() < ANZAHL_ZAEHLER ) {
+
+                zaehler = new Zaehler();
+                _zaehlerListe.add( zaehler );
+
+            } else {
+
+                zaehler = _zaehlerListe.get( 0 );
+                for ( Zaehler z : _zaehlerListe ) {
+
+                    if ( z.gewicht < zaehler.gewicht ) { zaehler = z; }
+                }
+                // Gewicht des verdrängten Artikels wird übernommen (Überschätzung, daher nur Obergrenze)
+                _zaehlerMap.remove( zaehler.artikelId );
+            }
+            zaehler.artikelId = aufruf.artikelId();
+            _zaehlerMap.put( aufruf.artikelId(), zaehler );
+        }
+
+        zaehler.titel    = aufruf.titel();
+        zaehler.gewicht += gewicht;
+    }
+
+
+    /**
+     * Verbucht anstehende Aufrufe und berechnet die Top-K-Liste neu; der Aufwand hängt
+     * nur von der festen Anzahl der Zähler ab, nicht von der Anzahl der Artikel.
+     */
+    @Scheduled( fixedDelayString = "${blog.trending.aktualisierung-ms:10000}" )
+    public void topKAktualisieren() {
+
+        final List<TrendEintrag> kandidaten = new ArrayList<>( ANZAHL_ZAEHLER );
+        _sperre.lock();
+        try {
+
+            verbuchen();
+
+            // Gewichte auf den aktuellen Zeitpunkt beziehen, damit Punkte vergleichbar bleiben
+            final double faktor = exp( -( System.currentTimeMillis() - _landmarkMillis ) / _tauMillis );
+            for ( Zaehler z : _zaehlerListe ) {
+
+                kandidaten.add( new TrendEintrag( z.artikelId, z.titel, z.gewicht * faktor ) );
+            }
+        }
+        finally {
+
+            _sperre.unlock();
+        }
+
+        kandidaten.sort( Comparator.comparingDouble( TrendEintrag::punkte ).reversed() );
+
+        _topK = List.copyOf( kandidaten.subList( 0, Math.min( TOP_K, kandidaten.size() ) ) );
+    }
+
+
+    /**
+     * Liefert die zuletzt berechnete Liste der gerade beliebten Artikel.
+     *
+     * @return Unveränderliche Liste mit höchstens {@link #TOP_K} Einträgen, absteigend
+     *         nach Punkten sortiert; kann leer sein
+     */
+    public List<TrendEintrag> holeTopK() {
+
+        return _topK;
+    }
+
+
+    /**
+     * Bezieht alle Zähler auf einen neuen Bezugszeitpunkt, damit die Gewichte klein bleiben.
+     * Die Reihenfolge der Zähler ändert sich dadurch nicht. Nur mit {@link #_sperre} aufrufen.
+     *
+     * @param jetzt Neuer Bezugszeitpunkt
+     */
+    private void umskalieren( long jetzt ) {
+
+        final double faktor = exp( -( jetzt - _landmarkMillis ) / _tauMillis );
+        for ( Zaehler z : _zaehlerListe ) {
+
+            z.gewicht *= faktor;
+        }
+        _landmarkMillis = jetzt;
+
+        LOG.debug( "Zähler für Trending-Artikel umskaliert mit Faktor {}.", faktor );
+    }
+
+}
@@ -0,0 +1,707 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.BlogException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.JsonNodeFactory;
+import tools.jackson.databind.node.ObjectNode;
+
+
+/**
+ * Gemeinsame Bearbeitung des Inhalts eines Artikels durch mehrere Editoren gleichzeitig
+ * mit <i>Operational Transformation</i> auf dem Server (siehe {@link Delta}); die Editoren
+ * sind über WebSocket verbunden (siehe {@code ZusammenarbeitHandler}).
+ * <br><br>
+ *
+ * Für jeden gerade bearbeiteten Artikel wird ein Dokument im Speicher gehalten: der aktuelle
+ * Inhalt, eine Versionsnummer und die letzten {@code blog.zusammenarbeit.verlauf} Änderungen.
+ * Ein Editor schickt jede Änderung zusammen mit der Version, auf der sie beruht; die Änderung
+ * wird gegen alle seitdem angewendeten Änderungen transformiert, auf den Inhalt angewendet,
+ * dem Editor bestätigt und an alle anderen Editoren verteilt. Jeder Editor hat höchstens
+ * eine unbestätigte Änderung, weitere Eingaben sammelt er bis zur Bestätigung.
+ * <br><br>
+ *
+ * Eingehende Änderungen werden pro Dokument in einer Warteschlange gesammelt und von einem
+ * virtuellen Thread stapelweise unter einer Sperre verarbeitet; jeder Editor bekommt pro
+ * Stapel nur eine Nachricht. Ein Tastendruck kostet also nur die Transformation im Speicher
+ * und keinen Datenbankzugriff: Geänderte Dokumente werden alle {@code blog.zusammenarbeit.snapshot-ms}
+ * mit einem Batch-Update in die Spalte {@code INHALT_DELTA} der Tabelle {@code ARTIKEL}
+ * geschrieben (ohne Erhöhung der Version und ohne {@link ArtikelGespeichertEvent}, die
+ * veröffentlichte HTML-Version ändert sich erst beim Speichern im Editor). Dokumente ohne
+ * Editoren werden danach aus dem Speicher entfernt.
+ * <br><br>
+ *
+ * Ein Snapshot wird nur geschrieben, wenn der Artikel seit dem Laden des Dokuments nicht
+ * gespeichert wurde (Bedingung auf Spalte {@code VERSION}), sonst würde er den gespeicherten
+ * Inhalt überschreiben. Nach dem Speichern eines Artikels wird der gespeicherte Inhalt mit dem
+ * Dokument verglichen: Ist er gleich (Veröffentlichen aus einem der Editoren), dann bekommen die
+ * Editoren nur die neue Version; sonst ist das Dokument veraltet, es wird verworfen und die
+ * Editoren werden getrennt, damit sie den gespeicherten Inhalt neu laden.
+ * <br><br>
+ *
+ * Die Dokumente liegen im Speicher dieser Instanz, alle Editoren eines Artikels müssen also
+ * mit derselben Instanz verbunden sein.
+ * <br><br>
+ *
+ * Metriken: {@code blog.zusammenarbeit.dokumente}, {@code blog.zusammenarbeit.operationen},
+ * {@code blog.zusammenarbeit.stapel} und {@code blog.zusammenarbeit.snapshots}.
+ */
+@Service
+public class Zusammenarbeit {
+
+    private static final Logger LOG = LoggerFactory.getLogger( Zusammenarbeit.class );
+
+    /** SQL für Lesen des Inhalts eines Artikels im Delta-Format und seiner Version. */
+    private static final String SQL_LESEN = "SELECT INHALT_DELTA, VERSION FROM ARTIKEL WHERE ID = ?";
+
+    /**
+     * SQL für Snapshot, die Version wird absichtlich nicht erhöht; ändert nichts, wenn der
+     * Artikel seit dem Laden des Dokuments gespeichert wurde.
+     */
+    private static final String SQL_SNAPSHOT = "UPDATE ARTIKEL SET INHALT_DELTA = ? WHERE ID = ? AND VERSION = ?";
+
+    /** Bean für JDBC-Zugriff. */
+    private final JdbcTemplate _jdbcTemplate;
+
+    /** Für gemeinsame Transaktion aller Snapshots. */
+    private final TransactionTemplate _transactionTemplate;
+
+    /** Bean für Parsen des gespeicherten Inhalts. */
+    private final ObjectMapper _objectMapper;
+
+    /** Anzahl der letzten Änderungen, gegen die eine eingehende Änderung transformiert werden kann. */
+    private final int _maxVerlauf;
+
+    /** Maximale Länge eines Dokuments in Zeichen. */
+    private final int _maxZeichen;
+
+    /** Gerade bearbeitete Dokumente, Schlüssel ist die Artikel-ID. */
+    private final Map<Long, Dokument> _dokumente = new ConcurrentHashMap<>();
+
+    /** Virtuelle Threads für die Verarbeitung der Warteschlangen. */
+    private final ExecutorService _verarbeiter = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Zähler für angewendete Änderungen. */
+    private final Counter _operationenZaehler;
+
+    /** Anzahl Änderungen pro verarbeitetem Stapel. */
+    private final DistributionSummary _stapelGroesse;
+
+    /** Zähler für geschriebene Snapshots. */
+    private final Counter _snapshotZaehler;
+
+
+    /**
+     * Ein Editor, der an der Bearbeitung eines Dokuments teilnimmt.
+     */
+    public interface Teilnehmer {
+
+        /**
+         * Nachricht (JSON) an den Editor senden; darf nicht blockieren und keine Exception werfen.
+         *
+         * @param json Nachricht
+         */
+        void senden( String json );
+
+        /**
+         * Verbindung zum Editor wegen eines Fehlers trennen.
+         *
+         * @param grund Fehlerbeschreibung
+         */
+        void trennen( String grund );
+    }
+
+
+    /**
+     * Eingegangene, noch nicht verarbeitete Änderung.
+     *
+     * @param teilnehmer Editor, der die Änderung geschickt hat
+     *
+     * @param basisVersion Version des Dokuments, auf der die Änderung beruht
+     *
+     * @param delta Änderung
+     */
+    private record Eingang( Teilnehmer teilnehmer, long basisVersion, Delta delta ) {
+    }
+
+
+    /**
+     * Gespeicherter Stand eines Artikels.
+     *
+     * @param inhalt Inhalt im Delta-Format (JSON), kann {@code null} sein
+     *
+     * @param version Wert der Spalte {@code VERSION}
+     */
+    private record Stand( String inhalt, long version ) {
+    }
+
+
+    /**
+     * Ein gerade bearbeitetes Dokument; alle Felder außer der Warteschlange werden nur
+     * mit Sperre auf dem Objekt gelesen und geändert.
+     */
+    private final class Dokument {
+
+        /** ID des Artikels. */
+        private final long _artikelId;
+
+        /** Aktueller Inhalt. */
+        private Delta _inhalt;
+
+        /** Anzahl der seit dem Laden angewendeten Änderungen. */
+        private long _version = 0;
+
+        /** Version des zuletzt geschriebenen Snapshots. */
+        private long _gespeicherteVersion = 0;
+
+        /** Spalte {@code VERSION} des Artikels, auf dem das Dokument beruht. */
+        private long _artikelVersion;
+
+        /** Letzte angewendete Änderungen, die letzte hat Version {@link #_version}. */
+        private final ArrayDeque<Delta> _verlauf = new ArrayDeque<>();
+
+        /** Verbundene Editoren. */
+        private final Set<Teilnehmer> _teilnehmer = new LinkedHashSet<>();
+
+        /** {@code true}, wenn das Dokument aus {@link #_dokumente} entfernt wurde. */
+        private boolean _entfernt = false;
+
+        /** Noch nicht verarbeitete Änderungen. */
+        private final Queue<Eingang> _eingang = new ConcurrentLinkedQueue<>();
+
+        /** {@code true}, solange ein Thread die Warteschlange verarbeitet. */
+        private final AtomicBoolean _verarbeitetGerade = new AtomicBoolean( false );
+
+
+        Dokument( long artikelId, Delta inhalt, long artikelVersion ) {
+
+            _artikelId      = artikelId;
+            _inhalt         = inhalt;
+            _artikelVersion = artikelVersion;
+        }
+
+
+        /**
+         * Verwirft das Dokument: entfernt es aus {@link #_dokumente}, weitere Änderungen werden
+         * nicht mehr angenommen.
+         *
+         * @return Editoren, die bis jetzt verbunden waren und getrennt werden müssen
+         */
+        List<Teilnehmer> verwerfen() {
+
+            _entfernt = true;
+            _dokumente.remove( _artikelId, this );
+
+            final List<Teilnehmer> teilnehmer = new ArrayList<>( _teilnehmer );
+            _teilnehmer.clear();
+
+            return teilnehmer;
+        }
+
+
+        /**
+         * Transformiert eine Änderung gegen alle seit {@code basisVersion} angewendeten
+         * Änderungen und wendet sie an.
+         *
+         * @return Transformierte Änderung, hat die neue {@link #_version}
+         *
+         * @throws BlogException Version unbekannt oder Änderung passt nicht zum Dokument
+         */
+        Delta anwenden( long basisVersion, Delta delta ) throws BlogException {
+
+            final long verpasst = _version - basisVersion;
+            if ( verpasst < 0 || verpasst > _verlauf.size() ) {
+
+                throw new BlogException( "Version " + basisVersion + " ist nicht (mehr) bekannt, " +
+                                         "aktuelle Version ist " + _version + "." );
+            }
+
+            final Iterator<Delta> iter = _verlauf.descendingIterator();
+            final List<Delta>     neuere = new ArrayList<>( (int) verpasst );
+            for ( int i = 0; i < verpasst; i++ ) {
+
+                neuere.add( 0, iter.next() );
+            }
+            for ( Delta vorher : neuere ) {
+
+                delta = vorher.transformieren( delta, true );
+            }
+
+            if ( delta.basisLaenge() > _inhalt.laenge() ) {
+
+                throw new BlogException( "Änderung passt nicht zum Inhalt von Artikel " + _artikelId + "." );
+            }
+            final Delta neuerInhalt = _inhalt.verketten( delta );
+            if ( neuerInhalt.laenge() > _maxZeichen ) {
+
+                throw new BlogException( "Artikel " + _artikelId + " hätte mehr als " + _maxZeichen + " Zeichen." );
+            }
+
+            _inhalt = neuerInhalt;
+            _version++;
+            _verlauf.addLast( delta );
+            if ( _verlauf.size() > _maxVerlauf ) {
+
+                _verlauf.removeFirst();
+            }
+
+            return delta;
+        }
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public Zusammenarbeit( JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           ObjectMapper objectMapper,
+                           @Value( "${blog.zusammenarbeit.verlauf:1000}"        ) int maxVerlauf,
+                           @Value( "${blog.zusammenarbeit.max-zeichen:1000000}" ) int maxZeichen,
+                           MeterRegistry meterRegistry ) {
+
+        _jdbcTemplate        = jdbcTemplate;
+        _transactionTemplate = transactionTemplate;
+        _objectMapper        = objectMapper;
+        _maxVerlauf          = maxVerlauf;
+        _maxZeichen          = maxZeichen;
+
+        Gauge.builder( "blog.zusammenarbeit.dokumente", _dokumente, Map::size )
+             .description( "Anzahl gerade gemeinsam bearbeiteter Artikel im Speicher" )
+             .register( meterRegistry );
+
+        _operationenZaehler = Counter.builder( "blog.zusammenarbeit.operationen" )
+                                     .description( "Anzahl angewendeter Änderungen bei gemeinsamer Bearbeitung" )
+                                     .register( meterRegistry );
+
+        _stapelGroesse = DistributionSummary.builder( "blog.zusammenarbeit.stapel" )
+                                            .description( "Anzahl Änderungen pro gemeinsam verarbeitetem Stapel" )
+                                            .register( meterRegistry );
+
+        _snapshotZaehler = Counter.builder( "blog.zusammenarbeit.snapshots" )
+                                  .description( "Anzahl in die Datenbank geschriebener Dokumente" )
+                                  .register( meterRegistry );
+    }
+
+
+    /**
+     * Editor für einen Artikel anmelden; der Editor bekommt den aktuellen Inhalt und die
+     * Version als erste Nachricht ({@code typ=start}). Die Berechtigung muss vorher
+     * geprüft worden sein.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param teilnehmer Editor
+     *
+     * @throws BlogException Kein Artikel mit {@code artikelId} gefunden
+     */
+    public void beitreten( long artikelId, Teilnehmer teilnehmer ) throws BlogException {
+
+        while ( true ) {
+
+            final Dokument dokument = _dokumente.computeIfAbsent( artikelId, this::laden );
+            if ( dokument == null ) {
+
+                throw new BlogException( "Kein Artikel mit ID=" + artikelId + " gefunden." );
+            }
+
+            synchronized ( dokument ) {
+
+                if ( dokument._entfernt ) {
+
+                    continue; // gerade nach Snapshot entfernt, neu laden
+                }
+
+                dokument._teilnehmer.add( teilnehmer );
+
+                final ObjectNode start = JsonNodeFactory.instance.objectNode();
+                start.put( "typ"    , "start"                    );
+                start.put( "version", dokument._version          );
+                start.set( "delta"  , dokument._inhalt.alsJson() );
+                teilnehmer.senden( start.toString() );
+
+                LOG.debug( "Editor beigetreten für Artikel {}, jetzt {} Editoren.",
+                           artikelId, dokument._teilnehmer.size() );
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Editor abmelden, z.B. nach Schließen der WebSocket-Verbindung.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param teilnehmer Editor
+     */
+    public void verlassen( long artikelId, Teilnehmer teilnehmer ) {
+
+        final Dokument dokument = _dokumente.get( artikelId );
+        if ( dokument != null ) {
+
+            synchronized ( dokument ) {
+
+                dokument._teilnehmer.remove( teilnehmer );
+            }
+        }
+    }
+
+
+    /**
+     * Änderung eines Editors in die Warteschlange des Dokuments stellen; kehrt sofort zurück.
+     * Das Ergebnis bekommt der Editor als Nachricht ({@code typ=ops}).
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param teilnehmer Editor, der die Änderung geschickt hat
+     *
+     * @param basisVersion Version des Dokuments, auf der die Änderung beruht
+     *
+     * @param delta Änderung
+     */
+    public void einreichen( long artikelId, Teilnehmer teilnehmer, long basisVersion, Delta delta ) {
+
+        final Dokument dokument = _dokumente.get( artikelId );
+        if ( dokument == null ) {
+
+            teilnehmer.trennen( "Artikel " + artikelId + " wird nicht bearbeitet." );
+            return;
+        }
+
+        dokument._eingang.add( new Eingang( teilnehmer, basisVersion, delta ) );
+        if ( dokument._verarbeitetGerade.compareAndSet( false, true ) ) {
+
+            _verarbeiter.execute( () -> verarbeiten( dokument ) );
+        }
+    }
+
+
+    /**
+     * Nach dem Speichern eines Artikels: Ist der gespeicherte Inhalt gleich dem Dokument
+     * (Veröffentlichen im Editor), dann wird die neue Version an alle Editoren dieses Artikels
+     * geschickt, damit deren {@code If-Match} gültig bleibt. Sonst wurde der Artikel an anderer
+     * Stelle geändert (z.B. über die REST-API oder mit einer noch nicht verteilten Änderung):
+     * Das Dokument wird verworfen und die Editoren werden getrennt, damit weder sie noch der
+     * nächste Snapshot mit dem veralteten Inhalt weiterarbeiten.
+     *
+     * @param event Event mit ID des gespeicherten Artikels
+     */
+    @TransactionalEventListener( fallbackExecution = true )
+    public void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+        final long artikelId = event.artikelId();
+
+        final Dokument dokument = _dokumente.get( artikelId );
+        if ( dokument == null ) {
+
+            return;
+        }
+
+        final List<Stand> staende = _jdbcTemplate.query( SQL_LESEN,
+                                                         ( rs, zeile ) -> new Stand( rs.getString( 1 ), rs.getLong( 2 ) ),
+                                                         artikelId );
+        final Delta gespeichert = staende.isEmpty() ? null : parsen( artikelId, staende.get( 0 ).inhalt() );
+
+        final List<Teilnehmer> getrennt;
+        synchronized ( dokument ) {
+
+            if ( dokument._entfernt ) {
+
+                return;
+            }
+
+            if ( gespeichert != null && gespeichert.equals( dokument._inhalt ) ) {
+
+                dokument._artikelVersion      = staende.get( 0 ).version();
+                dokument._gespeicherteVersion = dokument._version;
+
+                final ObjectNode nachricht = JsonNodeFactory.instance.objectNode();
+                nachricht.put( "typ" , "veroeffentlicht"                     );
+                nachricht.put( "etag", "\"" + dokument._artikelVersion + "\"" );
+
+                for ( Teilnehmer teilnehmer : dokument._teilnehmer ) {
+
+                    teilnehmer.senden( nachricht.toString() );
+                }
+                return;
+            }
+
+            getrennt = dokument.verwerfen();
+        }
+
+        LOG.info( "Artikel {} wurde mit anderem Inhalt gespeichert, gemeinsame Bearbeitung mit {} Editoren beendet.",
+                  artikelId, getrennt.size() );
+        getrennt.forEach( teilnehmer -> teilnehmer.trennen( "Artikel wurde inzwischen gespeichert, bitte neu laden." ) );
+    }
+
+
+    /**
+     * Schreibt alle seit dem letzten Snapshot geänderten Dokumente mit einem Batch-Update in
+     * einer Transaktion und entfernt bereits geschriebene Dokumente ohne Editoren aus dem
+     * Speicher. Schlägt das Schreiben fehl, dann wird es beim nächsten Mal wiederholt.
+     */
+    @Scheduled( fixedDelayString = "${blog.zusammenarbeit.snapshot-ms:5000}" )
+    public synchronized void snapshotsSchreiben() {
+
+        final Map<Dokument, Long> stapel = new LinkedHashMap<>();
+        final List<Object[]>      args   = new ArrayList<>();
+        for ( Dokument dokument : _dokumente.values() ) {
+
+            synchronized ( dokument ) {
+
+                if ( dokument._version > dokument._gespeicherteVersion ) {
+
+                    stapel.put( dokument, dokument._version );
+                    args.add( new Object[]{ dokument._inhalt.toString(), dokument._artikelId, dokument._artikelVersion } );
+
+                } else if ( dokument._teilnehmer.isEmpty() ) {
+
+                    dokument._entfernt = true;
+                    _dokumente.remove( dokument._artikelId, dokument );
+                }
+            }
+        }
+
+        if ( args.isEmpty() ) {
+
+            return;
+        }
+
+        final int[] anzahlen;
+        try {
+
+            anzahlen = _transactionTemplate.execute( status -> _jdbcTemplate.batchUpdate( SQL_SNAPSHOT, args ) );
+        }
+        catch ( DataAccessException ex ) {
+
+            LOG.error( "Snapshots von {} gemeinsam bearbeiteten Artikeln konnten nicht geschrieben werden: {}",
+                       args.size(), ex.getMessage() );
+            return;
+        }
+
+        int i = 0;
+        for ( Map.Entry<Dokument, Long> eintrag : stapel.entrySet() ) {
+
+            final Dokument         dokument = eintrag.getKey();
+            final List<Teilnehmer> getrennt;
+            synchronized ( dokument ) {
+
+                if ( anzahlen[ i++ ] > 0 ) {
+
+                    dokument._gespeicherteVersion = Math.max( dokument._gespeicherteVersion, eintrag.getValue() );
+                    continue;
+                }
+                if ( dokument._entfernt ) {
+
+                    continue; // nach Speichern schon verworfen
+                }
+                getrennt = dokument.verwerfen();
+            }
+
+            LOG.warn( "Snapshot von Artikel {} nicht geschrieben, weil er inzwischen gespeichert oder gelöscht wurde; " +
+                      "gemeinsame Bearbeitung mit {} Editoren beendet.", dokument._artikelId, getrennt.size() );
+            getrennt.forEach( teilnehmer -> teilnehmer.trennen( "Artikel wurde inzwischen gespeichert, bitte neu laden." ) );
+        }
+        _snapshotZaehler.increment( args.size() );
+
+        LOG.debug( "Snapshots von {} gemeinsam bearbeiteten Artikeln geschrieben.", args.size() );
+    }
+
+
+    /**
+     * Beim Herunterfahren die Verarbeitung beenden und letzte Snapshots schreiben.
+     */
+    @PreDestroy
+    public void herunterfahren() {
+
+        _verarbeiter.shutdownNow();
+        snapshotsSchreiben();
+    }
+
+
+    /**
+     * Lädt den Inhalt eines Artikels für die gemeinsame Bearbeitung.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @return Neues Dokument oder {@code null}, wenn es keinen Artikel mit {@code artikelId} gibt
+     */
+    private Dokument laden( long artikelId ) {
+
+        final List<Stand> ergebnis =
+                _jdbcTemplate.query( SQL_LESEN, ( rs, zeile ) -> new Stand( rs.getString( 1 ), rs.getLong( 2 ) ), artikelId );
+        if ( ergebnis.isEmpty() ) {
+
+            return null;
+        }
+
+        final Stand stand = ergebnis.get( 0 );
+
+        return new Dokument( artikelId, parsen( artikelId, stand.inhalt() ), stand.version() );
+    }
+
+
+    /**
+     * Parst den gespeicherten Inhalt eines Artikels.
+     *
+     * @param artikelId ID des Artikels, für Log
+     *
+     * @param json Inhalt im Delta-Format, kann {@code null} sein
+     *
+     * @return Inhalt als Dokument, leeres Dokument wenn {@code null} oder ungültig
+     */
+    private Delta parsen( long artikelId, String json ) {
+
+        if ( json == null ) {
+
+            return Delta.leeresDokument();
+        }
+        try {
+
+            final Delta inhalt = Delta.ausJson( _objectMapper.readTree( json ) );
+            if ( inhalt.istDokument() ) {
+
+                return inhalt;
+            }
+            LOG.warn( "Inhalt von Artikel {} ist kein Dokument, Bearbeitung beginnt mit leerem Dokument.", artikelId );
+        }
+        catch ( JacksonException | BlogException ex ) {
+
+            LOG.warn( "Inhalt von Artikel {} ist kein gültiges Delta, Bearbeitung beginnt mit leerem Dokument: {}",
+                      artikelId, ex.getMessage() );
+        }
+        return Delta.leeresDokument();
+    }
+
+
+    /**
+     * Verarbeitet die Warteschlange eines Dokuments, bis sie leer ist.
+     *
+     * @param dokument Dokument
+     */
+    private void verarbeiten( Dokument dokument ) {
+
+        do {
+
+            final List<Eingang> stapel = new ArrayList<>();
+            Eingang eingang;
+            while ( ( eingang = dokument._eingang.poll() ) != null ) {
+
+                stapel.add( eingang );
+            }
+            if ( !stapel.isEmpty() ) {
+
+                verarbeiteStapel( dokument, stapel );
+            }
+            dokument._verarbeitetGerade.set( false );
+
+            // Änderung kann nach dem letzten poll() und vor set(false) eingereiht worden sein
+        } while ( !dokument._eingang.isEmpty() && dokument._verarbeitetGerade.compareAndSet( false, true ) );
+    }
+
+
+    /**
+     * Wendet einen Stapel von Änderungen an und schickt danach jedem Editor eine Nachricht
+     * mit den Bestätigungen seiner eigenen und den transformierten Änderungen der anderen.
+     * Gesendet wird erst nach Freigabe der Sperre, aber noch in diesem Thread, damit die
+     * Reihenfolge der Nachrichten erhalten bleibt.
+     *
+     * @param dokument Dokument
+     *
+     * @param stapel Eingegangene Änderungen in Reihenfolge des Eingangs
+     */
+    private void verarbeiteStapel( Dokument dokument, List<Eingang> stapel ) {
+
+        final Map<Teilnehmer, ArrayNode> ausgang = new LinkedHashMap<>();
+        final Map<Teilnehmer, String>    fehler  = new LinkedHashMap<>();
+
+        synchronized ( dokument ) {
+
+            for ( Eingang eingang : stapel ) {
+
+                final Teilnehmer absender = eingang.teilnehmer();
+                if ( !dokument._teilnehmer.contains( absender ) ) {
+
+                    continue; // Verbindung inzwischen geschlossen
+                }
+
+                final Delta delta;
+                try {
+
+                    delta = dokument.anwenden( eingang.basisVersion(), eingang.delta() );
+                }
+                catch ( BlogException ex ) {
+
+                    LOG.warn( "Änderung für Artikel {} abgelehnt: {}", dokument._artikelId, ex.getMessage() );
+                    dokument._teilnehmer.remove( absender );
+                    fehler.put( absender, ex.getMessage() );
+                    continue;
+                }
+                _operationenZaehler.increment();
+
+                final ObjectNode deltaJson = delta.alsJson();
+                for ( Teilnehmer teilnehmer : dokument._teilnehmer ) {
+
+                    final ObjectNode eintrag =
+                            ausgang.computeIfAbsent( teilnehmer, t -> JsonNodeFactory.instance.arrayNode() ).addObject();
+                    eintrag.put( "version", dokument._version );
+                    if ( teilnehmer == absender ) {
+
+                        eintrag.put( "bestaetigt", true );
+
+                    } else {
+
+                        eintrag.set( "delta", deltaJson );
+                    }
+                }
+            }
+        }
+        _stapelGroesse.record( stapel.size() );
+
+        ausgang.forEach( ( teilnehmer, liste ) -> {
+
+            final ObjectNode nachricht = JsonNodeFactory.instance.objectNode();
+            nachricht.put( "typ"  , "ops" );
+            nachricht.set( "liste", liste );
+            teilnehmer.senden( nachricht.toString() );
+        });
+        fehler.forEach( Teilnehmer::trennen );
+    }
+
+}
@@ -0,0 +1,17 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Eintrag für die Box "Ähnliche Artikel" auf der Seite zur Anzeige eines Artikels.
+ *
+ * @param id ID des ähnlichen Artikels
+ *
+ * @param titel Überschrift des ähnlichen Artikels
+ *
+ * @param aehnlichkeit Geschätzte Jaccard-Ähnlichkeit zwischen {@code 0.0} und {@code 1.0}
+ */
+public record AehnlicherArtikel( long   id,
+                                 String titel,
+                                 double aehnlichkeit
+                               ) {
+}
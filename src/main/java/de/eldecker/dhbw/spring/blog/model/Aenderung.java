@@ -0,0 +1,28 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * Eintrag aus dem Änderungsprotokoll (Tabelle {@code AENDERUNG_PROTOKOLL}).
+ *
+ * @param id Fortlaufende Nummer des Eintrags
+ *
+ * @param tabelle Name der geänderten Tabelle, z.B. {@code ARTIKEL}
+ *
+ * @param datensatzId Primärschlüssel des geänderten Datensatzes
+ *
+ * @param art Art der Änderung, siehe Konstanten in {@code AenderungEntity}
+ *
+ * @param zeitpunkt Zeitpunkt der Änderung
+ *
+ * @param knoten Kennung der Instanz der Anwendung, welche die Änderung geschrieben hat
+ */
+public record Aenderung( long          id,
+                         String        tabelle,
+                         long          datensatzId,
+                         String        art,
+                         LocalDateTime zeitpunkt,
+                         String        knoten
+                       ) {
+}
@@ -0,0 +1,77 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+
+
+/**
+ * Position für <i>Keyset-Pagination</i> der Archivseiten: die nächste Seite beginnt mit dem
+ * ersten Artikel, der in der Sortierung (absteigend nach Zeitpunkt des Anlegens, dann ID) nach
+ * dem Artikel mit diesen Werten kommt. Anders als mit {@code OFFSET} muss die Datenbank die
+ * Artikel der vorherigen Seiten dafür nicht lesen und überspringen.
+ *
+ * @param zeitpunkt Zeitpunkt des Anlegens des letzten Artikels der vorherigen Seite
+ *
+ * @param id ID des letzten Artikels der vorherigen Seite; {@code 0} für eine Position vor
+ *           allen Artikeln mit genau diesem Zeitpunkt
+ */
+public record ArchivPosition( LocalDateTime zeitpunkt,
+                              long          id
+                            ) {
+
+    /** Trennzeichen zwischen Zeitpunkt und ID im URL-Parameter. */
+    private static final char TRENNER = '_';
+
+
+    /**
+     * Position nach dem angegebenen Artikel.
+     *
+     * @param artikel Letzter Artikel der vorherigen Seite
+     *
+     * @return Position für die nächste Seite
+     */
+    public static ArchivPosition nach( ArtikelKurzDTO artikel ) {
+
+        return new ArchivPosition( artikel.zeitpunktAngelegt(), artikel.id() );
+    }
+
+
+    /**
+     * Position für URL-Parameter, z.B. {@code 2026-10-19T06:10:57.537_552}.
+     *
+     * @return Zeitpunkt und ID als String
+     */
+    public String alsParameter() {
+
+        return zeitpunkt.toString() + TRENNER + id;
+    }
+
+
+    /**
+     * Position aus URL-Parameter, siehe {@link #alsParameter()}.
+     *
+     * @param parameter Wert des URL-Parameters
+     *
+     * @return Optional mit Position oder leeres Optional, wenn der Parameter ungültig ist
+     */
+    public static Optional<ArchivPosition> ausParameter( String parameter ) {
+
+        final int trenner = parameter.lastIndexOf( TRENNER );
+        if ( trenner < 0 ) {
+
+            return Optional.empty();
+        }
+
+        try {
+
+            return Optional.of( new ArchivPosition( LocalDateTime.parse( parameter.substring( 0, trenner ) ),
+                                                    Long.parseLong( parameter.substring( trenner + 1 ) ) ) );
+        }
+        catch ( DateTimeParseException | NumberFormatException ex ) {
+
+            return Optional.empty();
+        }
+    }
+
+}
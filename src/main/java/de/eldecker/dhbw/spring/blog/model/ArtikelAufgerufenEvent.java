@@ -0,0 +1,16 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Event, das bei jedem Aufruf der Seite eines Artikels veröffentlicht wird;
+ * wird z.B. für Aufrufzähler und "Gerade beliebt"-Liste ausgewertet.
+ *
+ * @param artikelId ID des aufgerufenen Artikels
+ *
+ * @param titel Titel des aufgerufenen Artikels (für Anzeige in Listen, damit
+ *              dafür nicht auf die Datenbank zugegriffen werden muss)
+ */
+public record ArtikelAufgerufenEvent( long   artikelId,
+                                      String titel
+                                    ) {
+}
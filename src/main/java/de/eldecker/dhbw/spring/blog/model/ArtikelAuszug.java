@@ -0,0 +1,17 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Beim Speichern aus dem Plaintext-Inhalt berechnete Angaben für Artikelliste und Suchergebnis.
+ *
+ * @param auszug Anfang des Inhalts als Teaser, an einer Wortgrenze gekürzt; kann leer sein
+ *
+ * @param wortanzahl Anzahl Wörter des Inhalts
+ *
+ * @param lesezeit Geschätzte Lesezeit in Minuten, {@code 0} für leeren Inhalt
+ */
+public record ArtikelAuszug( String auszug,
+                             int    wortanzahl,
+                             int    lesezeit
+                           ) {
+}
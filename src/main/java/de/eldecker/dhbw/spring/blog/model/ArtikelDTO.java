@@ -13,11 +13,15 @@ package de.eldecker.dhbw.spring.blog.model;
  * @param inhaltHTML Inhalt in HTML-Format (für Darstellung mit Thymeleaf)
  *
  * @param inhaltPlain Inhalt im Plaintext-Format (für Suche)
+ *
+ * @param tags Tags durch Komma getrennt, wie im Editor eingegeben; {@code null} wenn nicht
+ *             angegeben (beim Ändern bleiben die Tags dann unverändert)
  */
-public record ArtikelDTO( int    artikelID   ,
+public record ArtikelDTO( long   artikelID   ,
                           String titel       ,
                           String inhaltDelta ,
                           String inhaltHTML  ,
-                          String inhaltPlain
+                          String inhaltPlain ,
+                          String tags
                         ) {
 }
@@ -0,0 +1,12 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Event, das nach dem Speichern eines neuen oder geänderten Artikels
+ * veröffentlicht wird, damit In-Memory-Strukturen (z.B. Indexe) inkrementell
+ * aktualisiert werden können, ohne alle Artikel neu zu laden.
+ *
+ * @param artikelId ID des gespeicherten Artikels
+ */
+public record ArtikelGespeichertEvent( long artikelId ) {
+}
@@ -0,0 +1,35 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * DTO für einen Artikel in Listen und Suchergebnissen der reaktiven Lese-API
+ * und der Seiten, also ohne Inhalt.
+ *
+ * @param id Primärschlüssel des Artikels
+ *
+ * @param titel Titel/Überschrift des Artikels
+ *
+ * @param autor Name des Autors, kann {@code null} sein
+ *
+ * @param zeitpunktAngelegt Zeitpunkt, zu dem der Artikel angelegt wurde
+ *
+ * @param zeitpunktGeaendert Zeitpunkt der letzten Änderung
+ *
+ * @param auszug Anfang des Inhalts als Teaser, {@code null} wenn noch nicht berechnet
+ *
+ * @param wortanzahl Anzahl Wörter des Inhalts, {@code null} wenn noch nicht berechnet
+ *
+ * @param lesezeit Geschätzte Lesezeit in Minuten, {@code null} wenn noch nicht berechnet
+ */
+public record ArtikelKurzDTO( long          id,
+                              String        titel,
+                              String        autor,
+                              LocalDateTime zeitpunktAngelegt,
+                              LocalDateTime zeitpunktGeaendert,
+                              String        auszug,
+                              Integer       wortanzahl,
+                              Integer       lesezeit
+                            ) {
+}
@@ -0,0 +1,29 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * DTO für einen einzelnen Artikel inkl. Inhalt in der reaktiven Lese-API.
+ *
+ * @param id Primärschlüssel des Artikels
+ *
+ * @param titel Titel/Überschrift des Artikels
+ *
+ * @param autor Name des Autors, kann {@code null} sein
+ *
+ * @param zeitpunktAngelegt Zeitpunkt, zu dem der Artikel angelegt wurde
+ *
+ * @param zeitpunktGeaendert Zeitpunkt der letzten Änderung
+ *
+ * @param inhaltHTML Inhalt im HTML-Format (ohne Titel/Überschrift), wurde beim
+ *                   Speichern schon bereinigt
+ */
+public record ArtikelLesenDTO( long          id,
+                               String        titel,
+                               String        autor,
+                               LocalDateTime zeitpunktAngelegt,
+                               LocalDateTime zeitpunktGeaendert,
+                               String        inhaltHTML
+                             ) {
+}
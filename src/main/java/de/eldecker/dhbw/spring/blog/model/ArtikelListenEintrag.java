@@ -0,0 +1,15 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Eintrag für Artikelliste und Suchergebnis, wie er von
+ * {@link de.eldecker.dhbw.spring.blog.db.ArtikelListenLeser} gelesen wird.
+ *
+ * @param artikel Artikel ohne Inhalt
+ *
+ * @param aufrufe Anzahl Aufrufe laut Datenbank, ohne die noch nicht geschriebenen
+ */
+public record ArtikelListenEintrag( ArtikelKurzDTO artikel,
+                                    long           aufrufe
+                                  ) {
+}
@@ -0,0 +1,19 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Ereignis für den Live-Feed (Server-Sent Events), wenn ein Artikel angelegt oder
+ * geändert wurde; enthält nur das Nötigste, damit der Leser entscheiden kann, ob er
+ * die Liste neu laden will.
+ *
+ * @param artikelId ID des Artikels
+ *
+ * @param titel Titel/Überschrift des Artikels
+ *
+ * @param neu {@code true}, wenn der Artikel neu angelegt wurde, {@code false} bei Änderung
+ */
+public record ArtikelLiveEreignis( long    artikelId,
+                                   String  titel,
+                                   boolean neu
+                                 ) {
+}
@@ -0,0 +1,17 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Fertig gerenderte HTML-Seite für einen Artikel.
+ *
+ * @param artikelId ID des Artikels
+ *
+ * @param titel Titel des Artikels (z.B. für {@link ArtikelAufgerufenEvent})
+ *
+ * @param html Vollständiges HTML-Dokument
+ */
+public record ArtikelSeite( long   artikelId,
+                            String titel,
+                            String html
+                          ) {
+}
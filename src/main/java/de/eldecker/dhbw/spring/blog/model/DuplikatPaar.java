@@ -0,0 +1,18 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Paar von Artikeln, deren SimHash-Fingerabdrücke sich um höchstens die
+ * konfigurierte Hamming-Distanz unterscheiden (Beinahe-Duplikate).
+ *
+ * @param artikelId1 ID des älteren Artikels (kleinere ID)
+ *
+ * @param artikelId2 ID des neueren Artikels (größere ID)
+ *
+ * @param distanz Hamming-Distanz der beiden Fingerabdrücke
+ */
+public record DuplikatPaar( long artikelId1,
+                            long artikelId2,
+                            int  distanz
+                          ) {
+}
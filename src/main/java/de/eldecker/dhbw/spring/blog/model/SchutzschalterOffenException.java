@@ -0,0 +1,22 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Exception, wenn ein Datenbankzugriff nicht ausgeführt wird, weil der Schutzschalter
+ * (<i>Circuit Breaker</i>) offen ist: Die Datenbank war zuletzt zu langsam oder hat zu
+ * oft Fehler geliefert, deshalb wird sofort abgelehnt statt gewartet.
+ */
+@SuppressWarnings("serial")
+public class SchutzschalterOffenException extends RuntimeException {
+
+    /**
+     * Konstruktor um Exception mit Fehlertext zu erzeugen.
+     *
+     * @param fehlertext Beschreibung von Fehler
+     */
+    public SchutzschalterOffenException( String fehlertext ) {
+
+        super( fehlertext );
+    }
+
+}
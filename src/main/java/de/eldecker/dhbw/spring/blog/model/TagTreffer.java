@@ -0,0 +1,17 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+import java.util.List;
+
+
+/**
+ * Ergebnis einer Filterung mit dem Tag-Index.
+ *
+ * @param anzahl Anzahl aller Artikel, die den Filter erfüllen
+ *
+ * @param artikelIds IDs der neuesten dieser Artikel (höchste IDs zuerst), höchstens so viele
+ *                   wie bei der Abfrage angegeben
+ */
+public record TagTreffer( int        anzahl,
+                          List<Long> artikelIds
+                        ) {
+}
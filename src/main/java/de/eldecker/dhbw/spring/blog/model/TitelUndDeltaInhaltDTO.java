@@ -9,8 +9,11 @@ package de.eldecker.dhbw.spring.blog.model;
  * @param titel Überschrift von Artikel
  *  
  * @param deltaInhalt Artikel mit Deltaformat für quilljs
+ *
+ * @param tags Tags des Artikels durch Komma getrennt, für Eingabefeld im Editor
  */
 public record TitelUndDeltaInhaltDTO( String titel, 
-                                      String deltaInhalt 
+                                      String deltaInhalt,
+                                      String tags
                                     ) {
 }
@@ -0,0 +1,18 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Eintrag in der Liste der gerade beliebten Artikel.
+ *
+ * @param artikelId ID des Artikels
+ *
+ * @param titel Titel des Artikels
+ *
+ * @param punkte Zeitlich abgewichtete Anzahl der Aufrufe (Obergrenze, weil
+ *               Space-Saving die Häufigkeit höchstens überschätzt)
+ */
+public record TrendEintrag( long   artikelId,
+                            String titel,
+                            double punkte
+                          ) {
+}
@@ -0,0 +1,22 @@
+package de.eldecker.dhbw.spring.blog.model;
+
+
+/**
+ * Exception, wenn eine Änderung an einem Artikel nicht gespeichert wird, weil sie auf einer
+ * veralteten Version beruht: Der Artikel wurde seit dem Laden von jemand anderem geändert
+ * (optimistisches Sperren), z.B. in einem zweiten Browser-Tab.
+ */
+@SuppressWarnings("serial")
+public class VersionKonfliktException extends RuntimeException {
+
+    /**
+     * Konstruktor um Exception mit Fehlertext zu erzeugen.
+     *
+     * @param fehlertext Beschreibung von Fehler
+     */
+    public VersionKonfliktException( String fehlertext ) {
+
+        super( fehlertext );
+    }
+
+}
@@ -21,7 +21,8 @@ public class Sicherheitskonfiguration {
                                                                "/styles.css"   ,
                                                                "/h2-console/**",
                                                                "/app/**"       ,
-                                                               "/public/**"
+                                                               "/public/**"    ,
+                                                               "/assets/**"
                                                              };
 
     /**
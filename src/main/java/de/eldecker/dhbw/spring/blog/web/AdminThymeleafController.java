@@ -2,7 +2,10 @@ package de.eldecker.dhbw.spring.blog.web;
 
 import static java.lang.String.format;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,8 +18,13 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.db.ArtikelSignaturProjektion;
 import de.eldecker.dhbw.spring.blog.db.AutorEntity;
 import de.eldecker.dhbw.spring.blog.db.AutorenRepo;
+import de.eldecker.dhbw.spring.blog.logik.DuplikatIndex;
+import de.eldecker.dhbw.spring.blog.logik.Speicherdienst;
+import de.eldecker.dhbw.spring.blog.model.DuplikatPaar;
 import de.eldecker.dhbw.spring.blog.sicherheit.RollenChecker;
 import de.eldecker.dhbw.spring.blog.sicherheit.Sicherheitskonfiguration;
 
@@ -42,17 +50,32 @@ public class AdminThymeleafController {
     /** Bean zum Überprüfen, ob Nutzer bestimmte Rollen hat. */
     private final RollenChecker _rollenChecker;
 
+    /** Repo-Bean für Zugriff auf Datenbanktabelle mit Artikeln. */
+    private final ArtikelRepo _artikelRepo;
+
+    /** Bean für Suche nach Beinahe-Duplikaten. */
+    private final DuplikatIndex _duplikatIndex;
+
+    /** Bean für Speichern von Autoren inkl. Eintrag im Änderungsprotokoll. */
+    private final Speicherdienst _speicherdienst;
+
 
     /**
      * Konstruktor für <i>Dependency Injection</i>.
      */
     public AdminThymeleafController( AutorenRepo autorenRepo,
                                      BCryptPasswordEncoder bcryptEncoder,
-                                     RollenChecker rollenChecker ) {
-
-        _autorenRepo   = autorenRepo;
-        _bcryptEncoder = bcryptEncoder;
-        _rollenChecker = rollenChecker;
+                                     RollenChecker rollenChecker,
+                                     ArtikelRepo artikelRepo,
+                                     DuplikatIndex duplikatIndex,
+                                     Speicherdienst speicherdienst ) {
+
+        _autorenRepo    = autorenRepo;
+        _bcryptEncoder  = bcryptEncoder;
+        _rollenChecker  = rollenChecker;
+        _artikelRepo    = artikelRepo;
+        _duplikatIndex  = duplikatIndex;
+        _speicherdienst = speicherdienst;
     }
 
 
@@ -165,7 +188,7 @@ public class AdminThymeleafController {
 
         AutorEntity autorEntityNeu = new AutorEntity( anmeldename, passwortHash, false );
 
-        autorEntityNeu = _autorenRepo.save( autorEntityNeu );
+        autorEntityNeu = _speicherdienst.autorSpeichern( autorEntityNeu );
 
         final String erfolgsText = format( "Autor \"%s\" erfolgreich angelegt mit ID=%d.",
                                            anmeldename, autorEntityNeu.getId() );
@@ -176,4 +199,49 @@ public class AdminThymeleafController {
         return "autor-anlegen-ergebnis";
     }
 
+
+    /**
+     * Batch-Modus für Beinahe-Duplikate: Durchsucht das gesamte Archiv nach Paaren
+     * von Artikeln mit fast identischem Inhalt (SimHash-Fingerabdrücke mit kleiner
+     * Hamming-Distanz).
+     *
+     * @param authentication Objekt für Abfrage authentifizierter Nutzer und
+     *                       dessen Rollen
+     *
+     * @param model Objekt für Platzhalterwerte in Template
+     *
+     * @return Name der Template-Datei "duplikate-liste.html" wenn der aufrufende
+     *         Nutzer die Admin-Rolle hat, sonst "fehler.html"; in beiden Fällen wird
+     *         der Dateiname ohne die Datei-Endung zurückgegeben.
+     */
+    @GetMapping( "/duplikate" )
+    public String duplikateSuchen( Authentication authentication,
+                                   Model model ) {
+
+        if ( _rollenChecker.istAdmin( authentication ) == false ) {
+
+            LOG.warn( "Non-Admin-Nutzer hat versucht, Suche nach Beinahe-Duplikaten aufzurufen." );
+
+            model.addAttribute( "fehlertext",
+                                "Nur Admins dürfen die Suche nach Beinahe-Duplikaten aufrufen." );
+            return "fehler";
+        }
+
+        final List<DuplikatPaar> paarListe = _duplikatIndex.findeAlleDuplikatPaare();
+
+        final Map<Long, String> titelMap =
+                _artikelRepo.holeAlleSignaturen()
+                            .stream()
+                            .collect( Collectors.toMap( ArtikelSignaturProjektion::getId,
+                                                        ArtikelSignaturProjektion::getTitel ) );
+
+        LOG.info( "Batch-Suche nach Beinahe-Duplikaten: {} Paare gefunden.", paarListe.size() );
+
+        model.addAttribute( "paar_liste"  , paarListe                 );
+        model.addAttribute( "titel_map"   , titelMap                  );
+        model.addAttribute( "max_distanz" , DuplikatIndex.MAX_DISTANZ );
+
+        return "duplikate-liste";
+    }
+
 }
@@ -0,0 +1,663 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.web.util.UriUtils.encodePathSegment;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelListenLeser;
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.konfig.BohnenFabrik;
+import de.eldecker.dhbw.spring.blog.logik.AehnlicheArtikelIndex;
+import de.eldecker.dhbw.spring.blog.logik.AufrufZaehler;
+import de.eldecker.dhbw.spring.blog.logik.EinzelFlug;
+import de.eldecker.dhbw.spring.blog.logik.LetzterGuterStand;
+import de.eldecker.dhbw.spring.blog.logik.Schutzschalter;
+import de.eldecker.dhbw.spring.blog.logik.TagIndex;
+import de.eldecker.dhbw.spring.blog.logik.TrendingArtikel;
+import de.eldecker.dhbw.spring.blog.model.ArchivPosition;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.ArtikelKurzDTO;
+import de.eldecker.dhbw.spring.blog.model.ArtikelListenEintrag;
+import de.eldecker.dhbw.spring.blog.model.ArtikelSeite;
+import de.eldecker.dhbw.spring.blog.model.SchutzschalterOffenException;
+import de.eldecker.dhbw.spring.blog.model.TagTreffer;
+import de.eldecker.dhbw.spring.blog.web.ArtikelZeilen.ListenZeile;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Laden und Rendern der Seiten für einen einzelnen Artikel, für die Artikelliste und für
+ * das Suchergebnis.
+ * <br><br>
+ *
+ * Gleichzeitige identische Aufrufe werden mit {@link EinzelFlug} zusammengefasst: Wenn viele
+ * Leser denselben Artikel zur selben Zeit aufrufen (z.B. nachdem er verlinkt wurde), dann wird
+ * der Artikel nur einmal geladen und die Seite nur einmal gerendert. Nach dem Speichern eines
+ * Artikels schließt sich kein Aufruf mehr einem vorher gestarteten Ladevorgang an, damit der
+ * Autor seine Änderung sofort sieht.
+ * <br><br>
+ *
+ * Alle Datenbankzugriffe laufen über den {@link Schutzschalter}. Für anonyme Leser wird die
+ * zuletzt erfolgreich gerenderte Seite mit {@link LetzterGuterStand} gemerkt und ausgeliefert,
+ * wenn die Datenbank hängt, während im Hintergrund neu geladen wird.
+ * <br><br>
+ *
+ * Gerendert werden können nur die Seiten für anonyme Leser, weil die Seiten für angemeldete
+ * Nutzer den Nutzernamen enthalten; für diese wird nur das Laden zusammengefasst.
+ * <br><br>
+ *
+ * Mit {@code blog.listen.streaming=true} werden Artikelliste und Suchergebnis stattdessen
+ * mit {@link StreamingView} direkt aus dem Datenbank-Cursor gerendert und gesendet, für alle
+ * Nutzer und ohne letzte gute Seite.
+ */
+@Component
+public class ArtikelSeiten {
+
+    /** Maximale Anzahl der Einträge in der Box "Ähnliche Artikel". */
+    static final int MAX_AEHNLICHE_ARTIKEL = 5;
+
+    /** Name des Templates für einen Artikel. */
+    public static final String TEMPLATE_ARTIKEL = "artikel-anzeige";
+
+    /** Name des Templates für die Artikelliste. */
+    public static final String TEMPLATE_LISTE = "artikel-liste";
+
+    /** Name des Templates für das Suchergebnis. */
+    public static final String TEMPLATE_SUCHE = "artikel-suche-ergebnis";
+
+    /** Name des Templates für Filter nach Tags, Autor und Monat. */
+    public static final String TEMPLATE_TAGS = "artikel-tags";
+
+    /** Name des Templates für die Archivseiten pro Autor und pro Monat. */
+    public static final String TEMPLATE_ARCHIV = "artikel-archiv";
+
+    /** Position vor dem ersten Artikel eines Autors. */
+    private static final ArchivPosition ANFANG_AUTOR = new ArchivPosition( LocalDateTime.of( 9999, 12, 31, 0, 0 ), 0 );
+
+    /** Maximale Anzahl Tags in der Tag-Wolke. */
+    static final int MAX_TAG_WOLKE = 50;
+
+    /** Repo-Bean für Zugriff auf Tabelle mit Artikeln. */
+    private final ArtikelRepo _artikelRepo;
+
+    /** Bean für Lesen von Artikelliste und Suchergebnis mit Cursor. */
+    private final ArtikelListenLeser _listenLeser;
+
+    /** Template-Engine, um Seiten außerhalb eines Requests zu rendern. */
+    private final ITemplateEngine _templateEngine;
+
+    /** Bean für Abfrage der Aufrufe von Artikeln. */
+    private final AufrufZaehler _aufrufZaehler;
+
+    /** Bean für Empfehlung ähnlicher Artikel. */
+    private final AehnlicheArtikelIndex _aehnlicheArtikel;
+
+    /** Bean für Liste der gerade beliebten Artikel. */
+    private final TrendingArtikel _trendingArtikel;
+
+    /** Schutzschalter für Datenbankzugriffe. */
+    private final Schutzschalter _schutzschalter;
+
+    /** Rendern der Zeilen der Artikelliste mit Cache. */
+    private final ArtikelZeilen _artikelZeilen;
+
+    /** Index für Filter nach Tags, Autor und Monat. */
+    private final TagIndex _tagIndex;
+
+    /** Maximale Anzahl angezeigter Artikel beim Filtern mit dem Tag-Index. */
+    private final int _maxTagTreffer;
+
+    /** Anzahl Artikel pro Archivseite. */
+    private final int _archivSeitengroesse;
+
+    /** Artikelliste und Suchergebnis mit {@link StreamingView} rendern? */
+    private final boolean _streaming;
+
+    /** Beim Streaming wird nach so vielen Zeilen gesendet. */
+    private final int _flushZeilen;
+
+    /** Beim Streaming Größe des Puffers der Response. */
+    private final int _pufferBytes;
+
+    /** Zusammenfassen des Ladens eines Artikels, Schlüssel ist Artikel-ID. */
+    private final EinzelFlug<Long, Optional<ArtikelEntity>> _laden;
+
+    /** Eigene Threads für das Laden und Rendern in {@link #_artikelSeiten} und {@link #_listenSeiten}. */
+    private final ExecutorService _ladeExecutor;
+
+    /** Gerenderte Artikelseiten für anonyme Leser. */
+    private final LetzterGuterStand<SeitenSchluessel, Optional<ArtikelSeite>> _artikelSeiten;
+
+    /** Gerenderte Artikelliste für anonyme Leser, Schlüssel ist Sprache. */
+    private final LetzterGuterStand<Locale, String> _listenSeiten;
+
+
+    /**
+     * Schlüssel für gerenderte Seite: Datumsformat hängt von Sprache ab.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param locale Sprache des Requests
+     */
+    private record SeitenSchluessel( long artikelId, Locale locale ) {
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public ArtikelSeiten( ArtikelRepo artikelRepo,
+                          ArtikelListenLeser listenLeser,
+                          ITemplateEngine templateEngine,
+                          AufrufZaehler aufrufZaehler,
+                          AehnlicheArtikelIndex aehnlicheArtikel,
+                          TrendingArtikel trendingArtikel,
+                          Schutzschalter schutzschalter,
+                          ArtikelZeilen artikelZeilen,
+                          TagIndex tagIndex,
+                          @Value( "${blog.seiten.max-eintraege:10000}" ) int maxEintraege,
+                          @Value( "${blog.seiten.warte-ms:300}"        ) long warteMillis,
+                          @Value( "${blog.seiten.max-warte-ms:5000}"   ) long maxWarteMillis,
+                          @Value( "${blog.seiten.lade-threads:32}"     ) int ladeThreads,
+                          @Value( "${blog.listen.streaming:false}"     ) boolean streaming,
+                          @Value( "${blog.listen.flush-zeilen:50}"     ) int flushZeilen,
+                          @Value( "${blog.listen.puffer-bytes:8192}"   ) int pufferBytes,
+                          @Value( "${blog.tags.max-treffer:100}"       ) int maxTagTreffer,
+                          @Value( "${blog.archiv.seitengroesse:20}"    ) int archivSeitengroesse,
+                          MeterRegistry meterRegistry ) {
+
+        _artikelRepo         = artikelRepo;
+        _listenLeser         = listenLeser;
+        _templateEngine      = templateEngine;
+        _aufrufZaehler       = aufrufZaehler;
+        _aehnlicheArtikel    = aehnlicheArtikel;
+        _trendingArtikel     = trendingArtikel;
+        _schutzschalter      = schutzschalter;
+        _artikelZeilen       = artikelZeilen;
+        _tagIndex            = tagIndex;
+        _maxTagTreffer       = maxTagTreffer;
+        _archivSeitengroesse = archivSeitengroesse;
+        _streaming           = streaming;
+        _flushZeilen         = flushZeilen;
+        _pufferBytes         = pufferBytes;
+
+        _laden         = new EinzelFlug<>( "artikel-laden", meterRegistry );
+        _ladeExecutor  = LetzterGuterStand.erzeugeLadeExecutor( "seiten-laden", ladeThreads );
+        _artikelSeiten = new LetzterGuterStand<>( "artikel-rendern", schutzschalter, _ladeExecutor,
+                                                  maxEintraege, warteMillis, maxWarteMillis, meterRegistry );
+        _listenSeiten  = new LetzterGuterStand<>( "liste-rendern", schutzschalter, _ladeExecutor,
+                                                  maxEintraege, warteMillis, maxWarteMillis, meterRegistry );
+    }
+
+
+    /**
+     * Beendet die Threads für das Laden beim Herunterfahren.
+     */
+    @PreDestroy
+    public void herunterfahren() {
+
+        _ladeExecutor.shutdownNow();
+    }
+
+
+    /**
+     * Nach dem Commit eines gespeicherten Artikels die laufenden Lade- und Rendervorgänge
+     * für den Artikel und die Liste vergessen, weil sie evtl. noch den alten Stand lesen.
+     *
+     * @param event Event mit ID des gespeicherten Artikels
+     */
+    @TransactionalEventListener( fallbackExecution = true )
+    public void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+        _laden.vergessen( event.artikelId() );
+        for ( Locale sprache : BohnenFabrik.SPRACHEN ) {
+
+            _artikelSeiten.vergessen( new SeitenSchluessel( event.artikelId(), sprache ) );
+            _listenSeiten.vergessen( sprache );
+        }
+    }
+
+
+    /**
+     * Lädt einen Artikel; läuft für dieselbe ID schon ein Ladevorgang, dann wird dessen
+     * Ergebnis übernommen.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @return Optional mit Artikel (nicht verändern, wird evtl. von mehreren Requests verwendet)
+     *         oder leeres Optional, wenn es keinen Artikel mit dieser ID gibt
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet
+     */
+    public Optional<ArtikelEntity> ladeArtikel( long artikelId ) {
+
+        return _schutzschalter.ausfuehren( () -> laden( artikelId ) );
+    }
+
+
+    /**
+     * Liefert die Platzhalterwerte für das Template {@link #TEMPLATE_ARTIKEL} ohne Angaben
+     * zum angemeldeten Nutzer.
+     *
+     * @param artikel Anzuzeigender Artikel
+     *
+     * @return Map mit Platzhalterwerten
+     */
+    public Map<String, Object> modell( ArtikelEntity artikel ) {
+
+        final Map<String, Object> modell = new HashMap<>( 4 );
+        modell.put( "artikel", artikel );
+        modell.put( "aufrufe", _aufrufZaehler.holeAufrufe( artikel ) );
+        modell.put( "aehnliche_artikel",
+                    _aehnlicheArtikel.holeAehnlicheArtikel( artikel.getId(), MAX_AEHNLICHE_ARTIKEL ) );
+
+        return modell;
+    }
+
+
+    /**
+     * Rendert die Seite eines Artikels für anonyme Leser; läuft für denselben Artikel und
+     * dieselbe Sprache schon ein Rendervorgang, dann wird dessen Ergebnis übernommen.
+     * Antwortet die Datenbank nicht rechtzeitig, dann wird die zuletzt gerenderte Seite
+     * geliefert.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param locale Sprache des Requests
+     *
+     * @return Optional mit gerenderter Seite oder leeres Optional, wenn es keinen Artikel
+     *         mit dieser ID gibt
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet und Seite wurde noch nie gerendert
+     */
+    public Optional<ArtikelSeite> rendereArtikelSeite( long artikelId, Locale locale ) {
+
+        final Locale sprache = sprache( locale );
+
+        return _artikelSeiten.hole( new SeitenSchluessel( artikelId, sprache ), () ->
+
+            laden( artikelId ).map( artikel -> {
+
+                final Context context = new Context( sprache, modell( artikel ) );
+                final String  html    = _templateEngine.process( TEMPLATE_ARTIKEL, context );
+
+                return new ArtikelSeite( artikelId, artikel.getTitel(), html );
+            })
+        );
+    }
+
+
+    /**
+     * Liefert die Platzhalterwerte für das Template {@link #TEMPLATE_LISTE} ohne Angaben
+     * zum angemeldeten Nutzer.
+     *
+     * @param locale Sprache des Requests (für Datumsformat)
+     *
+     * @return Map mit Platzhalterwerten
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet
+     */
+    public Map<String, Object> listenModell( Locale locale ) {
+
+        return _schutzschalter.ausfuehren( () -> listenModellLaden( locale ) );
+    }
+
+
+    /**
+     * Rendert die Artikelliste für anonyme Leser. Antwortet die Datenbank nicht rechtzeitig,
+     * dann wird die zuletzt gerenderte Liste geliefert.
+     *
+     * @param locale Sprache des Requests
+     *
+     * @return Gerenderte Seite
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet und Liste wurde noch nie gerendert
+     */
+    public String rendereListe( Locale locale ) {
+
+        final Locale sprache = sprache( locale );
+
+        return _listenSeiten.hole( sprache, () ->
+
+            _templateEngine.process( TEMPLATE_LISTE, new Context( sprache, listenModellLaden( sprache ) ) )
+        );
+    }
+
+
+    /**
+     * Bildet die Sprache auf eine aus {@link BohnenFabrik#SPRACHEN} ab, damit die Caches für
+     * gerenderte Seiten höchstens einen Eintrag pro unterstützter Sprache bekommen, egal was
+     * der Client im Header {@code Accept-Language} schickt.
+     *
+     * @param locale Sprache des Requests, kann {@code null} sein
+     *
+     * @return Unterstützte Sprache mit derselben Sprache, sonst die Default-Sprache
+     */
+    static Locale sprache( Locale locale ) {
+
+        if ( locale != null ) {
+
+            for ( Locale sprache : BohnenFabrik.SPRACHEN ) {
+
+                if ( sprache.getLanguage().equals( locale.getLanguage() ) ) {
+
+                    return sprache;
+                }
+            }
+        }
+        return BohnenFabrik.SPRACHEN.getFirst();
+    }
+
+
+    /**
+     * Abfrage, ob Artikelliste und Suchergebnis gestreamt werden.
+     *
+     * @return {@code true}, wenn {@link #streameListe(Locale)} und {@link #streameSuche(String, Locale)}
+     *         verwendet werden sollen
+     */
+    public boolean istStreaming() {
+
+        return _streaming;
+    }
+
+
+    /**
+     * View für gestreamte Artikelliste; Angaben zum angemeldeten Nutzer kommen aus dem Model
+     * des Controllers.
+     *
+     * @param locale Sprache des Requests
+     *
+     * @return View, die beim Rendern den Cursor öffnet
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet
+     */
+    public View streameListe( Locale locale ) {
+
+        pruefeSchutzschalter();
+
+        final Map<String, Object> modell = Map.of( "trending", _trendingArtikel.holeTopK() );
+
+        return new StreamingView<ListenZeile>( _templateEngine, TEMPLATE_LISTE, locale, modell, "zeilen",
+                                               () -> _schutzschalter.ausfuehren( _listenLeser::alle )
+                                                                    .map( eintrag -> listenZeile( eintrag, locale ) ),
+                                               _flushZeilen, _pufferBytes );
+    }
+
+
+    /**
+     * Liefert die Platzhalterwerte für das Template {@link #TEMPLATE_SUCHE}.
+     *
+     * @param suchbegriff Suchbegriff, wird als Teil-String in Titel und Inhalt gesucht
+     *
+     * @return Map mit Platzhalterwerten
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet
+     */
+    public Map<String, Object> suchModell( String suchbegriff ) {
+
+        final List<ArtikelKurzDTO> artikelListe = _schutzschalter.ausfuehren( () -> {
+
+            try ( Stream<ArtikelListenEintrag> eintraege = _listenLeser.suche( suchbegriff ) ) {
+
+                return eintraege.map( ArtikelListenEintrag::artikel ).toList();
+            }
+        });
+
+        final Map<String, Object> modell = new HashMap<>( 4 );
+        modell.put( "suchbegriff"  , suchbegriff         );
+        modell.put( "artikel_liste", artikelListe        );
+        modell.put( "anzahl"       , artikelListe.size() );
+
+        return modell;
+    }
+
+
+    /**
+     * Liefert die Platzhalterwerte für das Template {@link #TEMPLATE_TAGS}: die Treffer werden
+     * mit dem {@link TagIndex} bestimmt, aus der Datenbank werden nur die neuesten davon geladen.
+     *
+     * @param tags Normalisierte Tags, darf leer sein
+     *
+     * @param alleTags {@code true}: Artikel muss alle Tags haben, {@code false}: mindestens einen
+     *
+     * @param autor Anmeldename des Autors oder {@code null}
+     *
+     * @param von Erster Monat oder {@code null}
+     *
+     * @param bis Letzter Monat (einschließlich) oder {@code null}
+     *
+     * @return Map mit Platzhalterwerten
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet
+     */
+    public Map<String, Object> tagModell( List<String> tags, boolean alleTags, String autor,
+                                          YearMonth von, YearMonth bis ) {
+
+        final TagTreffer treffer = _tagIndex.filtern( tags, alleTags, autor, von, bis, _maxTagTreffer );
+
+        final List<ArtikelKurzDTO> artikelListe =
+                _schutzschalter.ausfuehren( () -> _listenLeser.liste( treffer.artikelIds() ) )
+                               .stream()
+                               .map( ArtikelListenEintrag::artikel )
+                               .toList();
+
+        final Map<String, Object> modell = new HashMap<>( 12 );
+        modell.put( "tags"         , tags                                        );
+        modell.put( "alleTags"     , alleTags                                    );
+        modell.put( "autor"        , autor                                       );
+        modell.put( "von"          , von                                         );
+        modell.put( "bis"          , bis                                         );
+        modell.put( "artikel_liste", artikelListe                                );
+        modell.put( "anzahl"       , treffer.anzahl()                            );
+        modell.put( "tag_wolke"    , _tagIndex.holeHaeufigsteTags( MAX_TAG_WOLKE ) );
+
+        return modell;
+    }
+
+
+    /**
+     * Liefert die Platzhalterwerte für das Template {@link #TEMPLATE_ARCHIV} mit einer Seite
+     * der Artikel eines Autors.
+     *
+     * @param autor Anmeldename des Autors
+     *
+     * @param position Seite beginnt nach dieser Position, {@code null} für erste Seite
+     *
+     * @return Optional mit Platzhalterwerten oder leeres Optional, wenn es den Autor nicht gibt
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet
+     */
+    public Optional<Map<String, Object>> autorModell( String autor, ArchivPosition position ) {
+
+        final Optional<Long> autorId = _schutzschalter.ausfuehren( () -> _listenLeser.autorId( autor ) );
+        if ( autorId.isEmpty() ) {
+
+            return Optional.empty();
+        }
+
+        final List<ArtikelListenEintrag> zeilen =
+                _schutzschalter.ausfuehren( () -> _listenLeser.seiteAutor( autorId.get(),
+                                                                           position == null ? ANFANG_AUTOR : position,
+                                                                           _archivSeitengroesse + 1 ) );
+
+        final Map<String, Object> modell = archivModell( zeilen, "/app/autor/" + encodePathSegment( autor, UTF_8 ) );
+        modell.put( "ueberschrift", "Artikel von " + autor               );
+        modell.put( "anzahl"      , _tagIndex.holeAnzahlVonAutor( autor ) );
+
+        return Optional.of( modell );
+    }
+
+
+    /**
+     * Liefert die Platzhalterwerte für das Template {@link #TEMPLATE_ARCHIV} mit einer Seite
+     * der Artikel eines Monats und der Anzahl Artikel pro Monat für die Navigation.
+     *
+     * @param monat Monat des Anlegens
+     *
+     * @param position Seite beginnt nach dieser Position, {@code null} für erste Seite
+     *
+     * @return Map mit Platzhalterwerten
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet
+     */
+    public Map<String, Object> monatModell( YearMonth monat, ArchivPosition position ) {
+
+        final LocalDateTime von = monat.atDay( 1 ).atStartOfDay();
+        final ArchivPosition ab = position != null && position.zeitpunkt().isBefore( von.plusMonths( 1 ) )
+                                  ? position
+                                  : new ArchivPosition( von.plusMonths( 1 ), 0 );
+
+        final List<ArtikelListenEintrag> zeilen =
+                _schutzschalter.ausfuehren( () -> _listenLeser.seiteZeitraum( von, ab, _archivSeitengroesse + 1 ) );
+
+        final Map<String, Object> modell =
+                archivModell( zeilen, "/app/archiv/" + monat.getYear() + "/" + monat.getMonthValue() );
+
+        final Map<YearMonth, Integer> monate = _tagIndex.holeAnzahlProMonat();
+        modell.put( "ueberschrift", "Archiv " + monat                  );
+        modell.put( "anzahl"      , monate.getOrDefault( monat, 0 )    );
+        modell.put( "monate"      , monate                             );
+
+        return modell;
+    }
+
+
+    /**
+     * Gemeinsame Platzhalterwerte der Archivseiten.
+     *
+     * @param zeilen Artikel der Seite und evtl. ein weiterer, der nur anzeigt, dass es eine
+     *               nächste Seite gibt
+     *
+     * @param pfad Pfad der Archivseite, für den Link auf die nächste Seite
+     *
+     * @return Veränderbare Map mit Platzhalterwerten
+     */
+    private Map<String, Object> archivModell( List<ArtikelListenEintrag> zeilen, String pfad ) {
+
+        final List<ArtikelKurzDTO> artikelListe = zeilen.stream()
+                                                        .limit( _archivSeitengroesse )
+                                                        .map( ArtikelListenEintrag::artikel )
+                                                        .toList();
+
+        final String weiter = zeilen.size() > _archivSeitengroesse
+                              ? pfad + "?nach=" + ArchivPosition.nach( artikelListe.getLast() ).alsParameter()
+                              : null;
+
+        final Map<String, Object> modell = new HashMap<>( 8 );
+        modell.put( "artikel_liste", artikelListe );
+        modell.put( "weiter"       , weiter       );
+
+        return modell;
+    }
+
+
+    /**
+     * View für gestreamtes Suchergebnis.
+     *
+     * @param suchbegriff Suchbegriff, wird als Teil-String in Titel und Inhalt gesucht
+     *
+     * @param locale Sprache des Requests
+     *
+     * @return View, die beim Rendern den Cursor öffnet
+     *
+     * @throws SchutzschalterOffenException Datenbank ist überlastet
+     */
+    public View streameSuche( String suchbegriff, Locale locale ) {
+
+        pruefeSchutzschalter();
+
+        final Map<String, Object> modell = Map.of( "suchbegriff", suchbegriff );
+
+        return new StreamingView<ArtikelKurzDTO>( _templateEngine, TEMPLATE_SUCHE, locale, modell, "artikel_liste",
+                                                  () -> _schutzschalter.ausfuehren( () -> _listenLeser.suche( suchbegriff ) )
+                                                                       .map( ArtikelListenEintrag::artikel ),
+                                                  _flushZeilen, _pufferBytes );
+    }
+
+
+    /**
+     * Lädt einen Artikel ohne Schutzschalter.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @return Optional mit Artikel
+     */
+    private Optional<ArtikelEntity> laden( long artikelId ) {
+
+        return _laden.ausfuehren( artikelId, () -> _artikelRepo.findById( artikelId ) );
+    }
+
+
+    /**
+     * Lädt die Platzhalterwerte für die Artikelliste ohne Schutzschalter.
+     *
+     * @param locale Sprache des Requests
+     *
+     * @return Map mit Platzhalterwerten
+     */
+    private Map<String, Object> listenModellLaden( Locale locale ) {
+
+        final List<ListenZeile> zeilen;
+        try ( Stream<ArtikelListenEintrag> eintraege = _listenLeser.alle() ) {
+
+            zeilen = eintraege.map( eintrag -> listenZeile( eintrag, locale ) ).toList();
+        }
+
+        final Map<String, Object> modell = new HashMap<>( 4 );
+        modell.put( "zeilen"  , zeilen                       );
+        modell.put( "anzahl"  , zeilen.size()                );
+        modell.put( "trending", _trendingArtikel.holeTopK() );
+
+        return modell;
+    }
+
+
+    /**
+     * Zeile für die Artikelliste: Fragment aus {@link ArtikelZeilen} und aktuelle Anzahl Aufrufe.
+     */
+    private ListenZeile listenZeile( ArtikelListenEintrag eintrag, Locale locale ) {
+
+        final ArtikelKurzDTO artikel = eintrag.artikel();
+
+        return new ListenZeile( _artikelZeilen.zeile( artikel, locale ),
+                                _aufrufZaehler.holeAufrufe( artikel.id(), eintrag.aufrufe() ),
+                                artikel.auszug() );
+    }
+
+
+    /**
+     * Vor dem Streaming prüfen, ob die Datenbank abgefragt werden darf; danach wäre der
+     * Status der Response schon gesendet.
+     *
+     * @throws SchutzschalterOffenException Schutzschalter ist offen
+     */
+    private void pruefeSchutzschalter() {
+
+        if ( _schutzschalter.istOffen() ) {
+
+            throw new SchutzschalterOffenException( "Datenbank ist überlastet, bitte später noch einmal versuchen." );
+        }
+    }
+
+}
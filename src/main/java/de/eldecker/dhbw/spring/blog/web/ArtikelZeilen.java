@@ -0,0 +1,159 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelKurzDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Rendern der Zeilen der Artikelliste (Fragment {@code zeile} im Template {@link #TEMPLATE_ZEILE})
+ * mit Cache, eingeschaltet mit {@code blog.fragmente.cache=true}, z.B. über das Profil "prod";
+ * ohne Cache wird jede Zeile bei jedem Aufruf gerendert.
+ * <br><br>
+ *
+ * Eine Zeile ändert sich nur, wenn der Artikel geändert wird; sie wird deshalb pro Artikel-ID
+ * und Sprache zusammen mit den Werten des Artikels gemerkt und nur neu gerendert, wenn sich
+ * diese geändert haben (z.B. Änderungszeitpunkt oder nachträglich berechnete Lesezeit). Die
+ * Anzahl der Aufrufe ändert sich ständig und ist deshalb nicht Teil der Zeile, ebenso wie die
+ * Angaben zum angemeldeten Nutzer.
+ * <br><br>
+ *
+ * Metrik: {@code blog.fragmente} mit Tag {@code ergebnis} = {@code treffer} oder {@code gerendert}.
+ */
+@Component
+public class ArtikelZeilen {
+
+    /** Name des Templates mit dem Fragment für eine Zeile der Artikelliste. */
+    public static final String TEMPLATE_ZEILE = "FragmentArtikelZeile";
+
+    /** Selektor des Fragments im Template. */
+    private static final Set<String> FRAGMENT = Set.of( "zeile" );
+
+    /** Template-Engine, um Fragmente außerhalb eines Requests zu rendern. */
+    private final ITemplateEngine _templateEngine;
+
+    /** Cache eingeschaltet? */
+    private final boolean _aktiv;
+
+    /** Maximale Anzahl gemerkter Zeilen, damit der Speicherbedarf begrenzt ist. */
+    private final int _maxEintraege;
+
+    /** Gerenderte Zeilen. */
+    private final Map<ZeilenSchluessel, CacheEintrag> _zeilen = new ConcurrentHashMap<>();
+
+    /** Zähler für Zeilen aus dem Cache. */
+    private final Counter _trefferZaehler;
+
+    /** Zähler für gerenderte Zeilen. */
+    private final Counter _gerendertZaehler;
+
+
+    /**
+     * Schlüssel für eine Zeile: Datumsformat hängt von Sprache ab.
+     *
+     * @param artikelId ID des Artikels
+     *
+     * @param locale Sprache
+     */
+    private record ZeilenSchluessel( long artikelId, Locale locale ) {
+    }
+
+    /**
+     * Gerenderte Zeile im Cache.
+     *
+     * @param artikel Werte des Artikels beim Rendern
+     *
+     * @param html HTML-Fragment
+     */
+    private record CacheEintrag( ArtikelKurzDTO artikel, String html ) {
+    }
+
+    /**
+     * Zeile der Artikelliste, wie sie das Template erwartet.
+     *
+     * @param html Gerendertes Fragment mit Titel, Autor, Datum und Lesezeit
+     *
+     * @param aufrufe Aktuelle Anzahl Aufrufe, ändert sich ständig und wird deshalb pro Request
+     *                gerendert
+     *
+     * @param auszug Teaser, wird nach der Anzahl Aufrufe angezeigt; {@code null} wenn noch
+     *               nicht berechnet
+     */
+    public record ListenZeile( String html, long aufrufe, String auszug ) {
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public ArtikelZeilen( ITemplateEngine templateEngine,
+                          @Value( "${blog.fragmente.cache:false}"          ) boolean aktiv,
+                          @Value( "${blog.fragmente.max-eintraege:10000}" ) int maxEintraege,
+                          MeterRegistry meterRegistry ) {
+
+        _templateEngine = templateEngine;
+        _aktiv          = aktiv;
+        _maxEintraege   = maxEintraege;
+
+        _trefferZaehler   = zaehler( "treffer"  , meterRegistry );
+        _gerendertZaehler = zaehler( "gerendert", meterRegistry );
+    }
+
+
+    /**
+     * Liefert eine Zeile der Artikelliste; gerendert wird nur, wenn der Artikel neu ist oder
+     * geändert wurde oder der Cache ausgeschaltet ist.
+     *
+     * @param artikel Artikel ohne Inhalt
+     *
+     * @param locale Sprache des Requests
+     *
+     * @return HTML-Fragment
+     */
+    public String zeile( ArtikelKurzDTO artikel, Locale locale ) {
+
+        final ZeilenSchluessel schluessel = new ZeilenSchluessel( artikel.id(), locale );
+
+        final CacheEintrag eintrag = _aktiv ? _zeilen.get( schluessel ) : null;
+        if ( eintrag != null && eintrag.artikel().equals( artikel ) ) {
+
+            _trefferZaehler.increment();
+            return eintrag.html();
+        }
+
+        final Context context = new Context( locale, Map.of( "artikel", artikel ) );
+        final String  html    = _templateEngine.process( TEMPLATE_ZEILE, FRAGMENT, context );
+        _gerendertZaehler.increment();
+
+        if ( _aktiv && ( eintrag != null || _zeilen.size() < _maxEintraege ) ) {
+
+            _zeilen.put( schluessel, new CacheEintrag( artikel, html ) );
+        }
+        return html;
+    }
+
+
+    /**
+     * Zähler für Metrik {@code blog.fragmente} registrieren.
+     */
+    private static Counter zaehler( String ergebnis, MeterRegistry meterRegistry ) {
+
+        return Counter.builder( "blog.fragmente" )
+                      .description( "Zeilen der Artikelliste aus dem Fragment-Cache bzw. neu gerendert" )
+                      .tag( "ergebnis", ergebnis )
+                      .register( meterRegistry );
+    }
+
+}
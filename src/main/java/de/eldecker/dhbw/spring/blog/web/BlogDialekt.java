@@ -0,0 +1,80 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.dialect.AbstractDialect;
+import org.thymeleaf.dialect.IExpressionObjectDialect;
+import org.thymeleaf.expression.IExpressionObjectFactory;
+
+
+/**
+ * Thymeleaf-Dialekt mit eigenen Ausdrucks-Objekten für die Templates:
+ * <ul>
+ * <li>{@code #assets}: Pfade mit Hash-Wert der CSS/JS-Dateien, z.B.
+ *     {@code th:href="${#assets.pfad('/styles.css')}"} (siehe {@link StatischeAssets})</li>
+ * <li>{@code #datum}: Formatieren von Zeitpunkten in der Sprache des Requests mit
+ *     zwischengespeichertem Formatierer, z.B. {@code ${#datum.format(artikel.getZeitpunktAngelegt())}}
+ *     (siehe {@link DatumsFormat})</li>
+ * </ul>
+ * Ein Dialekt statt Bean-Referenzen (z.B. {@code @statischeAssets}), weil die Artikelseiten
+ * von {@link ArtikelSeiten} ohne Spring-Kontext gerendert werden. Spring Boot registriert
+ * Beans vom Typ {@code IDialect} automatisch bei der Template-Engine.
+ */
+@Component
+public class BlogDialekt extends AbstractDialect implements IExpressionObjectDialect {
+
+    /** Name des Ausdrucks-Objekts für Assets ohne {@code #}. */
+    private static final String OBJEKT_ASSETS = "assets";
+
+    /** Name des Ausdrucks-Objekts für Datumsformat ohne {@code #}. */
+    private static final String OBJEKT_DATUM = "datum";
+
+    /** Bean mit den Pfaden. */
+    private final StatischeAssets _statischeAssets;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public BlogDialekt( StatischeAssets statischeAssets ) {
+
+        super( "Blog" );
+        _statischeAssets = statischeAssets;
+    }
+
+
+    @Override
+    public IExpressionObjectFactory getExpressionObjectFactory() {
+
+        return new IExpressionObjectFactory() {
+
+            @Override
+            public Set<String> getAllExpressionObjectNames() {
+
+                return Set.of( OBJEKT_ASSETS, OBJEKT_DATUM );
+            }
+
+            @Override
+            public Object buildObject( IExpressionContext context, String name ) {
+
+                return switch ( name ) {
+
+                    case OBJEKT_ASSETS -> _statischeAssets;
+                    case OBJEKT_DATUM  -> new DatumsFormat( context.getLocale() );
+                    default            -> null;
+                };
+            }
+
+            @Override
+            public boolean isCacheable( String name ) {
+
+                return true; // innerhalb eines Rendervorgangs
+            }
+        };
+    }
+
+}
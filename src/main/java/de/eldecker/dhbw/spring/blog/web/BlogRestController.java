@@ -1,37 +1,71 @@
 package de.eldecker.dhbw.spring.blog.web;
 
 import static java.time.LocalDateTime.now;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import static org.springframework.http.HttpStatus.ACCEPTED;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.FORBIDDEN;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NO_CONTENT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
+import static org.springframework.http.HttpStatus.PRECONDITION_REQUIRED;
 import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-
-
 import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
 import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
 import de.eldecker.dhbw.spring.blog.db.AutorEntity;
 import de.eldecker.dhbw.spring.blog.db.AutorenRepo;
+import de.eldecker.dhbw.spring.blog.logik.AuszugBerechnung;
+import de.eldecker.dhbw.spring.blog.logik.DuplikatIndex;
+import de.eldecker.dhbw.spring.blog.logik.Entwurfsspeicher;
+import de.eldecker.dhbw.spring.blog.logik.MinHashBerechnung;
+import de.eldecker.dhbw.spring.blog.logik.SimHashBerechnung;
+import de.eldecker.dhbw.spring.blog.logik.Schreibpipeline;
+import de.eldecker.dhbw.spring.blog.logik.Speicherdienst;
+import de.eldecker.dhbw.spring.blog.logik.TagIndex;
+import de.eldecker.dhbw.spring.blog.model.ArtikelAuszug;
 import de.eldecker.dhbw.spring.blog.model.ArtikelDTO;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.BlogException;
 import de.eldecker.dhbw.spring.blog.model.TitelUndDeltaInhaltDTO;
+import de.eldecker.dhbw.spring.blog.model.VersionKonfliktException;
 import de.eldecker.dhbw.spring.blog.sicherheit.HtmlReinigung;
 import de.eldecker.dhbw.spring.blog.sicherheit.RollenChecker;
 import tools.jackson.core.JacksonException;
@@ -47,6 +81,12 @@ public class BlogRestController {
 
     private static final Logger LOG = LoggerFactory.getLogger( BlogRestController.class );
 
+    /**
+     * HTTP-Header in Antwort auf Speichern, der die IDs von Beinahe-Duplikaten enthält
+     * (kommaseparierte Liste); wird nur gesetzt, wenn es Beinahe-Duplikate gibt.
+     */
+    public static final String HEADER_DUPLIKATE = "X-Beinahe-Duplikate";
+
     /** Bean für JSON-Serialisierung/Deserialisierung. */
     private final ObjectMapper _objectMapper;
 
@@ -63,6 +103,39 @@ public class BlogRestController {
     @SuppressWarnings("unused")
     private final RollenChecker _rollenChecker;
 
+    /** Bean für Berechnung der MinHash-Signatur (ähnliche Artikel). */
+    private final MinHashBerechnung _minHash;
+
+    /** Bean für Veröffentlichung von {@link ArtikelGespeichertEvent}. */
+    private final ApplicationEventPublisher _eventPublisher;
+
+    /** Bean für Berechnung des SimHash-Fingerabdrucks (Beinahe-Duplikate). */
+    private final SimHashBerechnung _simHash;
+
+    /** Bean für Suche nach Beinahe-Duplikaten. */
+    private final DuplikatIndex _duplikatIndex;
+
+    /** Bean für Berechnung von Auszug, Anzahl Wörter und Lesezeit. */
+    private final AuszugBerechnung _auszugBerechnung;
+
+    /** Bean für Speichern von Artikeln inkl. Eintrag im Änderungsprotokoll. */
+    private final Speicherdienst _speicherdienst;
+
+    /** Optionale Schreib-Pipeline mit Group Commit. */
+    private final Schreibpipeline _schreibpipeline;
+
+    /** Bean für Entwürfe aus der Auto-Speicherung des Editors. */
+    private final Entwurfsspeicher _entwurfsspeicher;
+
+    /** So lange wird höchstens auf die Bestätigung der Schreib-Pipeline gewartet. */
+    private final long _maxWarteMillis;
+
+    /**
+     * Wenn {@code true}, dann wird das Speichern von Beinahe-Duplikaten mit HTTP-Status-Code
+     * 409 abgelehnt; sonst wird nur gewarnt (Log und HTTP-Header {@link #HEADER_DUPLIKATE}).
+     */
+    private final boolean _duplikateBlockieren;
+
 
     /**
      * Konstruktor für <i>Dependency Injection</i>.
@@ -72,13 +145,34 @@ public class BlogRestController {
                                AutorenRepo autorenRepo,
                                ObjectMapper objectMapper,
                                HtmlReinigung htmlReinigung,
-                               RollenChecker rollenChecker ) {
-
-        _artikelRepo   = artikelRepo;
-        _autorenRepo   = autorenRepo;
-        _objectMapper  = objectMapper;
-        _htmlReinigung = htmlReinigung;
-        _rollenChecker = rollenChecker;
+                               RollenChecker rollenChecker,
+                               MinHashBerechnung minHash,
+                               ApplicationEventPublisher eventPublisher,
+                               SimHashBerechnung simHash,
+                               DuplikatIndex duplikatIndex,
+                               AuszugBerechnung auszugBerechnung,
+                               Speicherdienst speicherdienst,
+                               Schreibpipeline schreibpipeline,
+                               Entwurfsspeicher entwurfsspeicher,
+                               @Value( "${blog.duplikate.blockieren:false}"          ) boolean duplikateBlockieren,
+                               @Value( "${blog.schreibpipeline.max-warte-ms:10000}" ) long maxWarteMillis ) {
+
+        _artikelRepo    = artikelRepo;
+        _autorenRepo    = autorenRepo;
+        _objectMapper   = objectMapper;
+        _htmlReinigung  = htmlReinigung;
+        _rollenChecker  = rollenChecker;
+        _minHash        = minHash;
+        _eventPublisher = eventPublisher;
+        _simHash        = simHash;
+        _duplikatIndex  = duplikatIndex;
+        _speicherdienst = speicherdienst;
+
+        _auszugBerechnung    = auszugBerechnung;
+        _schreibpipeline     = schreibpipeline;
+        _entwurfsspeicher    = entwurfsspeicher;
+        _duplikateBlockieren = duplikateBlockieren;
+        _maxWarteMillis      = maxWarteMillis;
     }
 
 
@@ -91,7 +185,9 @@ public class BlogRestController {
      *
      * @return Mögliche HTTP-Status-Codes:
      *         <ul>
-     *         <li>200 (OK): Erfolg, Body enthält JSON mit Titel und Artikel im Delta-Format.</li>
+     *         <li>200 (OK): Erfolg, Body enthält JSON mit Titel und Artikel im Delta-Format,
+     *                       Header {@code ETag} enthält die Version des Artikels (für {@code If-Match}
+     *                       bei {@code /aendern}).</li>
      *         <li>401 (Unauthorized): Nutzer ist nicht angemeldet.</li>
      *         <li>403 (Forbidden): Angemeldeter Nutzer ist nicht Autor des Artikels.</i>
      *         <li>404 (Not Found): Kein Artikel mit {@code artikelId} gefunden.</li>
@@ -131,12 +227,15 @@ public class BlogRestController {
 
         final TitelUndDeltaInhaltDTO dto =
                         new TitelUndDeltaInhaltDTO( artikelEntity.getTitel(),
-                                                    artikelEntity.getInhaltDelta() );
+                                                    artikelEntity.getInhaltDelta(),
+                                                    String.join( ", ", artikelEntity.getTags() ) );
         try {
 
             final String json = _objectMapper.writeValueAsString( dto );
 
-            return new ResponseEntity<>( json, OK);
+            return ResponseEntity.ok()
+                                 .eTag( String.valueOf( artikelEntity.getVersion() ) )
+                                 .body( json );
         }
         catch ( JacksonException ex ) {
 
@@ -156,10 +255,14 @@ public class BlogRestController {
      *
      * @return Mögliche HTTP-Status-Codes:
      *         <ul>
-     *         <li>201 (Created)     : Erfolg, Body enthält Pfad, an dem der neue Artikel zu finden ist.</li>
+     *         <li>201 (Created)     : Erfolg, Body enthält Pfad, an dem der neue Artikel zu finden ist,
+     *                                 Header {@code ETag} enthält die Version des Artikels;
+     *                                 bei Beinahe-Duplikaten ist der Header {@link #HEADER_DUPLIKATE} gesetzt.</li>
      *         <li>400 (Bad Request) : JSON-Payload konnte nicht deserialisert werden; Body enthält Fehlermeldung.</li>
      *         <li>401 (Unauthorized): Nutzer ist nicht angemeldet.</i>
      *         <li>403 (Forbidden)   : Nutzer ist angemeldet, aber wurde nicht in DB gefunden (kann eigentlich nicht sein).</li>
+     *         <li>409 (Conflict)    : Artikel ist Beinahe-Duplikat und Blockieren ist konfiguriert.</li>
+     *         <li>500 (Internal Server Error): Schreib-Pipeline konnte Artikel nicht schreiben.</li>
      *         </ul>
      */
     @PostMapping( "/neu" )
@@ -181,35 +284,13 @@ public class BlogRestController {
             LOG.error( fehlerText );
             return new ResponseEntity<>( fehlerText, FORBIDDEN );
         }
-        final AutorEntity autorEntity = autorOptional.get();
-
         try {
 
             final ArtikelDTO artikel = _objectMapper.readValue( jsonPayload, ArtikelDTO.class );
 
             LOG.info( "Payload für Artikel mit Titel \"{}\" deserialisiert.", artikel.titel() );
 
-            if ( artikel.titel().isBlank() ) {
-
-                return new ResponseEntity<>( "Titel von Artikel ist leer", BAD_REQUEST );
-            }
-
-            final String htmlUnsicher = artikel.inhaltHTML();
-            final String htmlSicher   = _htmlReinigung.sanitize( htmlUnsicher );
-
-            ArtikelEntity artikelEntity = new ArtikelEntity( artikel.titel().trim(),
-                                                             artikel.inhaltDelta() ,
-                                                             htmlSicher            ,
-                                                             artikel.inhaltPlain() ,
-                                                             autorEntity );
-            artikelEntity = _artikelRepo.save( artikelEntity );
-
-            LOG.info( "Neuen Artikel mit Titel \"{}\" von \"{}\" unter ID={} gespeichert.",
-                      artikelEntity.getTitel(), anmeldeName, artikelEntity.getId() );
-
-            final String forwardToPfad = "/app/artikel/" + artikelEntity.getId();
-
-            return new ResponseEntity<>( forwardToPfad, CREATED );
+            return neuenArtikelSpeichern( artikel, autorOptional.get() );
         }
         catch ( JacksonException ex ) {
 
@@ -218,6 +299,11 @@ public class BlogRestController {
             LOG.error( fehlerText );
             return new ResponseEntity<>( fehlerText, BAD_REQUEST );
         }
+        catch ( BlogException ex ) {
+
+            LOG.error( ex.getMessage() );
+            return new ResponseEntity<>( ex.getMessage(), INTERNAL_SERVER_ERROR );
+        }
     }
 
 
@@ -226,11 +312,19 @@ public class BlogRestController {
      *
      * @param jsonPayload JSON-Payload vom Frontend mit neuem Artikel.
      *
+     * @param warten Nur bei eingeschalteter Schreib-Pipeline: bei {@code false} wird nicht auf den
+     *               Commit gewartet, sondern sofort mit 202 geantwortet
+     *
+     * @param ifMatch Header {@code If-Match} mit dem {@code ETag} von {@code /holen}, also der
+     *                Version, auf der die Änderung beruht (optimistisches Sperren)
+     *
      * @param authentication Objekt, um Authentifzierung abzufragen
      *
      * @return Mögliche HTTP-Status-Codes:
      *         <ul>
      *         <li>200 (OK): Erfolg, Body enthält Pfad, an dem der geänderte Artikel zu finden ist.</li>
+     *         <li>202 (Accepted): Nur bei Schreib-Pipeline und {@code warten=false}: Änderung wurde
+     *                             angenommen, aber noch nicht geschrieben.</li>
      *         <li>400 (Bad Request):
      *         <ul>
      *         <li>Leerer Titel</li>
@@ -241,10 +335,20 @@ public class BlogRestController {
      *         </li>
      *         <li>401 (Unauthorized): Nutzer nicht angemeldet</li>
      *         <li>403 (Forbidden): Angemeldeter Nutzer ist nicht berechtigt, den Artikel zu ändern.</li>
+     *         <li>409 (Conflict): Geänderter Artikel ist Beinahe-Duplikat eines anderen Artikels
+     *                             und Blockieren ist konfiguriert.</li>
+     *         <li>412 (Precondition Failed): Artikel wurde seit dem Laden von jemand anderem geändert,
+     *                                        Header {@code ETag} enthält die aktuelle Version.</li>
+     *         <li>428 (Precondition Required): Header {@code If-Match} fehlt.</li>
+     *         <li>500 (Internal Server Error): Schreib-Pipeline konnte Änderung nicht schreiben.</li>
      *         </ul>
+     *         Bei 200 und 202 enthält der Header {@code ETag} die neue Version (für das nächste
+     *         {@code If-Match}), bei Beinahe-Duplikaten ist der Header {@link #HEADER_DUPLIKATE} gesetzt.
      */
     @PostMapping( "/aendern" )
     public ResponseEntity<String> artikelAendern( @RequestBody String jsonPayload,
+                                                  @RequestParam( value = "warten", defaultValue = "true" ) boolean warten,
+                                                  @RequestHeader( value = HttpHeaders.IF_MATCH, required = false ) String ifMatch,
                                                   Authentication authentication) {
 
         if ( authentication == null || authentication.isAuthenticated() == false ) {
@@ -258,51 +362,548 @@ public class BlogRestController {
         try {
 
             final ArtikelDTO artikelDTO = _objectMapper.readValue( jsonPayload, ArtikelDTO.class );
-            if ( artikelDTO.titel().isBlank() ) {
 
-                return new ResponseEntity<>( "Titel von zu änderndem Artikel ist leer", BAD_REQUEST );
+            return aenderungSpeichern( artikelDTO, nameAutor, ifMatch, warten );
+        }
+        catch ( JacksonException ex ) {
+
+            final String fehlerText = "JSON mit geändertem Artikel kann nicht deserialisiert werden. " +
+                                      ex.getMessage();
+            LOG.error( fehlerText );
+            return new ResponseEntity<>( fehlerText, BAD_REQUEST );
+        }
+        catch ( BlogException ex ) {
+
+            LOG.error( ex.getMessage() );
+            return new ResponseEntity<>( ex.getMessage(), INTERNAL_SERVER_ERROR );
+        }
+    }
+
+
+    /**
+     * Auto-Speicherung des Editors: merkt sich den aktuellen Stand als Entwurf. Der Entwurf
+     * wird nur im Speicher gehalten und verzögert in die Tabelle {@code ENTWURF} geschrieben,
+     * der veröffentlichte Artikel bleibt unverändert. Ob der Nutzer den Artikel ändern darf,
+     * wird erst beim Veröffentlichen geprüft, weil Entwürfe sowieso nur für ihren Autor
+     * sichtbar sind.
+     *
+     * @param artikelID ID des Artikels, {@code -1} für neuen Artikel
+     *
+     * @param jsonPayload JSON-Payload wie für {@code /neu} bzw. {@code /aendern}
+     *
+     * @param authentication Objekt, um Authentifzierung abzufragen
+     *
+     * @return Mögliche HTTP-Status-Codes:
+     *         <ul>
+     *         <li>202 (Accepted): Entwurf wurde angenommen.</li>
+     *         <li>400 (Bad Request): JSON-Payload konnte nicht deserialisert werden.</li>
+     *         <li>401 (Unauthorized): Nutzer ist nicht angemeldet.</li>
+     *         </ul>
+     */
+    @PutMapping( "/entwurf/{artikelID}" )
+    public ResponseEntity<String> entwurfSpeichern( @PathVariable("artikelID") long artikelID,
+                                                    @RequestBody String jsonPayload,
+                                                    Authentication authentication ) {
+
+        if ( authentication == null || authentication.isAuthenticated() == false ) {
+
+            return new ResponseEntity<>( "Unangemeldeter Nutzer kann keinen Entwurf speichern.", UNAUTHORIZED );
+        }
+
+        try {
+
+            final ArtikelDTO entwurf = _objectMapper.readValue( jsonPayload, ArtikelDTO.class );
+            _entwurfsspeicher.speichern( authentication.getName(), artikelID, entwurf );
+
+            return new ResponseEntity<>( "Entwurf gespeichert.", ACCEPTED );
+        }
+        catch ( JacksonException ex ) {
+
+            final String fehlerText = "JSON mit Entwurf kann nicht deserialisiert werden. " +
+                                      ex.getMessage();
+            LOG.error( fehlerText );
+            return new ResponseEntity<>( fehlerText, BAD_REQUEST );
+        }
+    }
+
+
+    /**
+     * Entwurf des angemeldeten Nutzers für einen Artikel abrufen, z.B. um nach einem
+     * Absturz des Browsers weiterzuschreiben.
+     *
+     * @param artikelID ID des Artikels, {@code -1} für neuen Artikel
+     *
+     * @param authentication Objekt, um Authentifzierung abzufragen
+     *
+     * @return Mögliche HTTP-Status-Codes:
+     *         <ul>
+     *         <li>200 (OK): Body enthält Entwurf als JSON (Format wie Payload für {@code /neu}).</li>
+     *         <li>401 (Unauthorized): Nutzer ist nicht angemeldet.</li>
+     *         <li>404 (Not Found): Kein Entwurf vorhanden.</li>
+     *         <li>500 (Internal Server Error): Internes Problem bei JSON-Erstellung.</li>
+     *         </ul>
+     */
+    @GetMapping( "/entwurf/{artikelID}" )
+    public ResponseEntity<String> entwurfHolen( @PathVariable("artikelID") long artikelID,
+                                                Authentication authentication ) {
+
+        if ( authentication == null || authentication.isAuthenticated() == false ) {
+
+            return new ResponseEntity<>( "Unangemeldeter Nutzer kann keinen Entwurf abrufen.", UNAUTHORIZED );
+        }
+
+        final Optional<ArtikelDTO> entwurfOptional =
+                                _entwurfsspeicher.holen( authentication.getName(), artikelID );
+        if ( entwurfOptional.isEmpty() ) {
+
+            return new ResponseEntity<>( "Kein Entwurf für Artikel mit ID=" + artikelID + " vorhanden.",
+                                         NOT_FOUND );
+        }
+
+        try {
+
+            return new ResponseEntity<>( _objectMapper.writeValueAsString( entwurfOptional.get() ), OK );
+        }
+        catch ( JacksonException ex ) {
+
+            LOG.error( "Fehler bei Serialisierung von Entwurf nach JSON: " + ex.getMessage() );
+            return new ResponseEntity<>( "Interner Fehler bei Bereitstellung von Entwurf im JSON-Format.",
+                                         INTERNAL_SERVER_ERROR );
+        }
+    }
+
+
+    /**
+     * Entwurf des angemeldeten Nutzers verwerfen.
+     *
+     * @param artikelID ID des Artikels, {@code -1} für neuen Artikel
+     *
+     * @param authentication Objekt, um Authentifzierung abzufragen
+     *
+     * @return HTTP-Status-Code 204 (No Content), auch wenn es keinen Entwurf gab;
+     *         401 (Unauthorized), wenn Nutzer nicht angemeldet ist
+     */
+    @DeleteMapping( "/entwurf/{artikelID}" )
+    public ResponseEntity<String> entwurfVerwerfen( @PathVariable("artikelID") long artikelID,
+                                                    Authentication authentication ) {
+
+        if ( authentication == null || authentication.isAuthenticated() == false ) {
+
+            return new ResponseEntity<>( "Unangemeldeter Nutzer kann keinen Entwurf verwerfen.", UNAUTHORIZED );
+        }
+
+        _entwurfsspeicher.loeschen( authentication.getName(), artikelID );
+
+        return new ResponseEntity<>( NO_CONTENT );
+    }
+
+
+    /**
+     * Entwurf veröffentlichen: Der Entwurf wird wie bei {@code /neu} bzw. {@code /aendern}
+     * geprüft, gereinigt und als Artikel gespeichert (erst dann werden Caches und Indizes
+     * aktualisiert); bei Erfolg wird der Entwurf gelöscht.
+     *
+     * @param artikelID ID des Artikels, {@code -1} für neuen Artikel
+     *
+     * @param ifMatch Header {@code If-Match} wie bei {@code /aendern}, bei neuem Artikel nicht nötig
+     *
+     * @param authentication Objekt, um Authentifzierung abzufragen
+     *
+     * @return HTTP-Status-Codes wie bei {@link #artikelNeu(String, Authentication)} bzw.
+     *         {@link #artikelAendern(String, boolean, String, Authentication)}, zusätzlich
+     *         404 (Not Found), wenn es keinen Entwurf gibt
+     */
+    @PostMapping( "/entwurf/{artikelID}/veroeffentlichen" )
+    public ResponseEntity<String> entwurfVeroeffentlichen( @PathVariable("artikelID") long artikelID,
+                                                           @RequestHeader( value = HttpHeaders.IF_MATCH, required = false ) String ifMatch,
+                                                           Authentication authentication ) {
+
+        if ( authentication == null || authentication.isAuthenticated() == false ) {
+
+            return new ResponseEntity<>( "Unangemeldeter Nutzer kann keinen Entwurf veröffentlichen.", UNAUTHORIZED );
+        }
+        final String anmeldeName = authentication.getName();
+
+        final Optional<ArtikelDTO> entwurfOptional = _entwurfsspeicher.holen( anmeldeName, artikelID );
+        if ( entwurfOptional.isEmpty() ) {
+
+            return new ResponseEntity<>( "Kein Entwurf für Artikel mit ID=" + artikelID + " vorhanden.",
+                                         NOT_FOUND );
+        }
+        final ArtikelDTO entwurf = entwurfOptional.get();
+
+        try {
+
+            final ResponseEntity<String> antwort;
+            if ( entwurf.artikelID() == Entwurfsspeicher.NEUER_ARTIKEL ) {
+
+                final Optional<AutorEntity> autorOptional = _autorenRepo.findByName( anmeldeName );
+                if ( autorOptional.isEmpty() ) {
+
+                    return new ResponseEntity<>( "Nutzer angemeldet, aber nicht in DB gefunden.", FORBIDDEN );
+                }
+                antwort = neuenArtikelSpeichern( entwurf, autorOptional.get() );
+
+            } else {
+
+                antwort = aenderungSpeichern( entwurf, anmeldeName, ifMatch, true );
             }
 
-            long artikelId = artikelDTO.artikelID();
-            final Optional<ArtikelEntity> artikelOptional = _artikelRepo.findById( artikelId );
-            if ( artikelOptional.isEmpty() ) {
+            if ( antwort.getStatusCode().is2xxSuccessful() ) {
 
-                final String fehlerText = "Kein Artikel mit ID=" + artikelId + " zum Ändern gefunden.";
-                LOG.error( fehlerText );
-                return new ResponseEntity<>( fehlerText, BAD_REQUEST );
+                _entwurfsspeicher.loeschen( anmeldeName, artikelID );
+                LOG.info( "Entwurf von \"{}\" für Artikel mit ID={} veröffentlicht.", anmeldeName, artikelID );
             }
 
-            final ArtikelEntity artikelEntity = artikelOptional.get();
+            return antwort;
+        }
+        catch ( BlogException ex ) {
+
+            LOG.error( ex.getMessage() );
+            return new ResponseEntity<>( ex.getMessage(), INTERNAL_SERVER_ERROR );
+        }
+    }
 
-            if ( artikelEntity.getAutor().getName().equals( nameAutor ) == false ) {
 
-                final String fehlerText = "Angemeldeter Nutzer ist nicht der Autor des Artikels.";
-                LOG.error( fehlerText );
-                return new ResponseEntity<>( fehlerText, UNAUTHORIZED );
-            }
+    /**
+     * Prüft und speichert einen neuen Artikel, entweder direkt oder über die Schreib-Pipeline.
+     *
+     * @param artikel Neuer Artikel vom Frontend (noch nicht gereinigt)
+     *
+     * @param autorEntity Autor des Artikels
+     *
+     * @return Antwort für {@link #artikelNeu(String, Authentication)}
+     *
+     * @throws BlogException Schreib-Pipeline konnte Artikel nicht schreiben
+     */
+    private ResponseEntity<String> neuenArtikelSpeichern( ArtikelDTO artikel, AutorEntity autorEntity )
+            throws BlogException {
 
-            artikelEntity.setTitel(       artikelDTO.titel()       );
-            artikelEntity.setInhaltDelta( artikelDTO.inhaltDelta() );
-            artikelEntity.setInhaltHTML(  artikelDTO.inhaltHTML()  );
-            artikelEntity.setInhaltPlain( artikelDTO.inhaltPlain() );
-            artikelEntity.setZeitpunktGeaendert( now()             );
+        if ( artikel.titel().isBlank() ) {
 
-            _artikelRepo.save( artikelEntity );
+            return new ResponseEntity<>( "Titel von Artikel ist leer", BAD_REQUEST );
+        }
 
-            LOG.info( "Geänderter Artikel mit ID={} auf DB geschrieben: \"{}\"",
-                      artikelDTO.artikelID(), artikelDTO.titel() );
+        final String htmlUnsicher = artikel.inhaltHTML();
+        final String htmlSicher   = _htmlReinigung.sanitize( htmlUnsicher );
 
-            final String forwardToPfad = "/app/artikel/" + artikelId;
+        final long      fingerabdruck = _simHash.berechneFingerabdruck( artikel.inhaltPlain() );
+        final Set<Long> duplikate     = _duplikatIndex.findeDuplikate( fingerabdruck, -1 );
+        if ( !duplikate.isEmpty() && _duplikateBlockieren ) {
 
-            return new ResponseEntity<>( forwardToPfad, OK );
+            final String fehlerText = "Neuer Artikel ist Beinahe-Duplikat von Artikel(n) mit ID=" +
+                                      alsListe( duplikate ) + ".";
+            LOG.warn( fehlerText );
+            return new ResponseEntity<>( fehlerText, CONFLICT );
         }
-        catch ( JacksonException ex ) {
 
-            final String fehlerText = "JSON mit geändertem Artikel kann nicht deserialisiert werden. " +
-                                      ex.getMessage();
+        final byte[]        minHashSignatur = _minHash.berechneSignatur( artikel.inhaltPlain() );
+        final ArtikelAuszug auszug          = _auszugBerechnung.berechne( artikel.inhaltPlain() );
+        final List<String>  tags            = TagIndex.normalisieren( artikel.tags() );
+
+        final Supplier<ArtikelEntity> neuerArtikel = () -> {
+
+            final ArtikelEntity artikelEntity = new ArtikelEntity( artikel.titel().trim(),
+                                                                   artikel.inhaltDelta() ,
+                                                                   htmlSicher            ,
+                                                                   artikel.inhaltPlain() ,
+                                                                   autorEntity );
+            artikelEntity.setMinHashSignatur( minHashSignatur );
+            artikelEntity.setSimHash( fingerabdruck );
+            artikelEntity.setAuszug( auszug );
+            artikelEntity.setTags( tags );
+            return artikelEntity;
+        };
+
+        final long artikelId;
+        final long neueVersion;
+        if ( _schreibpipeline.istAktiv() ) {
+
+            artikelId   = warteAufCommit( _schreibpipeline.neuerArtikel( neuerArtikel ) );
+            neueVersion = 0; // erste Version eines neuen Artikels
+
+        } else {
+
+            final ArtikelEntity gespeichert = _speicherdienst.artikelSpeichern( neuerArtikel.get() );
+            artikelId   = gespeichert.getId();
+            neueVersion = gespeichert.getVersion();
+            _eventPublisher.publishEvent( new ArtikelGespeichertEvent( artikelId ) );
+        }
+
+        LOG.info( "Neuen Artikel mit Titel \"{}\" von \"{}\" unter ID={} gespeichert.",
+                  artikel.titel().trim(), autorEntity.getName(), artikelId );
+
+        final String forwardToPfad = "/app/artikel/" + artikelId;
+
+        return antwortMitDuplikaten( forwardToPfad, CREATED, artikelId, neueVersion, duplikate );
+    }
+
+
+    /**
+     * Prüft und speichert die Änderung an einem Artikel, entweder direkt oder über die
+     * Schreib-Pipeline.
+     *
+     * @param artikelDTO Geänderter Artikel vom Frontend (noch nicht gereinigt)
+     *
+     * @param nameAutor Anmeldename des Nutzers, muss Autor des Artikels sein
+     *
+     * @param ifMatch Wert von Header {@code If-Match}, {@code null} wenn nicht gesetzt
+     *
+     * @param warten Nur bei eingeschalteter Schreib-Pipeline: bei {@code false} wird nicht auf den
+     *               Commit gewartet
+     *
+     * @return Antwort für {@link #artikelAendern(String, boolean, String, Authentication)}
+     *
+     * @throws BlogException Schreib-Pipeline konnte Änderung nicht schreiben
+     */
+    private ResponseEntity<String> aenderungSpeichern( ArtikelDTO artikelDTO, String nameAutor,
+                                                       String ifMatch, boolean warten )
+            throws BlogException {
+
+        if ( artikelDTO.titel().isBlank() ) {
+
+            return new ResponseEntity<>( "Titel von zu änderndem Artikel ist leer", BAD_REQUEST );
+        }
+
+        long artikelId = artikelDTO.artikelID();
+        final Optional<ArtikelEntity> artikelOptional = _artikelRepo.findById( artikelId );
+        if ( artikelOptional.isEmpty() ) {
+
+            final String fehlerText = "Kein Artikel mit ID=" + artikelId + " zum Ändern gefunden.";
             LOG.error( fehlerText );
             return new ResponseEntity<>( fehlerText, BAD_REQUEST );
         }
+
+        final ArtikelEntity artikelEntity = artikelOptional.get();
+
+        if ( artikelEntity.getAutor().getName().equals( nameAutor ) == false ) {
+
+            final String fehlerText = "Angemeldeter Nutzer ist nicht der Autor des Artikels.";
+            LOG.error( fehlerText );
+            return new ResponseEntity<>( fehlerText, UNAUTHORIZED );
+        }
+
+        if ( ifMatch == null ) {
+
+            return new ResponseEntity<>( "Header If-Match mit ETag von /holen fehlt.", PRECONDITION_REQUIRED );
+        }
+        final long version = artikelEntity.getVersion();
+        if ( !passtZuVersion( ifMatch, version ) ) {
+
+            return versionKonflikt( "Artikel mit ID=" + artikelId + " wurde inzwischen geändert, " +
+                                    "If-Match=" + ifMatch + ", aktuelle Version ist " + version + ".",
+                                    version );
+        }
+
+        final long      fingerabdruck = _simHash.berechneFingerabdruck( artikelDTO.inhaltPlain() );
+        final Set<Long> duplikate     = _duplikatIndex.findeDuplikate( fingerabdruck, artikelId );
+        if ( !duplikate.isEmpty() && _duplikateBlockieren ) {
+
+            final String fehlerText = "Geänderter Artikel ist Beinahe-Duplikat von Artikel(n) mit ID=" +
+                                      alsListe( duplikate ) + ".";
+            LOG.warn( fehlerText );
+            return new ResponseEntity<>( fehlerText, CONFLICT );
+        }
+
+        final String        htmlSicher         = _htmlReinigung.sanitize( artikelDTO.inhaltHTML() );
+        final byte[]        minHashSignatur    = _minHash.berechneSignatur( artikelDTO.inhaltPlain() );
+        final ArtikelAuszug auszug             = _auszugBerechnung.berechne( artikelDTO.inhaltPlain() );
+        final LocalDateTime zeitpunktGeaendert = now();
+        final List<String>  tags               = artikelDTO.tags() == null
+                                                 ? null // Tags nicht mitgeschickt: unverändert
+                                                 : TagIndex.normalisieren( artikelDTO.tags() );
+
+        final Consumer<ArtikelEntity> aenderung = entity -> {
+
+            entity.setTitel(       artikelDTO.titel()       );
+            entity.setInhaltDelta( artikelDTO.inhaltDelta() );
+            entity.setInhaltHTML(  htmlSicher               );
+            entity.setInhaltPlain( artikelDTO.inhaltPlain() );
+            entity.setZeitpunktGeaendert( zeitpunktGeaendert );
+            entity.setMinHashSignatur( minHashSignatur );
+            entity.setSimHash( fingerabdruck );
+            entity.setAuszug( auszug );
+            if ( tags != null ) {
+
+                entity.setTags( tags );
+            }
+        };
+
+        final String forwardToPfad = "/app/artikel/" + artikelId;
+
+        long neueVersion = version + 1; // JPA zählt die Version beim Speichern um eins hoch
+        try {
+
+            if ( _schreibpipeline.istAktiv() ) {
+
+                final CompletableFuture<Long> bestaetigung =
+                                    _schreibpipeline.artikelAendern( artikelId, version, aenderung );
+                if ( !warten ) {
+
+                    LOG.info( "Änderung an Artikel mit ID={} in Schreib-Pipeline gestellt: \"{}\"",
+                              artikelId, artikelDTO.titel() );
+                    return antwortMitDuplikaten( forwardToPfad, ACCEPTED, artikelId, neueVersion, duplikate );
+                }
+                warteAufCommit( bestaetigung );
+
+            } else {
+
+                aenderung.accept( artikelEntity );
+                neueVersion = _speicherdienst.artikelSpeichern( artikelEntity ).getVersion();
+                _eventPublisher.publishEvent( new ArtikelGespeichertEvent( artikelId ) );
+            }
+        }
+        catch ( VersionKonfliktException ex ) {
+
+            return versionKonflikt( ex.getMessage(), null );
+        }
+        catch ( OptimisticLockingFailureException ex ) { // zwischen Laden und Speichern geändert
+
+            return versionKonflikt( "Artikel mit ID=" + artikelId + " wurde inzwischen geändert.", null );
+        }
+
+        LOG.info( "Geänderter Artikel mit ID={} auf DB geschrieben: \"{}\"",
+                  artikelDTO.artikelID(), artikelDTO.titel() );
+
+        return antwortMitDuplikaten( forwardToPfad, OK, artikelId, neueVersion, duplikate );
+    }
+
+
+    /**
+     * Wartet auf die Bestätigung der Schreib-Pipeline, dass der Speichervorgang committet wurde.
+     *
+     * @param bestaetigung Future von {@link Schreibpipeline}
+     *
+     * @return ID des gespeicherten Artikels
+     *
+     * @throws BlogException Speichern fehlgeschlagen oder nicht rechtzeitig bestätigt
+     *
+     * @throws VersionKonfliktException Artikel wurde inzwischen von jemand anderem geändert
+     */
+    private long warteAufCommit( CompletableFuture<Long> bestaetigung ) throws BlogException {
+
+        try {
+
+            return bestaetigung.get( _maxWarteMillis, MILLISECONDS );
+        }
+        catch ( ExecutionException ex ) {
+
+            if ( ex.getCause() instanceof VersionKonfliktException vkex ) { throw vkex; }
+            if ( ex.getCause() instanceof OptimisticLockingFailureException olex ) {
+
+                throw new VersionKonfliktException( "Artikel wurde inzwischen geändert: " + olex.getMessage() );
+            }
+            throw new BlogException( "Artikel konnte nicht gespeichert werden: " + ex.getCause().getMessage() );
+        }
+        catch ( TimeoutException ex ) {
+
+            throw new BlogException( "Speichern von Artikel wurde nicht rechtzeitig bestätigt." );
+        }
+        catch ( InterruptedException ex ) {
+
+            Thread.currentThread().interrupt();
+            throw new BlogException( "Warten auf Speichern von Artikel wurde unterbrochen." );
+        }
+    }
+
+
+    /**
+     * Prüft den Header {@code If-Match} gegen die aktuelle Version eines Artikels; der Header
+     * kann mehrere (auch schwache) ETags oder {@code *} enthalten.
+     *
+     * @param ifMatch Wert von Header {@code If-Match}
+     *
+     * @param version Aktuelle Version des Artikels
+     *
+     * @return {@code true}, wenn eines der ETags zur Version passt
+     */
+    private static boolean passtZuVersion( String ifMatch, long version ) {
+
+        for ( String etag : ifMatch.split( "," ) ) {
+
+            etag = etag.trim();
+            if ( etag.equals( "*" ) ) { return true; }
+            if ( etag.startsWith( "W/" ) ) { etag = etag.substring( 2 ); }
+
+            if ( etag.equals( "\"" + version + "\"" ) || etag.equals( String.valueOf( version ) ) ) {
+
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Erzeugt die Antwort für eine Änderung, die auf einer veralteten Version beruht.
+     *
+     * @param fehlerText Fehlermeldung für Log und Body
+     *
+     * @param aktuelleVersion Aktuelle Version für Header {@code ETag}, {@code null} wenn unbekannt
+     *
+     * @return Antwort mit HTTP-Status-Code 412 (Precondition Failed)
+     */
+    private static ResponseEntity<String> versionKonflikt( String fehlerText, Long aktuelleVersion ) {
+
+        LOG.warn( fehlerText );
+
+        final ResponseEntity.BodyBuilder builder = ResponseEntity.status( PRECONDITION_FAILED );
+        if ( aktuelleVersion != null ) {
+
+            builder.eTag( String.valueOf( aktuelleVersion ) );
+        }
+        return builder.body( fehlerText );
+    }
+
+
+    /**
+     * Erzeugt die Antwort für erfolgreiches Speichern mit der neuen Version im Header
+     * {@code ETag}, damit der Client ohne erneutes {@code /holen} weiter ändern kann; wenn
+     * es Beinahe-Duplikate gibt, dann wird eine Warnung geloggt und der Header
+     * {@link #HEADER_DUPLIKATE} gesetzt.
+     *
+     * @param forwardToPfad Pfad des gespeicherten Artikels für Body
+     *
+     * @param status HTTP-Status-Code
+     *
+     * @param artikelId ID des gespeicherten Artikels (für Log)
+     *
+     * @param neueVersion Version des Artikels nach dem Speichern; bei 202 die Version, die
+     *                    der Artikel bekommt, wenn die Änderung geschrieben wird
+     *
+     * @param duplikate IDs der Beinahe-Duplikate, kann leer sein
+     *
+     * @return Antwort-Objekt
+     */
+    private ResponseEntity<String> antwortMitDuplikaten( String forwardToPfad, HttpStatus status,
+                                                         long artikelId, long neueVersion,
+                                                         Set<Long> duplikate ) {
+
+        final ResponseEntity.BodyBuilder builder = ResponseEntity.status( status )
+                                                                 .eTag( String.valueOf( neueVersion ) );
+        if ( !duplikate.isEmpty() ) {
+
+            final String duplikatListe = alsListe( duplikate );
+            LOG.warn( "Artikel mit ID={} ist Beinahe-Duplikat von Artikel(n) mit ID={}.",
+                      artikelId, duplikatListe );
+
+            builder.header( HEADER_DUPLIKATE, duplikatListe );
+        }
+
+        return builder.body( forwardToPfad );
+    }
+
+
+    /**
+     * Formatiert Menge von Artikel-IDs als kommaseparierte Liste.
+     *
+     * @param ids Artikel-IDs
+     *
+     * @return String wie {@code "3,17"}
+     */
+    private static String alsListe( Set<Long> ids ) {
+
+        return ids.stream().map( String::valueOf ).collect( Collectors.joining( "," ) );
     }
 
 }
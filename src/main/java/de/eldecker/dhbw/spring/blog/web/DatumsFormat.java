@@ -0,0 +1,55 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Ausdrucks-Objekt {@code #datum} für die Templates (siehe {@link BlogDialekt}).
+ * <br><br>
+ *
+ * Ersetzt {@code #temporals.format(zeitpunkt, 'dd. MMMM yyyy, HH:mm')}, das für jeden Aufruf
+ * das Muster neu parst und einen neuen {@link DateTimeFormatter} erzeugt, bei der Artikelliste
+ * also für jede Zeile. Hier gibt es pro Sprache nur einen Formatierer, der ist thread-sicher.
+ */
+public class DatumsFormat {
+
+    /** Muster für Datum und Uhrzeit, z.B. "19. Oktober 2026, 14:05". */
+    private static final String MUSTER = "dd. MMMM yyyy, HH:mm";
+
+    /** Formatierer nach Sprache. */
+    private static final Map<Locale, DateTimeFormatter> FORMATIERER = new ConcurrentHashMap<>();
+
+    /** Formatierer für die Sprache des Rendervorgangs. */
+    private final DateTimeFormatter _formatierer;
+
+
+    /**
+     * Konstruktor.
+     *
+     * @param locale Sprache des Rendervorgangs, bei {@code null} Default-Sprache der JVM
+     */
+    public DatumsFormat( Locale locale ) {
+
+        final Locale sprache = locale == null ? Locale.getDefault() : locale;
+
+        _formatierer = FORMATIERER.computeIfAbsent( sprache, l -> DateTimeFormatter.ofPattern( MUSTER, l ) );
+    }
+
+
+    /**
+     * Zeitpunkt formatieren.
+     *
+     * @param zeitpunkt Zeitpunkt mit Datum und Uhrzeit, z.B. {@code LocalDateTime}
+     *
+     * @return Formatierter Zeitpunkt oder leerer String für {@code null}
+     */
+    public String format( TemporalAccessor zeitpunkt ) {
+
+        return zeitpunkt == null ? "" : _formatierer.format( zeitpunkt );
+    }
+
+}
@@ -0,0 +1,123 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.VARY;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import de.eldecker.dhbw.spring.blog.web.Feeds.Dokument;
+
+
+/**
+ * Controller für Atom-Feed, RSS-Feed und Sitemap; liegen unter {@code /app}, damit sie ohne
+ * Anmeldung abgerufen werden können. Die Dokumente kommen fertig serialisiert aus {@link Feeds}.
+ * <br><br>
+ *
+ * Bedingte Requests werden unterstützt: wer mit {@code If-None-Match} (ETag) oder
+ * {@code If-Modified-Since} nachfragt und schon die aktuelle Version hat, bekommt nur
+ * 304 (Not Modified). Clients, die gzip akzeptieren, bekommen die vorkomprimierte Variante.
+ */
+@RestController
+public class FeedController {
+
+    /** Clients sollen immer nachfragen, bekommen dann aber meist nur 304. */
+    private static final CacheControl CACHE_NACHFRAGEN = CacheControl.noCache().cachePublic();
+
+    /** Bean mit den serialisierten Dokumenten. */
+    private final Feeds _feeds;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public FeedController( Feeds feeds ) {
+
+        _feeds = feeds;
+    }
+
+
+    /**
+     * Atom-Feed mit den neuesten Artikeln.
+     *
+     * @param acceptEncoding Header {@code Accept-Encoding}, für gzip
+     *
+     * @param request Für Auswertung bedingter Requests
+     *
+     * @return HTTP-Status-Code 200 mit Feed oder 304 (Not Modified)
+     */
+    @GetMapping( Feeds.PFAD_ATOM )
+    public ResponseEntity<byte[]> atom( @RequestHeader( value = ACCEPT_ENCODING, required = false ) String acceptEncoding,
+                                        WebRequest request ) {
+
+        return ausliefern( _feeds.atom(), Feeds.CONTENT_TYPE_ATOM, acceptEncoding, request );
+    }
+
+
+    /**
+     * RSS-Feed mit den neuesten Artikeln.
+     *
+     * @param acceptEncoding Header {@code Accept-Encoding}, für gzip
+     *
+     * @param request Für Auswertung bedingter Requests
+     *
+     * @return HTTP-Status-Code 200 mit Feed oder 304 (Not Modified)
+     */
+    @GetMapping( Feeds.PFAD_RSS )
+    public ResponseEntity<byte[]> rss( @RequestHeader( value = ACCEPT_ENCODING, required = false ) String acceptEncoding,
+                                       WebRequest request ) {
+
+        return ausliefern( _feeds.rss(), Feeds.CONTENT_TYPE_RSS, acceptEncoding, request );
+    }
+
+
+    /**
+     * Sitemap mit der Artikelliste und allen Artikelseiten.
+     *
+     * @param acceptEncoding Header {@code Accept-Encoding}, für gzip
+     *
+     * @param request Für Auswertung bedingter Requests
+     *
+     * @return HTTP-Status-Code 200 mit Sitemap oder 304 (Not Modified)
+     */
+    @GetMapping( Feeds.PFAD_SITEMAP )
+    public ResponseEntity<byte[]> sitemap( @RequestHeader( value = ACCEPT_ENCODING, required = false ) String acceptEncoding,
+                                           WebRequest request ) {
+
+        return ausliefern( _feeds.sitemap(), Feeds.CONTENT_TYPE_SITEMAP, acceptEncoding, request );
+    }
+
+
+    /**
+     * Response mit Dokument bzw. 304 (Not Modified), wenn der Client die Version schon hat.
+     */
+    private static ResponseEntity<byte[]> ausliefern( Dokument dokument, String contentType,
+                                                      String acceptEncoding, WebRequest request ) {
+
+        if ( request.checkNotModified( dokument.etag(), dokument.zuletztGeaendert() ) ) {
+
+            return null; // Status 304 und Header sind schon gesetzt
+        }
+
+        final boolean gzip = acceptEncoding != null && acceptEncoding.contains( "gzip" );
+
+        final ResponseEntity.BodyBuilder antwort = ResponseEntity.ok()
+                                                                 .contentType( MediaType.parseMediaType( contentType ) )
+                                                                 .cacheControl( CACHE_NACHFRAGEN )
+                                                                 .header( VARY, ACCEPT_ENCODING );
+        if ( gzip ) {
+
+            return antwort.header( CONTENT_ENCODING, "gzip" ).body( dokument.inhaltGzip() );
+        }
+        return antwort.body( dokument.inhalt() );
+    }
+
+}
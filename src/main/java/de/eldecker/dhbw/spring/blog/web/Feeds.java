@@ -0,0 +1,503 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelListenLeser;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.ArtikelKurzDTO;
+import de.eldecker.dhbw.spring.blog.model.ArtikelListenEintrag;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Atom-Feed, RSS-Feed und Sitemap als fertig serialisierte Dokumente im Speicher, für
+ * {@link FeedController}. Feed-Reader und Crawler fragen sehr oft nach; eine Abfrage kostet
+ * deshalb höchstens das Kopieren der Bytes in die Response (oder nur 304 "Not Modified").
+ * <br><br>
+ *
+ * Die Artikel werden beim Start einmal ohne Inhalt aus einem Datenbank-Cursor gelesen;
+ * danach wird nach jedem {@link ArtikelGespeichertEvent} (auch für Änderungen auf anderen
+ * Instanzen) nur der gespeicherte Artikel geladen und in die Listen eingefügt bzw. dort
+ * ersetzt. Die Dokumente werden erst bei der nächsten Abfrage danach neu serialisiert, mehrere
+ * Änderungen hintereinander also nur einmal.
+ * <br><br>
+ *
+ * Die Feeds enthalten höchstens {@code blog.feeds.max-eintraege} neueste Artikel, die Sitemap
+ * höchstens {@code blog.feeds.max-sitemap} (Protokoll erlaubt 50.000 URLs pro Datei); bei mehr
+ * Artikeln fallen die ältesten weg. Die absoluten URLs beginnen mit {@code blog.feeds.basis-url}.
+ * <br><br>
+ *
+ * Metrik: {@code blog.feeds.aufbau} (Anzahl Serialisierungen aller drei Dokumente).
+ */
+@Component
+public class Feeds {
+
+    private static final Logger LOG = LoggerFactory.getLogger( Feeds.class );
+
+    /** Content-Type für Atom-Feed. */
+    public static final String CONTENT_TYPE_ATOM = "application/atom+xml;charset=UTF-8";
+
+    /** Content-Type für RSS-Feed. */
+    public static final String CONTENT_TYPE_RSS = "application/rss+xml;charset=UTF-8";
+
+    /** Content-Type für Sitemap. */
+    public static final String CONTENT_TYPE_SITEMAP = "application/xml;charset=UTF-8";
+
+    /** Pfad des Atom-Feeds. */
+    public static final String PFAD_ATOM = "/app/feed/atom.xml";
+
+    /** Pfad des RSS-Feeds. */
+    public static final String PFAD_RSS = "/app/feed/rss.xml";
+
+    /** Pfad der Sitemap. */
+    public static final String PFAD_SITEMAP = "/app/sitemap.xml";
+
+    /** Pfad der Artikelliste. */
+    private static final String PFAD_LISTE = "/app/artikel/liste";
+
+    /** Präfix für Pfad einer Artikelseite. */
+    private static final String PFAD_ARTIKEL = "/app/artikel/";
+
+    /** Namespace für Atom. */
+    private static final String NS_ATOM = "http://www.w3.org/2005/Atom";
+
+    /** Namespace für Sitemap. */
+    private static final String NS_SITEMAP = "http://www.sitemaps.org/schemas/sitemap/0.9";
+
+    /** Namespace für {@code dc:creator} im RSS-Feed (Element {@code author} verlangt E-Mail-Adresse). */
+    private static final String NS_DC = "http://purl.org/dc/elements/1.1/";
+
+    /** Sortierung: neueste Artikel zuerst, bei gleichem Zeitpunkt höhere ID zuerst. */
+    private static final Comparator<ArtikelKurzDTO> NEUESTE_ZUERST =
+            Comparator.comparing( ArtikelKurzDTO::zeitpunktAngelegt ).thenComparingLong( ArtikelKurzDTO::id ).reversed();
+
+    /** Für XML-Writer, ist thread-sicher. */
+    private static final XMLOutputFactory XML_FACTORY = XMLOutputFactory.newFactory();
+
+    /** Zeitzone, in der die Zeitpunkte in der Datenbank stehen. */
+    private static final ZoneId ZEITZONE = ZoneId.systemDefault();
+
+    /** Bean zum Lesen der Artikel ohne Inhalt. */
+    private final ArtikelListenLeser _listenLeser;
+
+    /** Titel der Feeds. */
+    private final String _titel;
+
+    /** Anfang der absoluten URLs, ohne Schrägstrich am Ende. */
+    private final String _basisUrl;
+
+    /** Maximale Anzahl Artikel in den Feeds. */
+    private final int _maxEintraege;
+
+    /** Maximale Anzahl Artikel in der Sitemap. */
+    private final int _maxSitemap;
+
+    /** Neueste Artikel für die Feeds. */
+    private final TreeSet<ArtikelKurzDTO> _feedArtikel = new TreeSet<>( NEUESTE_ZUERST );
+
+    /** Neueste Artikel für die Sitemap, Wert ist Zeitpunkt der letzten Änderung. */
+    private final TreeMap<ArtikelKurzDTO, LocalDateTime> _sitemapArtikel = new TreeMap<>( NEUESTE_ZUERST );
+
+    /** Serialisierte Dokumente oder {@code null}, wenn sie nach einer Änderung neu serialisiert werden müssen. */
+    private volatile Dokumente _dokumente = null;
+
+    /** Zähler für Serialisierungen. */
+    private final Counter _aufbauZaehler;
+
+
+    /**
+     * Fertig serialisiertes Dokument.
+     *
+     * @param inhalt XML, UTF-8
+     *
+     * @param inhaltGzip Mit gzip komprimiertes XML
+     *
+     * @param etag Entity-Tag mit Anführungszeichen, aus Hash-Wert des Inhalts
+     *
+     * @param zuletztGeaendert Letzte Änderung eines enthaltenen Artikels (Millisekunden seit 1970)
+     *                         für {@code Last-Modified}
+     */
+    public record Dokument( byte[] inhalt, byte[] inhaltGzip, String etag, long zuletztGeaendert ) {
+    }
+
+    /**
+     * Alle drei Dokumente, werden immer zusammen neu serialisiert.
+     */
+    private record Dokumente( Dokument atom, Dokument rss, Dokument sitemap ) {
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public Feeds( ArtikelListenLeser listenLeser,
+                  @Value( "${spring.application.name:Blog}"               ) String titel,
+                  @Value( "${blog.feeds.basis-url:http://localhost:8080}" ) String basisUrl,
+                  @Value( "${blog.feeds.max-eintraege:50}"                 ) int maxEintraege,
+                  @Value( "${blog.feeds.max-sitemap:50000}"                ) int maxSitemap,
+                  MeterRegistry meterRegistry ) {
+
+        _listenLeser  = listenLeser;
+        _titel        = titel;
+        _basisUrl     = basisUrl.endsWith( "/" ) ? basisUrl.substring( 0, basisUrl.length() - 1 ) : basisUrl;
+        _maxEintraege = maxEintraege;
+        _maxSitemap   = maxSitemap;
+
+        _aufbauZaehler = Counter.builder( "blog.feeds.aufbau" )
+                                .description( "Serialisierungen von Atom-Feed, RSS-Feed und Sitemap" )
+                                .register( meterRegistry );
+    }
+
+
+    /**
+     * Liest beim Start die neuesten Artikel (nach dem evtl. Import von Demo-Content).
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public synchronized void laden() {
+
+        _feedArtikel.clear();
+        _sitemapArtikel.clear();
+
+        final int maxArtikel = Math.max( _maxEintraege, _maxSitemap );
+        try ( Stream<ArtikelListenEintrag> eintraege = _listenLeser.alle() ) {
+
+            eintraege.limit( maxArtikel ).forEach( eintrag -> einfuegen( eintrag.artikel() ) );
+        }
+        _dokumente = null;
+
+        LOG.info( "Feeds und Sitemap geladen: {} bzw. {} Artikel.", _feedArtikel.size(), _sitemapArtikel.size() );
+    }
+
+
+    /**
+     * Fügt einen gespeicherten Artikel ein bzw. ersetzt ihn; wird erst nach dem Commit der
+     * zugehörigen Transaktion aufgerufen.
+     *
+     * @param event Event mit ID des gespeicherten Artikels
+     */
+    @TransactionalEventListener( fallbackExecution = true )
+    public void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+        final Optional<ArtikelListenEintrag> eintragOptional = _listenLeser.holen( event.artikelId() );
+        if ( eintragOptional.isEmpty() ) {
+
+            LOG.warn( "Gespeicherter Artikel mit ID={} für Feeds nicht gefunden.", event.artikelId() );
+            return;
+        }
+
+        synchronized ( this ) {
+
+            einfuegen( eintragOptional.get().artikel() );
+            _dokumente = null;
+        }
+    }
+
+
+    /**
+     * Atom-Feed holen.
+     *
+     * @return Serialisierter Feed
+     */
+    public Dokument atom() {
+
+        return dokumente().atom();
+    }
+
+
+    /**
+     * RSS-Feed holen.
+     *
+     * @return Serialisierter Feed
+     */
+    public Dokument rss() {
+
+        return dokumente().rss();
+    }
+
+
+    /**
+     * Sitemap holen.
+     *
+     * @return Serialisierte Sitemap
+     */
+    public Dokument sitemap() {
+
+        return dokumente().sitemap();
+    }
+
+
+    /**
+     * Liefert die Dokumente, nach einer Änderung werden sie vorher neu serialisiert.
+     */
+    private Dokumente dokumente() {
+
+        final Dokumente dokumente = _dokumente;
+        if ( dokumente != null ) {
+
+            return dokumente;
+        }
+
+        synchronized ( this ) {
+
+            if ( _dokumente == null ) {
+
+                _dokumente = serialisieren();
+                _aufbauZaehler.increment();
+            }
+            return _dokumente;
+        }
+    }
+
+
+    /**
+     * Fügt Artikel in die Listen ein bzw. ersetzt ihn dort; ist eine Liste danach zu lang,
+     * dann wird der älteste Artikel entfernt (das kann der eingefügte sein). Aufrufer muss
+     * Lock halten.
+     */
+    private void einfuegen( ArtikelKurzDTO artikel ) {
+
+        _feedArtikel.remove( artikel ); // gleich nach Sortierung, aber evtl. neuer Titel
+        _feedArtikel.add( artikel );
+        if ( _feedArtikel.size() > _maxEintraege ) {
+
+            _feedArtikel.pollLast();
+        }
+
+        _sitemapArtikel.put( artikel, artikel.zeitpunktGeaendert() );
+        if ( _sitemapArtikel.size() > _maxSitemap ) {
+
+            _sitemapArtikel.pollLastEntry();
+        }
+    }
+
+
+    /**
+     * Serialisiert alle drei Dokumente. Aufrufer muss Lock halten.
+     */
+    private Dokumente serialisieren() {
+
+        final LocalDateTime feedGeaendert = _feedArtikel.stream()
+                                                        .map( ArtikelKurzDTO::zeitpunktGeaendert )
+                                                        .max( Comparator.naturalOrder() )
+                                                        .orElse( LocalDateTime.of( 2000, 1, 1, 0, 0 ) );
+
+        final LocalDateTime sitemapGeaendert = _sitemapArtikel.values().stream()
+                                                              .max( Comparator.naturalOrder() )
+                                                              .orElse( feedGeaendert );
+        try {
+
+            return new Dokumente( dokument( atomSchreiben( feedGeaendert ) , feedGeaendert    ),
+                                  dokument( rssSchreiben( feedGeaendert )  , feedGeaendert    ),
+                                  dokument( sitemapSchreiben()             , sitemapGeaendert ) );
+        }
+        catch ( XMLStreamException ex ) {
+
+            throw new IllegalStateException( "Feeds konnten nicht serialisiert werden.", ex ); // nur Programmierfehler
+        }
+    }
+
+
+    /**
+     * Atom-Feed schreiben (RFC 4287).
+     */
+    private byte[] atomSchreiben( LocalDateTime feedGeaendert ) throws XMLStreamException {
+
+        final ByteArrayOutputStream puffer = new ByteArrayOutputStream( 1024 + _feedArtikel.size() * 512 );
+        final XMLStreamWriter       xml    = XML_FACTORY.createXMLStreamWriter( puffer, UTF_8.name() );
+
+        xml.writeStartDocument( UTF_8.name(), "1.0" );
+        xml.writeStartElement( "feed" );
+        xml.writeDefaultNamespace( NS_ATOM );
+        element( xml, "title"  , _titel );
+        element( xml, "id"     , _basisUrl + PFAD_LISTE );
+        element( xml, "updated", iso( feedGeaendert ) );
+        link( xml, "self", _basisUrl + PFAD_ATOM );
+        link( xml, "alternate", _basisUrl + PFAD_LISTE );
+
+        for ( ArtikelKurzDTO artikel : _feedArtikel ) {
+
+            final String url = _basisUrl + PFAD_ARTIKEL + artikel.id();
+
+            xml.writeStartElement( "entry" );
+            element( xml, "title"    , artikel.titel() );
+            element( xml, "id"       , url );
+            link( xml, "alternate", url );
+            element( xml, "published", iso( artikel.zeitpunktAngelegt()  ) );
+            element( xml, "updated"  , iso( artikel.zeitpunktGeaendert() ) );
+            if ( artikel.auszug() != null && !artikel.auszug().isEmpty() ) {
+
+                element( xml, "summary", artikel.auszug() );
+            }
+            xml.writeStartElement( "author" );
+            element( xml, "name", artikel.autor() == null ? _titel : artikel.autor() );
+            xml.writeEndElement();
+            xml.writeEndElement();
+        }
+
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+
+        return puffer.toByteArray();
+    }
+
+
+    /**
+     * RSS-Feed schreiben (RSS 2.0).
+     */
+    private byte[] rssSchreiben( LocalDateTime feedGeaendert ) throws XMLStreamException {
+
+        final ByteArrayOutputStream puffer = new ByteArrayOutputStream( 1024 + _feedArtikel.size() * 384 );
+        final XMLStreamWriter       xml    = XML_FACTORY.createXMLStreamWriter( puffer, UTF_8.name() );
+
+        xml.writeStartDocument( UTF_8.name(), "1.0" );
+        xml.writeStartElement( "rss" );
+        xml.writeAttribute( "version", "2.0" );
+        xml.writeNamespace( "dc", NS_DC );
+        xml.writeStartElement( "channel" );
+        element( xml, "title"        , _titel );
+        element( xml, "link"         , _basisUrl + PFAD_LISTE );
+        element( xml, "description"  , "Neueste Artikel" );
+        element( xml, "lastBuildDate", rfc1123( feedGeaendert ) );
+
+        for ( ArtikelKurzDTO artikel : _feedArtikel ) {
+
+            final String url = _basisUrl + PFAD_ARTIKEL + artikel.id();
+
+            xml.writeStartElement( "item" );
+            element( xml, "title"  , artikel.titel() );
+            element( xml, "link"   , url );
+            element( xml, "guid"   , url );
+            element( xml, "pubDate", rfc1123( artikel.zeitpunktAngelegt() ) );
+            if ( artikel.auszug() != null && !artikel.auszug().isEmpty() ) {
+
+                element( xml, "description", artikel.auszug() );
+            }
+            if ( artikel.autor() != null ) {
+
+                xml.writeStartElement( "dc", "creator", NS_DC );
+                xml.writeCharacters( artikel.autor() );
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+        }
+
+        xml.writeEndElement();
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+
+        return puffer.toByteArray();
+    }
+
+
+    /**
+     * Sitemap schreiben (sitemaps.org 0.9).
+     */
+    private byte[] sitemapSchreiben() throws XMLStreamException {
+
+        final ByteArrayOutputStream puffer = new ByteArrayOutputStream( 1024 + _sitemapArtikel.size() * 128 );
+        final XMLStreamWriter       xml    = XML_FACTORY.createXMLStreamWriter( puffer, UTF_8.name() );
+
+        xml.writeStartDocument( UTF_8.name(), "1.0" );
+        xml.writeStartElement( "urlset" );
+        xml.writeDefaultNamespace( NS_SITEMAP );
+
+        xml.writeStartElement( "url" );
+        element( xml, "loc", _basisUrl + PFAD_LISTE );
+        xml.writeEndElement();
+
+        for ( Map.Entry<ArtikelKurzDTO, LocalDateTime> eintrag : _sitemapArtikel.entrySet() ) {
+
+            xml.writeStartElement( "url" );
+            element( xml, "loc"    , _basisUrl + PFAD_ARTIKEL + eintrag.getKey().id() );
+            element( xml, "lastmod", iso( eintrag.getValue() ) );
+            xml.writeEndElement();
+        }
+
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.close();
+
+        return puffer.toByteArray();
+    }
+
+
+    /**
+     * Dokument mit komprimierter Variante und ETag erzeugen.
+     */
+    private static Dokument dokument( byte[] inhalt, LocalDateTime zuletztGeaendert ) {
+
+        final long millis = zuletztGeaendert.atZone( ZEITZONE ).toInstant().toEpochMilli();
+
+        return new Dokument( inhalt, StatischeAssets.komprimieren( inhalt ),
+                             "\"" + StatischeAssets.hash( inhalt ) + "\"", millis );
+    }
+
+
+    /**
+     * Element mit Text schreiben.
+     */
+    private static void element( XMLStreamWriter xml, String name, String text ) throws XMLStreamException {
+
+        xml.writeStartElement( name );
+        xml.writeCharacters( text == null ? "" : text );
+        xml.writeEndElement();
+    }
+
+
+    /**
+     * Leeres Atom-Element {@code link} schreiben.
+     */
+    private static void link( XMLStreamWriter xml, String rel, String href ) throws XMLStreamException {
+
+        xml.writeEmptyElement( "link" );
+        xml.writeAttribute( "rel" , rel  );
+        xml.writeAttribute( "href", href );
+    }
+
+
+    /**
+     * Zeitpunkt für Atom und Sitemap (ISO 8601 mit Zeitzone).
+     */
+    private static String iso( LocalDateTime zeitpunkt ) {
+
+        return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format( zeitpunkt.atZone( ZEITZONE ).withNano( 0 ) );
+    }
+
+
+    /**
+     * Zeitpunkt für RSS (RFC 822/1123).
+     */
+    private static String rfc1123( LocalDateTime zeitpunkt ) {
+
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format( zeitpunkt.atZone( ZEITZONE ) );
+    }
+
+}
@@ -0,0 +1,59 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
+
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+
+/**
+ * Controller für den Live-Feed mit neuen und geänderten Artikeln (Server-Sent Events);
+ * liegt unter {@code /app}, damit auch anonyme Leser ihn abonnieren können.
+ */
+@RestController
+@RequestMapping( "/app" )
+public class LiveFeedController {
+
+    /** Bean, die die Ereignisse an alle Abonnenten verteilt. */
+    private final LiveFeedVerteiler _liveFeedVerteiler;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public LiveFeedController( LiveFeedVerteiler liveFeedVerteiler ) {
+
+        _liveFeedVerteiler = liveFeedVerteiler;
+    }
+
+
+    /**
+     * Live-Feed abonnieren, z.B. mit {@code new EventSource("/app/artikel/live")}.
+     * Für jeden angelegten oder geänderten Artikel wird ein Event mit Name
+     * {@value LiveFeedVerteiler#EVENT_NAME} gesendet, die Daten sind ein JSON-Objekt mit
+     * {@code artikelId}, {@code titel} und {@code neu}.
+     *
+     * @return HTTP-Status-Code 200 mit Event-Stream oder 503 (Service Unavailable), wenn
+     *         die maximale Anzahl Abonnenten erreicht ist
+     */
+    @GetMapping( value = "/artikel/live", produces = TEXT_EVENT_STREAM_VALUE )
+    public ResponseEntity<SseEmitter> liveFeed() {
+
+        final Optional<SseEmitter> emitterOptional = _liveFeedVerteiler.abonnieren();
+        if ( emitterOptional.isEmpty() ) {
+
+            return ResponseEntity.status( SERVICE_UNAVAILABLE ).build();
+        }
+
+        return ResponseEntity.ok( emitterOptional.get() );
+    }
+
+}
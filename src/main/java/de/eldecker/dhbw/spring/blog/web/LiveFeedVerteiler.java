@@ -0,0 +1,332 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.ArtikelLiveEreignis;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+
+/**
+ * Verteiler für den Live-Feed mit neuen und geänderten Artikeln (<i>Server-Sent Events</i>),
+ * damit Leser nicht immer wieder die ganze Artikelliste neu laden müssen.
+ * <br><br>
+ *
+ * Nach jedem {@link ArtikelGespeichertEvent} (also nach dem Commit, auch für Änderungen auf
+ * anderen Instanzen) wird der Artikel einmal geladen und das Ereignis einmal serialisiert; die
+ * fertige Nachricht wird dann an alle Abonnenten verteilt (<i>Fan-Out</i>):
+ * <ul>
+ * <li>Jeder Abonnent hat einen kleinen Puffer mit höchstens {@code blog.live.puffer} Nachrichten.
+ *     Ist der Puffer voll, weil der Client nicht schnell genug liest, dann wird der Abonnent
+ *     entfernt und die Verbindung geschlossen (<i>Slow Consumer Eviction</i>); der Browser
+ *     verbindet sich mit {@code EventSource} automatisch neu.</li>
+ * <li>Gesendet wird auf einem virtuellen Thread pro Abonnent, aber nur solange Nachrichten im
+ *     Puffer sind; ein langsamer Client blockiert also weder den speichernden Request noch die
+ *     anderen Abonnenten.</li>
+ * <li>Ein untätiger Abonnent belegt keinen Thread (asynchroner Request), sondern nur die
+ *     Verbindung, den Emitter und den Puffer.</li>
+ * </ul>
+ * Alle {@code blog.live.heartbeat-ms} wird ein SSE-Kommentar gesendet, damit abgebrochene
+ * Verbindungen erkannt werden und Proxies die Verbindung nicht schließen.
+ * <br><br>
+ *
+ * Metriken: {@code blog.live.abonnenten} und {@code blog.live.verdraengt}.
+ */
+@Component
+public class LiveFeedVerteiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger( LiveFeedVerteiler.class );
+
+    /** Name der SSE-Events für neue/geänderte Artikel. */
+    public static final String EVENT_NAME = "artikel";
+
+    /** Repo-Bean für Laden des gespeicherten Artikels. */
+    private final ArtikelRepo _artikelRepo;
+
+    /** Bean für JSON-Serialisierung der Ereignisse. */
+    private final ObjectMapper _objectMapper;
+
+    /** Maximale Anzahl ungesendeter Nachrichten pro Abonnent. */
+    private final int _pufferGroesse;
+
+    /** Maximale Anzahl gleichzeitiger Abonnenten. */
+    private final int _maxAbonnenten;
+
+    /** Nach dieser Zeit wird die Verbindung geschlossen, der Browser verbindet sich neu. */
+    private final long _timeoutMillis;
+
+    /** Aktuelle Abonnenten. */
+    private final Set<Abonnent> _abonnenten = ConcurrentHashMap.newKeySet();
+
+    /** Virtuelle Threads für das Senden an die Abonnenten. */
+    private final ExecutorService _sender;
+
+    /** Zähler für Abonnenten, die wegen vollem Puffer entfernt wurden. */
+    private final Counter _verdraengtZaehler;
+
+
+    /**
+     * Ein Abonnent des Live-Feeds mit eigenem Puffer.
+     */
+    private final class Abonnent {
+
+        /** Emitter für die SSE-Verbindung. */
+        private final SseEmitter _emitter;
+
+        /** Noch nicht gesendete Nachrichten. */
+        private final BlockingQueue<Set<DataWithMediaType>> _puffer;
+
+        /** {@code true}, solange ein Thread für diesen Abonnenten sendet. */
+        private final AtomicBoolean _sendetGerade = new AtomicBoolean( false );
+
+
+        /**
+         * Konstruktor.
+         *
+         * @param emitter Emitter für die SSE-Verbindung
+         */
+        Abonnent( SseEmitter emitter ) {
+
+            _emitter = emitter;
+            _puffer  = new ArrayBlockingQueue<>( _pufferGroesse );
+        }
+
+
+        /**
+         * Stellt eine Nachricht in den Puffer und startet das Senden, falls gerade nicht
+         * gesendet wird; bei vollem Puffer wird der Abonnent entfernt.
+         *
+         * @param nachricht Fertig serialisierte Nachricht, wird von allen Abonnenten geteilt
+         */
+        void einreihen( Set<DataWithMediaType> nachricht ) {
+
+            if ( !_puffer.offer( nachricht ) ) {
+
+                _verdraengtZaehler.increment();
+                LOG.debug( "Abonnent des Live-Feeds liest zu langsam, Verbindung wird geschlossen." );
+                entfernen( this );
+                _emitter.complete();
+                return;
+            }
+
+            if ( _sendetGerade.compareAndSet( false, true ) ) {
+
+                _sender.execute( this::senden );
+            }
+        }
+
+
+        /**
+         * Sendet die Nachrichten im Puffer, bis er leer ist.
+         */
+        private void senden() {
+
+            try {
+
+                do {
+
+                    Set<DataWithMediaType> nachricht;
+                    while ( ( nachricht = _puffer.poll() ) != null ) {
+
+                        _emitter.send( nachricht );
+                    }
+                    _sendetGerade.set( false );
+
+                    // Nachricht kann nach dem letzten poll() und vor set(false) eingereiht worden sein
+                } while ( !_puffer.isEmpty() && _sendetGerade.compareAndSet( false, true ) );
+            }
+            catch ( IOException | IllegalStateException ex ) { // Verbindung abgebrochen oder schon geschlossen
+
+                entfernen( this );
+            }
+        }
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public LiveFeedVerteiler( ArtikelRepo artikelRepo,
+                              ObjectMapper objectMapper,
+                              @Value( "${blog.live.puffer:16}"            ) int pufferGroesse,
+                              @Value( "${blog.live.max-abonnenten:10000}" ) int maxAbonnenten,
+                              @Value( "${blog.live.timeout-ms:1800000}"   ) long timeoutMillis,
+                              MeterRegistry meterRegistry ) {
+
+        this( artikelRepo, objectMapper, pufferGroesse, maxAbonnenten, timeoutMillis, meterRegistry,
+              Executors.newVirtualThreadPerTaskExecutor() );
+    }
+
+
+    /**
+     * Konstruktor mit eigenem Executor für das Senden, z.B. für Tests mit langsamen Abonnenten.
+     */
+    LiveFeedVerteiler( ArtikelRepo artikelRepo,
+                       ObjectMapper objectMapper,
+                       int pufferGroesse,
+                       int maxAbonnenten,
+                       long timeoutMillis,
+                       MeterRegistry meterRegistry,
+                       ExecutorService sender ) {
+
+        _artikelRepo   = artikelRepo;
+        _objectMapper  = objectMapper;
+        _pufferGroesse = pufferGroesse;
+        _maxAbonnenten = maxAbonnenten;
+        _timeoutMillis = timeoutMillis;
+        _sender        = sender;
+
+        Gauge.builder( "blog.live.abonnenten", _abonnenten, Set::size )
+             .description( "Anzahl der Abonnenten des Live-Feeds" )
+             .register( meterRegistry );
+
+        _verdraengtZaehler = Counter.builder( "blog.live.verdraengt" )
+                                    .description( "Anzahl Abonnenten des Live-Feeds, die wegen vollem Puffer entfernt wurden" )
+                                    .register( meterRegistry );
+    }
+
+
+    /**
+     * Neuen Abonnenten anlegen.
+     *
+     * @return Optional mit Emitter für die SSE-Verbindung oder leeres Optional, wenn die
+     *         maximale Anzahl Abonnenten erreicht ist
+     */
+    public Optional<SseEmitter> abonnieren() {
+
+        if ( _abonnenten.size() >= _maxAbonnenten ) {
+
+            LOG.warn( "Maximale Anzahl von {} Abonnenten des Live-Feeds erreicht.", _maxAbonnenten );
+            return Optional.empty();
+        }
+
+        final SseEmitter emitter  = new SseEmitter( _timeoutMillis );
+        final Abonnent   abonnent = new Abonnent( emitter );
+
+        emitter.onCompletion( () -> entfernen( abonnent ) );
+        emitter.onTimeout(    () -> entfernen( abonnent ) );
+        emitter.onError(      ex -> entfernen( abonnent ) );
+
+        _abonnenten.add( abonnent );
+
+        return Optional.of( emitter );
+    }
+
+
+    /**
+     * Verteilt ein Ereignis für einen gespeicherten Artikel an alle Abonnenten; wird erst
+     * nach dem Commit aufgerufen. Ohne Abonnenten wird der Artikel gar nicht geladen.
+     *
+     * @param event Event mit ID des gespeicherten Artikels
+     */
+    @TransactionalEventListener( fallbackExecution = true )
+    public void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+        if ( _abonnenten.isEmpty() ) {
+
+            return;
+        }
+
+        final Optional<ArtikelEntity> artikelOptional = _artikelRepo.findById( event.artikelId() );
+        if ( artikelOptional.isEmpty() ) {
+
+            return;
+        }
+        final ArtikelEntity artikel = artikelOptional.get();
+
+        // Version 0: seit dem Anlegen noch nie geändert
+        final ArtikelLiveEreignis ereignis =
+                new ArtikelLiveEreignis( artikel.getId(), artikel.getTitel(), artikel.getVersion() == 0 );
+        try {
+
+            final String json = _objectMapper.writeValueAsString( ereignis );
+            verteilen( SseEmitter.event().name( EVENT_NAME ).data( json ).build() );
+        }
+        catch ( JacksonException ex ) {
+
+            LOG.error( "Ereignis für Live-Feed konnte nicht serialisiert werden: " + ex.getMessage() );
+        }
+    }
+
+
+    /**
+     * Sendet einen SSE-Kommentar an alle Abonnenten, damit abgebrochene Verbindungen
+     * erkannt werden.
+     */
+    @Scheduled( fixedRateString = "${blog.live.heartbeat-ms:30000}" )
+    public void herzschlag() {
+
+        if ( !_abonnenten.isEmpty() ) {
+
+            verteilen( SseEmitter.event().comment( "ping" ).build() );
+        }
+    }
+
+
+    /**
+     * Schließt beim Herunterfahren alle Verbindungen.
+     */
+    @PreDestroy
+    public void herunterfahren() {
+
+        for ( Abonnent abonnent : _abonnenten ) {
+
+            abonnent._emitter.complete();
+        }
+        _abonnenten.clear();
+        _sender.shutdownNow();
+    }
+
+
+    /**
+     * Stellt eine Nachricht in den Puffer jedes Abonnenten.
+     *
+     * @param nachricht Fertig serialisierte Nachricht
+     */
+    private void verteilen( Set<DataWithMediaType> nachricht ) {
+
+        for ( Abonnent abonnent : _abonnenten ) {
+
+            abonnent.einreihen( nachricht );
+        }
+    }
+
+
+    /**
+     * Entfernt einen Abonnenten, z.B. nach Abbruch der Verbindung.
+     *
+     * @param abonnent Abonnent
+     */
+    private void entfernen( Abonnent abonnent ) {
+
+        _abonnenten.remove( abonnent );
+    }
+
+}
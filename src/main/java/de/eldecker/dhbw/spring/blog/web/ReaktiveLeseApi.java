@@ -0,0 +1,203 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelReaktivLeser;
+import de.eldecker.dhbw.spring.blog.model.ArtikelKurzDTO;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+
+/**
+ * Nicht-blockierende Lese-API für Artikel (Liste, einzelner Artikel, Suche) mit
+ * <i>Spring WebFlux</i>; die Daten werden mit R2DBC gelesen, siehe {@link ArtikelReaktivLeser}.
+ * <br><br>
+ *
+ * Weil die restliche Anwendung auf Spring MVC (Servlet-Stack) basiert, läuft diese API
+ * auf einem eigenen <i>Reactor Netty</i>-Server mit eigenem Port (Property
+ * {@code blog.reaktiv.port}); eingeschaltet wird sie mit dem Profil {@code reaktiv}.
+ * Listen werden als <i>Newline Delimited JSON</i> (ein Artikel pro Zeile) gestreamt, und
+ * neue Zeilen werden erst aus der Datenbank geholt, wenn der Socket wieder beschreibbar ist
+ * (Backpressure). Ein Client, der die Antwort nur langsam abholt, belegt deshalb keinen
+ * Thread, aber bis zum Ende des Streams eine Verbindung aus dem R2DBC-Pool mit offenem
+ * Cursor; mehr als {@code blog.reaktiv.pool-groesse} gleichzeitige Listen gibt es also nicht,
+ * weitere Anfragen warten auf eine freie Verbindung.
+ * <br><br>
+ *
+ * Endpunkte (nur lesend, ohne Authentifizierung):
+ * <ul>
+ * <li>{@code GET /reaktiv/v1/artikel}: alle Artikel ohne Inhalt, neueste zuerst</li>
+ * <li>{@code GET /reaktiv/v1/artikel/{id}}: ein Artikel mit HTML-Inhalt</li>
+ * <li>{@code GET /reaktiv/v1/artikel/suche?suchbegriff=...}: Textsuche</li>
+ * </ul>
+ * Beispiel: {@code curl http://localhost:8081/reaktiv/v1/artikel}
+ */
+@Component
+@ConditionalOnProperty( name = "blog.reaktiv.aktiv", havingValue = "true" )
+public class ReaktiveLeseApi implements SmartLifecycle {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ReaktiveLeseApi.class );
+
+    /** Prefix für alle Pfade der API. */
+    private static final String PFAD_PREFIX = "/reaktiv/v1/artikel";
+
+    /** Bean für lesenden Zugriff auf Artikel mit R2DBC. */
+    private final ArtikelReaktivLeser _artikelLeser;
+
+    /** Port, auf dem der Netty-Server lauscht. */
+    private final int _port;
+
+    /** Laufender Server, {@code null} wenn nicht gestartet. */
+    private volatile DisposableServer _server;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public ReaktiveLeseApi( ArtikelReaktivLeser artikelLeser,
+                            @Value( "${blog.reaktiv.port:8081}" ) int port ) {
+
+        _artikelLeser = artikelLeser;
+        _port         = port;
+    }
+
+
+    /**
+     * Definiert die Routen der API.
+     *
+     * @return Router-Funktion mit allen Endpunkten
+     */
+    private RouterFunction<ServerResponse> routen() {
+
+        return route( GET( PFAD_PREFIX                     ), this::artikelListe  )
+              .andRoute( GET( PFAD_PREFIX + "/suche"       ), this::artikelSuche  )
+              .andRoute( GET( PFAD_PREFIX + "/{artikelID}" ), this::artikelHolen  );
+    }
+
+
+    /**
+     * Startet den Netty-Server mit der API.
+     */
+    @Override
+    public void start() {
+
+        final ReactorHttpHandlerAdapter adapter =
+                new ReactorHttpHandlerAdapter( RouterFunctions.toHttpHandler( routen() ) );
+
+        _server = HttpServer.create()
+                            .port( _port )
+                            .handle( adapter )
+                            .bindNow();
+
+        LOG.info( "Reaktive Lese-API gestartet auf Port {}.", _server.port() );
+    }
+
+
+    /**
+     * Stoppt den Netty-Server.
+     */
+    @Override
+    public void stop() {
+
+        if ( _server != null ) {
+
+            _server.disposeNow();
+            _server = null;
+        }
+    }
+
+
+    /**
+     * Abfrage, ob der Netty-Server läuft.
+     *
+     * @return {@code true} gdw. Server gestartet wurde und noch nicht gestoppt ist
+     */
+    @Override
+    public boolean isRunning() {
+
+        return _server != null;
+    }
+
+
+    /**
+     * Liste aller Artikel als NDJSON-Stream.
+     *
+     * @param request HTTP-Request
+     *
+     * @return Antwort mit einem JSON-Objekt pro Zeile
+     */
+    private Mono<ServerResponse> artikelListe( ServerRequest request ) {
+
+        return ServerResponse.ok()
+                             .contentType( APPLICATION_NDJSON )
+                             .body( _artikelLeser.holeAlle(), ArtikelKurzDTO.class );
+    }
+
+
+    /**
+     * Textsuche als NDJSON-Stream.
+     *
+     * @param request HTTP-Request mit URL-Parameter {@code suchbegriff}
+     *
+     * @return Antwort mit einem JSON-Objekt pro Zeile, oder Status 400 bei leerem Suchbegriff
+     */
+    private Mono<ServerResponse> artikelSuche( ServerRequest request ) {
+
+        final String suchbegriff = request.queryParam( "suchbegriff" ).orElse( "" ).trim();
+        if ( suchbegriff.isBlank() ) {
+
+            return ServerResponse.badRequest().bodyValue( "Leerer Suchbegriff" );
+        }
+
+        return ServerResponse.ok()
+                             .contentType( APPLICATION_NDJSON )
+                             .body( _artikelLeser.suche( suchbegriff ), ArtikelKurzDTO.class );
+    }
+
+
+    /**
+     * Einzelnen Artikel mit Inhalt holen.
+     *
+     * @param request HTTP-Request mit Pfadparameter {@code artikelID}
+     *
+     * @return Antwort mit Artikel als JSON, Status 404 wenn nicht gefunden, Status 400
+     *         bei ungültiger ID
+     */
+    private Mono<ServerResponse> artikelHolen( ServerRequest request ) {
+
+        final long artikelID;
+        try {
+
+            artikelID = Long.parseLong( request.pathVariable( "artikelID" ) );
+        }
+        catch ( NumberFormatException ex ) {
+
+            return ServerResponse.badRequest().bodyValue( "Ungültige Artikel-ID" );
+        }
+
+        return _artikelLeser.holeArtikel( artikelID )
+                            .flatMap( artikel -> ServerResponse.ok()
+                                                               .contentType( APPLICATION_JSON )
+                                                               .bodyValue( artikel ) )
+                            .switchIfEmpty( ServerResponse.notFound().build() );
+    }
+
+}
@@ -0,0 +1,282 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Asset-Pipeline für die statischen Dateien unter {@code src/main/resources/static}, wird
+ * einmal beim Start ausgeführt:
+ * <ul>
+ * <li>CSS- und JavaScript-Dateien bekommen einen Pfad mit dem Hash-Wert ihres Inhalts, z.B.
+ *     {@code /assets/styles.1a2b3c4d5e.css}; weil sich der Pfad mit jeder Änderung des Inhalts
+ *     ändert, dürfen Browser und Proxies sie unbegrenzt cachen ({@code Cache-Control: immutable}).</li>
+ * <li>In den statischen HTML-Seiten werden die Verweise auf diese Dateien ersetzt; die
+ *     Thymeleaf-Templates holen sich den Pfad mit {@code ${#assets.pfad('/styles.css')}}
+ *     (siehe {@link BlogDialekt}).
+ *     HTML-Seiten behalten ihren Pfad und werden deshalb nur mit ETag ausgeliefert.</li>
+ * <li>Alle Dateien werden einmal mit gzip komprimiert; beide Varianten liegen als Byte-Arrays
+ *     im Speicher und werden von {@link StatischeAssetsFilter} ohne Dateizugriff ausgeliefert.</li>
+ * </ul>
+ * Die ursprünglichen Pfade (z.B. {@code /styles.css}) funktionieren weiterhin, z.B. für
+ * noch im Browser gecachte alte HTML-Seiten.
+ */
+@Component
+public class StatischeAssets {
+
+    private static final Logger LOG = LoggerFactory.getLogger( StatischeAssets.class );
+
+    /** Pfad-Präfix für Dateien mit Hash-Wert im Namen. */
+    public static final String PRAEFIX = "/assets/";
+
+    /** Anzahl Hex-Ziffern des Hash-Werts im Dateinamen. */
+    private static final int HASH_ZIFFERN = 10;
+
+    /** Verweise auf CSS/JS-Dateien in statischen HTML-Seiten. */
+    private static final Pattern VERWEIS = Pattern.compile( "(href|src)=\"([^\":]+\\.(?:css|js))\"" );
+
+    /** Content-Types der unterstützten Dateiendungen. */
+    private static final Map<String, String> CONTENT_TYPES =
+            Map.of( "css" , "text/css;charset=UTF-8"       ,
+                    "js"  , "text/javascript;charset=UTF-8",
+                    "html", "text/html;charset=UTF-8"      );
+
+    /** Ursprünglicher Pfad der CSS/JS-Dateien auf Pfad mit Hash-Wert. */
+    private final Map<String, String> _pfade = new HashMap<>();
+
+    /** Auszuliefernde Dateien nach Pfad im Request. */
+    private final Map<String, Asset> _assets = new HashMap<>();
+
+
+    /**
+     * Eine im Speicher gehaltene Datei.
+     *
+     * @param inhalt Unkomprimierter Inhalt
+     *
+     * @param inhaltGzip Mit gzip komprimierter Inhalt oder {@code null}, wenn die Kompression
+     *                   nichts bringt
+     *
+     * @param contentType Wert für Header {@code Content-Type}
+     *
+     * @param etag ETag (Hash-Wert in Anführungszeichen)
+     *
+     * @param unveraenderlich {@code true} für Dateien mit Hash-Wert im Pfad
+     */
+    public record Asset( byte[] inhalt, byte[] inhaltGzip, String contentType, String etag, boolean unveraenderlich ) {
+    }
+
+
+    /**
+     * Konstruktor, führt die Pipeline aus: erst CSS/JS, dann die HTML-Seiten, weil deren
+     * Verweise die Pfade der CSS/JS-Dateien brauchen.
+     *
+     * @throws IOException Fehler beim Lesen der statischen Dateien
+     */
+    public StatischeAssets() throws IOException {
+
+        final PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        final Map<String, byte[]> html = new HashMap<>();
+
+        for ( Resource resource : resolver.getResources( "classpath*:/static/**/*.*" ) ) {
+
+            final String url   = resource.getURL().toString();
+            final String pfad  = url.substring( url.lastIndexOf( "/static/" ) + "/static".length() );
+            final String endung = pfad.substring( pfad.lastIndexOf( '.' ) + 1 );
+            if ( !resource.isReadable() || !CONTENT_TYPES.containsKey( endung ) ) {
+
+                continue;
+            }
+
+            final byte[] inhalt;
+            try ( InputStream is = resource.getInputStream() ) {
+
+                inhalt = is.readAllBytes();
+            }
+
+            if ( endung.equals( "html" ) ) {
+
+                html.put( pfad, inhalt );
+
+            } else {
+
+                final String hash       = hash( inhalt );
+                final String dateiname  = pfad.substring( pfad.lastIndexOf( '/' ) + 1, pfad.lastIndexOf( '.' ) );
+                final String neuerPfad  = PRAEFIX + dateiname + "." + hash + "." + endung;
+
+                _pfade.put( pfad, neuerPfad );
+                _assets.put( neuerPfad, erzeugeAsset( inhalt, endung, hash, true ) );
+            }
+        }
+
+        html.forEach( ( pfad, inhalt ) -> {
+
+            final byte[] umgeschrieben = verweiseErsetzen( pfad, new String( inhalt, UTF_8 ) ).getBytes( UTF_8 );
+            _assets.put( pfad, erzeugeAsset( umgeschrieben, "html", hash( umgeschrieben ), false ) );
+        });
+        _assets.put( "/", _assets.get( "/index.html" ) );
+
+        LOG.info( "Asset-Pipeline: {} CSS/JS-Dateien mit Hash-Wert im Pfad, {} HTML-Seiten.",
+                  _pfade.size(), html.size() );
+    }
+
+
+    /**
+     * Pfad mit Hash-Wert für eine CSS/JS-Datei, für Thymeleaf-Templates.
+     *
+     * @param pfad Ursprünglicher Pfad, z.B. {@code /styles.css}
+     *
+     * @return Pfad mit Hash-Wert oder {@code pfad}, wenn die Datei nicht bekannt ist
+     */
+    public String pfad( String pfad ) {
+
+        return _pfade.getOrDefault( pfad, pfad );
+    }
+
+
+    /**
+     * Datei für einen Request-Pfad.
+     *
+     * @param pfad Pfad im Request, z.B. {@code /assets/styles.1a2b3c4d5e.css}
+     *
+     * @return Optional mit Datei oder leeres Optional
+     */
+    public Optional<Asset> holen( String pfad ) {
+
+        return Optional.ofNullable( _assets.get( pfad ) );
+    }
+
+
+    /**
+     * Alle Dateien, z.B. für den statischen Export.
+     *
+     * @return Unveränderliche Map von Request-Pfad auf Datei
+     */
+    public Map<String, Asset> alle() {
+
+        return Collections.unmodifiableMap( _assets );
+    }
+
+
+    /**
+     * Ersetzt in einer HTML-Seite die Verweise auf bekannte CSS/JS-Dateien, auch relative.
+     *
+     * @param pfadSeite Pfad der HTML-Seite, für Auflösen relativer Verweise
+     *
+     * @param html Inhalt der Seite
+     *
+     * @return Inhalt mit Pfaden mit Hash-Wert
+     */
+    private String verweiseErsetzen( String pfadSeite, String html ) {
+
+        final String  verzeichnis = pfadSeite.substring( 0, pfadSeite.lastIndexOf( '/' ) + 1 );
+        final Matcher matcher     = VERWEIS.matcher( html );
+
+        return matcher.replaceAll( treffer -> {
+
+            final String verweis = treffer.group( 2 );
+            final String absolut = verweis.startsWith( "/" ) ? verweis : normalisieren( verzeichnis + verweis );
+            final String neu     = _pfade.get( absolut );
+
+            return neu == null ? Matcher.quoteReplacement( treffer.group() )
+                               : treffer.group( 1 ) + "=\"" + neu + "\"";
+        });
+    }
+
+
+    /**
+     * Löst {@code ..} in einem absoluten Pfad auf.
+     */
+    private static String normalisieren( String pfad ) {
+
+        final StringBuilder sb = new StringBuilder();
+        for ( String teil : pfad.split( "/" ) ) {
+
+            if ( teil.isEmpty() || teil.equals( "." ) ) {
+
+                continue;
+            }
+            if ( teil.equals( ".." ) ) {
+
+                final int ende = sb.lastIndexOf( "/" );
+                sb.setLength( Math.max( ende, 0 ) );
+
+            } else {
+
+                sb.append( '/' ).append( teil );
+            }
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Erzeugt Asset mit komprimierter Variante.
+     */
+    private static Asset erzeugeAsset( byte[] inhalt, String endung, String hash, boolean unveraenderlich ) {
+
+        final byte[] gzip = komprimieren( inhalt );
+
+        return new Asset( inhalt,
+                          gzip.length < inhalt.length ? gzip : null,
+                          CONTENT_TYPES.get( endung ),
+                          "\"" + hash + "\"",
+                          unveraenderlich );
+    }
+
+
+    /**
+     * Komprimiert mit gzip und höchster Kompressionsstufe, weil nur einmal beim Start
+     * (bzw. beim statischen Export nur einmal pro Änderung).
+     */
+    static byte[] komprimieren( byte[] inhalt ) {
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream( inhalt.length / 2 + 32 );
+        try ( GZIPOutputStream gzip = new GZIPOutputStream( baos ) { { def.setLevel( Deflater.BEST_COMPRESSION ); } } ) {
+
+            gzip.write( inhalt );
+        }
+        catch ( IOException ex ) { // bei ByteArrayOutputStream nicht möglich
+
+            throw new IllegalStateException( ex );
+        }
+        return baos.toByteArray();
+    }
+
+
+    /**
+     * Hash-Wert (SHA-256, gekürzt) des Inhalts.
+     */
+    static String hash( byte[] inhalt ) {
+
+        try {
+
+            final byte[] digest = MessageDigest.getInstance( "SHA-256" ).digest( inhalt );
+            return HexFormat.of().formatHex( digest ).substring( 0, HASH_ZIFFERN );
+        }
+        catch ( NoSuchAlgorithmException ex ) { // SHA-256 muss jede JVM haben
+
+            throw new IllegalStateException( ex );
+        }
+    }
+
+}
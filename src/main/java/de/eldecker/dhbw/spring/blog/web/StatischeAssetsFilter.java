@@ -0,0 +1,120 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.springframework.http.HttpHeaders.ACCEPT_ENCODING;
+import static org.springframework.http.HttpHeaders.CACHE_CONTROL;
+import static org.springframework.http.HttpHeaders.CONTENT_ENCODING;
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.VARY;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import de.eldecker.dhbw.spring.blog.web.StatischeAssets.Asset;
+
+
+/**
+ * Servlet-Filter, der die Dateien von {@link StatischeAssets} direkt aus dem Speicher
+ * ausliefert, ohne die restliche Filter-Kette aufzurufen; Pfade, die keine solche Datei
+ * sind, werden an die Filter-Kette weitergereicht; unbekannte Pfade unter
+ * {@value StatischeAssets#PRAEFIX} (z.B. Hash-Wert einer alten Version) bekommen direkt 404.
+ * <br><br>
+ *
+ * Header:
+ * <ul>
+ * <li>Dateien mit Hash-Wert im Pfad: {@code Cache-Control: public, max-age=31536000, immutable}</li>
+ * <li>HTML-Seiten: {@code Cache-Control: no-cache}, d.h. der Browser fragt mit
+ *     {@code If-None-Match} nach und bekommt meist nur 304 (Not Modified).</li>
+ * <li>Komprimierte Variante mit {@code Content-Encoding: gzip}, wenn der Browser sie akzeptiert.</li>
+ * </ul>
+ */
+public class StatischeAssetsFilter implements Filter {
+
+    /** Ein Jahr in Sekunden, übliches Maximum für {@code max-age}. */
+    private static final String CACHE_UNVERAENDERLICH = "public, max-age=31536000, immutable";
+
+    /** Cachen erlaubt, aber vor jeder Verwendung nachfragen. */
+    private static final String CACHE_NACHFRAGEN = "no-cache";
+
+    /** Die im Speicher gehaltenen Dateien. */
+    private final StatischeAssets _statischeAssets;
+
+
+    /**
+     * Konstruktor.
+     *
+     * @param statischeAssets Bean mit den Dateien
+     */
+    public StatischeAssetsFilter( StatischeAssets statischeAssets ) {
+
+        _statischeAssets = statischeAssets;
+    }
+
+
+    @Override
+    public void doFilter( ServletRequest request, ServletResponse response, FilterChain chain )
+            throws IOException, ServletException {
+
+        final HttpServletRequest  httpRequest  = (HttpServletRequest)  request;
+        final HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        final String          methode = httpRequest.getMethod();
+        final String          pfad    = httpRequest.getRequestURI();
+        final Optional<Asset> asset   = _statischeAssets.holen( pfad );
+        if ( asset.isEmpty() && pfad.startsWith( StatischeAssets.PRAEFIX ) ) {
+
+            httpResponse.setStatus( HttpServletResponse.SC_NOT_FOUND ); // ohne Fehlerseite, die Anmeldung bräuchte
+            return;
+        }
+        if ( asset.isEmpty() || !( methode.equals( "GET" ) || methode.equals( "HEAD" ) ) ) {
+
+            chain.doFilter( request, response );
+            return;
+        }
+        ausliefern( asset.get(), httpRequest, httpResponse, methode.equals( "HEAD" ) );
+    }
+
+
+    /**
+     * Schreibt die Datei bzw. 304 (Not Modified) in die Response.
+     */
+    private static void ausliefern( Asset asset, HttpServletRequest request, HttpServletResponse response,
+                                    boolean nurHeader ) throws IOException {
+
+        response.setHeader( CACHE_CONTROL, asset.unveraenderlich() ? CACHE_UNVERAENDERLICH : CACHE_NACHFRAGEN );
+        response.setHeader( ETAG, asset.etag() );
+        response.setHeader( VARY, ACCEPT_ENCODING );
+
+        final String ifNoneMatch = request.getHeader( IF_NONE_MATCH );
+        if ( ifNoneMatch != null && ifNoneMatch.contains( asset.etag() ) ) {
+
+            response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+            return;
+        }
+
+        final String  acceptEncoding = request.getHeader( ACCEPT_ENCODING );
+        final boolean gzip           = asset.inhaltGzip() != null &&
+                                       acceptEncoding != null && acceptEncoding.contains( "gzip" );
+        final byte[]  inhalt         = gzip ? asset.inhaltGzip() : asset.inhalt();
+
+        response.setContentType( asset.contentType() );
+        response.setContentLength( inhalt.length );
+        if ( gzip ) {
+
+            response.setHeader( CONTENT_ENCODING, "gzip" );
+        }
+        if ( !nurHeader ) {
+
+            response.getOutputStream().write( inhalt );
+        }
+    }
+
+}
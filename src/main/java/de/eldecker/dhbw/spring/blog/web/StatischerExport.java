@@ -0,0 +1,376 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.stream.Collectors.toSet;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelListenLeser;
+import de.eldecker.dhbw.spring.blog.logik.AehnlicheArtikelIndex;
+import de.eldecker.dhbw.spring.blog.model.AehnlicherArtikel;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.ArtikelListenEintrag;
+import de.eldecker.dhbw.spring.blog.web.StatischeAssets.Asset;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+
+/**
+ * Statischer Export des öffentlichen Blogs in ein Verzeichnis, eingeschaltet mit
+ * {@code blog.export.aktiv=true}; bei Lastspitzen kann der Blog dann z.B. von nginx
+ * ausgeliefert werden, ohne dass die Anwendung Requests bearbeiten muss.
+ * <br><br>
+ *
+ * Die Dateien liegen unter denselben Pfaden wie in der Anwendung, mit Endung {@code .html}
+ * für die Seiten (z.B. {@code app/artikel/17.html}), und jeweils mit einer mit gzip
+ * komprimierten Variante ({@code .gz}). Konfiguration für nginx:
+ * <pre>
+ * location / {
+ *     root        /pfad/zu/export;
+ *     gzip_static on;
+ *     try_files   $uri $uri.html =404;
+ * }
+ * </pre>
+ * Exportiert werden:
+ * <ul>
+ * <li>Beim Start alle Artikelseiten, die Artikelliste, die öffentlichen statischen Seiten
+ *     und die CSS/JS-Dateien mit Hash-Wert im Pfad (siehe {@link StatischeAssets}).</li>
+ * <li>Danach nur die von gespeicherten Artikeln betroffenen Seiten: die Seite des Artikels,
+ *     die Seiten, deren Box "Ähnliche Artikel" den Artikel beim letzten Export enthielt oder
+ *     jetzt enthalten kann, und die Artikelliste. Mehrere Änderungen werden gesammelt und alle
+ *     {@code blog.export.intervall-ms} exportiert.</li>
+ * </ul>
+ * Jede Datei wird erst in eine temporäre Datei im selben Verzeichnis geschrieben und dann
+ * umbenannt, nginx liefert also nie eine halb geschriebene Datei aus. Dateien mit unverändertem
+ * Inhalt werden nicht neu geschrieben.
+ * <br><br>
+ *
+ * Nicht exportiert werden Anzahl Aufrufe und "Gerade beliebt" nach jedem Aufruf; diese Angaben
+ * sind in den exportierten Seiten so aktuell wie beim letzten Export der Seite.
+ */
+@Component
+@ConditionalOnProperty( name = "blog.export.aktiv", havingValue = "true" )
+public class StatischerExport {
+
+    private static final Logger LOG = LoggerFactory.getLogger( StatischerExport.class );
+
+    /** Sprache der exportierten Seiten (für Datumsformat). */
+    private static final Locale SPRACHE = Locale.GERMANY;
+
+    /** Pfad der Artikelliste im Export. */
+    private static final String PFAD_LISTE = "app/artikel/liste.html";
+
+    /** Endung für komprimierte Variante. */
+    private static final String ENDUNG_GZIP = ".gz";
+
+    /** Bean für Laden der Artikel und Platzhalterwerte der Seiten. */
+    private final ArtikelSeiten _artikelSeiten;
+
+    /** Bean für IDs aller Artikel. */
+    private final ArtikelListenLeser _listenLeser;
+
+    /** Bean für Artikel, deren Seiten von einer Änderung betroffen sind. */
+    private final AehnlicheArtikelIndex _aehnlicheArtikel;
+
+    /** Template-Engine für das Rendern. */
+    private final ITemplateEngine _templateEngine;
+
+    /** Bean mit den statischen Dateien. */
+    private final StatischeAssets _statischeAssets;
+
+    /** Ausgabeverzeichnis. */
+    private final Path _verzeichnis;
+
+    /** IDs der seit dem letzten Export gespeicherten Artikel. */
+    private final Set<Long> _geaendert = ConcurrentHashMap.newKeySet();
+
+    /** IDs der in der Box "Ähnliche Artikel" verlinkten Artikel je exportierter Artikelseite. */
+    private final Map<Long, Set<Long>> _verlinkt = new ConcurrentHashMap<>();
+
+    /** Hash-Wert des Inhalts der zuletzt geschriebenen Dateien, Schlüssel ist relativer Pfad. */
+    private final Map<String, String> _hashWerte = new ConcurrentHashMap<>();
+
+    /** Zähler für geschriebene Dateien. */
+    private final Counter _geschriebenZaehler;
+
+    /** Zähler für Dateien, die wegen unverändertem Inhalt nicht geschrieben wurden. */
+    private final Counter _unveraendertZaehler;
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public StatischerExport( ArtikelSeiten artikelSeiten,
+                             ArtikelListenLeser listenLeser,
+                             AehnlicheArtikelIndex aehnlicheArtikel,
+                             ITemplateEngine templateEngine,
+                             StatischeAssets statischeAssets,
+                             @Value( "${blog.export.verzeichnis:./export}" ) String verzeichnis,
+                             MeterRegistry meterRegistry ) {
+
+        _artikelSeiten    = artikelSeiten;
+        _listenLeser      = listenLeser;
+        _aehnlicheArtikel = aehnlicheArtikel;
+        _templateEngine   = templateEngine;
+        _statischeAssets  = statischeAssets;
+        _verzeichnis      = Path.of( verzeichnis ).toAbsolutePath().normalize();
+
+        _geschriebenZaehler  = zaehler( "geschrieben" , meterRegistry );
+        _unveraendertZaehler = zaehler( "unveraendert", meterRegistry );
+    }
+
+
+    /**
+     * Vollständiger Export nach dem Start der Anwendung (also nach dem evtl. Import von
+     * Demo-Content und nach dem Aufbau des Index für ähnliche Artikel).
+     */
+    @EventListener( ApplicationReadyEvent.class )
+    public synchronized void allesExportieren() {
+
+        final long start = System.currentTimeMillis();
+        try {
+
+            for ( Map.Entry<String, Asset> eintrag : _statischeAssets.alle().entrySet() ) {
+
+                final String pfad = eintrag.getKey();
+                if ( pfad.startsWith( StatischeAssets.PRAEFIX ) || pfad.startsWith( "/public/" ) ||
+                     pfad.equals( "/index.html" ) ) {
+
+                    final Asset asset = eintrag.getValue();
+                    schreiben( pfad.substring( 1 ), asset.inhalt(), asset.inhaltGzip() );
+                }
+            }
+
+            final List<Long> artikelIds;
+            try ( Stream<ArtikelListenEintrag> eintraege = _listenLeser.alle() ) {
+
+                artikelIds = eintraege.map( eintrag -> eintrag.artikel().id() ).toList();
+            }
+            for ( long artikelId : artikelIds ) {
+
+                artikelExportieren( artikelId );
+            }
+            listeExportieren();
+
+            LOG.info( "Statischer Export nach {}: {} Artikel in {} ms.",
+                      _verzeichnis, artikelIds.size(), System.currentTimeMillis() - start );
+        }
+        catch ( IOException | RuntimeException ex ) {
+
+            LOG.error( "Statischer Export nach {} fehlgeschlagen.", _verzeichnis, ex );
+        }
+    }
+
+
+    /**
+     * Merkt sich einen gespeicherten Artikel für den nächsten Export; wird erst nach dem
+     * Commit der zugehörigen Transaktion aufgerufen.
+     *
+     * @param event Event mit ID des gespeicherten Artikels
+     */
+    @TransactionalEventListener( fallbackExecution = true )
+    public void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+        _geaendert.add( event.artikelId() );
+    }
+
+
+    /**
+     * Exportiert die von den seit dem letzten Aufruf gespeicherten Artikeln betroffenen Seiten.
+     * Schlägt der Export fehl, dann werden die Artikel beim nächsten Mal erneut exportiert.
+     */
+    @Scheduled( fixedDelayString = "${blog.export.intervall-ms:1000}" )
+    public synchronized void geaenderteExportieren() {
+
+        if ( _geaendert.isEmpty() ) {
+
+            return;
+        }
+
+        final List<Long> geaendert = new ArrayList<>( _geaendert );
+        _geaendert.removeAll( geaendert );
+
+        final Set<Long> betroffen = new TreeSet<>( geaendert );
+        for ( long artikelId : geaendert ) {
+
+            for ( AehnlicherArtikel aehnlicher :
+                    _aehnlicheArtikel.holeAehnlicheArtikel( artikelId, ArtikelSeiten.MAX_AEHNLICHE_ARTIKEL ) ) {
+
+                betroffen.add( aehnlicher.id() );
+            }
+        }
+        _verlinkt.forEach( ( seite, verlinkt ) -> {
+
+            if ( verlinkt.stream().anyMatch( geaendert::contains ) ) {
+
+                betroffen.add( seite ); // z.B. Titel geändert, aber nicht mehr ähnlich
+            }
+        });
+
+        try {
+
+            for ( long artikelId : betroffen ) {
+
+                artikelExportieren( artikelId );
+            }
+            listeExportieren();
+
+            LOG.debug( "Statischer Export für {} gespeicherte Artikel: {} Artikelseiten.",
+                       geaendert.size(), betroffen.size() );
+        }
+        catch ( IOException | RuntimeException ex ) {
+
+            LOG.error( "Statischer Export für Artikel {} fehlgeschlagen, wird wiederholt: {}",
+                       geaendert, ex.getMessage() );
+            _geaendert.addAll( geaendert );
+        }
+    }
+
+
+    /**
+     * Exportiert die Seite eines Artikels oder löscht sie, wenn es den Artikel nicht mehr gibt.
+     *
+     * @param artikelId ID des Artikels
+     */
+    private void artikelExportieren( long artikelId ) throws IOException {
+
+        final String pfad = "app/artikel/" + artikelId + ".html";
+
+        final Optional<ArtikelEntity> artikelOptional = _artikelSeiten.ladeArtikel( artikelId );
+        if ( artikelOptional.isEmpty() ) {
+
+            loeschen( pfad );
+            _verlinkt.remove( artikelId );
+            return;
+        }
+
+        final Map<String, Object> modell = _artikelSeiten.modell( artikelOptional.get() );
+        final Context             context = new Context( SPRACHE, modell );
+        final String  html    = _templateEngine.process( ArtikelSeiten.TEMPLATE_ARTIKEL, context );
+
+        schreiben( pfad, html.getBytes( UTF_8 ), null );
+
+        @SuppressWarnings( "unchecked" )
+        final List<AehnlicherArtikel> aehnliche = (List<AehnlicherArtikel>) modell.get( "aehnliche_artikel" );
+        _verlinkt.put( artikelId, aehnliche.stream().map( AehnlicherArtikel::id ).collect( toSet() ) );
+    }
+
+
+    /**
+     * Exportiert die Artikelliste.
+     */
+    private void listeExportieren() throws IOException {
+
+        final Context context = new Context( SPRACHE, _artikelSeiten.listenModell( SPRACHE ) );
+        final String  html    = _templateEngine.process( ArtikelSeiten.TEMPLATE_LISTE, context );
+
+        schreiben( PFAD_LISTE, html.getBytes( UTF_8 ), null );
+    }
+
+
+    /**
+     * Schreibt eine Datei und ihre komprimierte Variante, wenn sich der Inhalt geändert hat.
+     *
+     * @param pfad Pfad relativ zum Ausgabeverzeichnis
+     *
+     * @param inhalt Inhalt
+     *
+     * @param gzip Komprimierter Inhalt oder {@code null}, dann wird hier komprimiert
+     */
+    private void schreiben( String pfad, byte[] inhalt, byte[] gzip ) throws IOException {
+
+        final String hash = StatischeAssets.hash( inhalt );
+        if ( hash.equals( _hashWerte.get( pfad ) ) ) {
+
+            _unveraendertZaehler.increment();
+            return;
+        }
+
+        final Path ziel = _verzeichnis.resolve( pfad ).normalize();
+        if ( !ziel.startsWith( _verzeichnis ) ) {
+
+            throw new IOException( "Pfad außerhalb des Ausgabeverzeichnisses: " + pfad );
+        }
+        Files.createDirectories( ziel.getParent() );
+
+        // erst komprimierte Variante, damit nginx mit gzip_static keine alte .gz zur neuen Datei findet
+        atomarSchreiben( ziel.resolveSibling( ziel.getFileName() + ENDUNG_GZIP ),
+                         gzip != null ? gzip : StatischeAssets.komprimieren( inhalt ) );
+        atomarSchreiben( ziel, inhalt );
+
+        _hashWerte.put( pfad, hash );
+        _geschriebenZaehler.increment();
+    }
+
+
+    /**
+     * Schreibt in temporäre Datei im Zielverzeichnis und benennt sie dann um.
+     */
+    private static void atomarSchreiben( Path ziel, byte[] inhalt ) throws IOException {
+
+        final Path temp = Files.createTempFile( ziel.getParent(), ".export-", ".tmp" );
+        try {
+
+            Files.write( temp, inhalt );
+            Files.move( temp, ziel, ATOMIC_MOVE, REPLACE_EXISTING );
+        }
+        finally {
+
+            Files.deleteIfExists( temp ); // nur wenn Umbenennen fehlgeschlagen
+        }
+    }
+
+
+    /**
+     * Löscht eine exportierte Seite und ihre komprimierte Variante.
+     */
+    private void loeschen( String pfad ) throws IOException {
+
+        final Path ziel = _verzeichnis.resolve( pfad );
+
+        Files.deleteIfExists( ziel );
+        Files.deleteIfExists( ziel.resolveSibling( ziel.getFileName() + ENDUNG_GZIP ) );
+        _hashWerte.remove( pfad );
+    }
+
+
+    /**
+     * Zähler für Metrik {@code blog.export.dateien} registrieren.
+     */
+    private static Counter zaehler( String ergebnis, MeterRegistry meterRegistry ) {
+
+        return Counter.builder( "blog.export.dateien" )
+                      .description( "Dateien des statischen Exports, geschrieben bzw. wegen unverändertem Inhalt übersprungen" )
+                      .tag( "ergebnis", ergebnis )
+                      .register( meterRegistry );
+    }
+
+}
@@ -0,0 +1,255 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+
+/**
+ * View, die eine Seite mit einer langen Liste gestreamt rendert: Thymeleaf schreibt die Seite
+ * direkt in die Response, die Liste ist ein {@link Iterator} über einen Datenbank-Cursor.
+ * <ul>
+ * <li>Der Seitenkopf (alles vor dem {@code th:each}) wird gesendet, bevor die Abfrage
+ *     überhaupt ausgeführt wird; die Zeit bis zum ersten Byte hängt also nicht von der
+ *     Anzahl der Zeilen ab.</li>
+ * <li>Danach wird nach jeweils {@code flushZeilen} Zeilen gesendet; gepuffert werden also nur
+ *     diese Zeilen plus der Puffer der Response ({@code pufferBytes}). Ist der Client langsam,
+ *     dann blockiert das Schreiben und es werden keine weiteren Zeilen aus dem Cursor geholt;
+ *     trennt er die Verbindung, dann endet die Liste und der Cursor wird geschlossen.</li>
+ * <li>Thymeleaf schreibt sehr viele kleine Stücke; diese werden mit einem {@link BufferedWriter}
+ *     gesammelt, weil jeder Aufruf des Writers der Response deutlich teurer ist.</li>
+ * </ul>
+ * Weil der Status schon mit dem Seitenkopf gesendet wird, kann ein Fehler beim Lesen der Zeilen
+ * nicht mehr als Fehlerseite angezeigt werden; die Seite bricht dann ab. Deshalb Templates für
+ * Streaming ohne Angaben, die erst nach der Liste bekannt sind (z.B. Anzahl der Zeilen) davor.
+ *
+ * @param <T> Typ der Listenelemente
+ */
+public class StreamingView<T> implements View {
+
+    private static final Logger LOG = LoggerFactory.getLogger( StreamingView.class );
+
+    /** Template-Engine für das Rendern. */
+    private final ITemplateEngine _templateEngine;
+
+    /** Name des Templates. */
+    private final String _template;
+
+    /** Sprache des Requests. */
+    private final Locale _locale;
+
+    /** Platzhalterwerte ohne Liste; werden um die des Controllers ergänzt. */
+    private final Map<String, Object> _modell;
+
+    /** Name des Platzhalters für die Liste im Template. */
+    private final String _listenName;
+
+    /** Öffnet den Cursor, wird erst beim ersten Zugriff auf die Liste aufgerufen. */
+    private final Supplier<Stream<T>> _quelle;
+
+    /** Nach so vielen Zeilen wird die Response gesendet. */
+    private final int _flushZeilen;
+
+    /** Größe des Puffers der Response. */
+    private final int _pufferBytes;
+
+
+    /**
+     * Konstruktor.
+     *
+     * @param templateEngine Template-Engine für das Rendern
+     *
+     * @param template Name des Templates
+     *
+     * @param locale Sprache des Requests
+     *
+     * @param modell Platzhalterwerte ohne Liste
+     *
+     * @param listenName Name des Platzhalters für die Liste, die im Template mit {@code th:each}
+     *                   durchlaufen wird
+     *
+     * @param quelle Öffnet den Cursor für die Liste; der Stream wird nach dem Rendern geschlossen
+     *
+     * @param flushZeilen Nach so vielen Zeilen wird die Response gesendet
+     *
+     * @param pufferBytes Größe des Puffers der Response
+     */
+    public StreamingView( ITemplateEngine templateEngine, String template, Locale locale,
+                          Map<String, Object> modell, String listenName, Supplier<Stream<T>> quelle,
+                          int flushZeilen, int pufferBytes ) {
+
+        _templateEngine = templateEngine;
+        _template       = template;
+        _locale         = locale;
+        _modell         = modell;
+        _listenName     = listenName;
+        _quelle         = quelle;
+        _flushZeilen    = flushZeilen;
+        _pufferBytes    = pufferBytes;
+    }
+
+
+    @Override
+    public String getContentType() {
+
+        return "text/html;charset=UTF-8";
+    }
+
+
+    /**
+     * Rendert die Seite direkt in die Response; schließt den Cursor auch bei Abbruch durch
+     * den Client.
+     */
+    @Override
+    public void render( Map<String, ?> controllerModell, HttpServletRequest request, HttpServletResponse response )
+            throws IOException {
+
+        response.setContentType( getContentType() );
+        response.setBufferSize( _pufferBytes );
+
+        final PrintWriter    antwort = response.getWriter();
+        final BufferedWriter writer  = new BufferedWriter( antwort, _pufferBytes );
+
+        final BooleanSupplier senden = () -> {
+
+            try {
+
+                writer.flush();
+            }
+            catch ( IOException ex ) {
+
+                return false;
+            }
+            return !antwort.checkError(); // PrintWriter verschluckt Fehler
+        };
+
+        try ( FlushenderIterator<T> zeilen = new FlushenderIterator<>( _quelle, senden, _flushZeilen ) ) {
+
+            final Map<String, Object> modell = new HashMap<>( _modell );
+            if ( controllerModell != null ) {
+
+                modell.putAll( controllerModell );
+            }
+            modell.put( _listenName, zeilen );
+
+            _templateEngine.process( _template, new Context( _locale, modell ), writer );
+            writer.flush();
+
+            if ( zeilen.istAbgebrochen() ) {
+
+                LOG.debug( "Client hat Verbindung beim Streaming von Seite \"{}\" nach {} Zeilen getrennt.",
+                           _template, zeilen.getAnzahl() );
+            }
+        }
+    }
+
+
+    /**
+     * Iterator für {@code th:each}: öffnet den Cursor erst beim ersten Zugriff, nachdem der
+     * bis dahin gerenderte Seitenkopf gesendet wurde, und sendet danach alle
+     * {@code flushZeilen} Zeilen. Hat der Client die Verbindung getrennt, dann endet die Liste,
+     * damit nicht der ganze Cursor umsonst gelesen und gerendert wird.
+     */
+    private static final class FlushenderIterator<T> implements Iterator<T>, AutoCloseable {
+
+        /** Öffnet den Cursor. */
+        private final Supplier<Stream<T>> _quelle;
+
+        /** Sendet den bisher gerenderten Teil der Seite, {@code false} wenn Client nicht mehr verbunden. */
+        private final BooleanSupplier _senden;
+
+        /** Nach so vielen Zeilen wird gesendet. */
+        private final int _flushZeilen;
+
+        /** Geöffneter Cursor oder {@code null}. */
+        private Stream<T> _stream;
+
+        /** Iterator über {@link #_stream}. */
+        private Iterator<T> _iterator;
+
+        /** Anzahl bisher gelieferter Zeilen. */
+        private int _anzahl;
+
+        /** Client hat Verbindung getrennt? */
+        private boolean _abgebrochen;
+
+
+        FlushenderIterator( Supplier<Stream<T>> quelle, BooleanSupplier senden, int flushZeilen ) {
+
+            _quelle      = quelle;
+            _senden      = senden;
+            _flushZeilen = flushZeilen;
+        }
+
+
+        @Override
+        public boolean hasNext() {
+
+            if ( _iterator == null ) {
+
+                _abgebrochen = !_senden.getAsBoolean(); // Seitenkopf
+                _stream      = _quelle.get();
+                _iterator    = _stream.iterator();
+            }
+            return !_abgebrochen && _iterator.hasNext();
+        }
+
+
+        @Override
+        public T next() {
+
+            if ( !hasNext() ) {
+
+                throw new NoSuchElementException();
+            }
+            if ( _anzahl > 0 && _anzahl % _flushZeilen == 0 ) {
+
+                // Zeilen seit letztem Senden, die Zeile für diesen Wert ist noch nicht gerendert
+                _abgebrochen = !_senden.getAsBoolean();
+            }
+            _anzahl++;
+
+            return _iterator.next();
+        }
+
+
+        int getAnzahl() {
+
+            return _anzahl;
+        }
+
+
+        boolean istAbgebrochen() {
+
+            return _abgebrochen;
+        }
+
+
+        @Override
+        public void close() {
+
+            if ( _stream != null ) {
+
+                _stream.close();
+            }
+        }
+    }
+
+}
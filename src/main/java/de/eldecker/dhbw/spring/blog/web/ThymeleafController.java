@@ -1,15 +1,20 @@
 package de.eldecker.dhbw.spring.blog.web;
 
 import static java.lang.String.format;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 
 import de.eldecker.dhbw.spring.blog.sicherheit.RollenChecker;
 
+import java.time.DateTimeException;
+import java.time.YearMonth;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -18,11 +23,18 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
 
 import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
-import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.logik.TagIndex;
+import de.eldecker.dhbw.spring.blog.model.ArchivPosition;
+import de.eldecker.dhbw.spring.blog.model.ArtikelAufgerufenEvent;
+import de.eldecker.dhbw.spring.blog.model.ArtikelSeite;
 import de.eldecker.dhbw.spring.blog.model.BlogException;
+import de.eldecker.dhbw.spring.blog.model.SchutzschalterOffenException;
 
 
 /**
@@ -35,23 +47,27 @@ public class ThymeleafController {
 
     private static final Logger LOG = LoggerFactory.getLogger( ThymeleafController.class );
 
-
-    /** Repo-Bean für Zugriff auf Tabelle mit Artikeln. */
-    private final ArtikelRepo _artikelRepo;
+    /** Bean für Laden und Rendern einzelner Artikel. */
+    private final ArtikelSeiten _artikelSeiten;
 
     /** Bean zum Überprüfen, ob Nutzer die Admin-Rolle hat. */
     private final RollenChecker _rollenChecker;
 
+    /** Bean für Veröffentlichung von {@link ArtikelAufgerufenEvent}. */
+    private final ApplicationEventPublisher _eventPublisher;
+
 
     /**
      * Konstruktor für <i>Dependency Injection</i>.
      */
     @Autowired
-    public ThymeleafController( ArtikelRepo artikelRepo,
-                                RollenChecker rollenChecker ) {
+    public ThymeleafController( RollenChecker rollenChecker,
+                                ArtikelSeiten artikelSeiten,
+                                ApplicationEventPublisher eventPublisher ) {
 
-        _artikelRepo   = artikelRepo;
-        _rollenChecker = rollenChecker;
+        _rollenChecker    = rollenChecker;
+        _artikelSeiten    = artikelSeiten;
+        _eventPublisher   = eventPublisher;
     }
 
 
@@ -75,6 +91,28 @@ public class ThymeleafController {
     }
 
 
+    /**
+     * Event-Handler für Exception, wenn die Datenbank wegen Überlastung nicht abgefragt wird
+     * (siehe {@link de.eldecker.dhbw.spring.blog.logik.Schutzschalter}).
+     *
+     * @param ex Exception-Objekt
+     *
+     * @param model Objekt für Platzhalterwerte in Template
+     *
+     * @return Name der Template-Datei "fehler.html" ohne Datei-Endung, mit HTTP-Status 503
+     */
+    @ExceptionHandler( SchutzschalterOffenException.class )
+    @ResponseStatus( SERVICE_UNAVAILABLE )
+    public String onSchutzschalterOffenException( SchutzschalterOffenException ex, Model model ) {
+
+        LOG.warn( ex.getMessage() );
+
+        model.addAttribute( "fehlertext", ex.getMessage() );
+
+        return "fehler";
+    }
+
+
     /**
      * Event-Handler für Exception, wenn in int/long-Pfadparameter übergeben wird,
      * der aber keinen gültigen Zahlenwert darstellt (also nicht geparst werden kann).
@@ -99,68 +137,91 @@ public class ThymeleafController {
 
 
     /**
-     * Einzelnen Artikel anzeigen.
+     * Einzelnen Artikel anzeigen. Für anonyme Leser ist die Seite für alle gleich, deshalb
+     * werden gleichzeitige Aufrufe für denselben Artikel zu einem Laden und Rendern
+     * zusammengefasst (siehe {@link ArtikelSeiten}).
      *
      * @param authentication Objekt für Abfrage authentifizierter Nutzer
      *
      * @param model Objekt für Platzhalterwerte in Template
      *
+     * @param locale Sprache des Requests (für Datumsformat)
+     *
      * @param artikelID ID des Artikels, der angezeigt werden soll
      *
-     * @return Name der Template-Datei "artikel-anzeige.html" ohne Datei-Endung
+     * @return Template "artikel-anzeige.html" oder bereits gerenderte Seite
      *
      * @throws BlogException Artikel mit {@code artikelID} wurde nicht gefunden
      */
     @GetMapping( "/artikel/{artikelID}" )
-    public String artikelAnzeigen( Authentication authentication,
-                                   Model model,
-                                   @PathVariable("artikelID") long artikelID )
+    public ModelAndView artikelAnzeigen( Authentication authentication,
+                                         Model model,
+                                         Locale locale,
+                                         @PathVariable("artikelID") long artikelID )
                           throws BlogException {
 
-        final Optional<ArtikelEntity> artikelOptional = _artikelRepo.findById( artikelID );
-        if ( artikelOptional.isEmpty() ) {
+        if ( authentication == null || !authentication.isAuthenticated() ) {
 
-            throw new BlogException( "Kein Artikel mit ID=" + artikelID + " gefunden." );
-        }
+            final ArtikelSeite seite =
+                    _artikelSeiten.rendereArtikelSeite( artikelID, locale )
+                                  .orElseThrow( () -> new BlogException( "Kein Artikel mit ID=" + artikelID + " gefunden." ) );
 
-        final ArtikelEntity artikelEntity = artikelOptional.get();
+            _eventPublisher.publishEvent( new ArtikelAufgerufenEvent( artikelID, seite.titel() ) );
 
-        model.addAttribute( "artikel", artikelEntity );
+            return new ModelAndView( htmlView( seite.html() ) );
+        }
 
-        if ( authentication != null && authentication.isAuthenticated() ) {
+        final ArtikelEntity artikelEntity =
+                _artikelSeiten.ladeArtikel( artikelID )
+                              .orElseThrow( () -> new BlogException( "Kein Artikel mit ID=" + artikelID + " gefunden." ) );
 
-            model.addAttribute( "angemeldetAls", authentication.getName() );
-        }
+        _eventPublisher.publishEvent( new ArtikelAufgerufenEvent( artikelID, artikelEntity.getTitel() ) );
+
+        model.addAllAttributes( _artikelSeiten.modell( artikelEntity ) );
+        model.addAttribute( "angemeldetAls", authentication.getName() );
 
-        return "artikel-anzeige";
+        return new ModelAndView( ArtikelSeiten.TEMPLATE_ARTIKEL );
     }
 
 
     /**
-     * Seite mit Liste der Blog-Artikel anzeigen.
+     * Seite mit Liste der Blog-Artikel anzeigen. Für anonyme Leser wird die Seite über
+     * {@link ArtikelSeiten} gerendert, damit bei hängender Datenbank die zuletzt gerenderte
+     * Liste ausgeliefert werden kann; im Streaming-Modus wird die Seite für alle Nutzer
+     * direkt aus dem Datenbank-Cursor gerendert.
      *
      * @param authentication Objekt für Abfrage authentifizierter Nutzer
      *
      * @param model Objekt für Platzhalterwerte in Template
      *
-     * @return Name der Template-Datei "artikel-liste.html" ohne Datei-Endung
+     * @param locale Sprache des Requests (für Datumsformat)
+     *
+     * @return Template "artikel-liste.html" oder bereits gerenderte Seite
      */
     @GetMapping( "/artikel/liste" )
-    public String artikelListe( Authentication authentication, Model model ) {
+    public ModelAndView artikelListe( Authentication authentication, Model model, Locale locale ) {
 
-        final List<ArtikelEntity> artikelListe = _artikelRepo.findAllByOrderByZeitpunktAngelegtDesc();
+        final boolean angemeldet = authentication != null && authentication.isAuthenticated();
 
-        model.addAttribute( "artikel_liste", artikelListe );
+        if ( !angemeldet && !_artikelSeiten.istStreaming() ) {
 
-        if ( authentication != null && authentication.isAuthenticated() ) {
+            return new ModelAndView( htmlView( _artikelSeiten.rendereListe( locale ) ) );
+        }
+
+        if ( angemeldet ) {
 
             model.addAttribute( "angemeldetAls", authentication.getName() );
+            model.addAttribute( "istAdmin", _rollenChecker.istAdmin( authentication ) );
+        }
 
-            final boolean istAdmin = _rollenChecker.istAdmin( authentication );
-            model.addAttribute( "istAdmin", istAdmin );
+        if ( _artikelSeiten.istStreaming() ) {
+
+            return new ModelAndView( _artikelSeiten.streameListe( locale ) );
         }
 
-        return "artikel-liste";
+        model.addAllAttributes( _artikelSeiten.listenModell( locale ) );
+
+        return new ModelAndView( ArtikelSeiten.TEMPLATE_LISTE );
     }
 
 
@@ -169,29 +230,186 @@ public class ThymeleafController {
      *
      * @param model Objekt für Platzhalterwerte in Template
      *
+     * @param locale Sprache des Requests (für Datumsformat)
+     *
      * @param suchbegriff URL-Parameter mit Suchbegriff
      *
-     * @return Name der Template-Datei "artikel-suche-ergebnis.html" ohne Datei-Endung,
+     * @return Template "artikel-suche-ergebnis.html", im Streaming-Modus als {@link StreamingView},
      *         oder "fehler.html" bei leerem Suchbegriff
      */
     @GetMapping( "/artikel/suche" )
-    public String artikelSuche( Model model,
-                                @RequestParam(value = "suchbegriff", required = true) String suchbegriff ) {
+    public ModelAndView artikelSuche( Model model,
+                                      Locale locale,
+                                      @RequestParam(value = "suchbegriff", required = true) String suchbegriff ) {
 
         suchbegriff = suchbegriff.trim();
 
         if ( suchbegriff.isBlank() ) {
 
             model.addAttribute( "fehlertext", "Leerer Suchbegriff" );
-            return "fehler";
+            return new ModelAndView( "fehler" );
+        }
+
+        if ( _artikelSeiten.istStreaming() ) {
+
+            return new ModelAndView( _artikelSeiten.streameSuche( suchbegriff, locale ) );
+        }
+
+        model.addAllAttributes( _artikelSeiten.suchModell( suchbegriff ) );
+
+        return new ModelAndView( ArtikelSeiten.TEMPLATE_SUCHE );
+    }
+
+
+    /**
+     * Artikel nach Tags, Autor und Monat des Anlegens filtern; ohne Parameter werden die
+     * neuesten Artikel und die Tag-Wolke angezeigt.
+     *
+     * @param model Objekt für Platzhalterwerte in Template
+     *
+     * @param tags URL-Parameter {@code tag}, kann mehrfach angegeben werden
+     *
+     * @param modus URL-Parameter: "und" (Artikel muss alle Tags haben) oder "oder"
+     *
+     * @param autor URL-Parameter mit Anmeldename des Autors, optional
+     *
+     * @param von URL-Parameter mit erstem Monat im Format {@code yyyy-MM}, optional
+     *
+     * @param bis URL-Parameter mit letztem Monat im Format {@code yyyy-MM}, optional
+     *
+     * @return Template "artikel-tags.html", oder "fehler.html" mit HTTP-Status 400, wenn
+     *         {@code bis} vor {@code von} liegt
+     */
+    @GetMapping( "/artikel/tags" )
+    public ModelAndView artikelNachTags( Model model,
+                                   @RequestParam(value = "tag"  , required = false) List<String> tags,
+                                   @RequestParam(value = "modus", defaultValue = "und") String modus,
+                                   @RequestParam(value = "autor", required = false) String autor,
+                                   @RequestParam(value = "von"  , required = false) YearMonth von,
+                                   @RequestParam(value = "bis"  , required = false) YearMonth bis ) {
+
+        if ( von != null && bis != null && von.isAfter( bis ) ) {
+
+            final String fehlerText = format( "Ungültiger Zeitraum: \"bis\" (%s) liegt vor \"von\" (%s)", bis, von );
+            LOG.warn( fehlerText );
+
+            model.addAttribute( "fehlertext", fehlerText );
+            return new ModelAndView( "fehler", BAD_REQUEST );
+        }
+
+        final List<String> tagsNormalisiert = tags == null
+                                              ? List.of()
+                                              : TagIndex.normalisieren( String.join( ",", tags ) );
+
+        final String autorOderNull = autor == null || autor.isBlank() ? null : autor.trim();
+
+        model.addAllAttributes( _artikelSeiten.tagModell( tagsNormalisiert, !"oder".equals( modus ),
+                                                          autorOderNull, von, bis ) );
+
+        return new ModelAndView( ArtikelSeiten.TEMPLATE_TAGS );
+    }
+
+
+    /**
+     * Archivseite mit den Artikeln eines Autors, neueste zuerst, seitenweise.
+     *
+     * @param model Objekt für Platzhalterwerte in Template
+     *
+     * @param autor Anmeldename des Autors
+     *
+     * @param nach URL-Parameter mit Position für nächste Seite, fehlt für erste Seite
+     *
+     * @return Template "artikel-archiv.html"
+     *
+     * @throws BlogException Autor nicht gefunden oder ungültige Position
+     */
+    @GetMapping( "/autor/{name}" )
+    public String artikelVonAutor( Model model,
+                                   @PathVariable("name") String autor,
+                                   @RequestParam(value = "nach", required = false) String nach )
+                    throws BlogException {
+
+        final ArchivPosition position = archivPosition( nach );
+
+        model.addAllAttributes( _artikelSeiten.autorModell( autor, position )
+                                              .orElseThrow( () -> new BlogException( "Kein Autor mit Name \"" + autor + "\" gefunden." ) ) );
+
+        return ArtikelSeiten.TEMPLATE_ARCHIV;
+    }
+
+
+    /**
+     * Archivseite mit den Artikeln eines Monats, neueste zuerst, seitenweise.
+     *
+     * @param model Objekt für Platzhalterwerte in Template
+     *
+     * @param jahr Jahr, z.B. 2026
+     *
+     * @param monat Monat von 1 bis 12
+     *
+     * @param nach URL-Parameter mit Position für nächste Seite, fehlt für erste Seite
+     *
+     * @return Template "artikel-archiv.html"
+     *
+     * @throws BlogException Ungültiger Monat oder ungültige Position
+     */
+    @GetMapping( "/archiv/{jahr}/{monat}" )
+    public String artikelImMonat( Model model,
+                                  @PathVariable("jahr") int jahr,
+                                  @PathVariable("monat") int monat,
+                                  @RequestParam(value = "nach", required = false) String nach )
+                    throws BlogException {
+
+        final YearMonth jahrMonat;
+        try {
+
+            jahrMonat = YearMonth.of( jahr, monat );
+        }
+        catch ( DateTimeException ex ) {
+
+            throw new BlogException( "Ungültiger Monat: " + jahr + "/" + monat );
+        }
+
+        model.addAllAttributes( _artikelSeiten.monatModell( jahrMonat, archivPosition( nach ) ) );
+
+        return ArtikelSeiten.TEMPLATE_ARCHIV;
+    }
+
+
+    /**
+     * Position für Archivseite aus URL-Parameter.
+     *
+     * @param nach Wert des URL-Parameters oder {@code null}
+     *
+     * @return Position oder {@code null} für erste Seite
+     *
+     * @throws BlogException Ungültiger Wert
+     */
+    private static ArchivPosition archivPosition( String nach ) throws BlogException {
+
+        if ( nach == null ) {
+
+            return null;
         }
+        return ArchivPosition.ausParameter( nach )
+                             .orElseThrow( () -> new BlogException( "Ungültige Position für Archivseite: " + nach ) );
+    }
+
 
-        final List<ArtikelEntity> artikelListe = _artikelRepo.holeArtikelTextsuche( suchbegriff );
+    /**
+     * View, die eine bereits gerenderte HTML-Seite unverändert ausliefert.
+     *
+     * @param html Vollständiges HTML-Dokument
+     *
+     * @return View für {@link ModelAndView}
+     */
+    private static View htmlView( String html ) {
 
-        model.addAttribute( "suchbegriff"  , suchbegriff  );
-        model.addAttribute( "artikel_liste", artikelListe );
+        return (modell, request, response) -> {
 
-        return "artikel-suche-ergebnis";
+            response.setContentType( "text/html;charset=UTF-8" );
+            response.getWriter().write( html );
+        };
     }
 
 }
@@ -0,0 +1,262 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.springframework.web.socket.CloseStatus.BAD_DATA;
+import static org.springframework.web.socket.CloseStatus.POLICY_VIOLATION;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.logik.Delta;
+import de.eldecker.dhbw.spring.blog.logik.Zusammenarbeit;
+import de.eldecker.dhbw.spring.blog.model.BlogException;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+
+/**
+ * WebSocket-Handler für die gemeinsame Bearbeitung eines Artikels im Editor unter
+ * {@code /api/v1/zusammenarbeit/{artikelID}}; die eigentliche Logik ist in der Bean
+ * {@link Zusammenarbeit}.
+ * <br><br>
+ *
+ * Wie bei {@code /api/v1/aendern} darf nur der Autor des Artikels teilnehmen, z.B. in
+ * mehreren Browser-Tabs oder auf mehreren Geräten. Nachrichten vom Editor haben das Format
+ * <pre>{"version": 17, "delta": {"ops": [ ... ]}}</pre>
+ * Zu langsame Editoren werden getrennt, wenn mehr als {@code blog.zusammenarbeit.puffer-bytes}
+ * Bytes noch nicht gesendet werden konnten.
+ */
+@Component
+public class ZusammenarbeitHandler extends TextWebSocketHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ZusammenarbeitHandler.class );
+
+    /** Name des Attributs der WebSocket-Session mit dem Teilnehmer-Objekt. */
+    private static final String ATTRIBUT_TEILNEHMER = "teilnehmer";
+
+    /** Maximale Dauer in Millisekunden für das Senden einer Nachricht an einen Editor. */
+    private static final int SENDE_ZEITLIMIT_MS = 10_000;
+
+    /** Bean mit Dokumenten im Speicher. */
+    private final Zusammenarbeit _zusammenarbeit;
+
+    /** Repo-Bean für Prüfung, ob angemeldeter Nutzer Autor des Artikels ist. */
+    private final ArtikelRepo _artikelRepo;
+
+    /** Bean für Parsen der Nachrichten vom Editor. */
+    private final ObjectMapper _objectMapper;
+
+    /** Maximale Anzahl noch nicht gesendeter Bytes pro Editor. */
+    private final int _pufferBytes;
+
+    /** Maximale Größe einer Nachricht vom Editor, z.B. beim Einfügen eines langen Texts. */
+    private final int _maxNachrichtBytes;
+
+
+    /**
+     * Ein verbundener Editor.
+     *
+     * @param artikelId ID des bearbeiteten Artikels
+     *
+     * @param session WebSocket-Session, erlaubt Senden aus mehreren Threads
+     */
+    private record Verbindung( long artikelId, WebSocketSession session ) implements Zusammenarbeit.Teilnehmer {
+
+        @Override
+        public void senden( String json ) {
+
+            try {
+
+                session.sendMessage( new TextMessage( json ) );
+            }
+            catch ( IOException | IllegalStateException ex ) { // Verbindung abgebrochen oder Puffer voll
+
+                LOG.debug( "Nachricht an Editor von Artikel {} konnte nicht gesendet werden: {}",
+                           artikelId, ex.getMessage() );
+            }
+        }
+
+        @Override
+        public void trennen( String grund ) {
+
+            schliessen( session, BAD_DATA.withReason( kuerzen( grund ) ) );
+        }
+    }
+
+
+    /**
+     * Konstruktor für <i>Dependency Injection</i>.
+     */
+    @Autowired
+    public ZusammenarbeitHandler( Zusammenarbeit zusammenarbeit,
+                                  ArtikelRepo artikelRepo,
+                                  ObjectMapper objectMapper,
+                                  @Value( "${blog.zusammenarbeit.puffer-bytes:524288}"         ) int pufferBytes,
+                                  @Value( "${blog.zusammenarbeit.max-nachricht-bytes:1048576}" ) int maxNachrichtBytes ) {
+
+        _zusammenarbeit    = zusammenarbeit;
+        _artikelRepo       = artikelRepo;
+        _objectMapper      = objectMapper;
+        _pufferBytes       = pufferBytes;
+        _maxNachrichtBytes = maxNachrichtBytes;
+    }
+
+
+    /**
+     * Neuer Editor: Berechtigung prüfen und Editor bei {@link Zusammenarbeit} anmelden.
+     */
+    @Override
+    public void afterConnectionEstablished( WebSocketSession session ) {
+
+        final Optional<Long> artikelIdOptional = holeArtikelId( session.getUri() );
+        if ( artikelIdOptional.isEmpty() ) {
+
+            schliessen( session, BAD_DATA.withReason( "Artikel-ID fehlt oder ist ungültig." ) );
+            return;
+        }
+        final long artikelId = artikelIdOptional.get();
+
+        final Principal principal = session.getPrincipal();
+        if ( principal == null ) {
+
+            schliessen( session, POLICY_VIOLATION.withReason( "Nicht angemeldet." ) );
+            return;
+        }
+
+        final Optional<ArtikelEntity> artikelOptional = _artikelRepo.findById( artikelId );
+        if ( artikelOptional.isEmpty() ||
+             !artikelOptional.get().getAutor().getName().equals( principal.getName() ) ) {
+
+            LOG.warn( "Nutzer \"{}\" darf Artikel {} nicht bearbeiten.", principal.getName(), artikelId );
+            schliessen( session, POLICY_VIOLATION.withReason( "Angemeldeter Nutzer ist nicht der Autor des Artikels." ) );
+            return;
+        }
+
+        session.setTextMessageSizeLimit( _maxNachrichtBytes ); // Default des Servlet-Containers: 8 KB
+
+        final WebSocketSession threadSicher =
+                new ConcurrentWebSocketSessionDecorator( session, SENDE_ZEITLIMIT_MS, _pufferBytes );
+        final Verbindung verbindung = new Verbindung( artikelId, threadSicher );
+        session.getAttributes().put( ATTRIBUT_TEILNEHMER, verbindung );
+
+        try {
+
+            _zusammenarbeit.beitreten( artikelId, verbindung );
+        }
+        catch ( BlogException ex ) {
+
+            schliessen( session, POLICY_VIOLATION.withReason( ex.getMessage() ) );
+        }
+    }
+
+
+    /**
+     * Änderung vom Editor an {@link Zusammenarbeit} übergeben; kehrt sofort zurück.
+     */
+    @Override
+    protected void handleTextMessage( WebSocketSession session, TextMessage message ) {
+
+        if ( !( session.getAttributes().get( ATTRIBUT_TEILNEHMER ) instanceof Verbindung verbindung ) ) {
+
+            return;
+        }
+
+        try {
+
+            final JsonNode json    = _objectMapper.readTree( message.getPayload() );
+            final JsonNode version = json.get( "version" );
+            if ( version == null || !version.isIntegralNumber() ) {
+
+                throw new BlogException( "Nachricht enthält keine Version." );
+            }
+            final Delta delta = Delta.ausJson( json.get( "delta" ) );
+
+            _zusammenarbeit.einreichen( verbindung.artikelId(), verbindung, version.longValue(), delta );
+        }
+        catch ( JacksonException | BlogException ex ) {
+
+            LOG.warn( "Ungültige Nachricht für Artikel {}: {}", verbindung.artikelId(), ex.getMessage() );
+            verbindung.trennen( "Ungültige Nachricht: " + ex.getMessage() );
+        }
+    }
+
+
+    /**
+     * Editor bei {@link Zusammenarbeit} abmelden.
+     */
+    @Override
+    public void afterConnectionClosed( WebSocketSession session, CloseStatus status ) {
+
+        if ( session.getAttributes().get( ATTRIBUT_TEILNEHMER ) instanceof Verbindung verbindung ) {
+
+            _zusammenarbeit.verlassen( verbindung.artikelId(), verbindung );
+        }
+    }
+
+
+    /**
+     * Artikel-ID aus letztem Pfad-Segment der URI holen.
+     *
+     * @param uri URI des Handshake-Requests
+     *
+     * @return Optional mit Artikel-ID oder leeres Optional, wenn die ID fehlt oder keine Zahl ist
+     */
+    private static Optional<Long> holeArtikelId( URI uri ) {
+
+        if ( uri == null ) {
+
+            return Optional.empty();
+        }
+
+        final String pfad = uri.getPath();
+        try {
+
+            return Optional.of( Long.parseLong( pfad.substring( pfad.lastIndexOf( '/' ) + 1 ) ) );
+        }
+        catch ( NumberFormatException ex ) {
+
+            return Optional.empty();
+        }
+    }
+
+
+    /**
+     * Schließt eine WebSocket-Session, Fehler dabei werden ignoriert.
+     */
+    private static void schliessen( WebSocketSession session, CloseStatus status ) {
+
+        try {
+
+            session.close( status );
+        }
+        catch ( IOException ex ) {
+
+            LOG.debug( "Fehler beim Schließen von WebSocket-Session: " + ex.getMessage() );
+        }
+    }
+
+
+    /**
+     * Grund für das Schließen darf höchstens 123 Bytes lang sein (RFC 6455).
+     */
+    private static String kuerzen( String grund ) {
+
+        return grund.length() > 60 ? grund.substring( 0, 60 ) : grund;
+    }
+
+}
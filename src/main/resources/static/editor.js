@@ -9,6 +9,36 @@ let quillEditor = null;
  */
 let artikelID = -1;
 
+/**
+ * Im Änderungsmodus: ETag (Version) des geladenen Artikels, wird beim Speichern im Header
+ * "If-Match" mitgeschickt, damit eine zwischenzeitliche Änderung (z.B. in einem anderen Tab)
+ * nicht überschrieben wird.
+ */
+let artikelETag = null;
+
+/** Timer für die verzögerte Auto-Speicherung des Entwurfs. */
+let autoSpeichernTimer = null;
+
+/**
+ * So viele Millisekunden nach der letzten Eingabe wird der Entwurf gespeichert (Debouncing),
+ * damit nicht jeder Tastendruck einen Request auslöst.
+ */
+const AUTO_SPEICHERN_VERZOEGERUNG_MS = 2000;
+
+/**
+ * Gemeinsame Bearbeitung (nur im Änderungsmodus): WebSocket-Verbindung, vom Server bestätigte
+ * Version, gesendete und noch nicht bestätigte Änderung sowie seitdem gesammelte Eingaben.
+ * Es ist immer höchstens eine Änderung unterwegs; Eingaben werden bis zur Bestätigung
+ * gesammelt und dann als eine Änderung gesendet.
+ */
+let zusammenarbeit = null;
+
+/**
+ * So viele Millisekunden werden Eingaben gesammelt, bevor sie gesendet werden, damit nicht
+ * jeder Tastendruck eine eigene Nachricht ist.
+ */
+const ZUSAMMENARBEIT_SENDE_VERZOEGERUNG_MS = 50;
+
 
 /**
  * Hole die Artikel-ID aus der URL (URL-Parameter "artikelID").
@@ -63,13 +93,25 @@ document.addEventListener( "DOMContentLoaded" , function() {
     if ( artikelID === -1 ) {
 
         console.log( "Keine Artikel-ID in der URL gefunden: Erstellungsmodus." );
+        entwurfLaden();
 
     } else {
 
         console.log( `Artikel-ID ${artikelID} in der URL gefunden: Änderungsmodus.` );
-        artikelLaden();
+        artikelLaden().then( zusammenarbeitStarten ).then( entwurfLaden );
     }
 
+    // nur Eingaben des Nutzers, nicht das Laden mit setContents() und nicht Änderungen anderer Editoren
+    quillEditor.on( "text-change", ( delta, alterInhalt, quelle ) => {
+
+        if ( quelle === "user" ) {
+
+            autoSpeichernPlanen();
+            zusammenarbeitEingabe( delta );
+        }
+    });
+    document.getElementById( "titel" ).addEventListener( "input", autoSpeichernPlanen );
+    document.getElementById( "tags"  ).addEventListener( "input", autoSpeichernPlanen );
 });
 
 
@@ -82,7 +124,7 @@ function artikelLaden() {
 
     console.log( "Versuche Artikel vom Server zu laden: " + url );
 
-    fetch( url, { method: "GET" })
+    return fetch( url, { method: "GET" })
     .then(response => {
 
         if ( !response.ok ) {
@@ -90,12 +132,15 @@ function artikelLaden() {
             throw new Error( "Artikel zum Bearbeiten konnte nicht von Server abgerufen werden." );
         }
 
+        artikelETag = response.headers.get( "ETag" );
+
         // im Erfolgsfall enthält der Response-Body ein JSON-Objekt mit den Daten des Artikels
         return response.json();
     })
     .then( json => {
 
         document.getElementById( "titel").value = json.titel;
+        document.getElementById( "tags" ).value = json.tags;
 
         const deltaObjekt = JSON.parse( json.deltaInhalt );
         quillEditor.setContents( deltaObjekt );
@@ -108,53 +153,309 @@ function artikelLaden() {
 
 
 /**
- * Event-Handler für den Button "Speichern".
+ * Falls es einen noch nicht veröffentlichten Entwurf gibt, dann wird der Nutzer gefragt,
+ * ob er ihn laden will; sonst wird der Entwurf verworfen.
  */
-function speichern() {
+function entwurfLaden() {
 
-    console.log( "Auf Speichern gedrückt." );
+    const url = "/api/v1/entwurf/" + artikelID;
 
-    let titel = document.getElementById( "titel").value;
-    titel = titel.trim();
-    if (titel === "") {
+    fetch( url, { method: "GET" })
+    .then( response => {
+
+        if ( response.status === 404 ) { return null; } // kein Entwurf vorhanden
+
+        if ( !response.ok ) {
+
+            throw new Error( "Entwurf konnte nicht von Server abgerufen werden." );
+        }
+        return response.json();
+    })
+    .then( json => {
+
+        if ( json === null ) { return; }
+
+        if ( confirm( "Es gibt einen noch nicht veröffentlichten Entwurf. Entwurf laden?" ) ) {
+
+            document.getElementById( "titel").value = json.titel;
+            if ( json.tags !== null ) { // ältere Entwürfe ohne Tags
+
+                document.getElementById( "tags" ).value = json.tags;
+            }
+            // als Eingabe des Nutzers, damit der Entwurf auch an die anderen Editoren geht
+            quillEditor.setContents( JSON.parse( json.inhaltDelta ), "user" );
+
+        } else {
+
+            fetch( url, { method: "DELETE" } );
+        }
+    })
+    .catch( error => {
+
+        console.error( error.message );
+    });
+}
+
+
+/**
+ * Verbindet den Editor für die gemeinsame Bearbeitung mit dem Server; der Server schickt als
+ * erstes den aktuellen Inhalt, der den mit "/api/v1/holen" geladenen ersetzt, weil andere
+ * Editoren schon Änderungen gemacht haben können. Ist keine Verbindung möglich, dann
+ * funktioniert der Editor wie ohne gemeinsame Bearbeitung.
+ *
+ * @return {Promise} Promise, das nach dem Start (oder Fehlschlag) der Verbindung erfüllt wird
+ */
+function zusammenarbeitStarten() {
+
+    return new Promise( resolve => {
+
+        const protokoll = window.location.protocol === "https:" ? "wss:" : "ws:";
+        const socket    = new WebSocket( `${protokoll}//${window.location.host}/api/v1/zusammenarbeit/${artikelID}` );
+
+        socket.onmessage = event => zusammenarbeitNachricht( JSON.parse( event.data ), resolve );
+
+        socket.onclose = event => {
+
+            console.log( `Verbindung für gemeinsame Bearbeitung beendet: ${event.code} ${event.reason}` );
+            if ( zusammenarbeit !== null && event.code !== 1000 ) {
+
+                alert( "Verbindung für gemeinsame Bearbeitung unterbrochen, bitte Seite neu laden." );
+            }
+            zusammenarbeit = null;
+            resolve();
+        };
+
+        zusammenarbeit = { socket: socket, version: null, unterwegs: null, gesammelt: null, timer: null };
+    });
+}
+
+
+/**
+ * Verarbeitet eine Nachricht des Servers für die gemeinsame Bearbeitung.
+ *
+ * @param {object} nachricht Nachricht mit Attribut "typ"
+ *
+ * @param {function} gestartet Wird nach der Start-Nachricht aufgerufen
+ */
+function zusammenarbeitNachricht( nachricht, gestartet ) {
+
+    const Delta = Quill.import( "delta" );
+
+    if ( nachricht.typ === "start" ) {
+
+        zusammenarbeit.version = nachricht.version;
+        quillEditor.setContents( new Delta( nachricht.delta.ops ), "api" );
+        console.log( `Gemeinsame Bearbeitung gestartet mit Version ${nachricht.version}.` );
+        gestartet();
+
+    } else if ( nachricht.typ === "ops" ) {
+
+        for ( const eintrag of nachricht.liste ) {
+
+            zusammenarbeit.version = eintrag.version;
+            if ( eintrag.bestaetigt ) {
+
+                zusammenarbeit.unterwegs = null;
+
+            } else {
+
+                fremdeAenderungAnwenden( new Delta( eintrag.delta.ops ) );
+            }
+        }
+        if ( zusammenarbeit.unterwegs === null ) { zusammenarbeitSenden(); }
+
+    } else if ( nachricht.typ === "veroeffentlicht" ) {
+
+        artikelETag = nachricht.etag; // von anderem Editor gespeichert
+    }
+}
+
+
+/**
+ * Wendet eine Änderung eines anderen Editors an. Die noch nicht bestätigte und die gesammelten
+ * eigenen Änderungen werden dagegen transformiert (der Server hat die fremde Änderung zuerst
+ * angewendet), die fremde Änderung gegen diese.
+ *
+ * @param {Delta} fremde Änderung eines anderen Editors
+ */
+function fremdeAenderungAnwenden( fremde ) {
+
+    if ( zusammenarbeit.unterwegs !== null ) {
+
+        const unterwegs = zusammenarbeit.unterwegs;
+        zusammenarbeit.unterwegs = fremde.transform( unterwegs, true );
+        fremde = unterwegs.transform( fremde, false );
+    }
+    if ( zusammenarbeit.gesammelt !== null ) {
+
+        const gesammelt = zusammenarbeit.gesammelt;
+        zusammenarbeit.gesammelt = fremde.transform( gesammelt, true );
+        fremde = gesammelt.transform( fremde, false );
+    }
+
+    const auswahl = quillEditor.getSelection();
+    quillEditor.updateContents( fremde, "api" );
+    if ( auswahl !== null ) {
+
+        const anfang = fremde.transformPosition( auswahl.index );
+        const ende   = fremde.transformPosition( auswahl.index + auswahl.length );
+        quillEditor.setSelection( anfang, ende - anfang, "silent" );
+    }
+}
+
+
+/**
+ * Sammelt eine Eingabe des Nutzers für die gemeinsame Bearbeitung und plant das Senden.
+ *
+ * @param {Delta} delta Änderung aus Event "text-change"
+ */
+function zusammenarbeitEingabe( delta ) {
+
+    if ( zusammenarbeit === null || zusammenarbeit.version === null ) { return; }
+
+    zusammenarbeit.gesammelt = zusammenarbeit.gesammelt === null ? delta
+                                                                 : zusammenarbeit.gesammelt.compose( delta );
+    if ( zusammenarbeit.timer === null ) {
+
+        zusammenarbeit.timer = setTimeout( () => {
+
+            zusammenarbeit.timer = null;
+            zusammenarbeitSenden();
+
+        }, ZUSAMMENARBEIT_SENDE_VERZOEGERUNG_MS );
+    }
+}
+
+
+/**
+ * Sendet die gesammelten Eingaben, wenn keine Änderung mehr auf Bestätigung wartet.
+ */
+function zusammenarbeitSenden() {
+
+    if ( zusammenarbeit === null || zusammenarbeit.unterwegs !== null ||
+         zusammenarbeit.gesammelt === null || zusammenarbeit.timer !== null ) {
 
-        alert("Titel darf nicht leer sein.");
         return;
     }
 
+    zusammenarbeit.unterwegs = zusammenarbeit.gesammelt;
+    zusammenarbeit.gesammelt = null;
+    zusammenarbeit.socket.send( JSON.stringify({ version: zusammenarbeit.version,
+                                                 delta  : zusammenarbeit.unterwegs }) );
+}
+
+
+/**
+ * Startet den Timer für die Auto-Speicherung neu, wird bei jeder Eingabe aufgerufen;
+ * gespeichert wird also erst, wenn der Nutzer eine Pause beim Schreiben macht.
+ */
+function autoSpeichernPlanen() {
+
+    clearTimeout( autoSpeichernTimer );
+    autoSpeichernTimer = setTimeout( () => {
+
+        entwurfSpeichern().catch( error => console.error( error.message ) );
+
+    }, AUTO_SPEICHERN_VERZOEGERUNG_MS );
+}
+
+
+/**
+ * Aktuellen Inhalt des Editors als Payload-Objekt für die REST-Endpunkte.
+ *
+ * @return {object} Objekt mit Artikel-ID, Titel, Inhalt in den drei Formaten und Tags
+ */
+function erstellePayload() {
+
     const deltaObjekt = quillEditor.getContents();
     const deltaString = JSON.stringify( deltaObjekt );
     const htmlContent = quillEditor.root.innerHTML;
 
-    let plainString = quillEditor.getText();
-    plainString     = quillEditor.getText().replace( /\n/g, " " );
+    const plainString = quillEditor.getText().replace( /\n/g, " " );
+
+    return {
+             artikelID  : artikelID  , // -1 für neuen Artikel
+             titel      : document.getElementById( "titel").value.trim(),
+             inhaltDelta: deltaString,
+             inhaltHTML : htmlContent,
+             inhaltPlain: plainString,
+             tags       : document.getElementById( "tags" ).value
+           };
+}
 
-    const payloadObjekt = {
-                            artikelID  : artikelID  , // -1 für neuen Artikel
-                            titel      : titel      ,
-                            inhaltDelta: deltaString,
-                            inhaltHTML : htmlContent,
-                            inhaltPlain: plainString
-                          };
 
-    const payloadString = JSON.stringify( payloadObjekt );
+/**
+ * Aktuellen Inhalt als Entwurf speichern (Auto-Speicherung); der veröffentlichte Artikel
+ * bleibt unverändert.
+ *
+ * @return {Promise} Promise für Request
+ */
+function entwurfSpeichern() {
 
-    const url = artikelID == -1 ? "/api/v1/neu" : "/api/v1/aendern";
+    clearTimeout( autoSpeichernTimer );
 
-    fetch( url, {
-        method: "POST",
+    return fetch( "/api/v1/entwurf/" + artikelID, {
+        method: "PUT",
         headers: {
             "Content-Type": "application/json"
         },
-        body: payloadString
+        body: JSON.stringify( erstellePayload() )
     })
+    .then( response => {
+
+        if ( !response.ok ) {
+
+            throw new Error( "Entwurf konnte nicht gespeichert werden." );
+        }
+        console.log( "Entwurf gespeichert." );
+    });
+}
+
+
+/**
+ * Event-Handler für den Button "Speichern": speichert den aktuellen Stand als Entwurf
+ * und veröffentlicht diesen.
+ */
+function speichern() {
+
+    console.log( "Auf Speichern gedrückt." );
+
+    const titel = document.getElementById( "titel").value.trim();
+    if (titel === "") {
+
+        alert("Titel darf nicht leer sein.");
+        return;
+    }
+
+    const url = "/api/v1/entwurf/" + artikelID + "/veroeffentlichen";
+
+    entwurfSpeichern()
+    .then( () => fetch( url, {
+        method: "POST",
+        headers: artikelETag === null ? {} : { "If-Match": artikelETag }
+    }))
     .then(response => {
 
         if ( !response.ok ) {
 
+            if ( response.status === 409 ) {
+
+                throw new Error( "Artikel wurde nicht gespeichert, weil er ein Beinahe-Duplikat ist." );
+            }
+            if ( response.status === 412 ) {
+
+                throw new Error( "Artikel wurde nicht gespeichert, weil er inzwischen an anderer Stelle " +
+                                 "geändert wurde. Bitte Seite neu laden, der Entwurf bleibt erhalten." );
+            }
             throw new Error( "Fehler beim Speichern des Artikels." );
         }
 
+        const duplikate = response.headers.get( "X-Beinahe-Duplikate" );
+        if ( duplikate ) {
+
+            alert( "Warnung: Artikel ist fast identisch mit Artikel(n) mit ID " + duplikate + "." );
+        }
+
         // im Erfolgsfall enthält der Response-Body nur den Pfad des neuen/geänderten Artikels
         return response.text();
     })
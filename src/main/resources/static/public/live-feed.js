@@ -0,0 +1,29 @@
+"use strict";
+
+/**
+ * Live-Feed für die Artikelliste: abonniert die Server-Sent Events mit neuen und geänderten
+ * Artikeln und zeigt diese oberhalb der Liste an, statt dass die ganze Liste immer wieder
+ * neu geladen werden muss. Bei Verbindungsabbruch verbindet sich EventSource selbst neu.
+ */
+document.addEventListener( "DOMContentLoaded", function() {
+
+    const box   = document.getElementById( "live_feed" );
+    const liste = document.getElementById( "live_feed_liste" );
+
+    const quelle = new EventSource( "/app/artikel/live" );
+
+    quelle.addEventListener( "artikel", event => {
+
+        const ereignis = JSON.parse( event.data );
+
+        const link = document.createElement( "a" );
+        link.href        = "/app/artikel/" + ereignis.artikelId;
+        link.textContent = ereignis.titel; // textContent: kein HTML aus Titel interpretieren
+
+        const eintrag = document.createElement( "li" );
+        eintrag.append( ereignis.neu ? "Neu: " : "Geändert: ", link );
+        liste.prepend( eintrag );
+
+        box.hidden = false;
+    });
+});
@@ -0,0 +1,174 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import static de.eldecker.dhbw.spring.blog.db.AenderungsCursor.LUECKE_TIMEOUT_MILLIS;
+import static de.eldecker.dhbw.spring.blog.db.AenderungsCursor.MAX_LUECKEN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import de.eldecker.dhbw.spring.blog.model.Aenderung;
+
+
+/**
+ * Prüft, dass der {@link AenderungsCursor} Einträge nicht überspringt, deren ID kleiner ist
+ * als die eines schon gelesenen Eintrags (Transaktion mit kleinerer {@code IDENTITY}-ID
+ * committet später), und dass Lücken von zurückgerollten Transaktionen nach dem Timeout
+ * verworfen werden. Verwendet eine eigene H2-Datenbank im Speicher; die IDs werden explizit
+ * vergeben, um die Reihenfolge der Commits nachzustellen.
+ */
+class AenderungsCursorTest {
+
+	private final SingleConnectionDataSource _dataSource =
+			new SingleConnectionDataSource( "jdbc:h2:mem:" + UUID.randomUUID(), "sa", "", true );
+
+	private final JdbcTemplate _jdbcTemplate = new JdbcTemplate( _dataSource );
+
+	/** Aktuelle Zeit für den Cursor in Millisekunden. */
+	private long _jetzt = 1_000_000L;
+
+	private final AenderungsCursor _cursor;
+
+
+	AenderungsCursorTest() {
+
+		_jdbcTemplate.execute( "CREATE TABLE AENDERUNG_PROTOKOLL ( ID BIGINT PRIMARY KEY, TABELLE VARCHAR(50), " +
+		                       "DATENSATZ_ID BIGINT, ART VARCHAR(20), ZEITPUNKT TIMESTAMP, KNOTEN VARCHAR(100) )" );
+
+		_cursor = new AenderungsCursor( _jdbcTemplate, 0, () -> _jetzt );
+	}
+
+
+	@AfterEach
+	void schliessen() {
+
+		_dataSource.destroy();
+	}
+
+
+	@Test
+	void liestNeueEintraegeInReihenfolgeUndBegrenzt() {
+
+		committen( 1, 2, 3, 4, 5 );
+
+		assertThat( lesen( 3 ) ).containsExactly( 1L, 2L, 3L );
+		assertThat( lesen( 3 ) ).containsExactly( 4L, 5L );
+		assertThat( lesen( 3 ) ).isEmpty();
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 5 );
+		assertThat( AenderungsCursor.holeGroessteId( _jdbcTemplate ) ).isEqualTo( 5 );
+	}
+
+
+	@Test
+	void spaeterCommitteteKleinereIdWirdNachgeliefert() {
+
+		committen( 1, 3 ); // Transaktion mit ID 2 läuft noch
+
+		assertThat( lesen( 10 ) ).containsExactly( 1L, 3L );
+		assertThat( _cursor.getLetzteId() ).isEqualTo( 3 );
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 1 );
+
+		committen( 2, 4 );
+
+		assertThat( lesen( 10 ) ).containsExactly( 2L, 4L );
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 4 );
+		assertThat( lesen( 10 ) ).isEmpty();
+	}
+
+
+	@Test
+	void mehrereLueckenWerdenEinzelnGeschlossen() {
+
+		committen( 1, 5 );
+		assertThat( lesen( 10 ) ).containsExactly( 1L, 5L );
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 1 );
+
+		committen( 3 );
+		assertThat( lesen( 10 ) ).containsExactly( 3L );
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 1 );
+
+		committen( 2, 4 );
+		assertThat( lesen( 10 ) ).containsExactly( 2L, 4L );
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 5 );
+	}
+
+
+	@Test
+	void lueckeBisTimeoutAbgefragtDanachVerworfen() {
+
+		committen( 1, 3 );
+		assertThat( lesen( 10 ) ).containsExactly( 1L, 3L );
+
+		_jetzt += LUECKE_TIMEOUT_MILLIS;
+		assertThat( lesen( 10 ) ).isEmpty();
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 1 ); // noch nicht abgelaufen
+
+		_jetzt += 1;
+		assertThat( lesen( 10 ) ).isEmpty();
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 3 ); // zurückgerollt angenommen
+
+		committen( 2 ); // zu spät, wird nicht mehr geliefert
+		assertThat( lesen( 10 ) ).isEmpty();
+	}
+
+
+	@Test
+	void timeoutZaehltAbEntdeckungDerLuecke() {
+
+		committen( 1, 3 );
+		lesen( 10 );
+
+		_jetzt += LUECKE_TIMEOUT_MILLIS / 2;
+		committen( 6 );
+		lesen( 10 ); // neue Lücken 4 und 5
+
+		_jetzt += LUECKE_TIMEOUT_MILLIS / 2 + 1; // Lücke 2 abgelaufen, 4 und 5 nicht
+		committen( 2, 4 );
+		assertThat( lesen( 10 ) ).containsExactly( 4L );
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( 4 );
+	}
+
+
+	@Test
+	void anzahlLueckenBegrenzt() {
+
+		committen( 1, MAX_LUECKEN * 3 );
+		assertThat( lesen( 10 ) ).containsExactly( 1L, MAX_LUECKEN * 3L );
+
+		// nur die letzten MAX_LUECKEN IDs vor dem neuen Eintrag werden abgefragt
+		assertThat( _cursor.getLueckenlosBisId() ).isEqualTo( MAX_LUECKEN * 2 - 1 );
+
+		committen( 2, MAX_LUECKEN * 3 - 1 );
+		assertThat( lesen( 10 ) ).containsExactly( MAX_LUECKEN * 3 - 1L );
+	}
+
+
+	/**
+	 * Einträge mit diesen IDs sichtbar machen (Commit).
+	 */
+	private void committen( long... ids ) {
+
+		for ( long id : ids ) {
+
+			_jdbcTemplate.update( "INSERT INTO AENDERUNG_PROTOKOLL VALUES ( ?, 'ARTIKEL', ?, 'GESPEICHERT', LOCALTIMESTAMP, 'test' )",
+			                      id, id );
+		}
+	}
+
+
+	/**
+	 * Liest mit dem Cursor.
+	 *
+	 * @return IDs der gelieferten Einträge
+	 */
+	private List<Long> lesen( int maxAnzahl ) {
+
+		return _cursor.naechsteAenderungen( maxAnzahl ).stream().map( Aenderung::id ).toList();
+	}
+
+}
@@ -0,0 +1,116 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.model.ArchivPosition;
+import de.eldecker.dhbw.spring.blog.model.ArtikelListenEintrag;
+
+
+/**
+ * Prüft, dass alle Abfragen von {@link ArtikelListenLeser} in einer lesenden Transaktion
+ * laufen, wenn die Verbindung geholt wird; nur dann kann {@code LeseSchreibRouting} sie auf
+ * das Replikat leiten. Wie in der Anwendung wird die Verbindung über einen
+ * {@link LazyConnectionDataSourceProxy} erst bei der ersten Abfrage geholt. Verwendet eine
+ * eigene H2-Datenbank im Speicher.
+ */
+class ArtikelListenLeserRoutingTest {
+
+	private final SingleConnectionDataSource _dataSource =
+			new SingleConnectionDataSource( "jdbc:h2:mem:" + UUID.randomUUID(), "sa", "", true );
+
+	/** Für jede geholte Verbindung: lief eine lesende Transaktion? */
+	private final List<Boolean> _lesend = new ArrayList<>();
+
+	private final ArtikelListenLeser _leser;
+
+
+	ArtikelListenLeserRoutingTest() {
+
+		final JdbcTemplate jdbcTemplate = new JdbcTemplate( _dataSource );
+		jdbcTemplate.execute( "CREATE TABLE AUTOR ( ID BIGINT PRIMARY KEY, NAME VARCHAR(100) )" );
+		jdbcTemplate.execute( "CREATE TABLE ARTIKEL ( ID BIGINT PRIMARY KEY, TITEL VARCHAR(100), AUTOR__FK BIGINT, " +
+		                      "ZEITPUNKT_ANGELEGT TIMESTAMP, ZEITPUNKT_GAENDERT TIMESTAMP, AUSZUG VARCHAR(300), " +
+		                      "WORTANZAHL INT, LESEZEIT INT, AUFRUFE BIGINT, INHALT_PLAINTEXT CLOB )" );
+		jdbcTemplate.update( "INSERT INTO AUTOR VALUES ( 1, 'alice' )" );
+		jdbcTemplate.update( "INSERT INTO ARTIKEL VALUES ( 1, 'Java', 1, LOCALTIMESTAMP, LOCALTIMESTAMP, 'Auszug', 10, 1, 0, 'Text' )" );
+
+		final DelegatingDataSource aufzeichnend = new DelegatingDataSource( _dataSource ) {
+
+			@Override
+			public Connection getConnection() throws SQLException {
+
+				_lesend.add( TransactionSynchronizationManager.isCurrentTransactionReadOnly() );
+				return super.getConnection();
+			}
+		};
+		final LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy( aufzeichnend );
+		proxy.setDefaultAutoCommit( true ); // sonst holt der Proxy dafür einmal eine Verbindung
+		proxy.setDefaultTransactionIsolation( Connection.TRANSACTION_READ_COMMITTED );
+
+		_leser = new ArtikelListenLeser( new JdbcTemplate( proxy ),
+		                                 new TransactionTemplate( new DataSourceTransactionManager( proxy ) ) );
+	}
+
+
+	@AfterEach
+	void schliessen() {
+
+		_dataSource.destroy();
+	}
+
+
+	@Test
+	void streamsInLesenderTransaktionBisZumSchliessen() {
+
+		try ( Stream<ArtikelListenEintrag> stream = _leser.alle() ) {
+
+			assertThat( stream.toList() ).hasSize( 1 );
+			assertThat( TransactionSynchronizationManager.isActualTransactionActive() ).isTrue();
+		}
+		assertThat( TransactionSynchronizationManager.isActualTransactionActive() ).isFalse();
+
+		try ( Stream<ArtikelListenEintrag> stream = _leser.suche( "JAVA" ) ) {
+
+			assertThat( stream.toList() ).hasSize( 1 );
+		}
+		assertThat( TransactionSynchronizationManager.isActualTransactionActive() ).isFalse();
+
+		assertThat( _lesend ).containsExactly( true, true );
+	}
+
+
+	@Test
+	void listenInLesenderTransaktion() {
+
+		final LocalDateTime  morgen = LocalDateTime.now().plusDays( 1 );
+		final ArchivPosition anfang = new ArchivPosition( morgen, 0 );
+
+		assertThat( _leser.holen( 1 ) ).isPresent();
+		assertThat( _leser.liste( List.of( 1L ) ) ).hasSize( 1 );
+		assertThat( _leser.autorId( "alice" ) ).contains( 1L );
+		assertThat( _leser.seiteAutor( 1, anfang, 10 ) ).hasSize( 1 );
+		assertThat( _leser.seiteZeitraum( morgen.minusYears( 1 ), anfang, 10 ) ).hasSize( 1 );
+
+		assertThat( _lesend ).hasSize( 5 ).containsOnly( true );
+		assertThat( TransactionSynchronizationManager.isActualTransactionActive() ).isFalse();
+	}
+
+}
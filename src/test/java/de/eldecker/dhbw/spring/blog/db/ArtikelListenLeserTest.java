@@ -0,0 +1,66 @@
+package de.eldecker.dhbw.spring.blog.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+
+/**
+ * Prüft mit den Ausführungsplänen von H2 ({@code EXPLAIN}), dass die Abfragen für die
+ * Archivseiten über die zusammengesetzten Indizes laufen: kein Scan der Tabelle
+ * {@code ARTIKEL}, keine Sortierung nach dem Lesen und keine {@code CLOB}-Spalten.
+ */
+@SpringBootTest
+class ArtikelListenLeserTest {
+
+	private static final LocalDateTime ZEITPUNKT = LocalDateTime.of( 2026, 10, 1, 0, 0 );
+
+	@Autowired
+	private JdbcTemplate _jdbcTemplate;
+
+
+	@Test
+	void seiteAutorLiestBereichAusIndex() {
+
+		final String plan = plan( ArtikelListenLeser.SQL_SEITE_AUTOR, 1L, ZEITPUNKT, ZEITPUNKT, 0L, 21 );
+
+		assertThat( plan ).contains( "IDX_ARTIKEL_AUTOR_ANGELEGT: AUTOR__FK = " )
+		                  .contains( "/* index sorted */" )
+		                  .doesNotContain( "tableScan" )
+		                  .doesNotContain( "INHALT_" );
+	}
+
+
+	@Test
+	void seiteZeitraumLiestBereichAusIndex() {
+
+		final String plan = plan( ArtikelListenLeser.SQL_SEITE_ZEITRAUM, ZEITPUNKT, ZEITPUNKT, ZEITPUNKT, 0L, 21 );
+
+		assertThat( plan ).contains( "IDX_ARTIKEL_ANGELEGT: ZEITPUNKT_ANGELEGT >= " )
+		                  .contains( "/* index sorted */" )
+		                  .doesNotContain( "tableScan" )
+		                  .doesNotContain( "INHALT_" );
+	}
+
+
+	@Test
+	void autorIdAusIndex() {
+
+		final String plan = plan( ArtikelListenLeser.SQL_AUTOR_ID, "chef" );
+
+		assertThat( plan ).contains( "IDX_AUTOR_NAME: NAME = " )
+		                  .doesNotContain( "tableScan" );
+	}
+
+
+	private String plan( String sql, Object... parameter ) {
+
+		return _jdbcTemplate.queryForObject( "EXPLAIN " + sql, String.class, parameter );
+	}
+
+}
@@ -0,0 +1,117 @@
+package de.eldecker.dhbw.spring.blog.konfig;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import jakarta.annotation.PostConstruct;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.LazyInitializationBeanFactoryPostProcessor;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import de.eldecker.dhbw.spring.blog.logik.AufrufZaehler;
+
+
+/**
+ * Prüft, welche Beans die {@link SchnellstartKonfiguration} von der verzögerten Erzeugung
+ * ausnimmt: direkt über den Filter und in einem Kontext mit {@code lazy-initialization}, in
+ * dem nachgesehen wird, welche Beans nach dem Start schon erzeugt sind.
+ */
+class SchnellstartKonfigurationTest {
+
+	private final LazyInitializationExcludeFilter _filter = SchnellstartKonfiguration.nichtVerzoegern();
+
+	/** Kontext wie mit {@code spring.main.lazy-initialization=true} gestartet. */
+	private final ApplicationContextRunner _kontext =
+			new ApplicationContextRunner().withInitializer( kontext -> kontext.addBeanFactoryPostProcessor(
+			                                                           new LazyInitializationBeanFactoryPostProcessor() ) )
+			                              .withUserConfiguration( SchnellstartKonfiguration.class )
+			                              .withBean( "geplant"     , MitGeplanterMethode.class )
+			                              .withBean( "geerbt"      , MitGeerbterGeplanterMethode.class )
+			                              .withBean( "eingerichtet", MitPostConstruct.class )
+			                              .withBean( "gestartet"   , MitLebenszyklus.class )
+			                              .withBean( "normal"      , OhneAusnahme.class );
+
+
+	static class MitGeplanterMethode {
+
+		@Scheduled( fixedDelay = 1000 )
+		public void aufraeumen() {}
+	}
+
+	static class MitGeerbterGeplanterMethode extends MitGeplanterMethode {}
+
+	static class MitPostConstruct {
+
+		@PostConstruct
+		void einrichten() {}
+	}
+
+	static class MitLebenszyklus implements SmartLifecycle {
+
+		@Override public void    start()     {}
+		@Override public void    stop()      {}
+		@Override public boolean isRunning() { return false; }
+	}
+
+	static class OhneAusnahme {}
+
+
+	@Test
+	void filterNimmtAus() {
+
+		assertThat( ausgenommen( MitGeplanterMethode.class         ) ).isTrue();
+		assertThat( ausgenommen( MitGeerbterGeplanterMethode.class ) ).isTrue();
+		assertThat( ausgenommen( MitPostConstruct.class            ) ).isTrue();
+		assertThat( ausgenommen( MitLebenszyklus.class             ) ).isTrue();
+		assertThat( ausgenommen( AufrufZaehler.class               ) ).isTrue(); // schreibt Aufrufe zeitgesteuert
+
+		assertThat( ausgenommen( OhneAusnahme.class ) ).isFalse();
+		assertThat( ausgenommen( null               ) ).isFalse();
+	}
+
+
+	@Test
+	void ausgenommeneBeansBeimStartErzeugt() {
+
+		_kontext.withPropertyValues( "spring.main.lazy-initialization=true" ).run( kontext -> {
+
+			assertThat( kontext ).hasNotFailed();
+			assertThat( erzeugt( kontext, "geplant"      ) ).isTrue();
+			assertThat( erzeugt( kontext, "geerbt"       ) ).isTrue();
+			assertThat( erzeugt( kontext, "eingerichtet" ) ).isTrue();
+			assertThat( erzeugt( kontext, "gestartet"    ) ).isTrue();
+			assertThat( erzeugt( kontext, "normal"       ) ).isFalse();
+
+			kontext.getBean( "normal" );
+			assertThat( erzeugt( kontext, "normal" ) ).isTrue();
+		});
+	}
+
+
+	/**
+	 * Ohne {@code lazy-initialization} wird die Konfiguration nicht geladen.
+	 */
+	@Test
+	void ohneLazyInitialisierungInaktiv() {
+
+		_kontext.run( kontext -> assertThat( kontext ).doesNotHaveBean( SchnellstartKonfiguration.class )
+		                                              .doesNotHaveBean( LazyInitializationExcludeFilter.class ) );
+	}
+
+
+	private boolean ausgenommen( Class<?> klasse ) {
+
+		return _filter.isExcluded( "bean", null, klasse );
+	}
+
+
+	private static boolean erzeugt( ConfigurableApplicationContext kontext, String beanName ) {
+
+		return kontext.getBeanFactory().containsSingleton( beanName );
+	}
+
+}
@@ -0,0 +1,278 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.logik.MinHashBerechnung.ANZAHL_HASHFUNKTIONEN;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.model.AehnlicherArtikel;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+
+
+/**
+ * Prüft die MinHash-Signaturen ({@link MinHashBerechnung}) und die Kandidatensuche mit
+ * LSH-Bändern im {@link AehnlicheArtikelIndex}.
+ */
+class AehnlicheArtikelIndexTest extends SignaturIndexTestBasis {
+
+	private final MinHashBerechnung _minHash = new MinHashBerechnung();
+
+	private final AehnlicheArtikelIndex _index = new AehnlicheArtikelIndex( _minHash, _artikelRepo, null );
+
+
+	@Override
+	protected void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+		_index.onArtikelGespeichert( event );
+	}
+
+
+	@Override
+	protected Projektion projektion( long id, String titel, String text ) {
+
+		return new Projektion( id, titel, _minHash.berechneSignatur( text ), null );
+	}
+
+
+	@Override
+	protected Collection<Long> gefundenZu( long artikelId ) {
+
+		return _index.holeAehnlicheArtikel( artikelId, 10 ).stream().map( AehnlicherArtikel::id ).toList();
+	}
+
+
+	@Test
+	void gleicheTexteHabenGleicheSignatur() {
+
+		final byte[] sig1 = _minHash.berechneSignatur( "Spring Boot mit  H2\nund Thymeleaf" );
+		final byte[] sig2 = _minHash.berechneSignatur( "spring boot mit h2 und THYMELEAF " );
+
+		assertThat( sig1 ).hasSize( MinHashBerechnung.SIGNATUR_BYTES ).isEqualTo( sig2 );
+		assertThat( _minHash.schaetzeAehnlichkeit( _minHash.alsIntArray( sig1 ), _minHash.alsIntArray( sig2 ) ) )
+				.isEqualTo( 1.0 );
+	}
+
+
+	@Test
+	void leererTextHatLeereSignatur() {
+
+		for ( String text : new String[]{ null, "", " \n\t " } ) {
+
+			assertThat( _minHash.alsIntArray( _minHash.berechneSignatur( text ) ) ).containsOnly( Integer.MAX_VALUE );
+		}
+		assertThat( _minHash.alsIntArray( new byte[ 12 ] ) ).isNull();
+		assertThat( _minHash.alsIntArray( null ) ).isNull();
+	}
+
+
+	/**
+	 * Die Schätzung muss nahe an der exakten Jaccard-Ähnlichkeit der Shingle-Mengen liegen;
+	 * bei 128 Hash-Funktionen ist die Standardabweichung höchstens {@code 0,5/sqrt(128) = 0,044}.
+	 */
+	@Test
+	void schaetzungNaheAnJaccard() {
+
+		final Random zufall = new Random( 42 );
+		final String basis  = zufallsText( zufall, 300 );
+
+		for ( int geaendert : new int[]{ 10, 40, 80, 150 } ) {
+
+			final String text = woerterErsetzen( basis, geaendert, zufall );
+
+			final double exakt      = jaccard( basis, text );
+			final double geschaetzt = _minHash.schaetzeAehnlichkeit( _minHash.alsIntArray( _minHash.berechneSignatur( basis ) ),
+			                                                         _minHash.alsIntArray( _minHash.berechneSignatur( text  ) ) );
+
+			assertThat( geschaetzt ).as( "%d Wörter geändert, exakt %.3f", geaendert, exakt )
+			                        .isCloseTo( exakt, within( 0.15 ) );
+		}
+	}
+
+
+	@Test
+	void beinaheGleicherArtikelWirdGefunden() {
+
+		final Random zufall = new Random( 7 );
+		final String text   = zufallsText( zufall, 200 );
+
+		speichern( 1, "Original", text );
+		speichern( 2, "Überarbeitet", woerterErsetzen( text, 10, zufall ) );
+		speichern( 3, "Anderes Thema", zufallsText( zufall, 200 ) );
+
+		final List<AehnlicherArtikel> aehnliche = _index.holeAehnlicheArtikel( 1, 5 );
+
+		assertThat( aehnliche ).extracting( AehnlicherArtikel::id ).containsExactly( 2L );
+		assertThat( aehnliche.get( 0 ).titel() ).isEqualTo( "Überarbeitet" );
+		assertThat( aehnliche.get( 0 ).aehnlichkeit() ).isGreaterThan( 0.6 );
+		assertThat( _index.holeAehnlicheArtikel( 3, 5 ) ).isEmpty();
+	}
+
+
+	@Test
+	void sortiertNachAehnlichkeitUndBegrenzt() {
+
+		final Random zufall = new Random( 11 );
+		final String text   = zufallsText( zufall, 200 );
+
+		speichern( 1, "Original", text );
+		speichern( 2, "Wenig"   , woerterErsetzen( text, 40, zufall ) );
+		speichern( 3, "Kaum"    , woerterErsetzen( text,  5, zufall ) );
+		speichern( 4, "Etwas"   , woerterErsetzen( text, 20, zufall ) );
+
+		assertThat( _index.holeAehnlicheArtikel( 1, 5 ) ).extracting( AehnlicherArtikel::id ).containsExactly( 3L, 4L, 2L );
+		assertThat( _index.holeAehnlicheArtikel( 1, 2 ) ).extracting( AehnlicherArtikel::id ).containsExactly( 3L, 4L );
+		assertThat( _index.holeAehnlicheArtikel( 99, 5 ) ).isEmpty();
+	}
+
+
+	/**
+	 * Kandidat wird nur, wer in mindestens einem der 32 Bänder in allen 4 Zeilen übereinstimmt:
+	 * Ein Band plus zwei Zeilen in jedem anderen Band (Ähnlichkeit 0,52) wird gefunden, drei
+	 * Zeilen in jedem Band (Ähnlichkeit 0,75) ohne ganzes Band dagegen nicht.
+	 */
+	@Test
+	void kandidatNurBeiGanzemGleichenBand() {
+
+		final Random zufall = new Random( 19 );
+		final int[]  basis  = zufallsSignatur( zufall );
+
+		final int[] einBand    = basis.clone();
+		final int[] keinesGanz = basis.clone();
+		for ( int band = 0; band < 32; band++ ) {
+
+			for ( int zeile = 0; zeile < 4; zeile++ ) {
+
+				final int position = band * 4 + zeile;
+				if ( band > 0 && zeile >= 2 ) { einBand[ position ]    = zufall.nextInt( 1 << 30 ); }
+				if ( zeile == 3             ) { keinesGanz[ position ] = zufall.nextInt( 1 << 30 ); }
+			}
+		}
+
+		eintragen( signaturProjektion( 1, basis      ) );
+		eintragen( signaturProjektion( 2, einBand    ) );
+		eintragen( signaturProjektion( 3, keinesGanz ) );
+
+		final List<AehnlicherArtikel> aehnliche = _index.holeAehnlicheArtikel( 1, 5 );
+
+		assertThat( aehnliche ).extracting( AehnlicherArtikel::id ).containsExactly( 2L );
+		assertThat( aehnliche.get( 0 ).aehnlichkeit() ).isEqualTo( 66.0 / ANZAHL_HASHFUNKTIONEN );
+	}
+
+
+	/**
+	 * S-Kurve der Bänder: Stimmt jede Signaturposition mit Wahrscheinlichkeit {@code s} überein,
+	 * wird ein Artikel mit Wahrscheinlichkeit {@code 1 - (1 - s^4)^32} Kandidat; das sind ca.
+	 * 12 % bei {@code s = 0,25} unterhalb und 99,99 % bei {@code s = 0,7} oberhalb der Schwelle
+	 * von ca. 0,42.
+	 */
+	@Test
+	void schwelleDerBaender() {
+
+		final Random zufall = new Random( 23 );
+
+		assertThat( anteilGefunden( 0.25, zufall ) ).isLessThan( 0.25 );
+		assertThat( anteilGefunden( 0.7 , zufall ) ).isGreaterThan( 0.98 );
+	}
+
+
+	/**
+	 * Trägt 500 Artikel ein, deren Signaturen an jeder Position mit Wahrscheinlichkeit
+	 * {@code s} mit einer Basis-Signatur übereinstimmen.
+	 *
+	 * @return Anteil dieser Artikel, die als ähnlich zur Basis gefunden werden
+	 */
+	private double anteilGefunden( double s, Random zufall ) {
+
+		final int   anzahl = 500;
+		final int[] basis  = zufallsSignatur( zufall );
+
+		eintragen( signaturProjektion( 1, basis ) );
+		for ( int id = 2; id < 2 + anzahl; id++ ) {
+
+			final int[] signatur = basis.clone();
+			for ( int i = 0; i < signatur.length; i++ ) {
+
+				if ( zufall.nextDouble() >= s ) { signatur[ i ] = zufall.nextInt( 1 << 30 ); }
+			}
+			eintragen( signaturProjektion( id, signatur ) );
+		}
+
+		return (double) _index.holeAehnlicheArtikel( 1, anzahl ).size() / anzahl;
+	}
+
+
+	private static int[] zufallsSignatur( Random zufall ) {
+
+		final int[] signatur = new int[ ANZAHL_HASHFUNKTIONEN ];
+		for ( int i = 0; i < signatur.length; i++ ) {
+
+			signatur[ i ] = zufall.nextInt( 1 << 30 );
+		}
+		return signatur;
+	}
+
+
+	private static Projektion signaturProjektion( long id, int[] signatur ) {
+
+		final ByteBuffer puffer = ByteBuffer.allocate( MinHashBerechnung.SIGNATUR_BYTES );
+		puffer.asIntBuffer().put( signatur );
+
+		return new Projektion( id, "Artikel " + id, puffer.array(), null );
+	}
+
+
+	/**
+	 * Exakte Jaccard-Ähnlichkeit der 5-Zeichen-Shingles (Texte sind schon normalisiert).
+	 */
+	private static double jaccard( String text1, String text2 ) {
+
+		final Set<String> shingles1 = shingles( text1 );
+		final Set<String> shingles2 = shingles( text2 );
+
+		final Set<String> schnitt = new HashSet<>( shingles1 );
+		schnitt.retainAll( shingles2 );
+		final Set<String> vereinigung = new HashSet<>( shingles1 );
+		vereinigung.addAll( shingles2 );
+
+		return (double) schnitt.size() / vereinigung.size();
+	}
+
+
+	private static Set<String> shingles( String text ) {
+
+		final Set<String> ergebnis = new HashSet<>();
+		for ( int i = 0; i <= text.length() - 5; i++ ) {
+
+			ergebnis.add( text.substring( i, i + 5 ) );
+		}
+		return ergebnis;
+	}
+
+
+	/**
+	 * Ersetzt {@code anzahl} verschiedene Wörter des Textes durch zufällige Wörter.
+	 */
+	private static String woerterErsetzen( String text, int anzahl, Random zufall ) {
+
+		final String[] woerter = text.split( " " );
+		final Set<Integer> positionen = new HashSet<>();
+		while ( positionen.size() < anzahl ) {
+
+			positionen.add( zufall.nextInt( woerter.length ) );
+		}
+		for ( int position : positionen ) {
+
+			woerter[ position ] = zufallsWort( zufall );
+		}
+		return String.join( " ", woerter );
+	}
+
+}
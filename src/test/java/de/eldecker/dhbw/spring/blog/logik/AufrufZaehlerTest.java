@@ -0,0 +1,158 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelAufgerufenEvent;
+
+
+/**
+ * Prüft, dass der {@link AufrufZaehler} die im Speicher gezählten Aufrufe zusammen mit den
+ * Einträgen im Änderungsprotokoll schreibt, und dass nach einem gescheiterten Batch-Update
+ * keine Aufrufe verloren gehen. Verwendet eine eigene H2-Datenbank im Speicher.
+ */
+class AufrufZaehlerTest {
+
+	private static final String SQL_PROTOKOLL_ANLEGEN =
+			"CREATE TABLE AENDERUNG_PROTOKOLL ( ID BIGINT AUTO_INCREMENT PRIMARY KEY, TABELLE VARCHAR(32), " +
+			"DATENSATZ_ID BIGINT, ART VARCHAR(20), ZEITPUNKT TIMESTAMP, KNOTEN VARCHAR(36) )";
+
+	private final SingleConnectionDataSource _dataSource =
+			new SingleConnectionDataSource( "jdbc:h2:mem:" + UUID.randomUUID(), "sa", "", true );
+
+	private final JdbcTemplate _jdbcTemplate = new JdbcTemplate( _dataSource );
+
+	private final AufrufZaehler _zaehler;
+
+	private final ExecutorService _threads = Executors.newCachedThreadPool();
+
+
+	AufrufZaehlerTest() {
+
+		_jdbcTemplate.execute( "CREATE TABLE ARTIKEL ( ID BIGINT PRIMARY KEY, AUFRUFE BIGINT DEFAULT 0 NOT NULL )" );
+		_jdbcTemplate.execute( SQL_PROTOKOLL_ANLEGEN );
+		_jdbcTemplate.update( "INSERT INTO ARTIKEL ( ID ) VALUES ( 1 ), ( 2 )" );
+
+		_zaehler = new AufrufZaehler( _jdbcTemplate,
+		                              new TransactionTemplate( new DataSourceTransactionManager( _dataSource ) ),
+		                              new Knoten( "test" ) );
+	}
+
+
+	@AfterEach
+	void schliessen() {
+
+		_threads.shutdownNow();
+		_dataSource.destroy();
+	}
+
+
+	@Test
+	void schreibtDeltaUndProtokoll() {
+
+		aufrufen( 1, 3 );
+		aufrufen( 2, 1 );
+		assertThat( _zaehler.holeAufrufe( 1, 0 ) ).isEqualTo( 3 );
+
+		_zaehler.schreibeAufrufe();
+
+		assertThat( aufrufeDatenbank( 1 ) ).isEqualTo( 3 );
+		assertThat( aufrufeDatenbank( 2 ) ).isEqualTo( 1 );
+		assertThat( _zaehler.holeAufrufe( 1, aufrufeDatenbank( 1 ) ) ).isEqualTo( 3 ); // nicht doppelt
+		assertThat( protokollEintraege() ).isEqualTo( 2 );
+
+		_zaehler.schreibeAufrufe(); // nichts Neues: kein Update, kein Protokolleintrag
+
+		assertThat( aufrufeDatenbank( 1 ) ).isEqualTo( 3 );
+		assertThat( protokollEintraege() ).isEqualTo( 2 );
+	}
+
+
+	/**
+	 * Ohne Tabelle für das Änderungsprotokoll scheitert das zweite Batch-Update, die Transaktion
+	 * wird zurückgerollt; die Zählerstände werden zurückgebucht und beim nächsten Mal zusammen
+	 * mit den inzwischen gezählten Aufrufen geschrieben.
+	 */
+	@Test
+	void nachFehlerZurueckgebuchtUndSpaeterGeschrieben() {
+
+		aufrufen( 1, 5 );
+		_jdbcTemplate.execute( "DROP TABLE AENDERUNG_PROTOKOLL" );
+
+		_zaehler.schreibeAufrufe();
+
+		assertThat( aufrufeDatenbank( 1 ) ).isZero(); // Update des ersten Batches zurückgerollt
+		assertThat( _zaehler.holeAufrufe( 1, aufrufeDatenbank( 1 ) ) ).isEqualTo( 5 );
+
+		aufrufen( 1, 2 );
+		_jdbcTemplate.execute( SQL_PROTOKOLL_ANLEGEN );
+
+		_zaehler.schreibeAufrufe();
+
+		assertThat( aufrufeDatenbank( 1 ) ).isEqualTo( 7 );
+		assertThat( _zaehler.holeAufrufe( 1, aufrufeDatenbank( 1 ) ) ).isEqualTo( 7 );
+		assertThat( protokollEintraege() ).isEqualTo( 1 );
+	}
+
+
+	/**
+	 * Aufrufe, die während des Schreibens gezählt werden, gehen nicht verloren.
+	 */
+	@Test
+	void gleichzeitigeAufrufeWaehrendSchreiben() throws Exception {
+
+		final int threads   = 8;
+		final int proThread = 5_000;
+
+		final List<CompletableFuture<Void>> ergebnisse = new ArrayList<>();
+		for ( int t = 0; t < threads; t++ ) {
+
+			ergebnisse.add( CompletableFuture.runAsync( () -> aufrufen( 1, proThread ), _threads ) );
+		}
+		while ( ergebnisse.stream().anyMatch( ergebnis -> !ergebnis.isDone() ) ) {
+
+			_zaehler.schreibeAufrufe();
+		}
+		CompletableFuture.allOf( ergebnisse.toArray( CompletableFuture[]::new ) ).get( 5, SECONDS );
+		_zaehler.schreibeAufrufe();
+
+		assertThat( aufrufeDatenbank( 1 ) ).isEqualTo( threads * proThread );
+		assertThat( _zaehler.holeAufrufe( 1, aufrufeDatenbank( 1 ) ) ).isEqualTo( threads * proThread );
+	}
+
+
+	private void aufrufen( long artikelId, int anzahl ) {
+
+		for ( int i = 0; i < anzahl; i++ ) {
+
+			_zaehler.onArtikelAufgerufen( new ArtikelAufgerufenEvent( artikelId, "Artikel " + artikelId ) );
+		}
+	}
+
+
+	private long aufrufeDatenbank( long artikelId ) {
+
+		return _jdbcTemplate.queryForObject( "SELECT AUFRUFE FROM ARTIKEL WHERE ID = ?", Long.class, artikelId );
+	}
+
+
+	private int protokollEintraege() {
+
+		return _jdbcTemplate.queryForObject( "SELECT COUNT(*) FROM AENDERUNG_PROTOKOLL", Integer.class );
+	}
+
+}
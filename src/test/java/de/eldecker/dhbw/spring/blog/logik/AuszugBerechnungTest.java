@@ -0,0 +1,125 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.logik.AuszugBerechnung.MAX_ZEICHEN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelAuszug;
+
+
+/**
+ * Prüft Auszug, Anzahl Wörter und Lesezeit von {@link AuszugBerechnung}.
+ */
+class AuszugBerechnungTest {
+
+	private final AuszugBerechnung _berechnung = new AuszugBerechnung();
+
+
+	@Test
+	void leererText() {
+
+		for ( String text : new String[]{ null, "", " \n\t " } ) {
+
+			assertThat( _berechnung.berechne( text ) ).isEqualTo( new ArtikelAuszug( "", 0, 0 ) );
+		}
+	}
+
+
+	/**
+	 * Whitespace wird zusammengefasst; nur Satzzeichen zählen nicht als Wort.
+	 */
+	@Test
+	void woerterZaehlen() {
+
+		assertThat( _berechnung.berechne( "  Hallo –\n\nWelt !  Grüße 2026 " ) )
+				.isEqualTo( new ArtikelAuszug( "Hallo – Welt ! Grüße 2026", 4, 1 ) );
+
+		assertThat( _berechnung.berechne( "– ! ?" ) ).isEqualTo( new ArtikelAuszug( "– ! ?", 0, 0 ) );
+	}
+
+
+	/**
+	 * Lesezeit ist auf ganze Minuten gerundet, mindestens 1 Minute für nicht leeren Text.
+	 */
+	@Test
+	void lesezeitGerundet() {
+
+		assertThat( _berechnung.berechne( woerter(   1 ) ).lesezeit() ).isEqualTo( 1 );
+		assertThat( _berechnung.berechne( woerter( 299 ) ).lesezeit() ).isEqualTo( 1 );
+		assertThat( _berechnung.berechne( woerter( 300 ) ).lesezeit() ).isEqualTo( 2 );
+		assertThat( _berechnung.berechne( woerter( 500 ) ).lesezeit() ).isEqualTo( 3 );
+		assertThat( _berechnung.berechne( woerter( 500 ) ).wortanzahl() ).isEqualTo( 500 );
+	}
+
+
+	@Test
+	void kurzerTextUngekuerzt() {
+
+		final String text = "x".repeat( MAX_ZEICHEN - 2 ) + " y";
+
+		assertThat( _berechnung.berechne( text ).auszug() ).isEqualTo( text );
+	}
+
+
+	/**
+	 * Gekürzt wird an der letzten Wortgrenze, ohne das Leerzeichen davor.
+	 */
+	@Test
+	void gekuerztAnWortgrenze() {
+
+		final String text   = woerter( 100 ); // "wort0 wort1 ..."
+		final String auszug = _berechnung.berechne( text ).auszug();
+
+		assertThat( auszug ).endsWith( "…" ).doesNotEndWith( " …" );
+		final String ohneAuslassung = auszug.substring( 0, auszug.length() - 1 );
+		assertThat( ohneAuslassung.length() ).isLessThanOrEqualTo( MAX_ZEICHEN );
+		assertThat( text ).startsWith( ohneAuslassung + " " );
+	}
+
+
+	/**
+	 * Ohne Leerzeichen in der zweiten Hälfte (z.B. lange URL) wird mitten im Wort gekürzt.
+	 */
+	@Test
+	void langesWortHartGekuerzt() {
+
+		final String url = "https://example.org/" + "a".repeat( 300 );
+
+		assertThat( _berechnung.berechne( "Siehe " + url ).auszug() )
+				.isEqualTo( ( "Siehe " + url ).substring( 0, MAX_ZEICHEN ) + "…" );
+	}
+
+
+	/**
+	 * Ein Zeichen außerhalb der BMP, das über die Grenze geht, wird nicht zerteilt: kein
+	 * einzelnes High Surrogate am Ende des Auszugs.
+	 */
+	@Test
+	void surrogatpaarNichtZerteilt() {
+
+		final String emoji = "\uD83D\uDE00"; // Emoji, zwei char
+		final String text  = "a".repeat( MAX_ZEICHEN - 1 ) + emoji + "b".repeat( 50 );
+
+		assertThat( _berechnung.berechne( text ).auszug() ).isEqualTo( "a".repeat( MAX_ZEICHEN - 1 ) + "…" );
+		assertThat( _berechnung.berechne( "a".repeat( MAX_ZEICHEN - 2 ) + emoji + "b".repeat( 50 ) ).auszug() )
+				.isEqualTo( "a".repeat( MAX_ZEICHEN - 2 ) + emoji + "…" );
+		assertThat( _berechnung.berechne( text ).wortanzahl() ).isEqualTo( 1 );
+	}
+
+
+	/**
+	 * Text aus {@code anzahl} Wörtern, durch ein Leerzeichen getrennt.
+	 */
+	private static String woerter( int anzahl ) {
+
+		final StringBuilder text = new StringBuilder();
+		for ( int i = 0; i < anzahl; i++ ) {
+
+			if ( i > 0 ) { text.append( ' ' ); }
+			text.append( "wort" ).append( i );
+		}
+		return text.toString();
+	}
+
+}
@@ -0,0 +1,103 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+
+
+/**
+ * Prüft, dass {@link AuszugNachberechnung} für jeden nachberechneten Artikel einen Eintrag im
+ * Änderungsprotokoll schreibt und ein {@link ArtikelGespeichertEvent} veröffentlicht, aber
+ * nichts für Artikel, die es nicht mehr gibt oder die inzwischen gespeichert wurden.
+ * Verwendet eine eigene H2-Datenbank im Speicher.
+ */
+class AuszugNachberechnungTest {
+
+	private final SingleConnectionDataSource _dataSource =
+			new SingleConnectionDataSource( "jdbc:h2:mem:" + UUID.randomUUID(), "sa", "", true );
+
+	private final JdbcTemplate _jdbcTemplate = new JdbcTemplate( _dataSource );
+
+	private final ArtikelRepo _artikelRepo = mock( ArtikelRepo.class );
+
+	/** Veröffentlichte Events. */
+	private final List<Object> _events = new ArrayList<>();
+
+	private final AuszugNachberechnung _nachberechnung;
+
+
+	AuszugNachberechnungTest() {
+
+		_jdbcTemplate.execute( "CREATE TABLE ARTIKEL ( ID BIGINT PRIMARY KEY, INHALT_PLAINTEXT CLOB, " +
+		                       "AUSZUG VARCHAR(300), WORTANZAHL INT, LESEZEIT INT )" );
+		_jdbcTemplate.execute( "CREATE TABLE AENDERUNG_PROTOKOLL ( ID BIGINT AUTO_INCREMENT PRIMARY KEY, TABELLE VARCHAR(32), " +
+		                       "DATENSATZ_ID BIGINT, ART VARCHAR(20), ZEITPUNKT TIMESTAMP, KNOTEN VARCHAR(36) )" );
+
+		_nachberechnung = new AuszugNachberechnung( _artikelRepo,
+		                                            new AuszugBerechnung(),
+		                                            _jdbcTemplate,
+		                                            new TransactionTemplate( new DataSourceTransactionManager( _dataSource ) ),
+		                                            new Knoten( "test" ),
+		                                            _events::add,
+		                                            10 );
+	}
+
+
+	@AfterEach
+	void schliessen() {
+
+		_dataSource.destroy();
+	}
+
+
+	@Test
+	void protokollUndEventProNachberechnetemArtikel() {
+
+		_jdbcTemplate.update( "INSERT INTO ARTIKEL VALUES ( 1, 'Ein kurzer Artikel', NULL, NULL, NULL )" );
+		_jdbcTemplate.update( "INSERT INTO ARTIKEL VALUES ( 2, 'Schon gespeichert', 'Schon gespeichert', 2, 1 )" );
+		when( _artikelRepo.holeIdsOhneAuszug( any( Limit.class ) ) ).thenReturn( List.of( 1L, 2L, 3L ) );
+
+		_nachberechnung.nachberechnen();
+
+		assertThat( _jdbcTemplate.queryForMap( "SELECT AUSZUG, WORTANZAHL, LESEZEIT FROM ARTIKEL WHERE ID = 1" ) )
+				.containsExactlyInAnyOrderEntriesOf( Map.of( "AUSZUG", "Ein kurzer Artikel", "WORTANZAHL", 3, "LESEZEIT", 1 ) );
+
+		assertThat( _jdbcTemplate.queryForList( "SELECT DATENSATZ_ID, ART, KNOTEN FROM AENDERUNG_PROTOKOLL" ) )
+				.containsExactly( Map.of( "DATENSATZ_ID", 1L, "ART", "GESPEICHERT", "KNOTEN", "test" ) );
+
+		assertThat( _events ).containsExactly( new ArtikelGespeichertEvent( 1 ) );
+	}
+
+
+	@Test
+	void ohneArtikelNichtsMehrAbfragen() {
+
+		when( _artikelRepo.holeIdsOhneAuszug( any( Limit.class ) ) ).thenReturn( List.of() );
+
+		_nachberechnung.nachberechnen();
+		_nachberechnung.nachberechnen();
+
+		verify( _artikelRepo, times( 1 ) ).holeIdsOhneAuszug( any( Limit.class ) );
+		assertThat( _events ).isEmpty();
+	}
+
+}
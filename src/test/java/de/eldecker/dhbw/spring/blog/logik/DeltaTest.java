@@ -0,0 +1,264 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.model.BlogException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.node.ArrayNode;
+import tools.jackson.databind.node.JsonNodeFactory;
+import tools.jackson.databind.node.ObjectNode;
+
+
+/**
+ * Prüft die <i>Operational Transformation</i> von {@link Delta}: Zwei gleichzeitig auf
+ * demselben Dokument erstellte Änderungen müssen in beiden Reihenfolgen (jeweils die zweite
+ * gegen die erste transformiert) zum selben Dokument führen, also
+ * {@code d∘a∘transform(b,a) == d∘b∘transform(a,b)}.
+ */
+class DeltaTest {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	/** Attributwerte für zufällige Formatierungen, {@code null} entfernt die Formatierung. */
+	private static final String[] FARBEN = { "red", "blue", null };
+
+
+	@Test
+	void einfuegenAnDerselbenStelle() throws BlogException {
+
+		final Delta dokument = delta( "[{'insert':'ab\\n'}]" );
+		final Delta a        = delta( "[{'retain':1},{'insert':'X'}]" );
+		final Delta b        = delta( "[{'retain':1},{'insert':'Y'}]" );
+
+		assertThat( konvergiert( dokument, a, b ) ).isEqualTo( delta( "[{'insert':'aXYb\\n'}]" ) );
+		assertThat( konvergiert( dokument, b, a ) ).isEqualTo( delta( "[{'insert':'aYXb\\n'}]" ) );
+	}
+
+
+	@Test
+	void ueberlappendesLoeschen() throws BlogException {
+
+		final Delta dokument = delta( "[{'insert':'abcdef\\n'}]" );
+		final Delta a        = delta( "[{'retain':1},{'delete':3}]" ); // "bcd"
+		final Delta b        = delta( "[{'retain':2},{'delete':3}]" ); // "cde"
+
+		assertThat( konvergiert( dokument, a, b ) ).isEqualTo( delta( "[{'insert':'af\\n'}]" ) );
+		assertThat( konvergiert( dokument, b, a ) ).isEqualTo( delta( "[{'insert':'af\\n'}]" ) );
+	}
+
+
+	@Test
+	void gleichesLoeschen() throws BlogException {
+
+		final Delta dokument = delta( "[{'insert':'abcdef\\n'}]" );
+		final Delta a        = delta( "[{'retain':2},{'delete':2}]" );
+
+		assertThat( konvergiert( dokument, a, a ) ).isEqualTo( delta( "[{'insert':'abef\\n'}]" ) );
+		assertThat( a.transformieren( a, true ).istLeer() ).isTrue();
+	}
+
+
+	@Test
+	void einfuegenInGeloeschtemBereich() throws BlogException {
+
+		final Delta dokument = delta( "[{'insert':'abcdef\\n'}]" );
+		final Delta a        = delta( "[{'retain':1},{'delete':3}]" );       // "bcd"
+		final Delta b        = delta( "[{'retain':3},{'insert':'X'}]" );     // nach "c"
+
+		assertThat( konvergiert( dokument, a, b ) ).isEqualTo( delta( "[{'insert':'aXef\\n'}]" ) );
+		assertThat( konvergiert( dokument, b, a ) ).isEqualTo( delta( "[{'insert':'aXef\\n'}]" ) );
+	}
+
+
+	@Test
+	void formatierenUeberlappend() throws BlogException {
+
+		final Delta dokument = delta( "[{'insert':'abcd\\n'}]" );
+		final Delta a        = delta( "[{'retain':1},{'retain':2,'attributes':{'bold':true}}]" );
+		final Delta b        = delta( "[{'retain':2},{'retain':2,'attributes':{'italic':true}}]" );
+
+		final Delta erwartet = delta( "[{'insert':'a'},{'insert':'b','attributes':{'bold':true}}," +
+		                              "{'insert':'c','attributes':{'bold':true,'italic':true}}," +
+		                              "{'insert':'d','attributes':{'italic':true}},{'insert':'\\n'}]" );
+
+		assertThat( konvergiert( dokument, a, b ) ).isEqualTo( erwartet );
+		assertThat( konvergiert( dokument, b, a ) ).isEqualTo( erwartet );
+	}
+
+
+	@Test
+	void formatierenKonfliktVorrangGewinnt() throws BlogException {
+
+		final Delta dokument = delta( "[{'insert':'ab\\n'}]" );
+		final Delta a        = delta( "[{'retain':2,'attributes':{'color':'red'}}]" );
+		final Delta b        = delta( "[{'retain':2,'attributes':{'color':'blue'}}]" );
+
+		assertThat( konvergiert( dokument, a, b ) )
+				.isEqualTo( delta( "[{'insert':'ab','attributes':{'color':'red'}},{'insert':'\\n'}]" ) );
+		assertThat( konvergiert( dokument, b, a ) )
+				.isEqualTo( delta( "[{'insert':'ab','attributes':{'color':'blue'}},{'insert':'\\n'}]" ) );
+	}
+
+
+	@Test
+	void formatierenGeloeschterText() throws BlogException {
+
+		final Delta dokument = delta( "[{'insert':'abc\\n'}]" );
+		final Delta a        = delta( "[{'delete':3}]" );
+		final Delta b        = delta( "[{'retain':1},{'retain':1,'attributes':{'bold':true}}]" );
+
+		assertThat( konvergiert( dokument, a, b ) ).isEqualTo( delta( "[{'insert':'\\n'}]" ) );
+		assertThat( konvergiert( dokument, b, a ) ).isEqualTo( delta( "[{'insert':'\\n'}]" ) );
+	}
+
+
+	/**
+	 * Zufällige Paare von Änderungen (Einfügen, Löschen, Formatieren gemischt) auf zufälligen
+	 * Dokumenten; fester Startwert, damit ein Fehlschlag reproduzierbar ist.
+	 */
+	@Test
+	void zufaelligeAenderungenKonvergieren() throws BlogException {
+
+		final Random zufall = new Random( 4711 );
+		for ( int i = 0; i < 5000; i++ ) {
+
+			final Delta dokument = zufallsDokument( zufall );
+			final Delta a        = zufallsAenderung( zufall, dokument.laenge() );
+			final Delta b        = zufallsAenderung( zufall, dokument.laenge() );
+
+			final Delta ueberA = dokument.verketten( a ).verketten( a.transformieren( b, true  ) );
+			final Delta ueberB = dokument.verketten( b ).verketten( b.transformieren( a, false ) );
+
+			assertThat( ueberA ).as( "Dokument %s, a=%s, b=%s", dokument, a, b ).isEqualTo( ueberB );
+			assertThat( ueberA.istDokument() ).isTrue();
+
+			// Verketten ist assoziativ: a und b nacheinander oder zusammengefasst anwenden
+			final Delta bNachA = a.transformieren( b, true );
+			assertThat( dokument.verketten( a.verketten( bNachA ) ) ).isEqualTo( ueberA );
+		}
+	}
+
+
+	/**
+	 * Wendet {@code a} und danach das gegen {@code a} transformierte {@code b} an, wobei
+	 * {@code a} bei Einfügungen an derselben Stelle Vorrang hat; prüft, dass die andere
+	 * Reihenfolge zum selben Ergebnis führt.
+	 *
+	 * @return Dokument nach beiden Änderungen
+	 */
+	private static Delta konvergiert( Delta dokument, Delta a, Delta b ) {
+
+		final Delta ueberA = dokument.verketten( a ).verketten( a.transformieren( b, true  ) );
+		final Delta ueberB = dokument.verketten( b ).verketten( b.transformieren( a, false ) );
+
+		assertThat( ueberA ).isEqualTo( ueberB );
+
+		return ueberA;
+	}
+
+
+	/**
+	 * Delta aus JSON mit einfachen statt doppelten Anführungszeichen.
+	 */
+	private static Delta delta( String json ) throws BlogException {
+
+		return Delta.ausJson( OBJECT_MAPPER.readTree( json.replace( '\'', '"' ) ) );
+	}
+
+
+	private static Delta zufallsDokument( Random zufall ) throws BlogException {
+
+		final ArrayNode ops = JsonNodeFactory.instance.arrayNode();
+		final int anzahl = zufall.nextInt( 4 );
+		for ( int i = 0; i < anzahl; i++ ) {
+
+			final ObjectNode op = ops.addObject();
+			op.put( "insert", zufallsText( zufall ) );
+			attribute( zufall, op, false );
+		}
+		ops.addObject().put( "insert", "\n" );
+
+		return Delta.ausJson( ops );
+	}
+
+
+	/**
+	 * Zufällige Änderung für ein Dokument mit {@code laenge} Zeichen.
+	 */
+	private static Delta zufallsAenderung( Random zufall, int laenge ) throws BlogException {
+
+		final ArrayNode ops = JsonNodeFactory.instance.arrayNode();
+		int position = 0;
+		while ( zufall.nextInt( 5 ) != 0 ) {
+
+			final int rest = laenge - position;
+			final int art  = rest > 0 ? zufall.nextInt( 3 ) : 0;
+			final ObjectNode op = ops.addObject();
+			switch ( art ) {
+
+				case 0 -> {
+					op.put( "insert", zufallsText( zufall ) );
+					attribute( zufall, op, false );
+				}
+				case 1 -> {
+					final int anzahl = 1 + zufall.nextInt( rest );
+					op.put( "retain", anzahl );
+					attribute( zufall, op, true );
+					position += anzahl;
+				}
+				default -> {
+					final int anzahl = 1 + zufall.nextInt( rest );
+					op.put( "delete", anzahl );
+					position += anzahl;
+				}
+			}
+		}
+
+		return Delta.ausJson( ops );
+	}
+
+
+	private static String zufallsText( Random zufall ) {
+
+		final StringBuilder text = new StringBuilder();
+		final int anzahl = 1 + zufall.nextInt( 4 );
+		for ( int i = 0; i < anzahl; i++ ) {
+
+			text.append( (char) ( 'a' + zufall.nextInt( 26 ) ) );
+		}
+		return text.toString();
+	}
+
+
+	/**
+	 * Fügt mit Wahrscheinlichkeit 1/2 zufällige Attribute hinzu; {@code null}-Werte (Formatierung
+	 * entfernen) nur bei {@code retain}.
+	 */
+	private static void attribute( Random zufall, ObjectNode op, boolean mitNull ) {
+
+		if ( zufall.nextBoolean() ) {
+
+			return;
+		}
+
+		final ObjectNode attribute = op.putObject( "attributes" );
+		if ( zufall.nextBoolean() ) {
+
+			attribute.put( "bold", true );
+		}
+		final String farbe = FARBEN[ zufall.nextInt( mitNull ? FARBEN.length : FARBEN.length - 1 ) ];
+		if ( farbe != null ) {
+
+			attribute.put( "color", farbe );
+
+		} else {
+
+			attribute.putNull( "color" );
+		}
+	}
+
+}
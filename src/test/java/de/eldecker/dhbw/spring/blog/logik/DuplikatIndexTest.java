@@ -0,0 +1,203 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.logik.DuplikatIndex.MAX_DISTANZ;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.DuplikatPaar;
+
+
+/**
+ * Prüft die SimHash-Fingerabdrücke ({@link SimHashBerechnung}) und die Suche nach
+ * Fingerabdrücken mit kleiner Hamming-Distanz über die Block-Tabellen im {@link DuplikatIndex}.
+ */
+class DuplikatIndexTest extends SignaturIndexTestBasis {
+
+	private final SimHashBerechnung _simHash = new SimHashBerechnung();
+
+	private final DuplikatIndex _index = new DuplikatIndex( _simHash, _artikelRepo, null );
+
+
+	@Override
+	protected void onArtikelGespeichert( ArtikelGespeichertEvent event ) {
+
+		_index.onArtikelGespeichert( event );
+	}
+
+
+	@Override
+	protected Projektion projektion( long id, String titel, String text ) {
+
+		return new Projektion( id, titel, null, _simHash.berechneFingerabdruck( text ) );
+	}
+
+
+	@Override
+	protected Collection<Long> gefundenZu( long artikelId ) {
+
+		return _index.findeDuplikate( eingetragen( artikelId ).simHash(), artikelId );
+	}
+
+
+	@Test
+	void fingerabdruckIgnoriertSchreibweiseUndSatzzeichen() {
+
+		final long fingerabdruck = _simHash.berechneFingerabdruck( "Spring Boot, H2 und Thymeleaf!" );
+
+		assertThat( _simHash.berechneFingerabdruck( "spring boot h2 UND thymeleaf" ) ).isEqualTo( fingerabdruck );
+		assertThat( _simHash.berechneFingerabdruck( null  ) ).isZero();
+		assertThat( _simHash.berechneFingerabdruck( " \n" ) ).isZero();
+	}
+
+
+	@Test
+	void kleineAenderungKleineDistanz() {
+
+		final Random zufall = new Random( 3 );
+		final String[] woerter = new String[ 400 ];
+		for ( int i = 0; i < woerter.length; i++ ) {
+
+			woerter[ i ] = "wort" + zufall.nextInt( 5000 );
+		}
+		final String original = String.join( " ", woerter );
+		woerter[ 100 ] = "geaendert";
+		final String geaendert = String.join( " ", woerter );
+		final String anderer   = original.replace( "wort", "w" ) + " ganz anderer text";
+
+		final long fingerabdruck = _simHash.berechneFingerabdruck( original );
+
+		assertThat( _simHash.hammingDistanz( fingerabdruck, _simHash.berechneFingerabdruck( geaendert ) ) )
+				.isLessThanOrEqualTo( MAX_DISTANZ );
+		assertThat( _simHash.hammingDistanz( fingerabdruck, _simHash.berechneFingerabdruck( anderer ) ) )
+				.isGreaterThan( 10 );
+	}
+
+
+	/**
+	 * Nach dem Schubfachprinzip stimmt bei höchstens {@link DuplikatIndex#MAX_DISTANZ}
+	 * verschiedenen Bits mindestens ein Block überein: Jeder Fingerabdruck mit kleiner
+	 * Distanz muss gefunden werden, keiner mit größerer.
+	 */
+	@Test
+	void findetGenauAlleMitKleinerDistanz() {
+
+		final Random zufall = new Random( 17 );
+		for ( int i = 0; i < 2000; i++ ) {
+
+			final long gespeichert = zufall.nextLong() | 1L;
+			eintragen( 1, gespeichert );
+
+			final int  distanz = zufall.nextInt( 8 );
+			final long gesucht = bitsKippen( gespeichert, distanz, zufall );
+
+			if ( gesucht == 0L ) { continue; } // gilt als leerer Text
+
+			if ( distanz <= MAX_DISTANZ ) {
+
+				assertThat( _index.findeDuplikate( gesucht, -1 ) ).as( "Distanz %d", distanz ).containsExactly( 1L );
+
+			} else {
+
+				assertThat( _index.findeDuplikate( gesucht, -1 ) ).as( "Distanz %d", distanz ).isEmpty();
+			}
+		}
+	}
+
+
+	@Test
+	void eigenerArtikelUndLeererTextWerdenNichtGemeldet() {
+
+		eintragen( 1, 0x1234_5678_9ABC_DEF0L );
+		eintragen( 2, 0L );
+
+		assertThat( _index.findeDuplikate( 0x1234_5678_9ABC_DEF0L, 1 ) ).isEmpty();
+		assertThat( _index.findeDuplikate( 0x1234_5678_9ABC_DEF0L, -1 ) ).containsExactly( 1L );
+		assertThat( _index.findeDuplikate( 0L, -1 ) ).isEmpty();
+	}
+
+
+	/**
+	 * Grenzfälle der Blockaufteilung: Drei gekippte Bits in drei verschiedenen Blöcken lassen
+	 * einen Block gleich, der Artikel wird gefunden. Bei vier Bits in vier Blöcken ist kein Block
+	 * gleich, bei vier Bits in einem Block wird der Kandidat über die Distanz aussortiert.
+	 */
+	@Test
+	void grenzeDerHammingDistanz() {
+
+		final long basis = 0x1234_5678_9ABC_DEF0L;
+		eintragen( 1, basis );
+
+		final long dreiBloecke = basis ^ ( 1L | 1L << 16 | 1L << 32 );
+		final long vierBloecke = basis ^ ( 1L | 1L << 16 | 1L << 32 | 1L << 48 );
+		final long einBlock    = basis ^ 0b1111L;
+
+		assertThat( _simHash.hammingDistanz( basis, dreiBloecke ) ).isEqualTo( MAX_DISTANZ );
+		assertThat( _index.findeDuplikate( dreiBloecke, -1 ) ).containsExactly( 1L );
+
+		assertThat( _simHash.hammingDistanz( basis, vierBloecke ) ).isEqualTo( MAX_DISTANZ + 1 );
+		assertThat( _index.findeDuplikate( vierBloecke, -1 ) ).isEmpty();
+
+		assertThat( _simHash.hammingDistanz( basis, einBlock ) ).isEqualTo( MAX_DISTANZ + 1 );
+		assertThat( _index.findeDuplikate( einBlock, -1 ) ).isEmpty();
+	}
+
+
+	@Test
+	void hammingDistanzZaehltVerschiedeneBits() {
+
+		final Random zufall = new Random( 29 );
+		for ( int i = 0; i < 1000; i++ ) {
+
+			final long a = zufall.nextLong();
+			final long b = zufall.nextLong();
+
+			assertThat( _simHash.hammingDistanz( a, b ) ).isEqualTo( Long.bitCount( a ^ b ) )
+			                                             .isEqualTo( _simHash.hammingDistanz( b, a ) );
+		}
+		assertThat( _simHash.hammingDistanz( 0L, -1L ) ).isEqualTo( Long.SIZE );
+	}
+
+
+	@Test
+	void allePaareNachDistanzSortiertUndNurEinmal() {
+
+		final long basis = 0x1234_5678_9ABC_DEF0L;
+		eintragen( 1, basis );
+		eintragen( 2, basis ^ 0b111L );                // Distanz 3 zu 1
+		eintragen( 3, basis ^ 0b1L );                  // Distanz 1 zu 1, 2 zu 2
+		eintragen( 4, basis ^ 0xFFFF_0000_0000_0000L ); // weit entfernt
+
+		assertThat( _index.findeAlleDuplikatPaare() ).containsExactly( new DuplikatPaar( 1, 3, 1 ),
+		                                                               new DuplikatPaar( 2, 3, 2 ),
+		                                                               new DuplikatPaar( 1, 2, 3 ) );
+	}
+
+
+	/**
+	 * Fingerabdruck über den Event-Listener eintragen, wie nach dem Speichern.
+	 */
+	private void eintragen( long id, long fingerabdruck ) {
+
+		eintragen( new Projektion( id, null, null, fingerabdruck ) );
+	}
+
+
+	/**
+	 * Kippt {@code anzahl} verschiedene, zufällig gewählte Bits.
+	 */
+	private static long bitsKippen( long wert, int anzahl, Random zufall ) {
+
+		long maske = 0L;
+		while ( Long.bitCount( maske ) < anzahl ) {
+
+			maske |= 1L << zufall.nextInt( Long.SIZE );
+		}
+		return wert ^ maske;
+	}
+
+}
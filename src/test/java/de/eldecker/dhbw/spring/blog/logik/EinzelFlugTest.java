@@ -0,0 +1,184 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft, dass gleichzeitige Aufrufe von {@link EinzelFlug} für denselben Schlüssel eine
+ * Berechnung teilen, dass der Schlüssel nach Erfolg und nach Fehler wieder frei ist und dass
+ * nach {@link EinzelFlug#vergessen(Object)} eine neue Berechnung startet.
+ */
+class EinzelFlugTest {
+
+	private static final int ANZAHL_AUFRUFER = 10;
+
+	private final SimpleMeterRegistry _meterRegistry = new SimpleMeterRegistry();
+
+	private final EinzelFlug<Long, String> _einzelFlug = new EinzelFlug<>( "test", _meterRegistry );
+
+	/** Anzahl gestarteter Berechnungen. */
+	private final AtomicInteger _berechnungen = new AtomicInteger();
+
+	/** Berechnungen warten hierauf. */
+	private final CountDownLatch _datenbank = new CountDownLatch( 1 );
+
+	private final ExecutorService _threads = Executors.newCachedThreadPool();
+
+
+	@AfterEach
+	void beenden() {
+
+		_datenbank.countDown();
+		_threads.shutdownNow();
+	}
+
+
+	@Test
+	void gleichzeitigeAufruferTeilenEineBerechnung() throws Exception {
+
+		final List<CompletableFuture<String>> ergebnisse = gleichzeitigAufrufen( () -> {
+
+			warten( _datenbank );
+			return "artikel-" + _berechnungen.incrementAndGet();
+		});
+		_datenbank.countDown();
+
+		for ( CompletableFuture<String> ergebnis : ergebnisse ) {
+
+			assertThat( ergebnis.get( 5, SECONDS ) ).isEqualTo( "artikel-1" );
+		}
+		assertThat( _berechnungen ).hasValue( 1 );
+
+		// Schlüssel ist wieder frei, es wird nichts gecacht
+		assertThat( _einzelFlug.ausfuehren( 1L, () -> "artikel-" + _berechnungen.incrementAndGet() ) ).isEqualTo( "artikel-2" );
+	}
+
+
+	@Test
+	void fehlerGehtAnAlleUndSchluesselWirdFrei() throws Exception {
+
+		final List<CompletableFuture<String>> ergebnisse = gleichzeitigAufrufen( () -> {
+
+			_berechnungen.incrementAndGet();
+			warten( _datenbank );
+			throw new IllegalStateException( "Datenbank weg" );
+		});
+		_datenbank.countDown();
+
+		for ( CompletableFuture<String> ergebnis : ergebnisse ) {
+
+			assertThatThrownBy( () -> ergebnis.get( 5, SECONDS ) ).isInstanceOf( ExecutionException.class )
+			                                                      .hasCauseInstanceOf( IllegalStateException.class );
+		}
+		assertThat( _berechnungen ).hasValue( 1 );
+
+		assertThat( _einzelFlug.ausfuehren( 1L, () -> "wieder da" ) ).isEqualTo( "wieder da" );
+	}
+
+
+	/**
+	 * Nach dem Speichern soll sich kein Aufruf mehr einer Berechnung anschließen, die noch
+	 * den alten Stand liest; wer schon wartet, bekommt aber das Ergebnis der alten.
+	 */
+	@Test
+	void nachVergessenNeueBerechnung() throws Exception {
+
+		final CompletableFuture<String> alt = CompletableFuture.supplyAsync(
+				() -> _einzelFlug.ausfuehren( 1L, () -> { warten( _datenbank ); return "alter Stand"; } ), _threads );
+		Thread.sleep( 50 ); // Berechnung läuft
+
+		_einzelFlug.vergessen( 1L );
+
+		final CountDownLatch neueBerechnung = new CountDownLatch( 1 );
+		final CompletableFuture<String> neu = CompletableFuture.supplyAsync(
+				() -> _einzelFlug.ausfuehren( 1L, () -> { warten( neueBerechnung ); return "neuer Stand"; } ), _threads );
+		Thread.sleep( 50 );
+
+		_datenbank.countDown();
+		assertThat( alt.get( 5, SECONDS ) ).isEqualTo( "alter Stand" );
+
+		// das Ende der alten Berechnung darf den Schlüssel der neuen nicht freigeben
+		final CompletableFuture<String> mitlaeufer = CompletableFuture.supplyAsync(
+				() -> _einzelFlug.ausfuehren( 1L, () -> "eigene Berechnung" ), _threads );
+		warteAufZusammengefasst( 1 );
+
+		neueBerechnung.countDown();
+		assertThat( neu.get( 5, SECONDS )        ).isEqualTo( "neuer Stand" );
+		assertThat( mitlaeufer.get( 5, SECONDS ) ).isEqualTo( "neuer Stand" );
+	}
+
+
+	@Test
+	void asynchronAbgelehnterExecutorGibtSchluesselFrei() throws Exception {
+
+		final CompletableFuture<String> abgelehnt =
+				_einzelFlug.ausfuehrenAsynchron( 1L, () -> "nie", runnable -> { throw new RejectedExecutionException(); } );
+
+		assertThat( abgelehnt ).isCompletedExceptionally();
+		assertThat( _einzelFlug.ausfuehrenAsynchron( 1L, () -> "ok", Runnable::run ).get() ).isEqualTo( "ok" );
+	}
+
+
+	/**
+	 * Startet {@link #ANZAHL_AUFRUFER} Aufrufe für Schlüssel 1 und wartet, bis sich alle
+	 * außer dem ersten der laufenden Berechnung angeschlossen haben.
+	 */
+	private List<CompletableFuture<String>> gleichzeitigAufrufen( Supplier<String> berechnung )
+			throws InterruptedException {
+
+		final List<CompletableFuture<String>> ergebnisse = new ArrayList<>();
+		for ( int i = 0; i < ANZAHL_AUFRUFER; i++ ) {
+
+			ergebnisse.add( CompletableFuture.supplyAsync( () -> _einzelFlug.ausfuehren( 1L, berechnung ), _threads ) );
+		}
+		warteAufZusammengefasst( ANZAHL_AUFRUFER - 1 );
+
+		return ergebnisse;
+	}
+
+
+	/**
+	 * Wartet, bis die Metrik für zusammengefasste Aufrufe den Wert erreicht.
+	 */
+	private void warteAufZusammengefasst( int anzahl ) throws InterruptedException {
+
+		final long ende = System.currentTimeMillis() + 5_000;
+		while ( _meterRegistry.get( "blog.einzelflug.zusammengefasst" ).counter().count() < anzahl ) {
+
+			assertThat( System.currentTimeMillis() ).as( "Warten auf %d zusammengefasste Aufrufe", anzahl ).isLessThan( ende );
+			Thread.sleep( 5 );
+		}
+	}
+
+
+	private static void warten( CountDownLatch latch ) {
+
+		try {
+
+			latch.await( 5, SECONDS );
+		}
+		catch ( InterruptedException ex ) {
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,223 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft, dass der {@link Entwurfsspeicher} Auto-Speicherungen im Speicher zusammenfasst, dass
+ * geschriebene Entwürfe aus der Datenbank gelesen werden, und dass ein Entwurf, der während
+ * eines Batches gelöscht oder erneut gespeichert wird, danach nicht mit altem Stand wieder
+ * auftaucht. Verwendet eine eigene H2-Datenbank im Speicher; der Commit des Batches kann
+ * angehalten werden.
+ */
+class EntwurfsspeicherTest {
+
+	private static final String AUTOR = "alice";
+
+	private final SimpleMeterRegistry _meterRegistry = new SimpleMeterRegistry();
+
+	private final JdbcDataSource _dataSource = new JdbcDataSource();
+
+	private final JdbcTemplate _jdbcTemplate;
+
+	/** Batch meldet hier, dass er beim Commit angekommen ist. */
+	private final CountDownLatch _imCommit = new CountDownLatch( 1 );
+
+	/** Commit wartet hierauf, wenn {@link #_commitAnhalten} gesetzt ist. */
+	private final CountDownLatch _commitWeiter = new CountDownLatch( 1 );
+
+	private volatile boolean _commitAnhalten = false;
+
+	private final Entwurfsspeicher _speicher;
+
+	private final ExecutorService _threads = Executors.newCachedThreadPool();
+
+
+	EntwurfsspeicherTest() {
+
+		_dataSource.setURL( "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1" );
+		_jdbcTemplate = new JdbcTemplate( _dataSource );
+		_jdbcTemplate.execute( "CREATE TABLE ENTWURF ( AUTOR VARCHAR(32), ARTIKEL_ID BIGINT, TITEL VARCHAR(200), " +
+		                       "INHALT_DELTA CLOB, INHALT_HTML CLOB, INHALT_PLAINTEXT CLOB, TAGS VARCHAR(500), " +
+		                       "ZEITPUNKT_GEAENDERT TIMESTAMP, PRIMARY KEY ( AUTOR, ARTIKEL_ID ) )" );
+
+		final DataSourceTransactionManager transaktionsManager = new DataSourceTransactionManager( _dataSource ) {
+
+			@Override
+			protected void doCommit( DefaultTransactionStatus status ) {
+
+				if ( _commitAnhalten ) {
+
+					_imCommit.countDown();
+					warten( _commitWeiter );
+				}
+				super.doCommit( status );
+			}
+		};
+
+		_speicher = new Entwurfsspeicher( _jdbcTemplate, new TransactionTemplate( transaktionsManager ), _meterRegistry );
+	}
+
+
+	@AfterEach
+	void beenden() {
+
+		_commitWeiter.countDown();
+		_threads.shutdownNow();
+		_jdbcTemplate.execute( "SHUTDOWN" );
+	}
+
+
+	@Test
+	void autoSpeicherungenZusammengefasst() {
+
+		_speicher.speichern( AUTOR, 5, entwurf( "eins" ) );
+		_speicher.speichern( AUTOR, 5, entwurf( "zwei" ) );
+		_speicher.speichern( AUTOR, 5, entwurf( "drei" ) );
+		_speicher.speichern( AUTOR, 0, entwurf( "neu"  ) ); // neuer Artikel
+		_speicher.speichern( "bob", 5, entwurf( "bob"  ) );
+
+		assertThat( _meterRegistry.get( "blog.entwuerfe.zusammengefasst" ).counter().count() ).isEqualTo( 2 );
+		assertThat( anzahlInDatenbank() ).isZero();
+
+		_speicher.schreibeEntwuerfe();
+
+		assertThat( anzahlInDatenbank() ).isEqualTo( 3 );
+		assertThat( titelInDatenbank( AUTOR, 5 ) ).isEqualTo( "drei" );
+		assertThat( titelInDatenbank( AUTOR, Entwurfsspeicher.NEUER_ARTIKEL ) ).isEqualTo( "neu" );
+	}
+
+
+	@Test
+	void holenNachSchreibenAusDatenbank() {
+
+		assertThat( _speicher.holen( AUTOR, 5 ) ).isEmpty();
+
+		_speicher.speichern( AUTOR, 5, entwurf( "eins" ) );
+		_speicher.schreibeEntwuerfe();
+
+		// nicht mehr im Speicher: Änderung in der Datenbank ist sichtbar
+		_jdbcTemplate.update( "UPDATE ENTWURF SET TITEL = 'aus DB' WHERE AUTOR = ? AND ARTIKEL_ID = 5", AUTOR );
+
+		assertThat( _speicher.holen( AUTOR, 5 ) ).hasValueSatisfying( dto -> {
+
+			assertThat( dto.artikelID() ).isEqualTo( 5 );
+			assertThat( dto.titel()     ).isEqualTo( "aus DB" );
+			assertThat( dto.tags()      ).isEqualTo( "java" );
+		});
+		assertThat( _speicher.holen( AUTOR, -7 ) ).isEmpty();
+	}
+
+
+	/**
+	 * Löschen wartet auf das Ende des laufenden Batches; sonst würde der Batch den gerade
+	 * gelöschten Entwurf danach wieder anlegen.
+	 */
+	@Test
+	void loeschenWaehrendBatchWartetAufEnde() throws Exception {
+
+		_speicher.speichern( AUTOR, 5, entwurf( "eins" ) );
+
+		final CompletableFuture<Void> batch = batchMitAngehaltenemCommit();
+
+		final CompletableFuture<Void> loeschen = CompletableFuture.runAsync( () -> _speicher.loeschen( AUTOR, 5 ), _threads );
+		Thread.sleep( 100 );
+		assertThat( loeschen ).isNotDone();
+
+		_commitWeiter.countDown();
+		batch.get( 5, SECONDS );
+		loeschen.get( 5, SECONDS );
+
+		assertThat( anzahlInDatenbank() ).isZero();
+		assertThat( _speicher.holen( AUTOR, 5 ) ).isEmpty();
+	}
+
+
+	/**
+	 * Ein Stand, der während des Batches gespeichert wird, bleibt im Speicher und wird beim
+	 * nächsten Batch geschrieben.
+	 */
+	@Test
+	void neuerStandWaehrendBatchBleibtErhalten() throws Exception {
+
+		_speicher.speichern( AUTOR, 5, entwurf( "eins" ) );
+
+		final CompletableFuture<Void> batch = batchMitAngehaltenemCommit();
+		_speicher.speichern( AUTOR, 5, entwurf( "zwei" ) );
+
+		_commitWeiter.countDown();
+		batch.get( 5, SECONDS );
+
+		assertThat( titelInDatenbank( AUTOR, 5 ) ).isEqualTo( "eins" );
+		assertThat( _speicher.holen( AUTOR, 5 ) ).map( ArtikelDTO::titel ).contains( "zwei" );
+
+		_commitAnhalten = false;
+		_speicher.schreibeEntwuerfe();
+
+		assertThat( titelInDatenbank( AUTOR, 5 ) ).isEqualTo( "zwei" );
+	}
+
+
+	/**
+	 * Startet einen Batch in einem eigenen Thread und wartet, bis er beim Commit angehalten ist.
+	 */
+	private CompletableFuture<Void> batchMitAngehaltenemCommit() throws InterruptedException {
+
+		_commitAnhalten = true;
+		final CompletableFuture<Void> batch = CompletableFuture.runAsync( _speicher::schreibeEntwuerfe, _threads );
+		assertThat( _imCommit.await( 5, SECONDS ) ).isTrue();
+
+		return batch;
+	}
+
+
+	private static ArtikelDTO entwurf( String titel ) {
+
+		return new ArtikelDTO( 999, titel, "{}", "<p>" + titel + "</p>", titel, "java" );
+	}
+
+
+	private int anzahlInDatenbank() {
+
+		return _jdbcTemplate.queryForObject( "SELECT COUNT(*) FROM ENTWURF", Integer.class );
+	}
+
+
+	private String titelInDatenbank( String autor, long artikelId ) {
+
+		return _jdbcTemplate.queryForObject( "SELECT TITEL FROM ENTWURF WHERE AUTOR = ? AND ARTIKEL_ID = ?",
+		                                     String.class, autor, artikelId );
+	}
+
+
+	private static void warten( CountDownLatch latch ) {
+
+		try {
+
+			latch.await( 5, SECONDS );
+		}
+		catch ( InterruptedException ex ) {
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
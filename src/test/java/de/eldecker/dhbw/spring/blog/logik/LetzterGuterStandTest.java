@@ -0,0 +1,136 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.model.SchutzschalterOffenException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft, dass {@link LetzterGuterStand} bei einer langsamen Datenbank den letzten guten Wert
+ * liefert, und dass Ladevorgänge für verschiedene Schlüssel mit dem Executor aus
+ * {@link LetzterGuterStand#erzeugeLadeExecutor(String, int)} nicht aufeinander warten, auch
+ * wenn es mehr gleichzeitige Schlüssel als Threads gibt.
+ */
+class LetzterGuterStandTest {
+
+	/** Wartezeit, bevor der letzte gute Wert geliefert wird. */
+	private static final long WARTE_MS = 50;
+
+	/** Wartezeit, wenn es noch keinen letzten guten Wert gibt. */
+	private static final long MAX_WARTE_MS = 200;
+
+	/** Threads im Lade-Executor, weniger als gleichzeitige Schlüssel im Test. */
+	private static final int LADE_THREADS = 8;
+
+	private final SimpleMeterRegistry _meterRegistry = new SimpleMeterRegistry();
+
+	private final ExecutorService _ladeExecutor = LetzterGuterStand.erzeugeLadeExecutor( "test-laden", LADE_THREADS );
+
+	/** Threads für gleichzeitige Requests. */
+	private final ExecutorService _requests = Executors.newCachedThreadPool();
+
+	private final Schutzschalter _schutzschalter = new Schutzschalter( 20, 0.5, 60_000, 1_000, 60_000, _meterRegistry );
+
+	private final LetzterGuterStand<Integer, String> _stand =
+			new LetzterGuterStand<>( "test", _schutzschalter, _ladeExecutor, 100, WARTE_MS, MAX_WARTE_MS, _meterRegistry );
+
+
+	@AfterEach
+	void beenden() {
+
+		_requests.shutdownNow();
+		_ladeExecutor.shutdownNow();
+		_schutzschalter.herunterfahren();
+	}
+
+
+	/**
+	 * Jeder Ladevorgang kehrt erst zurück, wenn alle gleichzeitig laufen; stünden Ladevorgänge
+	 * in einer Warteschlange hinter den ersten {@link #LADE_THREADS}, dann gäbe es Fehler.
+	 */
+	@Test
+	void mehrSchluesselAlsThreadsWartenNichtAufeinander() throws Exception {
+
+		final int            anzahl     = LADE_THREADS * 3;
+		final CountDownLatch alleLaufen = new CountDownLatch( anzahl );
+
+		final List<CompletableFuture<String>> ergebnisse = new ArrayList<>();
+		for ( int i = 0; i < anzahl; i++ ) {
+
+			final int schluessel = i;
+			ergebnisse.add( CompletableFuture.supplyAsync( () -> _stand.hole( schluessel, () -> {
+
+				alleLaufen.countDown();
+				warten( alleLaufen );
+				return "wert-" + schluessel;
+
+			}), _requests ) );
+		}
+
+		for ( int i = 0; i < anzahl; i++ ) {
+
+			assertThat( ergebnisse.get( i ).get( 5, SECONDS ) ).isEqualTo( "wert-" + i );
+		}
+	}
+
+
+	@Test
+	void langsamesLadenLiefertLetztenGutenWert() throws Exception {
+
+		assertThat( _stand.hole( 1, () -> "alt" ) ).isEqualTo( "alt" );
+
+		final CountDownLatch datenbank = new CountDownLatch( 1 );
+		assertThat( _stand.hole( 1, () -> { warten( datenbank ); return "neu"; } ) ).isEqualTo( "alt" );
+		assertThat( _meterRegistry.get( "blog.seiten.veraltet" ).counter().count() ).isEqualTo( 1.0 );
+
+		datenbank.countDown(); // Laden im Hintergrund ist fertig und merkt den neuen Wert
+		Thread.sleep( WARTE_MS );
+		assertThat( _stand.hole( 1, () -> { throw new IllegalStateException( "Datenbank weg" ); } ) ).isEqualTo( "neu" );
+	}
+
+
+	@Test
+	void ohneLetztenGutenWertFehlerNachMaxWartezeit() {
+
+		final CountDownLatch datenbank = new CountDownLatch( 1 );
+		try {
+
+			assertThatThrownBy( () -> _stand.hole( 1, () -> { warten( datenbank ); return "neu"; } ) )
+					.isInstanceOf( SchutzschalterOffenException.class );
+
+			assertThatThrownBy( () -> _stand.hole( 2, () -> { throw new IllegalStateException( "kaputt" ); } ) )
+					.isInstanceOf( IllegalStateException.class );
+		}
+		finally {
+
+			datenbank.countDown();
+		}
+	}
+
+
+	private static void warten( CountDownLatch latch ) {
+
+		try {
+
+			latch.await( 5, SECONDS );
+		}
+		catch ( InterruptedException ex ) {
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,294 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.VersionKonfliktException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft die {@link Schreibpipeline} mit Mocks für Repo, {@link Speicherdienst} und
+ * Transaktionsmanager: gleichzeitig eingestellte Speichervorgänge werden in einer Transaktion
+ * geschrieben, konkurrierende Änderungen eines Artikels abgelehnt, und nach einer gescheiterten
+ * Transaktion werden die Speichervorgänge einzeln wiederholt.
+ */
+class SchreibpipelineTest {
+
+	/** Anzahl gleichzeitiger Aufrufer. */
+	private static final int ANZAHL_AUFRUFER = 20;
+
+	/** Maximale Anzahl Speichervorgänge pro Transaktion. */
+	private static final int MAX_GRUPPE = 8;
+
+	/** Artikel für Änderungen, hat Version 3. */
+	private static final long ARTIKEL_ID = 42;
+
+	private final SimpleMeterRegistry _meterRegistry = new SimpleMeterRegistry();
+
+	private final ArtikelRepo _artikelRepo = mock( ArtikelRepo.class );
+
+	private final Speicherdienst _speicherdienst = mock( Speicherdienst.class );
+
+	private final PlatformTransactionManager _transaktionsManager = mock( PlatformTransactionManager.class );
+
+	private final ApplicationEventPublisher _eventPublisher = mock( ApplicationEventPublisher.class );
+
+	private final ArtikelEntity _artikel = mock( ArtikelEntity.class );
+
+	private final Schreibpipeline _pipeline =
+			new Schreibpipeline( _artikelRepo, _speicherdienst, new TransactionTemplate( _transaktionsManager ),
+			                     _eventPublisher, true, MAX_GRUPPE, _meterRegistry );
+
+	/** Threads für gleichzeitige Aufrufer. */
+	private final ExecutorService _threads = Executors.newCachedThreadPool();
+
+
+	@BeforeEach
+	void mocksVorbereiten() {
+
+		when( _speicherdienst.artikelSpeichern( any() ) ).thenAnswer( aufruf -> aufruf.getArgument( 0 ) );
+
+		when( _artikel.getId()      ).thenReturn( ARTIKEL_ID );
+		when( _artikel.getVersion() ).thenReturn( 3L );
+		when( _artikelRepo.findById( ARTIKEL_ID ) ).thenReturn( Optional.of( _artikel ) );
+	}
+
+
+	@AfterEach
+	void beenden() {
+
+		_threads.shutdownNow();
+	}
+
+
+	@Test
+	void gleichzeitigeNeueArtikelInGruppenBisMaxGroesse() throws Exception {
+
+		final List<CompletableFuture<Long>> bestaetigungen = gleichzeitig( i -> _pipeline.neuerArtikel( neuerArtikel( i ) ) );
+
+		for ( CompletableFuture<Long> bestaetigung : bestaetigungen ) {
+
+			assertThat( bestaetigung ).isNotDone(); // noch nicht geschrieben, z.B. Antwort 202
+		}
+
+		_pipeline.gruppeSchreiben(); // 8
+		_pipeline.gruppeSchreiben(); // 8
+		_pipeline.gruppeSchreiben(); // 4
+		_pipeline.gruppeSchreiben(); // nichts mehr
+
+		for ( int i = 0; i < ANZAHL_AUFRUFER; i++ ) {
+
+			assertThat( bestaetigungen.get( i ).get( 1, SECONDS ) ).isEqualTo( 1000L + i );
+		}
+		verify( _transaktionsManager, times( 3 ) ).commit( any() );
+		verify( _eventPublisher, times( ANZAHL_AUFRUFER ) ).publishEvent( any( ArtikelGespeichertEvent.class ) );
+
+		final var gruppe = _meterRegistry.get( "blog.schreibpipeline.gruppe" ).summary();
+		assertThat( gruppe.count()       ).isEqualTo( 3 );
+		assertThat( gruppe.totalAmount() ).isEqualTo( ANZAHL_AUFRUFER );
+		assertThat( gruppe.max()         ).isEqualTo( MAX_GRUPPE );
+	}
+
+
+	/**
+	 * Bestätigung und Event erst nach dem Commit, damit ein Aufrufer, der nach 202 auf die
+	 * Bestätigung wartet, den Artikel auch lesen kann.
+	 */
+	@Test
+	void bestaetigungUndEventNachCommit() throws Exception {
+
+		final CompletableFuture<Long> bestaetigung = _pipeline.artikelAendern( ARTIKEL_ID, 3, artikel -> artikel.setTitel( "neu" ) );
+		assertThat( bestaetigung ).isNotDone();
+
+		_pipeline.gruppeSchreiben();
+
+		assertThat( bestaetigung.get( 1, SECONDS ) ).isEqualTo( ARTIKEL_ID );
+
+		final InOrder reihenfolge = inOrder( _artikel, _speicherdienst, _transaktionsManager, _eventPublisher );
+		reihenfolge.verify( _artikel ).setTitel( "neu" );
+		reihenfolge.verify( _speicherdienst ).artikelSpeichern( _artikel );
+		reihenfolge.verify( _transaktionsManager ).commit( any() );
+		reihenfolge.verify( _eventPublisher ).publishEvent( new ArtikelGespeichertEvent( ARTIKEL_ID ) );
+	}
+
+
+	/**
+	 * Viele gleichzeitige Änderungen auf derselben Version: genau eine wird geschrieben, alle
+	 * anderen werden schon beim Einstellen abgelehnt.
+	 */
+	@Test
+	void gleichzeitigeAenderungenEinesArtikelsNurEineGewinnt() throws Exception {
+
+		final AtomicInteger geschrieben = new AtomicInteger();
+		final List<CompletableFuture<Long>> bestaetigungen =
+				gleichzeitig( i -> _pipeline.artikelAendern( ARTIKEL_ID, 3, artikel -> geschrieben.incrementAndGet() ) );
+
+		_pipeline.gruppeSchreiben();
+
+		int erfolge = 0;
+		for ( CompletableFuture<Long> bestaetigung : bestaetigungen ) {
+
+			try {
+
+				bestaetigung.get( 1, SECONDS );
+				erfolge++;
+			}
+			catch ( ExecutionException ex ) {
+
+				assertThat( ex ).hasCauseInstanceOf( VersionKonfliktException.class );
+			}
+		}
+		assertThat( erfolge ).isEqualTo( 1 );
+		assertThat( geschrieben ).hasValue( 1 );
+		assertThat( _meterRegistry.get( "blog.schreibpipeline.konflikt" ).counter().count() ).isEqualTo( ANZAHL_AUFRUFER - 1 );
+	}
+
+
+	@Test
+	void konfliktAeltereVersionVerliertSonstSpaetere() {
+
+		final CompletableFuture<Long> neuereVersion  = _pipeline.artikelAendern( ARTIKEL_ID, 3, artikel -> {} );
+		final CompletableFuture<Long> aeltereVersion = _pipeline.artikelAendern( ARTIKEL_ID, 2, artikel -> {} );
+		final CompletableFuture<Long> spaeter        = _pipeline.artikelAendern( ARTIKEL_ID, 3, artikel -> {} );
+
+		assertThat( aeltereVersion ).isCompletedExceptionally();
+		assertThat( spaeter        ).isCompletedExceptionally();
+
+		_pipeline.gruppeSchreiben();
+
+		assertThat( neuereVersion ).isCompletedWithValue( ARTIKEL_ID );
+	}
+
+
+	@Test
+	void versionBeimSchreibenNochmalGeprueft() {
+
+		final CompletableFuture<Long> veraltet = _pipeline.artikelAendern( ARTIKEL_ID, 2, artikel -> artikel.setTitel( "alt" ) );
+
+		_pipeline.gruppeSchreiben();
+
+		assertThatThrownBy( () -> veraltet.get( 1, SECONDS ) ).hasCauseInstanceOf( VersionKonfliktException.class );
+		verify( _artikel, never() ).setTitel( any() );
+	}
+
+
+	/**
+	 * Ein Speichervorgang scheitert immer, einer nur beim ersten Mal: Die Gruppe wird
+	 * zurückgerollt und einzeln wiederholt, nur der dauerhaft fehlerhafte scheitert.
+	 */
+	@Test
+	void nachFehlerInGruppeEinzelnWiederholt() throws Exception {
+
+		final AtomicInteger versuche = new AtomicInteger();
+		final Supplier<ArtikelEntity> einmalFehler = () -> {
+
+			if ( versuche.incrementAndGet() == 1 ) { throw new IllegalStateException( "Verbindung weg" ); }
+			return neuerArtikel( 2 ).get();
+		};
+		final Supplier<ArtikelEntity> immerFehler = () -> { throw new IllegalStateException( "ungültig" ); };
+
+		final CompletableFuture<Long> erster  = _pipeline.neuerArtikel( neuerArtikel( 1 ) );
+		final CompletableFuture<Long> zweiter = _pipeline.neuerArtikel( einmalFehler );
+		final CompletableFuture<Long> dritter = _pipeline.neuerArtikel( immerFehler );
+		final CompletableFuture<Long> vierter = _pipeline.artikelAendern( ARTIKEL_ID, 3, artikel -> {} );
+
+		_pipeline.gruppeSchreiben();
+
+		assertThat( erster.get(  1, SECONDS ) ).isEqualTo( 1001L );
+		assertThat( zweiter.get( 1, SECONDS ) ).isEqualTo( 1002L );
+		assertThat( vierter.get( 1, SECONDS ) ).isEqualTo( ARTIKEL_ID );
+		assertThatThrownBy( () -> dritter.get( 1, SECONDS ) ).hasCauseInstanceOf( IllegalStateException.class );
+
+		verify( _transaktionsManager, times( 2 ) ).rollback( any() ); // Gruppe und dritter einzeln
+		verify( _transaktionsManager, times( 3 ) ).commit( any() );   // die anderen einzeln
+		verify( _eventPublisher, times( 3 ) ).publishEvent( any( ArtikelGespeichertEvent.class ) );
+	}
+
+
+	/**
+	 * Startet {@link #ANZAHL_AUFRUFER} Aufrufer gleichzeitig und wartet, bis alle eingestellt haben.
+	 *
+	 * @param aufruf Stellt für Aufrufer {@code i} einen Speichervorgang ein
+	 *
+	 * @return Bestätigungen in der Reihenfolge der Aufrufer
+	 */
+	private List<CompletableFuture<Long>> gleichzeitig( IntFunction<CompletableFuture<Long>> aufruf )
+			throws Exception {
+
+		final CountDownLatch start = new CountDownLatch( 1 );
+
+		final List<CompletableFuture<CompletableFuture<Long>>> eingestellt = new ArrayList<>();
+		for ( int i = 0; i < ANZAHL_AUFRUFER; i++ ) {
+
+			final int nummer = i;
+			eingestellt.add( CompletableFuture.supplyAsync( () -> {
+
+				try {
+
+					start.await( 5, SECONDS );
+				}
+				catch ( InterruptedException ex ) {
+
+					Thread.currentThread().interrupt();
+				}
+				return aufruf.apply( nummer );
+
+			}, _threads ) );
+		}
+		start.countDown();
+
+		final List<CompletableFuture<Long>> bestaetigungen = new ArrayList<>();
+		for ( CompletableFuture<CompletableFuture<Long>> e : eingestellt ) {
+
+			bestaetigungen.add( e.get( 5, SECONDS ) );
+		}
+		return bestaetigungen;
+	}
+
+
+	/**
+	 * Neuer Artikel, der beim Speichern die ID {@code 1000 + nummer} bekommt.
+	 */
+	private static Supplier<ArtikelEntity> neuerArtikel( int nummer ) {
+
+		return () -> {
+
+			final ArtikelEntity artikel = mock( ArtikelEntity.class );
+			when( artikel.getId() ).thenReturn( 1000L + nummer );
+			return artikel;
+		};
+	}
+
+}
@@ -0,0 +1,194 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.logik.Schutzschalter.Zustand;
+import de.eldecker.dhbw.spring.blog.model.SchutzschalterOffenException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft, dass der {@link Schutzschalter} auch dann öffnet, wenn die Aufrufe hängen und
+ * gar nicht zurückkehren, und dass ein hängender Probe-Aufruf den Zustand
+ * {@code HALB_OFFEN} nicht blockiert. Außer in {@link #eigenerThreadPrueftOhneScheduler()}
+ * wird die Prüfung der laufenden Aufrufe von Hand aufgerufen.
+ */
+class SchutzschalterTest {
+
+	/** Aufrufe ab dieser Dauer sind schlecht. */
+	private static final long LANGSAM_MS = 100;
+
+	/** Dauer im offenen Zustand. */
+	private static final long OFFEN_MS = 50;
+
+	/** Hängende Aufrufe warten hierauf. */
+	private final CountDownLatch _datenbank = new CountDownLatch( 1 );
+
+	/** Threads für hängende Aufrufe (nicht den Common Pool blockieren). */
+	private final ExecutorService _threads = Executors.newCachedThreadPool();
+
+	/** Fenster 4, ab 2 schlechten Aufrufen offen; Prüfung praktisch nur von Hand. */
+	private Schutzschalter _schalter = new Schutzschalter( 4, 0.5, LANGSAM_MS, OFFEN_MS, 60_000, new SimpleMeterRegistry() );
+
+
+	@AfterEach
+	void datenbankFreigeben() {
+
+		_datenbank.countDown();
+		_threads.shutdown();
+		_schalter.herunterfahren();
+	}
+
+
+	/**
+	 * Die Prüfung läuft im eigenen Thread des Schalters, also auch dann, wenn der Thread des
+	 * Schedulers von einem Job mit Datenbankzugriff blockiert wird.
+	 */
+	@Test
+	void eigenerThreadPrueftOhneScheduler() throws Exception {
+
+		_schalter.herunterfahren();
+		_schalter = new Schutzschalter( 4, 0.5, LANGSAM_MS, OFFEN_MS, 10, new SimpleMeterRegistry() );
+
+		haengenderAufruf();
+		haengenderAufruf();
+
+		Thread.sleep( LANGSAM_MS * 3 );
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.OFFEN );
+	}
+
+
+	/**
+	 * Viele gleichzeitige gute Aufrufe mit einzelnen Fehlern dazwischen öffnen den Schalter
+	 * nicht; die Fehler werden von den guten Aufrufen aus dem Fenster verdrängt. Danach
+	 * öffnen lauter Fehler den Schalter.
+	 */
+	@Test
+	void gleichzeitigeAufrufeOhneLock() throws Exception {
+
+		_schalter.herunterfahren();
+		_schalter = new Schutzschalter( 20, 0.5, LANGSAM_MS, OFFEN_MS, 60_000, new SimpleMeterRegistry() );
+
+		final CompletableFuture<?>[] aufrufe = new CompletableFuture<?>[ 8 ];
+		for ( int i = 0; i < aufrufe.length; i++ ) {
+
+			aufrufe[ i ] = CompletableFuture.runAsync( () -> {
+
+				for ( int j = 0; j < 10_000; j++ ) {
+
+					final boolean fehler = j % 50 == 0;
+					try {
+
+						_schalter.ausfuehren( () -> { if ( fehler ) { throw new IllegalStateException(); } return "ok"; } );
+					}
+					catch ( IllegalStateException ex ) {
+						// erwartet
+					}
+				}
+			}, _threads );
+		}
+		CompletableFuture.allOf( aufrufe ).get();
+
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.GESCHLOSSEN );
+
+		for ( int i = 0; i < 10; i++ ) {
+
+			assertThatThrownBy( () -> _schalter.ausfuehren( () -> { throw new IllegalStateException(); } ) )
+					.isInstanceOf( IllegalStateException.class );
+		}
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.OFFEN );
+	}
+
+
+	@Test
+	void haengendeAufrufeOeffnenSchalter() throws Exception {
+
+		haengenderAufruf();
+		haengenderAufruf();
+
+		Thread.sleep( LANGSAM_MS * 2 );
+		_schalter.pruefeLaufendeAufrufe();
+
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.OFFEN );
+		assertThatThrownBy( () -> _schalter.ausfuehren( () -> "x" ) ).isInstanceOf( SchutzschalterOffenException.class );
+	}
+
+
+	@Test
+	void haengenderProbeAufrufWirdFreigegeben() throws Exception {
+
+		haengenderAufruf();
+		haengenderAufruf();
+		Thread.sleep( LANGSAM_MS * 2 );
+		_schalter.pruefeLaufendeAufrufe();
+
+		Thread.sleep( OFFEN_MS * 2 );
+		haengenderAufruf(); // Probe
+		Thread.sleep( 10 );
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.HALB_OFFEN );
+
+		Thread.sleep( LANGSAM_MS * 2 );
+		_schalter.pruefeLaufendeAufrufe();
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.OFFEN );
+
+		Thread.sleep( OFFEN_MS * 2 );
+		assertThat( _schalter.ausfuehren( () -> "ok" ) ).isEqualTo( "ok" );
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.GESCHLOSSEN );
+	}
+
+
+	@Test
+	void spaeterZurueckkehrenderAufrufZaehltNichtAlsProbe() throws Exception {
+
+		haengenderAufruf();
+		haengenderAufruf();
+		Thread.sleep( LANGSAM_MS * 2 );
+		_schalter.pruefeLaufendeAufrufe();
+		Thread.sleep( OFFEN_MS * 2 );
+
+		final CountDownLatch probe = new CountDownLatch( 1 );
+		final CompletableFuture<String> probeErgebnis = CompletableFuture.supplyAsync(
+				() -> _schalter.ausfuehren( () -> { warten( probe ); return "probe"; } ), _threads );
+		Thread.sleep( 10 );
+
+		_datenbank.countDown(); // alte Aufrufe kehren zurück, dürfen nicht schließen
+		Thread.sleep( 10 );
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.HALB_OFFEN );
+
+		probe.countDown();
+		assertThat( probeErgebnis.get() ).isEqualTo( "probe" );
+		assertThat( _schalter.getZustand() ).isEqualTo( Zustand.GESCHLOSSEN );
+	}
+
+
+	/**
+	 * Startet einen Aufruf, der bis zum Freigeben der Datenbank hängt.
+	 */
+	private void haengenderAufruf() {
+
+		CompletableFuture.runAsync( () -> _schalter.ausfuehren( () -> { warten( _datenbank ); return null; } ), _threads );
+	}
+
+
+	private static void warten( CountDownLatch latch ) {
+
+		try {
+
+			latch.await();
+		}
+		catch ( InterruptedException ex ) {
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.db.ArtikelSignaturProjektion;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+
+
+/**
+ * Gemeinsame Grundlage der Tests für die In-Memory-Indexe über Artikel-Signaturen
+ * ({@link AehnlicheArtikelIndex}, {@link DuplikatIndex}): Das Repo wird durch einen Mock
+ * ersetzt, Artikel werden wie nach dem Speichern über den Event-Listener eingetragen.
+ */
+abstract class SignaturIndexTestBasis {
+
+	protected final ArtikelRepo _artikelRepo = mock( ArtikelRepo.class );
+
+	/** Zuletzt eingetragene Projektion je Artikel-ID. */
+	private final Map<Long, Projektion> _eingetragen = new HashMap<>();
+
+
+	/**
+	 * Signatur-Projektion für den Mock des Repos.
+	 */
+	protected record Projektion( Long id, String titel, byte[] minHashSignatur, Long simHash )
+	                 implements ArtikelSignaturProjektion {
+
+		@Override public Long   getId()              { return id;              }
+		@Override public String getTitel()           { return titel;           }
+		@Override public byte[] getMinHashSignatur() { return minHashSignatur; }
+		@Override public Long   getSimHash()         { return simHash;         }
+	}
+
+
+	/**
+	 * Event an den getesteten Index weitergeben.
+	 */
+	protected abstract void onArtikelGespeichert( ArtikelGespeichertEvent event );
+
+	/**
+	 * Projektion mit der Signatur, die der getestete Index für {@code text} verwendet.
+	 */
+	protected abstract Projektion projektion( long id, String titel, String text );
+
+	/**
+	 * IDs der Artikel, die der getestete Index zum eingetragenen Artikel {@code artikelId} meldet.
+	 */
+	protected abstract Collection<Long> gefundenZu( long artikelId );
+
+
+	@Test
+	void geaenderterUndGeloeschterArtikelWirdAusgetragen() {
+
+		final Random zufall = new Random( 13 );
+		final String text   = zufallsText( zufall, 200 );
+
+		speichern( 1, "Original", text );
+		speichern( 2, "Kopie"   , text );
+		assertThat( gefundenZu( 1 ) ).containsExactly( 2L );
+
+		speichern( 2, "Kopie", zufallsText( zufall, 200 ) ); // alte Einträge müssen weg sein
+		assertThat( gefundenZu( 1 ) ).isEmpty();
+
+		speichern( 2, "Kopie", text );
+		assertThat( gefundenZu( 1 ) ).containsExactly( 2L );
+
+		loeschen( 2 );
+		assertThat( gefundenZu( 1 ) ).isEmpty();
+	}
+
+
+	/**
+	 * Artikel mit Signatur für {@code text} eintragen.
+	 */
+	protected void speichern( long id, String titel, String text ) {
+
+		eintragen( projektion( id, titel, text ) );
+	}
+
+
+	/**
+	 * Projektion über den Event-Listener eintragen, wie nach dem Speichern.
+	 */
+	protected void eintragen( Projektion projektion ) {
+
+		when( _artikelRepo.holeSignatur( projektion.id() ) ).thenReturn( Optional.of( projektion ) );
+		_eingetragen.put( projektion.id(), projektion );
+		onArtikelGespeichert( new ArtikelGespeichertEvent( projektion.id() ) );
+	}
+
+
+	/**
+	 * Artikel aus dem Repo entfernen und den Index wie nach dem Löschen benachrichtigen.
+	 */
+	protected void loeschen( long id ) {
+
+		when( _artikelRepo.holeSignatur( id ) ).thenReturn( Optional.empty() );
+		_eingetragen.remove( id );
+		onArtikelGespeichert( new ArtikelGespeichertEvent( id ) );
+	}
+
+
+	protected Projektion eingetragen( long id ) {
+
+		return _eingetragen.get( id );
+	}
+
+
+	/**
+	 * Text aus zufälligen Kunstwörtern in Kleinbuchstaben, durch ein Leerzeichen getrennt.
+	 */
+	protected static String zufallsText( Random zufall, int anzahlWoerter ) {
+
+		final StringBuilder text = new StringBuilder();
+		for ( int i = 0; i < anzahlWoerter; i++ ) {
+
+			if ( i > 0 ) { text.append( ' ' ); }
+			text.append( zufallsWort( zufall ) );
+		}
+		return text.toString();
+	}
+
+
+	protected static String zufallsWort( Random zufall ) {
+
+		final StringBuilder wort = new StringBuilder();
+		final int laenge = 3 + zufall.nextInt( 6 );
+		for ( int i = 0; i < laenge; i++ ) {
+
+			wort.append( (char) ( 'a' + zufall.nextInt( 26 ) ) );
+		}
+		return wort.toString();
+	}
+
+}
@@ -0,0 +1,201 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.logik.TagIndex.MAX_LAENGE;
+import static de.eldecker.dhbw.spring.blog.logik.TagIndex.MAX_TAGS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.db.ArtikelTagProjektion;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.TagTreffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft das Normalisieren von Tags und das Filtern mit den Bitmaps im {@link TagIndex};
+ * das Repo wird durch einen Mock ersetzt.
+ */
+class TagIndexTest {
+
+	private static final YearMonth JANUAR  = YearMonth.of( 2025, 1 );
+	private static final YearMonth FEBRUAR = YearMonth.of( 2025, 2 );
+	private static final YearMonth MAERZ   = YearMonth.of( 2025, 3 );
+
+	private final ArtikelRepo _artikelRepo = mock( ArtikelRepo.class );
+
+	private final TagIndex _index = new TagIndex( _artikelRepo, new SimpleMeterRegistry() );
+
+
+	/**
+	 * Tag-Projektion für den Mock des Repos.
+	 */
+	private record Projektion( Long id, String tags, String autor, YearMonth monat ) implements ArtikelTagProjektion {
+
+		@Override public Long          getId()                { return id;    }
+		@Override public String        getTags()              { return tags;  }
+		@Override public String        getAutor()             { return autor; }
+		@Override public LocalDateTime getZeitpunktAngelegt() { return monat.atDay( 15 ).atTime( 12, 0 ); }
+	}
+
+
+	/**
+	 * Index mit sechs Artikeln aufbauen, wie nach dem Start der Anwendung.
+	 */
+	@BeforeEach
+	void indexAufbauen() {
+
+		when( _artikelRepo.holeAlleTags() ).thenReturn( List.of(
+				new Projektion( 1L, "java,spring", "alice", JANUAR  ),
+				new Projektion( 2L, "java"       , "bob"  , JANUAR  ),
+				new Projektion( 3L, "spring,h2"  , "alice", FEBRUAR ),
+				new Projektion( 4L, "java,h2"    , "alice", MAERZ   ),
+				new Projektion( 5L, null         , null   , MAERZ   ),
+				new Projektion( 6L, "java,spring", "bob"  , MAERZ   ) ) );
+
+		_index.indexAufbauen();
+	}
+
+
+	@Test
+	void normalisierenSchreibweiseUndZeichen() {
+
+		assertThat( TagIndex.normalisieren( " Java, Spring  Boot ,C#, Über-Größe, snake_case " ) )
+				.containsExactly( "java", "spring-boot", "c", "über-größe", "snake_case" );
+	}
+
+
+	@Test
+	void normalisierenEntferntDoppelteUndLeere() {
+
+		assertThat( TagIndex.normalisieren( "java,,JAVA, ,!!!,h2,Java" ) ).containsExactly( "java", "h2" );
+		assertThat( TagIndex.normalisieren( null   ) ).isEmpty();
+		assertThat( TagIndex.normalisieren( "  \t" ) ).isEmpty();
+		assertThat( TagIndex.normalisieren( ",,"   ) ).isEmpty();
+	}
+
+
+	@Test
+	void normalisierenBegrenztLaengeUndAnzahl() {
+
+		assertThat( TagIndex.normalisieren( "x".repeat( MAX_LAENGE + 5 ) ) ).containsExactly( "x".repeat( MAX_LAENGE ) );
+
+		final StringBuilder eingabe = new StringBuilder();
+		for ( int i = 1; i <= MAX_TAGS + 3; i++ ) {
+
+			eingabe.append( "tag" ).append( i ).append( ',' );
+		}
+		final List<String> tags = TagIndex.normalisieren( eingabe.toString() );
+
+		assertThat( tags ).hasSize( MAX_TAGS ).startsWith( "tag1" ).endsWith( "tag" + MAX_TAGS );
+	}
+
+
+	@Test
+	void ohneKriterienAlleNeuesteZuerst() {
+
+		assertTreffer( _index.filtern( List.of(), true, null, null, null, 10 ), 6, 6L, 5L, 4L, 3L, 2L, 1L );
+		assertTreffer( _index.filtern( List.of(), true, null, null, null, 2  ), 6, 6L, 5L );
+	}
+
+
+	@Test
+	void tagsMitUndOder() {
+
+		assertTreffer( _index.filtern( List.of( "java", "spring" ), true , null, null, null, 10 ), 2, 6L, 1L );
+		assertTreffer( _index.filtern( List.of( "java", "spring" ), false, null, null, null, 10 ), 5, 6L, 4L, 3L, 2L, 1L );
+		assertTreffer( _index.filtern( List.of( "h2" )            , true , null, null, null, 10 ), 2, 4L, 3L );
+	}
+
+
+	@Test
+	void unbekannterTagOderAutor() {
+
+		assertTreffer( _index.filtern( List.of( "java", "kotlin" ), true , null, null, null, 10 ), 0 );
+		assertTreffer( _index.filtern( List.of( "kotlin", "h2" )  , false, null, null, null, 10 ), 2, 4L, 3L );
+		assertTreffer( _index.filtern( List.of()                  , true , "carol", null, null, 10 ), 0 );
+	}
+
+
+	@Test
+	void autorUndZeitraum() {
+
+		assertTreffer( _index.filtern( List.of(), true, "alice", null   , null   , 10 ), 3, 4L, 3L, 1L );
+		assertTreffer( _index.filtern( List.of(), true, null   , FEBRUAR, null   , 10 ), 4, 6L, 5L, 4L, 3L );
+		assertTreffer( _index.filtern( List.of(), true, null   , null   , FEBRUAR, 10 ), 3, 3L, 2L, 1L );
+		assertTreffer( _index.filtern( List.of(), true, null   , FEBRUAR, FEBRUAR, 10 ), 1, 3L );
+		assertTreffer( _index.filtern( List.of(), true, null   , YearMonth.of( 2024, 1 ), YearMonth.of( 2024, 12 ), 10 ), 0 );
+		assertTreffer( _index.filtern( List.of(), true, null   , MAERZ  , JANUAR , 10 ), 0 ); // bis vor von
+	}
+
+
+	@Test
+	void alleKriterienKombiniert() {
+
+		assertTreffer( _index.filtern( List.of( "java" ), true, "alice", JANUAR, MAERZ, 10 ), 2, 4L, 1L );
+		assertTreffer( _index.filtern( List.of( "java" ), true, "bob"  , MAERZ , MAERZ, 10 ), 1, 6L );
+		assertTreffer( _index.filtern( List.of( "java" ), true, "bob"  , MAERZ , MAERZ, 0  ), 1 );
+	}
+
+
+	@Test
+	void geaenderterUndGeloeschterArtikelWirdAusgetragen() {
+
+		speichern( new Projektion( 3L, "kotlin", "bob", FEBRUAR ) );
+
+		assertTreffer( _index.filtern( List.of( "h2" )    , true, null   , null, null, 10 ), 1, 4L );
+		assertTreffer( _index.filtern( List.of( "kotlin" ), true, null   , null, null, 10 ), 1, 3L );
+		assertTreffer( _index.filtern( List.of()          , true, "alice", null, null, 10 ), 2, 4L, 1L );
+
+		when( _artikelRepo.holeTags( 3 ) ).thenReturn( Optional.empty() );
+		_index.onArtikelGespeichert( new ArtikelGespeichertEvent( 3 ) );
+
+		assertTreffer( _index.filtern( List.of( "kotlin" ), true, null, null   , null   , 10 ), 0 );
+		assertTreffer( _index.filtern( List.of()          , true, null, FEBRUAR, FEBRUAR, 10 ), 0 );
+		assertThat( _index.holeHaeufigsteTags( 10 ) ).doesNotContainKey( "kotlin" );
+		assertThat( _index.holeAnzahlProMonat() ).doesNotContainKey( FEBRUAR );
+	}
+
+
+	@Test
+	void anzahlenFuerArchivUndTagWolke() {
+
+		assertThat( _index.holeHaeufigsteTags( 10 ) ).containsExactly( entry( "java", 4 ), entry( "spring", 3 ), entry( "h2", 2 ) );
+		assertThat( _index.holeHaeufigsteTags( 1  ) ).containsExactly( entry( "java", 4 ) );
+
+		speichern( new Projektion( 5L, "h2", null, MAERZ ) ); // gleiche Anzahl: alphabetisch
+		assertThat( _index.holeHaeufigsteTags( 10 ) ).containsExactly( entry( "java", 4 ), entry( "h2", 3 ), entry( "spring", 3 ) );
+
+		assertThat( _index.holeAnzahlProMonat() ).containsExactly( entry( MAERZ, 3 ), entry( FEBRUAR, 1 ), entry( JANUAR, 2 ) );
+		assertThat( _index.holeAnzahlVonAutor( "alice" ) ).isEqualTo( 3 );
+		assertThat( _index.holeAnzahlVonAutor( "carol" ) ).isZero();
+	}
+
+
+	/**
+	 * Artikel über den Event-Listener eintragen, wie nach dem Speichern.
+	 */
+	private void speichern( Projektion projektion ) {
+
+		when( _artikelRepo.holeTags( projektion.id() ) ).thenReturn( Optional.of( projektion ) );
+		_index.onArtikelGespeichert( new ArtikelGespeichertEvent( projektion.id() ) );
+	}
+
+
+	private static void assertTreffer( TagTreffer treffer, int anzahl, Long... ids ) {
+
+		assertThat( treffer.anzahl() ).isEqualTo( anzahl );
+		assertThat( treffer.artikelIds() ).containsExactly( ids );
+	}
+
+}
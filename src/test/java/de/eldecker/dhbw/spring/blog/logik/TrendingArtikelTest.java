@@ -0,0 +1,200 @@
+package de.eldecker.dhbw.spring.blog.logik;
+
+import static de.eldecker.dhbw.spring.blog.logik.TrendingArtikel.ANZAHL_ZAEHLER;
+import static de.eldecker.dhbw.spring.blog.logik.TrendingArtikel.TOP_K;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import de.eldecker.dhbw.spring.blog.model.ArtikelAufgerufenEvent;
+import de.eldecker.dhbw.spring.blog.model.TrendEintrag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft die Fehlerschranken des <i>Space-Saving</i>-Algorithmus in {@link TrendingArtikel}:
+ * Bei {@code N} Aufrufen und {@code m} Zählern wird die Anzahl eines überwachten Artikels
+ * höchstens um {@code N/m} überschätzt und nie unterschätzt, und jeder Artikel mit mehr als
+ * {@code N/m} Aufrufen hat sicher einen Zähler. Die Halbwertszeit ist so groß, dass während
+ * des Tests alle Aufrufe praktisch dasselbe Gewicht 1 haben.
+ */
+class TrendingArtikelTest {
+
+	/** Halbwertszeit, bei der die Abwertung während des Tests vernachlässigbar ist. */
+	private static final long HALBWERTSZEIT_MINUTEN = 1_000_000_000L;
+
+	/** Toleranz für Rundung und die minimale Abwertung. */
+	private static final double TOLERANZ = 1e-3;
+
+	private final SimpleMeterRegistry _meterRegistry = new SimpleMeterRegistry();
+
+	private final TrendingArtikel _trending = new TrendingArtikel( HALBWERTSZEIT_MINUTEN, _meterRegistry );
+
+
+	@Test
+	void wenigerArtikelAlsZaehlerExakt() {
+
+		final List<Long> aufrufe = new ArrayList<>();
+		for ( long id = 1; id <= ANZAHL_ZAEHLER; id++ ) {
+
+			for ( int i = 0; i < id; i++ ) { aufrufe.add( id ); }
+		}
+		Collections.shuffle( aufrufe, new Random( 1 ) );
+
+		final List<TrendEintrag> topK = auswerten( aufrufe );
+
+		assertThat( topK ).hasSize( TOP_K );
+		for ( int i = 0; i < TOP_K; i++ ) {
+
+			assertThat( topK.get( i ).artikelId() ).isEqualTo( ANZAHL_ZAEHLER - i );
+			assertThat( topK.get( i ).punkte() ).isCloseTo( ANZAHL_ZAEHLER - i, within( TOLERANZ ) );
+		}
+	}
+
+
+	/**
+	 * Fünf häufige Artikel in einem Strom mit vielen seltenen Artikeln: Die Punkte liegen
+	 * zwischen echter Anzahl und echter Anzahl plus {@code N/m}; die Abstände der echten
+	 * Anzahlen sind größer als diese Schranke, also stimmt auch die Reihenfolge.
+	 */
+	@Test
+	void ueberschaetzungHoechstensNdurchM() {
+
+		final long[] haeufig = { 2000, 1500, 1000, 800, 600 };
+
+		final List<Long> aufrufe = new ArrayList<>();
+		for ( int i = 0; i < haeufig.length; i++ ) {
+
+			for ( int j = 0; j < haeufig[ i ]; j++ ) { aufrufe.add( i + 1L ); }
+		}
+		final Random zufall = new Random( 2 );
+		for ( int i = 0; i < 5000; i++ ) {
+
+			aufrufe.add( 100L + zufall.nextInt( 3000 ) );
+		}
+		Collections.shuffle( aufrufe, zufall );
+
+		final double schranke = (double) aufrufe.size() / ANZAHL_ZAEHLER;
+
+		final List<TrendEintrag> topK = auswerten( aufrufe );
+
+		assertThat( topK ).extracting( TrendEintrag::artikelId ).containsExactly( 1L, 2L, 3L, 4L, 5L );
+		for ( int i = 0; i < haeufig.length; i++ ) {
+
+			assertThat( topK.get( i ).punkte() ).isBetween( haeufig[ i ] - TOLERANZ, haeufig[ i ] + schranke + TOLERANZ );
+		}
+	}
+
+
+	/**
+	 * Ein Artikel mit mehr als {@code N/m} Aufrufen, die zwischen lauter verschiedenen
+	 * Artikeln mit je einem Aufruf verteilt sind, darf nicht verdrängt werden.
+	 */
+	@Test
+	void haeufigerArtikelWirdNichtVerdraengt() {
+
+		final List<Long> aufrufe = new ArrayList<>();
+		for ( long id = 1000; id < 11_000; id++ ) {
+
+			aufrufe.add( id );
+		}
+		final int anzahl = aufrufe.size() / ANZAHL_ZAEHLER + 20;
+		for ( int i = 0; i < anzahl; i++ ) {
+
+			aufrufe.add( 7L );
+		}
+		Collections.shuffle( aufrufe, new Random( 3 ) );
+
+		final double schranke = (double) aufrufe.size() / ANZAHL_ZAEHLER;
+
+		final List<TrendEintrag> topK = auswerten( aufrufe );
+
+		assertThat( topK.get( 0 ).artikelId() ).isEqualTo( 7L );
+		assertThat( topK.get( 0 ).punkte() ).isBetween( anzahl - TOLERANZ, anzahl + schranke + TOLERANZ );
+	}
+
+
+	@Test
+	void ohneAufrufeLeer() {
+
+		_trending.topKAktualisieren();
+
+		assertThat( _trending.holeTopK() ).isEmpty();
+	}
+
+
+	/**
+	 * Gleichzeitige Aufrufe aus vielen Threads warten nicht aufeinander; jeder Aufruf wird
+	 * entweder verbucht oder als verworfen gezählt, keiner geht unbemerkt verloren.
+	 */
+	@Test
+	void gleichzeitigeAufrufeVerbuchtOderVerworfen() throws Exception {
+
+		final int threads       = 8;
+		final int proThread     = 2000;
+		final int artikelAnzahl = TOP_K;
+
+		final ExecutorService executor = Executors.newFixedThreadPool( threads );
+		try {
+
+			final CountDownLatch start = new CountDownLatch( 1 );
+			final List<CompletableFuture<Void>> ergebnisse = new ArrayList<>();
+			for ( int t = 0; t < threads; t++ ) {
+
+				ergebnisse.add( CompletableFuture.runAsync( () -> {
+
+					try {
+
+						start.await();
+					}
+					catch ( InterruptedException ex ) {
+
+						Thread.currentThread().interrupt();
+					}
+					for ( int i = 0; i < proThread; i++ ) {
+
+						final long id = 1 + i % artikelAnzahl;
+						_trending.onArtikelAufgerufen( new ArtikelAufgerufenEvent( id, "Artikel " + id ) );
+					}
+				}, executor ) );
+			}
+			start.countDown();
+			CompletableFuture.allOf( ergebnisse.toArray( CompletableFuture[]::new ) ).get( 10, TimeUnit.SECONDS );
+		}
+		finally {
+
+			executor.shutdownNow();
+		}
+		_trending.topKAktualisieren();
+
+		final double verbucht  = _trending.holeTopK().stream().mapToDouble( TrendEintrag::punkte ).sum();
+		final double verworfen = _meterRegistry.get( "blog.trending.verworfen" ).counter().count();
+
+		assertThat( _trending.holeTopK() ).hasSize( artikelAnzahl );
+		assertThat( verbucht + verworfen ).isCloseTo( threads * proThread, within( TOLERANZ ) );
+	}
+
+
+	private List<TrendEintrag> auswerten( List<Long> aufrufe ) {
+
+		for ( long id : aufrufe ) {
+
+			_trending.onArtikelAufgerufen( new ArtikelAufgerufenEvent( id, "Artikel " + id ) );
+		}
+		_trending.topKAktualisieren();
+
+		return _trending.holeTopK();
+	}
+
+}
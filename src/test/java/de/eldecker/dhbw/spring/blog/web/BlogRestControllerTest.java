@@ -0,0 +1,91 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+
+
+/**
+ * Prüft das optimistische Sperren von {@code /api/v1/aendern}: ohne {@code If-Match} gibt es
+ * 428, mit veralteter Version 412 mit der aktuellen Version im {@code ETag}. Beide Anfragen
+ * werden vor dem Speichern abgelehnt, die Datenbank wird also nicht verändert.
+ */
+@SpringBootTest
+class BlogRestControllerTest {
+
+	@Autowired
+	private WebApplicationContext _kontext;
+
+	@Autowired
+	private ArtikelRepo _artikelRepo;
+
+	private MockMvc _mockMvc;
+
+	/** Vorhandener Artikel (mindestens der Demo-Content). */
+	private ArtikelEntity _artikel;
+
+
+	@BeforeEach
+	void vorbereiten() {
+
+		_mockMvc = MockMvcBuilders.webAppContextSetup( _kontext ).build();
+		_artikel = _artikelRepo.findAll().getFirst();
+	}
+
+
+	@Test
+	void ohneIfMatch428() throws Exception {
+
+		_mockMvc.perform( aendern() )
+		        .andExpect( status().isPreconditionRequired() );
+	}
+
+
+	@Test
+	void veralteteVersion412MitAktuellerVersion() throws Exception {
+
+		final long version = _artikel.getVersion();
+
+		_mockMvc.perform( aendern().header( HttpHeaders.IF_MATCH, "\"" + ( version + 1 ) + "\"" ) )
+		        .andExpect( status().isPreconditionFailed() )
+		        .andExpect( header().string( HttpHeaders.ETAG, "\"" + version + "\"" ) );
+	}
+
+
+	/**
+	 * Anfrage zum Ändern des Artikels, angemeldet als sein Autor.
+	 */
+	private MockHttpServletRequestBuilder aendern() {
+
+		final Authentication autor =
+				new UsernamePasswordAuthenticationToken( _artikel.getAutor().getName(), null, List.of() );
+
+		final String json = """
+				{ "artikelID": %d, "titel": "Geändert", "inhaltDelta": "{}",
+				  "inhaltHTML": "<p>Geändert</p>", "inhaltPlain": "Geändert", "tags": null }
+				""".formatted( _artikel.getId() );
+
+		return post( "/api/v1/aendern" ).principal( autor )
+		                                .contentType( MediaType.APPLICATION_JSON )
+		                                .content( json );
+	}
+
+}
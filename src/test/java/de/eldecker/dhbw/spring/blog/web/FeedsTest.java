@@ -0,0 +1,224 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelListenLeser;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import de.eldecker.dhbw.spring.blog.model.ArtikelKurzDTO;
+import de.eldecker.dhbw.spring.blog.model.ArtikelListenEintrag;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft Inhalt und Begrenzung von Atom-Feed, RSS-Feed und Sitemap der {@link Feeds}; die
+ * Dokumente werden mit einem XML-Parser gelesen. Die Artikel kommen aus einem Mock des
+ * {@link ArtikelListenLeser}, Artikel {@code n} ist am {@code n}. Januar angelegt.
+ */
+class FeedsTest {
+
+	private static final String NS_ATOM    = "http://www.w3.org/2005/Atom";
+	private static final String NS_SITEMAP = "http://www.sitemaps.org/schemas/sitemap/0.9";
+	private static final String BASIS_URL  = "https://blog.example.org";
+
+	private final SimpleMeterRegistry _meterRegistry = new SimpleMeterRegistry();
+
+	private final ArtikelListenLeser _listenLeser = mock( ArtikelListenLeser.class );
+
+	/** Maximal 3 Artikel in den Feeds, 5 in der Sitemap. */
+	private final Feeds _feeds = new Feeds( _listenLeser, "Testblog", BASIS_URL + "/", 3, 5, _meterRegistry );
+
+
+	/**
+	 * Beim Laden werden nur die neuesten Artikel übernommen, in den Feeds höchstens 3, in der
+	 * Sitemap höchstens 5 (plus die Artikelliste).
+	 */
+	@Test
+	void neuesteZuerstUndBegrenzt() throws Exception {
+
+		laden( 1, 2, 3, 4, 5, 6, 7 );
+
+		assertThat( atomIds() ).containsExactly( 7L, 6L, 5L );
+		assertThat( rssIds()  ).containsExactly( 7L, 6L, 5L );
+
+		final NodeList loc = xml( _feeds.sitemap().inhalt() ).getElementsByTagNameNS( NS_SITEMAP, "loc" );
+		assertThat( loc.getLength() ).isEqualTo( 1 + 5 );
+		assertThat( loc.item( 0 ).getTextContent() ).isEqualTo( BASIS_URL + "/app/artikel/liste" );
+		assertThat( loc.item( 1 ).getTextContent() ).isEqualTo( BASIS_URL + "/app/artikel/7" );
+		assertThat( loc.item( 5 ).getTextContent() ).isEqualTo( BASIS_URL + "/app/artikel/3" );
+	}
+
+
+	/**
+	 * Sonderzeichen werden maskiert, ohne Autor steht im Atom-Feed der Titel des Blogs und im
+	 * RSS-Feed kein {@code dc:creator}.
+	 */
+	@Test
+	void eintragMitSonderzeichenUndOhneAutor() throws Exception {
+
+		final ArtikelKurzDTO artikel = new ArtikelKurzDTO( 1, "Tipps & Tricks <Teil 1>", null,
+		                                                   januar( 1 ), januar( 2 ), "Über \"Tags\"", 3, 1 );
+		when( _listenLeser.alle() ).thenAnswer( aufruf -> List.of( new ArtikelListenEintrag( artikel, 0 ) ).stream() );
+		_feeds.laden();
+
+		final Element entry = (Element) xml( _feeds.atom().inhalt() ).getElementsByTagNameNS( NS_ATOM, "entry" ).item( 0 );
+		assertThat( text( entry, "title"   ) ).isEqualTo( "Tipps & Tricks <Teil 1>" );
+		assertThat( text( entry, "summary" ) ).isEqualTo( "Über \"Tags\"" );
+		assertThat( text( entry, "name"    ) ).isEqualTo( "Testblog" );
+		assertThat( text( entry, "id"      ) ).isEqualTo( BASIS_URL + "/app/artikel/1" );
+
+		final Document rss = xml( _feeds.rss().inhalt() );
+		assertThat( rss.getElementsByTagName( "title" ).item( 1 ).getTextContent() ).isEqualTo( "Tipps & Tricks <Teil 1>" );
+		assertThat( rss.getElementsByTagNameNS( "http://purl.org/dc/elements/1.1/", "creator" ).getLength() ).isZero();
+	}
+
+
+	/**
+	 * Ein gespeicherter Artikel wird eingefügt bzw. ersetzt; ist die Liste voll, fällt der
+	 * älteste Artikel weg, das kann auch der gespeicherte sein.
+	 */
+	@Test
+	void gespeicherterArtikelEingefuegtOderErsetzt() throws Exception {
+
+		laden( 1, 2, 3 );
+
+		speichern( artikel( 8 ) );
+		assertThat( atomIds() ).containsExactly( 8L, 3L, 2L );
+
+		speichern( new ArtikelKurzDTO( 3, "Neuer Titel", "alice", januar( 3 ), januar( 20 ), null, null, null ) );
+		assertThat( atomIds() ).containsExactly( 8L, 3L, 2L );
+		assertThat( xml( _feeds.atom().inhalt() ).getElementsByTagNameNS( NS_ATOM, "title" ).item( 2 ).getTextContent() )
+				.isEqualTo( "Neuer Titel" );
+
+		speichern( artikel( 1 ) ); // älter als alle in den Feeds
+		assertThat( atomIds() ).containsExactly( 8L, 3L, 2L );
+		assertThat( xml( _feeds.sitemap().inhalt() ).getElementsByTagNameNS( NS_SITEMAP, "url" ).getLength() ).isEqualTo( 1 + 4 );
+	}
+
+
+	/**
+	 * Die Dokumente werden erst bei der nächsten Abfrage nach einer Änderung neu serialisiert,
+	 * auch nach mehreren Änderungen nur einmal; der ETag ändert sich mit dem Inhalt.
+	 */
+	@Test
+	void serialisiertNurNachAenderung() throws Exception {
+
+		laden( 1, 2 );
+
+		final Feeds.Dokument atom = _feeds.atom();
+		assertThat( _feeds.atom() ).isSameAs( atom );
+		assertThat( _feeds.sitemap().etag() ).isNotEqualTo( atom.etag() );
+		assertThat( aufbau() ).isEqualTo( 1 );
+
+		speichern( artikel( 3 ) );
+		speichern( artikel( 4 ) );
+		assertThat( aufbau() ).isEqualTo( 1 );
+
+		final Feeds.Dokument neu = _feeds.atom();
+		_feeds.rss();
+		assertThat( aufbau() ).isEqualTo( 2 );
+		assertThat( neu.etag() ).isNotEqualTo( atom.etag() );
+		assertThat( neu.zuletztGeaendert() ).isGreaterThan( atom.zuletztGeaendert() );
+
+		try ( InputStream entpackt = new GZIPInputStream( new ByteArrayInputStream( neu.inhaltGzip() ) ) ) {
+
+			assertThat( entpackt.readAllBytes() ).isEqualTo( neu.inhalt() );
+		}
+	}
+
+
+	private void laden( long... ids ) {
+
+		final List<ArtikelListenEintrag> eintraege = new ArrayList<>();
+		for ( int i = ids.length - 1; i >= 0; i-- ) { // Leser liefert neueste zuerst
+
+			eintraege.add( new ArtikelListenEintrag( artikel( ids[ i ] ), 0 ) );
+		}
+		when( _listenLeser.alle() ).thenAnswer( aufruf -> eintraege.stream() );
+		_feeds.laden();
+	}
+
+
+	private void speichern( ArtikelKurzDTO artikel ) {
+
+		when( _listenLeser.holen( artikel.id() ) ).thenReturn( Optional.of( new ArtikelListenEintrag( artikel, 0 ) ) );
+		_feeds.onArtikelGespeichert( new ArtikelGespeichertEvent( artikel.id() ) );
+	}
+
+
+	private static ArtikelKurzDTO artikel( long id ) {
+
+		return new ArtikelKurzDTO( id, "Artikel " + id, "alice", januar( id ), januar( id ), "Auszug " + id, 2, 1 );
+	}
+
+
+	private static LocalDateTime januar( long tag ) {
+
+		return LocalDateTime.of( 2026, 1, (int) tag, 12, 0 );
+	}
+
+
+	private List<Long> atomIds() throws Exception {
+
+		return ids( xml( _feeds.atom().inhalt() ).getElementsByTagNameNS( NS_ATOM, "id" ), 1 );
+	}
+
+
+	private List<Long> rssIds() throws Exception {
+
+		return ids( xml( _feeds.rss().inhalt() ).getElementsByTagName( "guid" ), 0 );
+	}
+
+
+	/**
+	 * Artikel-IDs aus den URLs in den Elementen ab {@code ab}.
+	 */
+	private static List<Long> ids( NodeList urls, int ab ) {
+
+		final List<Long> ergebnis = new ArrayList<>();
+		for ( int i = ab; i < urls.getLength(); i++ ) {
+
+			final String url = urls.item( i ).getTextContent();
+			ergebnis.add( Long.parseLong( url.substring( url.lastIndexOf( '/' ) + 1 ) ) );
+		}
+		return ergebnis;
+	}
+
+
+	private static String text( Element element, String name ) {
+
+		return element.getElementsByTagNameNS( NS_ATOM, name ).item( 0 ).getTextContent();
+	}
+
+
+	private static Document xml( byte[] inhalt ) throws Exception {
+
+		final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware( true );
+
+		return factory.newDocumentBuilder().parse( new ByteArrayInputStream( inhalt ) );
+	}
+
+
+	private double aufbau() {
+
+		return _meterRegistry.get( "blog.feeds.aufbau" ).counter().count();
+	}
+
+}
@@ -0,0 +1,151 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelRepo;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft, dass der {@link LiveFeedVerteiler} Abonnenten mit vollem Puffer entfernt, ohne die
+ * anderen Abonnenten zu stören. Gesendet wird über einen Executor, der Aufgaben entweder sofort
+ * ausführt oder zurückhält; solange er zurückhält, liest kein Abonnent.
+ */
+class LiveFeedVerteilerTest {
+
+	private static final int PUFFER = 2;
+
+	private final SimpleMeterRegistry _meterRegistry = new SimpleMeterRegistry();
+
+	private final ArtikelRepo _artikelRepo = mock( ArtikelRepo.class );
+
+	private final AnhaltbarerExecutor _sender = new AnhaltbarerExecutor();
+
+	private final LiveFeedVerteiler _verteiler =
+			new LiveFeedVerteiler( _artikelRepo, null, PUFFER, 3, 60_000L, _meterRegistry, _sender );
+
+
+	/**
+	 * Führt Aufgaben sofort im aufrufenden Thread aus, oder hält sie zurück, solange
+	 * {@link #_angehalten} gesetzt ist.
+	 */
+	private static final class AnhaltbarerExecutor extends AbstractExecutorService {
+
+		private volatile boolean _angehalten = false;
+
+		private final List<Runnable> _zurueckgehalten = new ArrayList<>();
+
+		@Override
+		public void execute( Runnable aufgabe ) {
+
+			if ( _angehalten ) {
+
+				_zurueckgehalten.add( aufgabe );
+
+			} else {
+
+				aufgabe.run();
+			}
+		}
+
+		@Override public void           shutdown()                                       {                   }
+		@Override public List<Runnable> shutdownNow()                                    { return List.of(); }
+		@Override public boolean        isShutdown()                                     { return false;     }
+		@Override public boolean        isTerminated()                                   { return false;     }
+		@Override public boolean        awaitTermination( long dauer, TimeUnit einheit ) { return true;      }
+	}
+
+
+	/**
+	 * Ein Abonnent, der nicht liest, wird beim ersten Überlauf seines Puffers entfernt und seine
+	 * Verbindung geschlossen; ein Abonnent, der mithält, bleibt.
+	 */
+	@Test
+	void langsamerAbonnentWirdVerdraengt() {
+
+		_sender._angehalten = true;
+		final SseEmitter langsam = _verteiler.abonnieren().orElseThrow();
+		for ( int i = 0; i < PUFFER; i++ ) {
+
+			_verteiler.herzschlag(); // Puffer von "langsam" jetzt voll
+		}
+
+		_sender._angehalten = false;
+		final SseEmitter schnell = _verteiler.abonnieren().orElseThrow();
+		for ( int i = 0; i < 10 * PUFFER; i++ ) {
+
+			_verteiler.herzschlag();
+		}
+
+		assertThat( verdraengt() ).isEqualTo( 1 );
+		assertThat( abonnenten() ).isEqualTo( 1 );
+		assertThatThrownBy( () -> langsam.send( "x" ) ).isInstanceOf( IllegalStateException.class ); // geschlossen
+
+		_verteiler.herunterfahren();
+		assertThatThrownBy( () -> schnell.send( "x" ) ).isInstanceOf( IllegalStateException.class );
+	}
+
+
+	/**
+	 * Ein Abonnent, dessen Verbindung schon geschlossen ist, wird beim nächsten Senden entfernt,
+	 * ohne als verdrängt gezählt zu werden.
+	 */
+	@Test
+	void geschlossenerAbonnentWirdEntfernt() {
+
+		_verteiler.abonnieren().orElseThrow().complete();
+		_verteiler.abonnieren().orElseThrow();
+		assertThat( abonnenten() ).isEqualTo( 2 );
+
+		_verteiler.herzschlag();
+
+		assertThat( abonnenten() ).isEqualTo( 1 );
+		assertThat( verdraengt() ).isZero();
+	}
+
+
+	@Test
+	void hoechstensMaxAbonnenten() {
+
+		for ( int i = 0; i < 3; i++ ) {
+
+			assertThat( _verteiler.abonnieren() ).isPresent();
+		}
+		assertThat( _verteiler.abonnieren() ).isEmpty();
+		assertThat( abonnenten() ).isEqualTo( 3 );
+	}
+
+
+	@Test
+	void ohneAbonnentenWirdArtikelNichtGeladen() {
+
+		_verteiler.onArtikelGespeichert( new ArtikelGespeichertEvent( 1 ) );
+
+		verifyNoInteractions( _artikelRepo );
+	}
+
+
+	private double abonnenten() {
+
+		return _meterRegistry.get( "blog.live.abonnenten" ).gauge().value();
+	}
+
+
+	private double verdraengt() {
+
+		return _meterRegistry.get( "blog.live.verdraengt" ).counter().count();
+	}
+
+}
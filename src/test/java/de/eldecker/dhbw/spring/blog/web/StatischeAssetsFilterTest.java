@@ -0,0 +1,205 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+
+/**
+ * Prüft die Pfade mit Hash-Wert der {@link StatischeAssets} (mit den echten Dateien unter
+ * {@code static/}) und die Header, mit denen der {@link StatischeAssetsFilter} sie ausliefert.
+ */
+class StatischeAssetsFilterTest {
+
+	private final StatischeAssets _assets;
+
+	private final StatischeAssetsFilter _filter;
+
+	/** Pfad der CSS-Datei mit Hash-Wert. */
+	private final String _cssPfad;
+
+
+	StatischeAssetsFilterTest() throws IOException {
+
+		_assets  = new StatischeAssets();
+		_filter  = new StatischeAssetsFilter( _assets );
+		_cssPfad = _assets.pfad( "/styles.css" );
+	}
+
+
+	@Test
+	void pfadMitHashDesInhalts() throws IOException {
+
+		final byte[] css = datei( "styles.css" );
+
+		assertThat( _cssPfad ).isEqualTo( "/assets/styles." + StatischeAssets.hash( css ) + ".css" );
+		assertThat( _assets.pfad( "/editor.js" ) ).matches( "/assets/editor\\.[0-9a-f]{10}\\.js" );
+		assertThat( _assets.pfad( "/unbekannt.css" ) ).isEqualTo( "/unbekannt.css" );
+
+		assertThat( _assets.holen( _cssPfad ) ).hasValueSatisfying( asset -> {
+
+			assertThat( asset.inhalt() ).isEqualTo( css );
+			assertThat( asset.unveraenderlich() ).isTrue();
+		});
+	}
+
+
+	/**
+	 * Verweise in HTML-Seiten werden ersetzt, auch relative aus Unterverzeichnissen; Verweise
+	 * auf fremde Server bleiben.
+	 */
+	@Test
+	void verweiseInHtmlErsetzt() {
+
+		final String editor = html( "/editor.html" );
+		assertThat( editor ).contains( "href=\"" + _cssPfad + "\"" )
+		                    .contains( "src=\"" + _assets.pfad( "/editor.js" ) + "\"" )
+		                    .contains( "https://cdn.jsdelivr.net/npm/quill@2.0.3/dist/quill.js" )
+		                    .doesNotContain( "\"styles.css\"" );
+
+		assertThat( html( "/public/artikel-suche.html" ) ).contains( "href=\"" + _cssPfad + "\"" );
+		assertThat( _assets.holen( "/" ) ).isEqualTo( _assets.holen( "/index.html" ) );
+	}
+
+
+	@Test
+	void dateiMitHashUnveraenderlichGecacht() throws Exception {
+
+		final MockHttpServletResponse response = ausfuehren( get( _cssPfad ) );
+
+		assertThat( response.getStatus() ).isEqualTo( 200 );
+		assertThat( response.getHeader( HttpHeaders.CACHE_CONTROL ) ).isEqualTo( "public, max-age=31536000, immutable" );
+		assertThat( response.getHeader( HttpHeaders.ETAG ) ).isEqualTo( "\"" + StatischeAssets.hash( datei( "styles.css" ) ) + "\"" );
+		assertThat( response.getHeader( HttpHeaders.VARY ) ).isEqualTo( HttpHeaders.ACCEPT_ENCODING );
+		assertThat( response.getContentType() ).isEqualTo( "text/css;charset=UTF-8" );
+		assertThat( response.getHeader( HttpHeaders.CONTENT_ENCODING ) ).isNull();
+		assertThat( response.getContentAsByteArray() ).isEqualTo( datei( "styles.css" ) );
+	}
+
+
+	@Test
+	void htmlSeiteMitNachfragen() throws Exception {
+
+		final MockHttpServletResponse response = ausfuehren( get( "/" ) );
+
+		assertThat( response.getStatus() ).isEqualTo( 200 );
+		assertThat( response.getHeader( HttpHeaders.CACHE_CONTROL ) ).isEqualTo( "no-cache" );
+		assertThat( response.getContentType() ).isEqualTo( "text/html;charset=UTF-8" );
+	}
+
+
+	@Test
+	void gzipNurWennAkzeptiert() throws Exception {
+
+		final MockHttpServletRequest request = get( _assets.pfad( "/editor.js" ) );
+		request.addHeader( HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br" );
+
+		final MockHttpServletResponse response = ausfuehren( request );
+
+		assertThat( response.getHeader( HttpHeaders.CONTENT_ENCODING ) ).isEqualTo( "gzip" );
+		assertThat( response.getContentLength() ).isEqualTo( response.getContentAsByteArray().length )
+		                                         .isLessThan( datei( "editor.js" ).length );
+		try ( InputStream entpackt = new GZIPInputStream( new ByteArrayInputStream( response.getContentAsByteArray() ) ) ) {
+
+			assertThat( entpackt.readAllBytes() ).isEqualTo( datei( "editor.js" ) );
+		}
+	}
+
+
+	@Test
+	void passenderEtag304OhneInhalt() throws Exception {
+
+		final String etag = _assets.holen( _cssPfad ).orElseThrow().etag();
+
+		final MockHttpServletRequest request = get( _cssPfad );
+		request.addHeader( HttpHeaders.IF_NONE_MATCH, "\"veraltet\", " + etag );
+
+		final MockHttpServletResponse response = ausfuehren( request );
+
+		assertThat( response.getStatus() ).isEqualTo( 304 );
+		assertThat( response.getHeader( HttpHeaders.ETAG ) ).isEqualTo( etag );
+		assertThat( response.getContentAsByteArray() ).isEmpty();
+	}
+
+
+	@Test
+	void headOhneInhalt() throws Exception {
+
+		final MockHttpServletRequest request = get( _cssPfad );
+		request.setMethod( "HEAD" );
+
+		final MockHttpServletResponse response = ausfuehren( request );
+
+		assertThat( response.getStatus() ).isEqualTo( 200 );
+		assertThat( response.getContentLength() ).isEqualTo( datei( "styles.css" ).length );
+		assertThat( response.getContentAsByteArray() ).isEmpty();
+	}
+
+
+	/**
+	 * Alte Hash-Werte bekommen 404 ohne Filter-Kette; andere Pfade und andere Methoden als
+	 * GET/HEAD gehen an die Filter-Kette.
+	 */
+	@Test
+	void unbekannteUndAnderePfade() throws Exception {
+
+		final MockFilterChain kette404 = new MockFilterChain();
+		final MockHttpServletResponse response404 = new MockHttpServletResponse();
+		_filter.doFilter( get( "/assets/styles.0000000000.css" ), response404, kette404 );
+
+		assertThat( response404.getStatus() ).isEqualTo( 404 );
+		assertThat( kette404.getRequest() ).isNull();
+
+		final MockFilterChain ketteApp = new MockFilterChain();
+		_filter.doFilter( get( "/app/artikel/liste" ), new MockHttpServletResponse(), ketteApp );
+		assertThat( ketteApp.getRequest() ).isNotNull();
+
+		final MockHttpServletRequest post = get( _cssPfad );
+		post.setMethod( "POST" );
+		final MockFilterChain kettePost = new MockFilterChain();
+		_filter.doFilter( post, new MockHttpServletResponse(), kettePost );
+		assertThat( kettePost.getRequest() ).isNotNull();
+	}
+
+
+	private MockHttpServletResponse ausfuehren( MockHttpServletRequest request ) throws Exception {
+
+		final MockFilterChain         kette    = new MockFilterChain();
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		_filter.doFilter( request, response, kette );
+
+		assertThat( kette.getRequest() ).as( "Filter-Kette aufgerufen" ).isNull();
+		return response;
+	}
+
+
+	private static MockHttpServletRequest get( String pfad ) {
+
+		return new MockHttpServletRequest( "GET", pfad );
+	}
+
+
+	private String html( String pfad ) {
+
+		return new String( _assets.holen( pfad ).orElseThrow().inhalt(), UTF_8 );
+	}
+
+
+	private static byte[] datei( String name ) throws IOException {
+
+		return new ClassPathResource( "static/" + name ).getContentAsByteArray();
+	}
+
+}
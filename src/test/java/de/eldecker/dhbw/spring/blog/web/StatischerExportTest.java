@@ -0,0 +1,194 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.IContext;
+
+import de.eldecker.dhbw.spring.blog.db.ArtikelEntity;
+import de.eldecker.dhbw.spring.blog.db.ArtikelListenLeser;
+import de.eldecker.dhbw.spring.blog.logik.AehnlicheArtikelIndex;
+import de.eldecker.dhbw.spring.blog.model.ArtikelGespeichertEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+/**
+ * Prüft, dass der {@link StatischerExport} jede Datei über eine temporäre Datei schreibt, die
+ * komprimierte Variante vor der Datei selbst, und unveränderte Dateien nicht neu schreibt.
+ * Die Seiten werden mit einer Template-Engine gerendert, die nur den Titel ausgibt.
+ */
+class StatischerExportTest {
+
+	@TempDir
+	private Path _verzeichnis;
+
+	private final SimpleMeterRegistry _meterRegistry = new SimpleMeterRegistry();
+
+	private final ArtikelSeiten _artikelSeiten = mock( ArtikelSeiten.class );
+
+	private final ArtikelListenLeser _listenLeser = mock( ArtikelListenLeser.class );
+
+	private final ITemplateEngine _templateEngine = mock( ITemplateEngine.class );
+
+	/** Titel der vorhandenen Artikel, Schlüssel ist Artikel-ID. */
+	private final Map<Long, String> _artikel = new HashMap<>();
+
+
+	private StatischerExport export() throws IOException {
+
+		when( _artikelSeiten.ladeArtikel( anyLong() ) ).thenAnswer( aufruf -> {
+
+			final String titel = _artikel.get( aufruf.<Long>getArgument( 0 ) );
+			return Optional.ofNullable( titel ).map( t -> new ArtikelEntity( t, "{}", "", t ) );
+		});
+		when( _artikelSeiten.modell( any() ) ).thenAnswer( aufruf ->
+				Map.of( "titel", aufruf.<ArtikelEntity>getArgument( 0 ).getTitel(), "aehnliche_artikel", List.of() ) );
+		when( _artikelSeiten.listenModell( any() ) ).thenReturn( Map.of( "titel", "Liste" ) );
+		when( _templateEngine.process( any( String.class ), any( IContext.class ) ) ).thenAnswer( aufruf ->
+				"<h1>" + aufruf.<IContext>getArgument( 1 ).getVariable( "titel" ) + "</h1>" );
+		when( _listenLeser.alle() ).thenReturn( Stream.empty() );
+
+		return new StatischerExport( _artikelSeiten, _listenLeser, mock( AehnlicheArtikelIndex.class ), _templateEngine,
+		                             new StatischeAssets(), _verzeichnis.toString(), _meterRegistry );
+	}
+
+
+	@Test
+	void allesMitKomprimierterVariante() throws IOException {
+
+		final StatischeAssets assets = new StatischeAssets();
+
+		export().allesExportieren();
+
+		final String css = assets.pfad( "/styles.css" ).substring( 1 );
+		assertThat( Files.readAllBytes( _verzeichnis.resolve( css ) ) ).isEqualTo( assets.holen( "/" + css ).orElseThrow().inhalt() );
+		assertThat( entpackt( _verzeichnis.resolve( css + ".gz" ) ) ).isEqualTo( Files.readAllBytes( _verzeichnis.resolve( css ) ) );
+		assertThat( _verzeichnis.resolve( "index.html"                ) ).exists();
+		assertThat( _verzeichnis.resolve( "public/artikel-suche.html" ) ).exists();
+		assertThat( _verzeichnis.resolve( "editor.html"               ) ).doesNotExist(); // nicht öffentlich
+		assertThat( inhalt( "app/artikel/liste.html" ) ).isEqualTo( "<h1>Liste</h1>" );
+		assertThat( temporaereDateien() ).isEmpty();
+	}
+
+
+	@Test
+	void geaenderteSeiteNeuGeschriebenUnveraenderteNicht() throws IOException {
+
+		final StatischerExport export = export();
+
+		_artikel.put( 7L, "Erste Fassung" );
+		export.onArtikelGespeichert( new ArtikelGespeichertEvent( 7 ) );
+		export.geaenderteExportieren();
+
+		assertThat( inhalt( "app/artikel/7.html" ) ).isEqualTo( "<h1>Erste Fassung</h1>" );
+		assertThat( new String( entpackt( _verzeichnis.resolve( "app/artikel/7.html.gz" ) ), UTF_8 ) )
+				.isEqualTo( "<h1>Erste Fassung</h1>" );
+		assertThat( dateien( "geschrieben" ) ).isEqualTo( 2 ); // Artikel und Liste
+
+		export.onArtikelGespeichert( new ArtikelGespeichertEvent( 7 ) ); // z.B. nur Tags geändert
+		export.geaenderteExportieren();
+
+		assertThat( dateien( "geschrieben"  ) ).isEqualTo( 2 );
+		assertThat( dateien( "unveraendert" ) ).isEqualTo( 2 );
+
+		_artikel.put( 7L, "Zweite Fassung" );
+		export.onArtikelGespeichert( new ArtikelGespeichertEvent( 7 ) );
+		export.geaenderteExportieren();
+
+		assertThat( inhalt( "app/artikel/7.html" ) ).isEqualTo( "<h1>Zweite Fassung</h1>" );
+		assertThat( new String( entpackt( _verzeichnis.resolve( "app/artikel/7.html.gz" ) ), UTF_8 ) )
+				.isEqualTo( "<h1>Zweite Fassung</h1>" );
+		assertThat( temporaereDateien() ).isEmpty();
+
+		_artikel.remove( 7L );
+		export.onArtikelGespeichert( new ArtikelGespeichertEvent( 7 ) );
+		export.geaenderteExportieren();
+
+		assertThat( _verzeichnis.resolve( "app/artikel/7.html"    ) ).doesNotExist();
+		assertThat( _verzeichnis.resolve( "app/artikel/7.html.gz" ) ).doesNotExist();
+	}
+
+
+	/**
+	 * Kann die komprimierte Variante nicht umbenannt werden (hier: Verzeichnis mit ihrem Namen),
+	 * dann bleibt die alte Seite stehen, die temporäre Datei wird gelöscht und der Artikel beim
+	 * nächsten Mal erneut exportiert. Die neue Seite wird also nie ohne ihre .gz geschrieben.
+	 */
+	@Test
+	void komprimierteVarianteZuerst() throws IOException {
+
+		final StatischerExport export = export();
+
+		_artikel.put( 7L, "Erste Fassung" );
+		export.onArtikelGespeichert( new ArtikelGespeichertEvent( 7 ) );
+		export.geaenderteExportieren();
+
+		final Path gz = _verzeichnis.resolve( "app/artikel/7.html.gz" );
+		Files.delete( gz );
+		Files.createDirectories( gz.resolve( "blockiert" ) );
+
+		_artikel.put( 7L, "Zweite Fassung" );
+		export.onArtikelGespeichert( new ArtikelGespeichertEvent( 7 ) );
+		export.geaenderteExportieren();
+
+		assertThat( inhalt( "app/artikel/7.html" ) ).isEqualTo( "<h1>Erste Fassung</h1>" );
+		assertThat( temporaereDateien() ).isEmpty();
+
+		Files.delete( gz.resolve( "blockiert" ) );
+		Files.delete( gz );
+		export.geaenderteExportieren(); // Wiederholung ohne neues Event
+
+		assertThat( inhalt( "app/artikel/7.html" ) ).isEqualTo( "<h1>Zweite Fassung</h1>" );
+		assertThat( new String( entpackt( gz ), UTF_8 ) ).isEqualTo( "<h1>Zweite Fassung</h1>" );
+	}
+
+
+	private String inhalt( String pfad ) throws IOException {
+
+		return Files.readString( _verzeichnis.resolve( pfad ) );
+	}
+
+
+	private static byte[] entpackt( Path datei ) throws IOException {
+
+		try ( InputStream is = new GZIPInputStream( new ByteArrayInputStream( Files.readAllBytes( datei ) ) ) ) {
+
+			return is.readAllBytes();
+		}
+	}
+
+
+	private List<Path> temporaereDateien() throws IOException {
+
+		try ( Stream<Path> dateien = Files.walk( _verzeichnis ) ) {
+
+			return dateien.filter( datei -> datei.getFileName().toString().endsWith( ".tmp" ) ).toList();
+		}
+	}
+
+
+	private double dateien( String ergebnis ) {
+
+		return _meterRegistry.get( "blog.export.dateien" ).tag( "ergebnis", ergebnis ).counter().count();
+	}
+
+}
@@ -0,0 +1,55 @@
+package de.eldecker.dhbw.spring.blog.web;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+
+/**
+ * Prüft die Validierung des Zeitraums beim Filtern nach Tags: Liegt {@code bis} vor
+ * {@code von}, dann gibt es 400 mit Fehlerseite statt 500.
+ */
+@SpringBootTest
+class ThymeleafControllerTest {
+
+	@Autowired
+	private WebApplicationContext _kontext;
+
+	private MockMvc _mockMvc;
+
+
+	@BeforeEach
+	void vorbereiten() {
+
+		_mockMvc = MockMvcBuilders.webAppContextSetup( _kontext ).build();
+	}
+
+
+	@Test
+	void bisVorVon400() throws Exception {
+
+		_mockMvc.perform( get( "/app/artikel/tags" ).param( "von", "2025-03" ).param( "bis", "2025-01" ) )
+		        .andExpect( status().isBadRequest() )
+		        .andExpect( view().name( "fehler" ) )
+		        .andExpect( model().attributeExists( "fehlertext" ) );
+	}
+
+
+	@Test
+	void gleicherMonatErlaubt() throws Exception {
+
+		_mockMvc.perform( get( "/app/artikel/tags" ).param( "von", "2025-03" ).param( "bis", "2025-03" ) )
+		        .andExpect( status().isOk() )
+		        .andExpect( view().name( ArtikelSeiten.TEMPLATE_TAGS ) );
+	}
+
+}